@@ -46,7 +46,9 @@ import java.util.stream.Collectors;
         @NamedQuery(name  = "Area.findByMrn",
                 query = "select a from Area a left join fetch a.descs where a.mrn = :mrn"),
         @NamedQuery(name  = "Area.findLastUpdated",
-                query = "select max(a.updated) from Area a")
+                query = "select max(a.updated) from Area a"),
+        @NamedQuery(name  = "Area.findTreeNodes",
+                query = "select a.id, p.id, a.siblingSortOrder, a.messageSorting from Area a left join a.parent p")
 })
 @SuppressWarnings("unused")
 public class Area extends TreeBaseEntity<Area> implements ILocalizable<AreaDesc> {
@@ -15,7 +15,6 @@
  */
 package org.niord.core.area;
 
-import io.quarkus.scheduler.Scheduled;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.query.sqm.NodeBuilder;
 import org.locationtech.jts.geom.Geometry;
@@ -28,6 +27,8 @@ import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.message.Message;
 import org.niord.core.model.BaseEntity;
 import org.niord.core.service.TreeBaseService;
+import org.niord.core.service.TreeSnapshot;
+import org.niord.core.service.TreeSnapshotHolder;
 import org.niord.core.settings.SettingsService;
 import org.niord.model.search.PagedSearchParamsVo;
 import org.slf4j.Logger;
@@ -37,6 +38,8 @@ import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.criteria.*;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -51,6 +54,9 @@ public class AreaService extends TreeBaseService<Area> {
 
     public static final String SETTING_AREA_LAST_UPDATED = "areaLastUpdate";
 
+    /** The max random offset added to message area sort orders to make them unique **/
+    public static final double AREA_SORT_ORDER_JITTER = 1.0 / 1000000.0;
+
     @Inject
     private Logger log;
 
@@ -60,6 +66,51 @@ public class AreaService extends TreeBaseService<Area> {
     @Inject
     DomainService domainService;
 
+    /** In-memory snapshot of the area tree, with the message sorting type of each area as node data **/
+    private final TreeSnapshotHolder<AreaMessageSorting> areaTree = new TreeSnapshotHolder<>(this::loadAreaTreeNodes);
+
+
+    /**
+     * Returns a version number that changes whenever an area is created, updated, moved or deleted.
+     * Can be used for invalidating data derived from the areas.
+     *
+     * @return the current area version
+     */
+    public long getVersion() {
+        return areaTree.getVersion();
+    }
+
+
+    /**
+     * Returns the current in-memory snapshot of the area tree.
+     * The snapshot is re-loaded whenever an area is created, updated, moved or deleted.
+     *
+     * @return the current area tree snapshot
+     */
+    public TreeSnapshot<AreaMessageSorting> getAreaTreeSnapshot() {
+        return areaTree.get();
+    }
+
+
+    /** Loads the nodes of the area tree **/
+    private List<TreeSnapshot.Node<AreaMessageSorting>> loadAreaTreeNodes() {
+        return em.createNamedQuery("Area.findTreeNodes", Object[].class)
+                .getResultList().stream()
+                .map(row -> new TreeSnapshot.Node<>(
+                        (Integer) row[0],
+                        (Integer) row[1],
+                        (Double) row[2],
+                        (AreaMessageSorting) row[3]))
+                .collect(Collectors.toList());
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected void treeChanged() {
+        areaTree.invalidate();
+    }
+
 
     /**
      * Returns the area with the given legacy id
@@ -128,7 +179,11 @@ public class AreaService extends TreeBaseService<Area> {
 
         // Optionally, filter by area subtrees
         if (params.getAreaIds() != null && !params.getAreaIds().isEmpty()) {
-            getAreaDetails(params.getAreaIds()).forEach(a -> lineages.add(a.getLineage()));
+            TreeSnapshot<AreaMessageSorting> tree = getAreaTreeSnapshot();
+            params.getAreaIds().stream()
+                    .map(tree::getLineage)
+                    .filter(Objects::nonNull)
+                    .forEach(lineages::add);
         }
 
         // If defined, apply the area lineage filter
@@ -249,6 +304,9 @@ public class AreaService extends TreeBaseService<Area> {
      */
     public Area updateAreaData(Area original, Area area) {
 
+        boolean treeSortOrderChanged = original.getSiblingSortOrder() != area.getSiblingSortOrder()
+                || !Objects.equals(original.getMessageSorting(), area.getMessageSorting());
+
         original.setMrn(area.getMrn());
         original.setType(area.getType());
         original.setActive(area.isActive());
@@ -266,6 +324,10 @@ public class AreaService extends TreeBaseService<Area> {
         original.updateActiveFlag();
 
         original = saveEntity(original);
+        if (treeSortOrderChanged) {
+            updateTreeSortOrder(original);
+        }
+        notifyTreeChanged();
 
         return original;
     }
@@ -306,8 +368,10 @@ public class AreaService extends TreeBaseService<Area> {
         area.updateLineage();
         area.updateActiveFlag();
         area = saveEntity(area);
+        updateTreeSortOrder(area);
 
         em.flush();
+        notifyTreeChanged();
         return area;
     }
 
@@ -349,6 +413,7 @@ public class AreaService extends TreeBaseService<Area> {
             area.setParent(null);
             saveEntity(area);
             remove(area);
+            notifyTreeChanged();
             log.debug("Removed area " + areaId);
             return true;
         }
@@ -476,68 +541,28 @@ public class AreaService extends TreeBaseService<Area> {
 
 
     /**
-     * Called periodically every hour to re-sort the area tree
+     * Re-sorts the entire area tree.
      *
      * Potentially, a heavy-duty function that scans the entire area tree,
-     * sorts it and update the treeSortOrder. Use with care.
-     *
-     * @return if the sort order was updated
+     * sorts it and renumbers the treeSortOrder. Use with care.
+     * <p>
+     * The area tree sort order is otherwise maintained incrementally when areas are created, moved or re-ordered.
      */
-    @Scheduled(cron="13 3 * * * ?")
     public void recomputeTreeSortOrder() {
         recomputeTreeSortOrder(SETTING_AREA_LAST_UPDATED);
     }
 
 
     /**
-     * For areas, override default tree sort order function to take message sorting into account
-     *
-     * @param areas the list of areas to update
-     * @param index the current area index
-     * @param updatedAreas the list of updated areas given by sub-tree roots.
-     * @param ancestorUpdated if an ancestor area has been updated
-     * @return the index after processing the list of areas.
-     */
-    @Override
-    protected int recomputeTreeSortOrder(List<Area> areas, int index, List<Area> updatedAreas, boolean ancestorUpdated) {
-        return recomputeTreeSortOrder(areas, index, updatedAreas, ancestorUpdated, false);
-    }
-
-
-    /**
-     * Recursively recomputes the "treeSortOrder", by enumerating the sorted area list and their children.
      * The "treeSortOrder" is used for sorting messages by their area. If an area specifies the "messageSorting"
      * field, then all sub-areas of this are will have the same treeSortOrder.
      *
-     * @param areas the list of areas to update
-     * @param index the current area index
-     * @param updatedAreas the list of updated areas given by sub-tree roots.
-     * @param ancestorUpdated if an ancestor area has been updated
-     * @param messageSorting whether this sub-tree is ordered via the "messageSorting" parameter or not
-     * @return the index after processing the list of areas.
+     * @param area the area
+     * @return if the sub-tree of the area shares the tree sort order of the area
      */
-    @SuppressWarnings("all")
-    private int recomputeTreeSortOrder(List<Area> areas, int index, List<Area> updatedAreas, boolean ancestorUpdated, boolean messageSorting) {
-
-        for (Area area : areas) {
-            if (!messageSorting) {
-                index++;
-            }
-            boolean areaMessageSorting = messageSorting || area.getMessageSorting() != null;
-            boolean updated = ancestorUpdated;
-            if (index != area.getTreeSortOrder()) {
-                area.setTreeSortOrder(index);
-                updated = true;
-                if (!ancestorUpdated) {
-                    updatedAreas.add(area);
-                }
-            }
-
-            // NB: area.getChildren() is by definition sorted (by "siblingSortOrder")
-            index = recomputeTreeSortOrder(area.getChildren(), index, updatedAreas, updated, areaMessageSorting);
-        }
-
-        return index;
+    @Override
+    protected boolean sharesTreeSortOrder(Area area) {
+        return area.getMessageSorting() != null;
     }
 
 
@@ -596,23 +621,28 @@ public class AreaService extends TreeBaseService<Area> {
 
         // Ensure that we go no deeper than maxLevel.
         // It is assumed that parent areas include sub-areas geometry-wise.
-        areas = areas.stream()
+        // The area lineages are resolved via the area tree snapshot rather than by walking the area parents.
+        TreeSnapshot<AreaMessageSorting> tree = getAreaTreeSnapshot();
+        Map<Integer, Area> areaLookup = areas.stream()
+                .collect(Collectors.toMap(BaseEntity::getId, Function.identity(), (a1, a2) -> a1));
+        List<Integer> areaIds = areas.stream()
                 .map(a -> {
-                    List<Area> lineage = a.lineageAsList();
-                    Collections.reverse(lineage);
-                    return lineage.get(Math.min(lineage.size() - 1, maxLevel - 1));
+                    List<Integer> lineage = tree.getLineageIds(a.getId());
+                    return lineage.isEmpty() ? a.getId() : lineage.get(Math.min(lineage.size() - 1, maxLevel - 1));
                 })
                 .distinct()
                 .collect(Collectors.toList());
 
         // Lastly, remove all parent areas
-        Set<Integer> parentAreaIds = areas.stream()
-                .flatMap(a -> a.parentLineageAsList().stream())
-                .map(BaseEntity::getId)
+        Set<Integer> parentAreaIds = areaIds.stream()
+                .flatMap(id -> tree.getLineageIds(id).stream().filter(aid -> !aid.equals(id)))
                 .collect(Collectors.toSet());
-        areas.removeIf(a -> parentAreaIds.contains(a.getId()));
 
-        return areas;
+        return areaIds.stream()
+                .filter(id -> !parentAreaIds.contains(id))
+                .map(id -> areaLookup.containsKey(id) ? areaLookup.get(id) : getByPrimaryKey(Area.class, id))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
 
@@ -632,33 +662,47 @@ public class AreaService extends TreeBaseService<Area> {
      * @return a sorting order
      */
     public double computeMessageAreaSortingOrder(Message message) {
+        Double no = computeMessageAreaSortingBase(message, this::findMessageSortingArea);
+        if (no == null) {
+            return 0.0;
+        }
 
-        double no = 0.0;
+        // Each sort number must be different
+        return no + ThreadLocalRandom.current().nextDouble() * AREA_SORT_ORDER_JITTER;
+    }
+
+
+    /**
+     * Computes the sorting order for the message within its associated area, before the random
+     * jitter that makes sort orders unique is added.
+     *
+     * @param message the message
+     * @param sortingAreaResolver resolves the area that defines the message sorting for an area
+     * @return the sorting order without jitter, or null if the message cannot be sorted within its area
+     */
+    public Double computeMessageAreaSortingBase(Message message, Function<Area, Area> sortingAreaResolver) {
 
         // Sanity check
         if (message.getAreas().isEmpty()) {
-            return no;
+            return null;
         }
 
         // Compute the message center
         double[] center = GeoJsonUtils.computeCenter(message.toGeoJson());
         if (center == null) {
-            return no;
+            return null;
         }
         double lat = center[1];
         double lon = center[0];
 
         // Find parent area with a "messageSorting" definition
-        Area area = message.getAreas().get(0);
-        while (area != null && area.getMessageSorting() == null) {
-            area = area.getParent();
-        }
+        Area area = sortingAreaResolver.apply(message.getAreas().get(0));
         if (area == null) {
-            return no;
+            return null;
         }
-        AreaMessageSorting sortType = area.getMessageSorting();
 
-        switch (sortType) {
+        double no = 0.0;
+        switch (area.getMessageSorting()) {
             case NS:
                 no = -lat;
                 break;
@@ -676,13 +720,55 @@ public class AreaService extends TreeBaseService<Area> {
                 no = computeCwOrCcwSortOrder(area, lat, lon);
                 break;
         }
-        // Each sort number must be different
-        no += new Random().nextDouble() / 1000000.0;
-
         return no;
     }
 
 
+    /**
+     * Returns the area itself or the closest parent area with a "messageSorting" definition
+     * <p>
+     * For persisted areas, the area is resolved via the area tree snapshot rather than by walking the area parents.
+     *
+     * @param area the area
+     * @return the area defining the message sorting, or null if undefined
+     */
+    public Area findMessageSortingArea(Area area) {
+        TreeSnapshot<AreaMessageSorting> tree = getAreaTreeSnapshot();
+        if (area != null && tree.contains(area.getId())) {
+            Integer sortingAreaId = tree.findClosest(area.getId(), Objects::nonNull);
+            if (sortingAreaId == null) {
+                return null;
+            }
+            return sortingAreaId.equals(area.getId()) ? area : getByPrimaryKey(Area.class, sortingAreaId);
+        }
+
+        while (area != null && area.getMessageSorting() == null) {
+            area = area.getParent();
+        }
+        return area;
+    }
+
+
+    /**
+     * Returns the lineage of the area with the given area ID, i.e. the database ID or MRN.
+     * <p>
+     * Areas specified by their database ID are resolved via the area tree snapshot without any database look-ups.
+     *
+     * @param areaId the area ID or MRN
+     * @return the lineage of the area, or null if not found
+     */
+    public String findLineageByAreaId(String areaId) {
+        if (StringUtils.isNumeric(areaId)) {
+            String lineage = getAreaTreeSnapshot().getLineage(Integer.valueOf(areaId));
+            if (lineage != null) {
+                return lineage;
+            }
+        }
+        Area area = findByAreaId(areaId);
+        return area == null ? null : area.getLineage();
+    }
+
+
     /** Calculates the message area sort order for CW and CCW types **/
     private double computeCwOrCcwSortOrder(Area area, double lat, double lon) {
         double no = 0.0;
@@ -16,8 +16,10 @@
 
 package org.niord.core.aton.batch;
 
+import org.niord.core.aton.AtonTag;
 import org.niord.core.aton.vo.AtonNodeVo;
 import org.niord.core.aton.vo.AtonOsmVo;
+import org.niord.core.aton.vo.AtonTagVo;
 import org.niord.core.batch.AbstractItemHandler;
 
 import jakarta.enterprise.context.Dependent;
@@ -99,19 +101,38 @@ public class BatchAtonImportReader extends AbstractItemHandler {
     /** {@inheritDoc} **/
     @Override
     public Object readItem() throws Exception {
-        if (atonNo < atons.length) {
+        while (atonNo < atons.length) {
 
             // Every now and then, update the progress
             if (atonNo % 10 == 0) {
                 updateProgress((int)(100.0 * atonNo / atons.length));
             }
 
-            getLog().info("Reading AtoN no " + atonNo);
-            return atons[atonNo++];
+            // When partitioned, all AtoNs with the same AtoN UID are read by the same partition
+            AtonNodeVo aton = atons[atonNo];
+            if (inPartition(partitionKey(aton))) {
+                getLog().info("Reading AtoN no " + atonNo);
+                atonNo++;
+                return aton;
+            }
+            atonNo++;
         }
         return null;
     }
 
+
+    /** Returns the key used for assigning the AtoN to a partition **/
+    private Object partitionKey(AtonNodeVo aton) {
+        if (aton.getTags() != null) {
+            for (AtonTagVo tag : aton.getTags()) {
+                if (AtonTag.TAG_ATON_UID.equals(tag.getK())) {
+                    return tag.getV();
+                }
+            }
+        }
+        return atonNo;
+    }
+
     /** {@inheritDoc} **/
     @Override
     public Serializable checkpointInfo() throws Exception {
@@ -15,6 +15,7 @@
  */
 package org.niord.core.aton.batch;
 
+import org.hibernate.Session;
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.AtonService;
 import org.niord.core.batch.AbstractItemHandler;
@@ -22,6 +23,7 @@ import org.niord.core.batch.AbstractItemHandler;
 import jakarta.enterprise.context.Dependent;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import java.util.List;
 
@@ -35,15 +37,23 @@ public class BatchAtonImportWriter extends AbstractItemHandler {
     @Inject
     AtonService atonService;
 
+    @Inject
+    EntityManager em;
+
     /** {@inheritDoc} **/
     @Override
     @Transactional
     public void writeItems(List<Object> items) throws Exception {
         long t0 = System.currentTimeMillis();
+
+        // Flush the AtoNs of the chunk at once, allowing the inserts and updates to be batched
+        em.unwrap(Session.class).setJdbcBatchSize(Math.max(1, items.size()));
+
         for (Object i : items) {
             AtonNode aton = (AtonNode) i;
             atonService.saveEntity(aton);
         }
+        em.flush();
         getLog().info(String.format("Persisted %d AtoNs in %d s", items.size(), (System.currentTimeMillis() - t0) / 1000L));
     }
 }
@@ -15,8 +15,11 @@
  */
 package org.niord.core.batch;
 
+import org.apache.commons.lang.StringUtils;
+
 import jakarta.annotation.PostConstruct;
 
+import jakarta.batch.api.BatchProperty;
 import jakarta.batch.api.chunk.ItemProcessor;
 import jakarta.batch.api.chunk.ItemReader;
 import jakarta.batch.api.chunk.ItemWriter;
@@ -46,6 +49,15 @@ public abstract class AbstractItemHandler implements ItemReader, ItemProcessor,
     @Inject
     protected org.slf4j.Logger systemLog;
 
+    // The partition index and count, if the step has been partitioned using the BatchPartitionMapper
+    @Inject
+    @BatchProperty
+    String partition;
+
+    @Inject
+    @BatchProperty
+    String partitions;
+
     protected BatchData job;
 
     // The log in the batch job folder must be accessed via getLog()
@@ -69,7 +81,11 @@ public abstract class AbstractItemHandler implements ItemReader, ItemProcessor,
             return log;
         }
 
-        log = Logger.getLogger(this.getClass().getSimpleName());
+        // Each partition of a partitioned step logs to a separate log file
+        String logName = isPartitioned()
+                ? getClass().getSimpleName() + "Partition" + getPartition()
+                : getClass().getSimpleName();
+        log = Logger.getLogger(logName);
 
 
         // Store the log in the transient user data, so that it can be properly closed after the batch job is complete.
@@ -77,13 +93,13 @@ public abstract class AbstractItemHandler implements ItemReader, ItemProcessor,
         @SuppressWarnings("unchecked")
         Map<String, Logger> logs = (Map<String, java.util.logging.Logger>)jobContext.getTransientUserData();
         if (logs != null) {
-            logs.put(getClass().getSimpleName(), log);
+            logs.put(logName, log);
         }
 
 
         try {
             Path batchJobFolder = batchService.computeBatchJobPath(job.computeBatchJobFolderPath());
-            String file = batchJobFolder.resolve(getClass().getSimpleName() + "Log.txt")
+            String file = batchJobFolder.resolve(logName + "Log.txt")
                     .toAbsolutePath().toString();
             log.setUseParentHandlers(false);
             FileHandler fh = new FileHandler(file, true);
@@ -110,6 +126,46 @@ public abstract class AbstractItemHandler implements ItemReader, ItemProcessor,
         batchService.updateBatchJobProgress(jobContext.getInstanceId(), progress);
     }
 
+    /**
+     * Returns if the step of this item handler has been partitioned into more than one partition
+     * @return if the step of this item handler has been partitioned into more than one partition
+     */
+    protected boolean isPartitioned() {
+        return getPartitionCount() > 1;
+    }
+
+
+    /**
+     * Returns the partition index of this item handler, or 0 if the step has not been partitioned
+     * @return the partition index of this item handler
+     */
+    protected int getPartition() {
+        return StringUtils.isNotBlank(partition) ? Integer.parseInt(partition) : 0;
+    }
+
+
+    /**
+     * Returns the number of partitions of the step, or 1 if the step has not been partitioned
+     * @return the number of partitions of the step
+     */
+    protected int getPartitionCount() {
+        return StringUtils.isNotBlank(partitions) ? Integer.parseInt(partitions) : 1;
+    }
+
+
+    /**
+     * Returns if the item with the given partition key belongs to the partition of this item handler.
+     * Items with the same partition key are always handled by the same partition, in the order they are read.
+     *
+     * @param partitionKey the partition key of the item
+     * @return if the item belongs to the partition of this item handler
+     */
+    protected boolean inPartition(Object partitionKey) {
+        return !isPartitioned()
+                || BatchPartitionMapper.partitionOf(partitionKey, getPartitionCount()) == getPartition();
+    }
+
+
     /** {@inheritDoc} */
     @Override
     public Object processItem(Object item) throws Exception {
@@ -50,7 +50,9 @@ import java.util.Map;
         @NamedQuery(name  = "BatchData.findByInstanceId",
                 query = "select bd from BatchData bd where bd.instanceId = :instanceId"),
         @NamedQuery(name  = "BatchData.findByInstanceIds",
-                query = "select bd from BatchData bd where bd.instanceId in :instanceIds")
+                query = "select bd from BatchData bd where bd.instanceId in :instanceIds"),
+        @NamedQuery(name  = "BatchData.updateProgress",
+                query = "update BatchData bd set bd.progress = :progress where bd.instanceId = :instanceId")
 })
 @SuppressWarnings("unused")
 public class BatchData extends BaseEntity<Integer> {
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the batch job "[jobName]/in" drop folders under a batch job root using a {@code WatchService}.
+ * <p>
+ * A dropped file is only handed over to the {@linkplain BatchFileHandler} once it has been written completely,
+ * i.e. once its size and modification time have been stable for the settle time. Hence, a file moved into
+ * place is picked up after the settle time, whereas a file copied slowly into the folder is picked up
+ * when the copying has finished. Hidden files are ignored, so a client may also write to e.g. ".file.zip"
+ * and rename the file when done.
+ * <p>
+ * Files already present when the watcher is started, are picked up as well, and the folders are
+ * re-scanned if the watch service signals that events have been lost.
+ * <p>
+ * The handler is called sequentially from a single thread, and is responsible for removing the file.
+ */
+public class BatchFolderWatcher implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(BatchFolderWatcher.class);
+
+    public static final String IN_FOLDER = "in";
+
+    /** The interval between checking if pending files have been written completely **/
+    private static final long CHECK_INTERVAL_MS = 100L;
+
+    private final Path root;
+    private final long settleTimeMs;
+    private final BatchFileHandler handler;
+
+    private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<>();
+    private final Map<Path, PendingFile> pendingFiles = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+    private ScheduledExecutorService executor;
+    private Thread watchThread;
+
+
+    /**
+     * Constructor
+     *
+     * @param root the batch job root
+     * @param settleTimeMs the time in ms the size of a file must be stable before it is considered complete
+     * @param handler the handler called for each completely written file
+     */
+    public BatchFolderWatcher(Path root, long settleTimeMs, BatchFileHandler handler) {
+        this.root = root;
+        this.settleTimeMs = settleTimeMs;
+        this.handler = handler;
+    }
+
+
+    /**
+     * Starts watching the batch job drop folders and schedules all files already present for processing
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+
+        Files.createDirectories(root);
+        watchService = root.getFileSystem().newWatchService();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "batch-folder-handler"));
+
+        // Register the folders and pick up the files dropped while the watcher was not running
+        rescan();
+
+        watchThread = new Thread(this::processEvents, "batch-folder-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        executor.scheduleWithFixedDelay(this::checkPendingFiles, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        log.info("Watching batch job folders in " + root);
+    }
+
+
+    /**
+     * Stops watching the batch job drop folders
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService == null) {
+            return;
+        }
+
+        executor.shutdownNow();
+        watchService.close();
+        watchThread.interrupt();
+        watchedFolders.clear();
+        pendingFiles.clear();
+        watchService = null;
+    }
+
+
+    /** Registers all batch job folders and schedules the files of all "in" folders for processing **/
+    private void rescan() {
+        register(root);
+        for (Path jobFolder : subFolders(root)) {
+            registerJobFolder(jobFolder);
+        }
+    }
+
+
+    /** Registers the batch job folder along with its "in" folder **/
+    private void registerJobFolder(Path jobFolder) {
+        register(jobFolder);
+        Path inFolder = jobFolder.resolve(IN_FOLDER);
+        if (Files.isDirectory(inFolder)) {
+            registerInFolder(inFolder);
+        }
+    }
+
+
+    /** Registers the "in" folder and schedules its files for processing **/
+    private void registerInFolder(Path inFolder) {
+        register(inFolder);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(inFolder)) {
+            for (Path file : stream) {
+                fileChanged(file);
+            }
+        } catch (IOException e) {
+            log.error("Failed scanning batch job folder " + inFolder + ": " + e);
+        }
+    }
+
+
+    /** Registers the folder with the watch service **/
+    private void register(Path folder) {
+        if (watchedFolders.containsValue(folder)) {
+            return;
+        }
+        try {
+            WatchKey key = folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            watchedFolders.put(key, folder);
+        } catch (IOException e) {
+            log.error("Failed watching batch job folder " + folder + ": " + e);
+        }
+    }
+
+
+    /** Processes watch service events until the watcher is closed **/
+    private void processEvents() {
+        WatchService service = watchService;
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path folder = watchedFolders.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    log.warn("Batch job folder events lost. Re-scanning folders");
+                    rescan();
+                } else if (folder != null) {
+                    folderChanged(folder, (Path) event.context(), event.kind());
+                }
+            }
+
+            if (!key.reset()) {
+                watchedFolders.remove(key);
+            }
+        }
+    }
+
+
+    /** Handles a change to the given folder entry **/
+    private void folderChanged(Path folder, Path name, WatchEvent.Kind<?> kind) {
+        Path path = folder.resolve(name);
+
+        if (folder.equals(root)) {
+            // A new batch job folder
+            if (kind == ENTRY_CREATE && Files.isDirectory(path)) {
+                registerJobFolder(path);
+            }
+
+        } else if (folder.getParent().equals(root)) {
+            // A new "in" folder of a batch job folder
+            if (kind == ENTRY_CREATE && IN_FOLDER.equals(name.toString()) && Files.isDirectory(path)) {
+                registerInFolder(path);
+            }
+
+        } else if (kind == ENTRY_DELETE) {
+            pendingFiles.remove(path);
+
+        } else {
+            fileChanged(path);
+        }
+    }
+
+
+    /** Called when a file in an "in" folder has been created or modified **/
+    private void fileChanged(Path file) {
+        try {
+            if (Files.isRegularFile(file) && !Files.isHidden(file)) {
+                pendingFiles.computeIfAbsent(file, PendingFile::new);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+
+    /** Hands over the pending files that have been written completely to the handler **/
+    private void checkPendingFiles() {
+        long now = System.currentTimeMillis();
+        for (PendingFile pendingFile : pendingFiles.values()) {
+            Path file = pendingFile.file;
+            try {
+                if (!Files.isRegularFile(file)) {
+                    pendingFiles.remove(file);
+                } else if (pendingFile.isComplete(now)) {
+                    pendingFiles.remove(file);
+                    String jobName = file.getParent().getParent().getFileName().toString();
+                    handler.handle(jobName, file);
+                }
+            } catch (Exception e) {
+                log.error("Failed handling batch job file " + file, e);
+            }
+        }
+    }
+
+
+    /** Returns the sub-folders of the given folder **/
+    private static List<Path> subFolders(Path folder) {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, Files::isDirectory)) {
+            stream.forEach(result::add);
+        } catch (IOException e) {
+            log.debug("Failed listing batch job folders in " + folder + ": " + e);
+        }
+        return result;
+    }
+
+
+    /**
+     * Handler called when a file dropped in a batch job "in" folder has been written completely
+     */
+    @FunctionalInterface
+    public interface BatchFileHandler {
+
+        /**
+         * Handles the batch job file
+         *
+         * @param jobName the name of the batch job
+         * @param file the file
+         */
+        void handle(String jobName, Path file) throws Exception;
+    }
+
+
+    /**
+     * Tracks the size and modification time of a file being written
+     */
+    private class PendingFile {
+        final Path file;
+        long size = -1;
+        long lastModified = -1;
+        long stableSince;
+
+        PendingFile(Path file) {
+            this.file = file;
+            this.stableSince = System.currentTimeMillis();
+        }
+
+        /** Returns if the file size and modification time have been stable for the settle time **/
+        boolean isComplete(long now) throws IOException {
+            long currentSize = Files.size(file);
+            long currentLastModified = Files.getLastModifiedTime(file).toMillis();
+            if (currentSize != size || currentLastModified != lastModified) {
+                size = currentSize;
+                lastModified = currentLastModified;
+                stableSince = now;
+                return false;
+            }
+            return now - stableSince >= settleTimeMs;
+        }
+    }
+}
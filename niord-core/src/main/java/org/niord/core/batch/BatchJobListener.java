@@ -95,6 +95,9 @@ public class BatchJobListener extends AbstractJobListener {
     @Override
     public void afterJob() throws Exception {
 
+        // Persist the latest progress of the batch job
+        batchService.flushBatchJobProgress(jobContext.getInstanceId());
+
         // Close all the batch logs - otherwise the will keep a lock on the log files.
         @SuppressWarnings("unchecked")
         Map<String, java.util.logging.Logger> logs = (Map<String, java.util.logging.Logger>)jobContext.getTransientUserData();
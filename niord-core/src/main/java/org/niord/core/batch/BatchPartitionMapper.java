@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.batch;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+
+import jakarta.batch.api.BatchProperty;
+import jakarta.batch.api.partition.PartitionMapper;
+import jakarta.batch.api.partition.PartitionPlan;
+import jakarta.batch.api.partition.PartitionPlanImpl;
+import jakarta.batch.runtime.context.JobContext;
+import jakarta.enterprise.context.Dependent;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Splits a chunk step into a number of partitions that are executed in parallel.
+ * <p>
+ * Each partition is passed its partition index and the partition count as the "partition" and "partitions"
+ * partition plan properties, and the item reader of the step is responsible for only reading the
+ * items belonging to its partition. See {@linkplain AbstractItemHandler#inPartition(Object)}.
+ * <p>
+ * The "singlePartitionIf" property can be used to specify a comma-separated list of batch job properties
+ * that, if defined for the batch job, will cause the step to be executed as a single partition.
+ * <p>
+ * Configure using:
+ * <pre>
+ *  &lt;partition&gt;
+ *      &lt;mapper ref="batchPartitionMapper"&gt;
+ *          &lt;properties&gt;
+ *              &lt;property name="partitions" value="#{jobParameters['partitions']}?:1;"/&gt;
+ *          &lt;/properties&gt;
+ *      &lt;/mapper&gt;
+ *  &lt;/partition&gt;
+ * </pre>
+ * and pass on the partition plan properties to the item reader:
+ * <pre>
+ *  &lt;reader ref="batchMessageImportReader"&gt;
+ *      &lt;properties&gt;
+ *          &lt;property name="partition" value="#{partitionPlan['partition']}"/&gt;
+ *          &lt;property name="partitions" value="#{partitionPlan['partitions']}"/&gt;
+ *      &lt;/properties&gt;
+ *  &lt;/reader&gt;
+ * </pre>
+ */
+@Dependent
+@Named("batchPartitionMapper")
+public class BatchPartitionMapper implements PartitionMapper {
+
+    public static final String PARTITION = "partition";
+    public static final String PARTITIONS = "partitions";
+
+    @Inject
+    Logger log;
+
+    @Inject
+    JobContext jobContext;
+
+    @Inject
+    BatchService batchService;
+
+    @Inject
+    @BatchProperty
+    String partitions;
+
+    @Inject
+    @BatchProperty
+    String singlePartitionIf;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public PartitionPlan mapPartitions() throws Exception {
+
+        int partitionCount = StringUtils.isNotBlank(partitions) && StringUtils.isNumeric(partitions)
+                ? Math.max(1, Integer.parseInt(partitions))
+                : 1;
+
+        if (partitionCount > 1 && StringUtils.isNotBlank(singlePartitionIf)) {
+            BatchData job = batchService.findByInstanceId(jobContext.getInstanceId());
+            if (job != null && Arrays.stream(singlePartitionIf.split(","))
+                    .anyMatch(p -> job.getProperties().get(p.trim()) != null)) {
+                partitionCount = 1;
+            }
+        }
+
+        Properties[] partitionProperties = new Properties[partitionCount];
+        for (int x = 0; x < partitionCount; x++) {
+            partitionProperties[x] = new Properties();
+            partitionProperties[x].setProperty(PARTITION, String.valueOf(x));
+            partitionProperties[x].setProperty(PARTITIONS, String.valueOf(partitionCount));
+        }
+
+        PartitionPlan plan = new PartitionPlanImpl();
+        plan.setPartitions(partitionCount);
+        plan.setThreads(partitionCount);
+        plan.setPartitionProperties(partitionProperties);
+
+        log.info("Executing batch job " + jobContext.getJobName() + " in " + partitionCount + " partitions");
+        return plan;
+    }
+
+
+    /**
+     * Returns the index of the partition that handles items with the given partition key
+     *
+     * @param partitionKey the partition key of the item
+     * @param partitions the number of partitions
+     * @return the index of the partition that handles the item
+     */
+    public static int partitionOf(Object partitionKey, int partitions) {
+        return Math.floorMod(Objects.hashCode(partitionKey), Math.max(1, partitions));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the progress (0-100) of running batch jobs in memory.
+ * <p>
+ * Batch item handlers may report progress as often as once per item, but the progress is only
+ * handed over to the {@linkplain ProgressPersister} when it has advanced by the flush step, or when the
+ * flush interval has passed since the progress was last persisted.
+ * The first and the final (100%) progress of a batch job are always persisted.
+ */
+public class BatchProgressTracker {
+
+    private final long flushIntervalMs;
+    private final int flushStep;
+    private final ProgressPersister persister;
+
+    private final Map<Long, JobProgress> jobProgress = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor
+     *
+     * @param flushIntervalMs the max time in ms between persisting the progress of a batch job
+     * @param flushStep the progress step in percent that will cause the progress of a batch job to be persisted
+     * @param persister persists the progress of a batch job
+     */
+    public BatchProgressTracker(long flushIntervalMs, int flushStep, ProgressPersister persister) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushStep = flushStep;
+        this.persister = persister;
+    }
+
+
+    /**
+     * Updates the progress of the given batch job, and persists it if a flush is due
+     *
+     * @param instanceId the batch job instance ID
+     * @param progress the progress
+     */
+    public void update(Long instanceId, Integer progress) {
+        if (instanceId == null || progress == null) {
+            return;
+        }
+
+        JobProgress p = jobProgress.computeIfAbsent(instanceId, id -> new JobProgress());
+        synchronized (p) {
+            p.progress = progress;
+            long now = System.currentTimeMillis();
+            if (p.persistedProgress == null
+                    || progress >= 100
+                    || Math.abs(progress - p.persistedProgress) >= flushStep
+                    || now - p.persistedTime >= flushIntervalMs) {
+                persist(instanceId, p, now);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the in-memory progress of the given batch job, or null if the batch job is not running
+     *
+     * @param instanceId the batch job instance ID
+     * @return the in-memory progress of the given batch job
+     */
+    public Integer getProgress(Long instanceId) {
+        JobProgress p = instanceId != null ? jobProgress.get(instanceId) : null;
+        return p != null ? p.progress : null;
+    }
+
+
+    /**
+     * Persists the latest progress of the given batch job, if not already persisted,
+     * and stops tracking the batch job
+     *
+     * @param instanceId the batch job instance ID
+     */
+    public void flush(Long instanceId) {
+        JobProgress p = instanceId != null ? jobProgress.remove(instanceId) : null;
+        if (p != null) {
+            synchronized (p) {
+                if (p.progress != null && !p.progress.equals(p.persistedProgress)) {
+                    persist(instanceId, p, System.currentTimeMillis());
+                }
+            }
+        }
+    }
+
+
+    /** Persists the current progress of the batch job **/
+    private void persist(Long instanceId, JobProgress p, long now) {
+        persister.persist(instanceId, p.progress);
+        p.persistedProgress = p.progress;
+        p.persistedTime = now;
+    }
+
+
+    /**
+     * Persists the progress of a batch job
+     */
+    @FunctionalInterface
+    public interface ProgressPersister {
+
+        /**
+         * Persists the progress of the batch job
+         *
+         * @param instanceId the batch job instance ID
+         * @param progress the progress
+         */
+        void persist(Long instanceId, Integer progress);
+    }
+
+
+    /**
+     * The in-memory progress of a batch job
+     */
+    private static class JobProgress {
+        Integer progress;
+        Integer persistedProgress;
+        long persistedTime;
+    }
+}
@@ -17,6 +17,8 @@ package org.niord.core.batch;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import io.quarkiverse.jberet.runtime.QuarkusJobOperator;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
 import io.quarkus.scheduler.Scheduled;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -36,9 +38,11 @@ import org.niord.core.util.JsonUtils;
 import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.batch.operations.NoSuchJobException;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.io.*;
@@ -58,8 +62,8 @@ import java.util.zip.GZIPOutputStream;
  * <ul>
  *  <li>
  *      <b>[jobName]/in</b>:
- *      The <b>in</b> folders will be monitored periodically, and any file placed in this folder will
- *      result in the <b>jobName</b> batch job being executed.
+ *      The <b>in</b> folders will be watched, and any file placed in this folder will
+ *      result in the <b>jobName</b> batch job being executed, once the file has been written completely.
  *  </li>
  *  <li>
  *      <b>[jobName]/execution/[year]/[month]/[jobNo]</b>:
@@ -87,6 +91,9 @@ public class BatchService extends BaseService {
 
     public static final String BATCH_REPO_FOLDER = "batch";
     public static final String BATCH_JOB_ENTITY = "batchJobEntity";
+    public static final String BATCH_PARTITIONS = "partitions";
+    public static final String BATCH_ITEM_COUNT = "itemCount";
+    static final int BATCH_JOB_NO_BLOCK_SIZE = 10;
 
     @Inject
     private Logger log;
@@ -112,6 +119,42 @@ public class BatchService extends BaseService {
     @Setting(value="batchFileExpiryDays", defaultValue="10", description="Number of days after which batch job files are deleted", type = Type.Integer)
     private int batchFileExpiryDays;
 
+    @Inject
+    @Setting(value="batchFileSettleTime", defaultValue="500", description="Time in ms the size of a file dropped in a batch job folder must be stable before the batch job is started", type = Type.Integer)
+    private int batchFileSettleTime;
+
+    @Inject
+    @Setting(value="batchProgressFlushInterval", defaultValue="5000", description="Max time in ms between persisting the progress of a running batch job", type = Type.Integer)
+    private int batchProgressFlushInterval;
+
+    @Inject
+    @Setting(value="batchProgressFlushStep", defaultValue="5", description="Progress step in percent that causes the progress of a running batch job to be persisted", type = Type.Integer)
+    private int batchProgressFlushStep;
+
+    @Inject
+    @Setting(value="batchImportPartitions", defaultValue="4", description="Number of parallel partitions used by partitioned batch import jobs", type = Type.Integer)
+    private int batchImportPartitions;
+
+    @Inject
+    @Setting(value="batchImportItemCount", defaultValue="50", description="Number of items committed per chunk by tunable batch import jobs", type = Type.Integer)
+    private int batchImportItemCount;
+
+    private BatchFolderWatcher batchFolderWatcher;
+
+    private BatchProgressTracker progressTracker;
+
+
+    /**
+     * Initializes the batch job progress tracker
+     */
+    @PostConstruct
+    void init() {
+        progressTracker = new BatchProgressTracker(
+                batchProgressFlushInterval,
+                batchProgressFlushStep,
+                this::persistBatchJobProgress);
+    }
+
 
     /****************************/
     /** Starting batch jobs    **/
@@ -130,7 +173,7 @@ public class BatchService extends BaseService {
         // so, we leave it to the BatchJobListener.
 
         // Launch the batch job
-        Properties props = new Properties();
+        Properties props = jobParameters();
         props.put(BATCH_JOB_ENTITY, job);
         long executionId = jobOperator.start(job.getJobName(), props);
 
@@ -139,6 +182,18 @@ public class BatchService extends BaseService {
     }
 
 
+    /**
+     * Returns the job parameters used for tuning the batch jobs. The job parameters may be
+     * referenced from the batch job xml files as e.g. "#{jobParameters['partitions']}"
+     */
+    private Properties jobParameters() {
+        Properties props = new Properties();
+        props.setProperty(BATCH_PARTITIONS, String.valueOf(batchImportPartitions));
+        props.setProperty(BATCH_ITEM_COUNT, String.valueOf(batchImportItemCount));
+        return props;
+    }
+
+
     /**
      * Creates and initializes a new batch job data entity
      */
@@ -251,13 +306,15 @@ public class BatchService extends BaseService {
 
 
     /**
-     * Returns the next sequence number for the batch job
+     * Returns the next sequence number for the batch job.
+     * <p>
+     * Batch job numbers need not be gapless, so they are allocated in blocks.
      *
      * @param jobName the name of the batch job
      * @return the next sequence number for the batch job
      */
     private Long getNextJobNo(String jobName) {
-        Sequence jobSequence = new DefaultSequence("BATCH_JOB_" + jobName, 1);
+        Sequence jobSequence = new DefaultSequence("BATCH_JOB_" + jobName, 1, BATCH_JOB_NO_BLOCK_SIZE);
         return sequenceService.nextValue(jobSequence);
     }
 
@@ -479,17 +536,40 @@ public class BatchService extends BaseService {
 
     /**
      * Updates progress (0-100) for the given batch job.
+     * <p>
+     * The progress is kept in memory, and only persisted when it has advanced by "batchProgressFlushStep"
+     * percent, or when "batchProgressFlushInterval" ms have passed since it was last persisted.
      *
-     * @param instanceIds the batch job id
+     * @param instanceId the batch job id
      * @param progress the progress
      */
-    public void updateBatchJobProgress(Long instanceIds, Integer progress) {
+    public void updateBatchJobProgress(Long instanceId, Integer progress) {
+        progressTracker.update(instanceId, progress);
+    }
 
-        BatchData job = findByInstanceId(instanceIds);
-        if (job != null) {
-            job.setProgress(progress);
-            saveEntity(job);
-        }
+
+    /**
+     * Persists the latest progress of the given batch job and stops tracking it in memory.
+     * Called when the batch job has completed.
+     *
+     * @param instanceId the batch job id
+     */
+    public void flushBatchJobProgress(Long instanceId) {
+        progressTracker.flush(instanceId);
+    }
+
+
+    /**
+     * Persists the progress (0-100) for the given batch job.
+     *
+     * @param instanceId the batch job id
+     * @param progress the progress
+     */
+    private void persistBatchJobProgress(Long instanceId, Integer progress) {
+        em.createNamedQuery("BatchData.updateProgress")
+                .setParameter("instanceId", instanceId)
+                .setParameter("progress", progress)
+                .executeUpdate();
     }
 
 
@@ -537,7 +617,7 @@ public class BatchService extends BaseService {
      * @param executionId the execution ID
      */
     public long restartExecution(long executionId) {
-        return jobOperator.restart(executionId, new Properties());
+        return jobOperator.restart(executionId, jobParameters());
     }
 
     /**
@@ -596,7 +676,9 @@ public class BatchService extends BaseService {
                 i.setDomain(data.getDomain() != null ? data.getDomain().getDomainId() : null);
                 i.setJobName(data.getJobName());
                 i.setProperties(data.getProperties());
-                i.setProgress(data.getProgress());
+                // Running batch jobs have their latest progress in memory
+                Integer progress = progressTracker.getProgress(i.getInstanceId());
+                i.setProgress(progress != null ? progress : data.getProgress());
             }
         }
 
@@ -637,31 +719,48 @@ public class BatchService extends BaseService {
     /***************************************/
 
     /**
-     * Called every minute to monitor the batch job "[jobName]/in" folders. If a file has been
-     * placed in one of these folders, the cause the "jobName" batch job to be started.
+     * Starts watching the batch job "[jobName]/in" folders. Files already present in the folders
+     * are picked up as well.
      */
-    @Scheduled(cron="48 */1 */1 * * ?")
-    void monitorBatchJobInFolderInitiation() {
+    void startBatchJobFolderWatcher(@Observes StartupEvent ev) {
+        batchFolderWatcher = new BatchFolderWatcher(batchJobRoot, batchFileSettleTime, this::startBatchJobFromInFolder);
+        try {
+            batchFolderWatcher.start();
+        } catch (IOException e) {
+            log.error("Failed watching batch job folders in " + batchJobRoot, e);
+        }
+    }
 
-        // Resolve the list of batch job "in" folders
-        List<Path> executionFolders = getBatchJobSubFolders("in");
 
-        // Check for new batch-initiating files in each folder
-        for (Path dir : executionFolders) {
-            for (Path file : getDirectoryFiles(dir)) {
-                String jobName = file.getParent().getParent().getFileName().toString();
-                log.info("Found file " + file.getFileName() + " for batch job " + jobName);
+    /**
+     * Stops watching the batch job "[jobName]/in" folders.
+     */
+    void stopBatchJobFolderWatcher(@Observes ShutdownEvent ev) {
+        try {
+            batchFolderWatcher.close();
+        } catch (IOException ignored) {
+        }
+    }
 
-                try {
-                    startBatchJobWithDataFile(jobName, file, new HashMap<>());
-                } catch (IOException e) {
-                    log.error("Failed starting batch job " + jobName + " with file " + file.getFileName());
-                } finally {
-                    // Delete the file
-                    // Note to self: Move to error folder?
-                    try { Files.delete(file); } catch (IOException ignored) {}
-                }
-            }
+
+    /**
+     * Called when a file has been placed in one of the batch job "[jobName]/in" folders, and will
+     * cause the "jobName" batch job to be started.
+     *
+     * @param jobName the batch job name
+     * @param file the file placed in the "in" folder
+     */
+    void startBatchJobFromInFolder(String jobName, Path file) {
+        log.info("Found file " + file.getFileName() + " for batch job " + jobName);
+
+        try {
+            startBatchJobWithDataFile(jobName, file, new HashMap<>());
+        } catch (Exception e) {
+            log.error("Failed starting batch job " + jobName + " with file " + file.getFileName(), e);
+        } finally {
+            // Delete the file
+            // Note to self: Move to error folder?
+            try { Files.delete(file); } catch (IOException ignored) {}
         }
     }
 
@@ -740,21 +839,6 @@ public class BatchService extends BaseService {
     }
 
 
-    /** Returns the list of regular files in the given directory **/
-    private List<Path> getDirectoryFiles(Path dir) {
-        List<Path> files = new ArrayList<>();
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-            for (Path p : stream) {
-                if (Files.isReadable(p) && Files.isRegularFile(p) && !Files.isHidden(p)) {
-                    files.add(p);
-                }
-            }
-        } catch (IOException ignored) {
-        }
-        return files;
-    }
-
-
     /** Returns if the given directory is empty **/
     private boolean isDirEmpty(final Path directory) throws IOException {
         try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(directory)) {
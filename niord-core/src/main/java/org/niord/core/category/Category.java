@@ -49,7 +49,9 @@ import java.util.stream.Collectors;
         @NamedQuery(name  = "Category.findByMrn",
                 query = "select c from Category c left join fetch c.descs where c.mrn = :mrn"),
         @NamedQuery(name  = "Category.findLastUpdated",
-                query = "select max(c.updated) from Category c")
+                query = "select max(c.updated) from Category c"),
+        @NamedQuery(name  = "Category.findTreeNodes",
+                query = "select c.id, p.id, c.siblingSortOrder from Category c left join c.parent p")
 })
 @SuppressWarnings("unused")
 public class Category extends TreeBaseEntity<Category> implements ILocalizable<CategoryDesc> {
@@ -15,7 +15,6 @@
  */
 package org.niord.core.category;
 
-import io.quarkus.scheduler.Scheduled;
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.NiordApp;
 import org.niord.core.aton.AtonFilter;
@@ -25,6 +24,8 @@ import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
 import org.niord.core.script.ScriptResource;
 import org.niord.core.service.TreeBaseService;
+import org.niord.core.service.TreeSnapshot;
+import org.niord.core.service.TreeSnapshotHolder;
 import org.niord.model.search.PagedSearchParamsVo;
 import org.slf4j.Logger;
 
@@ -55,6 +56,40 @@ public class CategoryService extends TreeBaseService<Category> {
     @Inject
     NiordApp app;
 
+    /** In-memory snapshot of the category tree **/
+    private final TreeSnapshotHolder<Void> categoryTree = new TreeSnapshotHolder<>(this::loadCategoryTreeNodes);
+
+
+    /**
+     * Returns the current in-memory snapshot of the category tree.
+     * The snapshot is re-loaded whenever a category is created, updated, moved or deleted.
+     *
+     * @return the current category tree snapshot
+     */
+    public TreeSnapshot<Void> getCategoryTreeSnapshot() {
+        return categoryTree.get();
+    }
+
+
+    /** Loads the nodes of the category tree **/
+    private List<TreeSnapshot.Node<Void>> loadCategoryTreeNodes() {
+        return em.createNamedQuery("Category.findTreeNodes", Object[].class)
+                .getResultList().stream()
+                .map(row -> new TreeSnapshot.Node<Void>(
+                        (Integer) row[0],
+                        (Integer) row[1],
+                        (Double) row[2],
+                        null))
+                .collect(Collectors.toList());
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected void treeChanged() {
+        categoryTree.invalidate();
+    }
+
 
     /***************************************/
     /** Category look-up                  **/
@@ -260,6 +295,8 @@ public class CategoryService extends TreeBaseService<Category> {
     @Transactional
     public Category updateCategoryData(Category original, Category category) {
 
+        boolean treeSortOrderChanged = original.getSiblingSortOrder() != category.getSiblingSortOrder();
+
         original.setType(category.getType());
         original.setMrn(category.getMrn());
         original.setActive(category.isActive());
@@ -287,7 +324,13 @@ public class CategoryService extends TreeBaseService<Category> {
         original.getTemplateParams().clear();
         original.getTemplateParams().addAll(category.getTemplateParams());
 
-        return saveEntity(original);
+        original = saveEntity(original);
+        if (treeSortOrderChanged) {
+            updateTreeSortOrder(original);
+        }
+        notifyTreeChanged();
+
+        return original;
     }
 
 
@@ -330,8 +373,10 @@ public class CategoryService extends TreeBaseService<Category> {
         category.updateLineage();
         category.updateActiveFlag();
         category = saveEntity(category);
+        updateTreeSortOrder(category);
 
         em.flush();
+        notifyTreeChanged();
         return category;
     }
 
@@ -375,6 +420,7 @@ public class CategoryService extends TreeBaseService<Category> {
             category.setParent(null);
             saveEntity(category);
             remove(category);
+            notifyTreeChanged();
             log.debug("Removed category " + categoryId);
             return true;
         }
@@ -439,6 +485,26 @@ public class CategoryService extends TreeBaseService<Category> {
     }
 
 
+    /**
+     * Returns the lineage of the category with the given category ID, i.e. the database ID or MRN.
+     * <p>
+     * Categories specified by their database ID are resolved via the category tree snapshot without any database look-ups.
+     *
+     * @param categoryId the category ID or MRN
+     * @return the lineage of the category, or null if not found
+     */
+    public String findLineageByCategoryId(String categoryId) {
+        if (StringUtils.isNumeric(categoryId)) {
+            String lineage = getCategoryTreeSnapshot().getLineage(Integer.valueOf(categoryId));
+            if (lineage != null) {
+                return lineage;
+            }
+        }
+        Category category = findByCategoryId(categoryId);
+        return category == null ? null : category.getLineage();
+    }
+
+
     /**
      * Ensures that the template category and it's parents exists
      *
@@ -528,14 +594,13 @@ public class CategoryService extends TreeBaseService<Category> {
 
 
     /**
-     * Called periodically every hour to re-sort the category tree
+     * Re-sorts the entire category tree.
      *
      * Potentially, a heavy-duty function that scans the entire category tree,
-     * sorts it and update the treeSortOrder. Use with care.
-     *
-     * @return if the sort order was updated
+     * sorts it and renumbers the treeSortOrder. Use with care.
+     * <p>
+     * The category tree sort order is otherwise maintained incrementally when categories are created, moved or re-ordered.
      */
-    @Scheduled(cron="13 23 * * * ?")
     public void recomputeTreeSortOrder() {
         recomputeTreeSortOrder(SETTING_CATEGORY_LAST_UPDATED);
     }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.dictionary;
+
+import org.niord.core.dictionary.vo.DictionaryVo;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+/**
+ * An immutable resource bundle with the merged values of a list of dictionaries for a given language.
+ * <p>
+ * The values are held in a flat hash map, so the bundle can safely be shared between threads and
+ * reused for any number of template renders.
+ */
+public final class DictionaryBundle extends ResourceBundle {
+
+    private final Locale locale;
+    private final Map<String, String> values;
+
+
+    /**
+     * Constructor
+     *
+     * @param locale the locale of the bundle
+     * @param values the bundle values
+     */
+    private DictionaryBundle(Locale locale, Map<String, String> values) {
+        this.locale = locale;
+        this.values = values;
+    }
+
+
+    /**
+     * Merges the given dictionaries into a bundle for the given language.
+     * Values of later dictionaries override values of earlier dictionaries.
+     *
+     * @param dictionaries the dictionaries to merge
+     * @param language the language
+     * @return the merged bundle
+     */
+    public static DictionaryBundle merge(List<DictionaryVo> dictionaries, String language) {
+        Map<String, String> values = new HashMap<>();
+        dictionaries.stream()
+                .filter(Objects::nonNull)
+                .forEach(dict -> dict.toProperties(language)
+                        .forEach((key, value) -> values.put((String) key, (String) value)));
+        return new DictionaryBundle(new Locale(language), values);
+    }
+
+
+    /**
+     * Returns an unmodifiable view of the bundle values
+     * @return an unmodifiable view of the bundle values
+     */
+    public Map<String, String> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected Object handleGetObject(String key) {
+        return values.get(key);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public Locale getLocale() {
+        return locale;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public Enumeration<String> getKeys() {
+        return Collections.enumeration(values.keySet());
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected Set<String> handleKeySet() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+}
@@ -37,6 +37,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -57,6 +58,12 @@ public class DictionaryService extends BaseService {
 
     private Map<String, DictionaryVo> cachedDictionaries = new ConcurrentHashMap<>();
 
+    /** Merged dictionary bundles keyed by language and dictionary names. Replaced whenever a dictionary is invalidated **/
+    private volatile Map<String, DictionaryBundle> cachedBundles = new ConcurrentHashMap<>();
+
+    /** Incremented whenever a cached dictionary is invalidated **/
+    private final AtomicLong version = new AtomicLong();
+
     /** Called upon application startup */
     @Transactional(Transactional.TxType.REQUIRES_NEW)
     @Lock(Lock.Type.WRITE)
@@ -136,7 +143,7 @@ public class DictionaryService extends BaseService {
         saveEntity(dict);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        invalidateDictionary(name);
 
         return entry;
     }
@@ -169,7 +176,7 @@ public class DictionaryService extends BaseService {
         saveEntity(original);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        invalidateDictionary(name);
 
         return original;
     }
@@ -201,7 +208,7 @@ public class DictionaryService extends BaseService {
         saveEntity(dict);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        invalidateDictionary(name);
 
         return true;
     }
@@ -229,6 +236,35 @@ public class DictionaryService extends BaseService {
     }
 
 
+    /**
+     * Removes the cached dictionary with the given name, discards all merged dictionary bundles
+     * and bumps the dictionary version.
+     * <p>
+     * This is done immediately, and again when the current transaction completes, so that dictionaries
+     * and bundles loaded by other threads before the changes were committed are not cached.
+     *
+     * @param name the name
+     */
+    private void invalidateDictionary(String name) {
+        runNowAndAfterCompletion(() -> {
+            cachedDictionaries.remove(name);
+            cachedBundles = new ConcurrentHashMap<>();
+            version.incrementAndGet();
+        });
+    }
+
+
+    /**
+     * Returns the current version of the dictionaries, which changes whenever a dictionary is invalidated.
+     * May be used for caching data derived from the dictionaries.
+     *
+     * @return the current version of the dictionaries
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+
     /**
      * Shortcut for getting a dictionary value
      *
@@ -252,9 +288,7 @@ public class DictionaryService extends BaseService {
      */
     public Properties getDictionariesAsProperties(String[] names, String language) {
         Properties langDict = new Properties();
-        for (String name : names) {
-            langDict.putAll(getCachedDictionary(name).toProperties(language));
-        }
+        langDict.putAll(getDictionaryBundle(names, language).getValues());
         return langDict;
     }
 
@@ -268,35 +302,32 @@ public class DictionaryService extends BaseService {
      * @return the dictionaries for the given language as a ResourceBundle
      */
     public ResourceBundle getDictionariesAsResourceBundle(String[] names, String language) {
+        return getDictionaryBundle(names, language);
+    }
 
-        // Construct a property file with all language-specific values from all included dictionaries
-        Properties langDict = getDictionariesAsProperties(names, language);
-
-        final Locale dictLocale = new Locale(language);
-
-        // Convert the Properties object to a resource bundle
-        return new ResourceBundle() {
-
-            /** {@inheritDoc} **/
-            @Override
-            @SuppressWarnings("all")
-            protected Object handleGetObject(String key) {
-                return langDict.getProperty(key);
-            }
-
-            /** {@inheritDoc} **/
-            public Locale getLocale() {
-                return dictLocale;
-            }
 
-            /** {@inheritDoc} **/
-            @Override
-            @SuppressWarnings("all")
-            public Enumeration<String> getKeys() {
-                Set<String> handleKeys = langDict.stringPropertyNames();
-                return Collections.enumeration(handleKeys);
-            }
-        };
+    /**
+     * Returns the immutable, merged bundle of the given dictionaries for the given language.
+     * The bundle is computed once and cached until one of the dictionaries is updated.
+     *
+     * @param names    the dictionary names
+     * @param language the language
+     * @return the merged dictionaries for the given language
+     */
+    public DictionaryBundle getDictionaryBundle(String[] names, String language) {
+        // NB: If a dictionary is invalidated while the bundle is being merged, the bundle is
+        // added to the discarded map, so the stale bundle is not reused
+        Map<String, DictionaryBundle> bundles = cachedBundles;
+        String key = language + ":" + String.join(",", names);
+        DictionaryBundle bundle = bundles.get(key);
+        if (bundle == null) {
+            List<DictionaryVo> dictionaries = Arrays.stream(names)
+                    .map(this::getCachedDictionary)
+                    .collect(Collectors.toList());
+            bundle = DictionaryBundle.merge(dictionaries, language);
+            bundles.put(key, bundle);
+        }
+        return bundle;
     }
 
 
@@ -388,7 +419,7 @@ public class DictionaryService extends BaseService {
             }
 
             // Remove the cached dictionary
-            cachedDictionaries.remove(name);
+            invalidateDictionary(name);
 
             log.info(String.format("Persisted %d new '%s' dictionary entries in %d ms",
                     undefKeys.size(), name, System.currentTimeMillis() - t0));
@@ -425,7 +456,7 @@ public class DictionaryService extends BaseService {
         }
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        invalidateDictionary(name);
 
         log.info(String.format("Persisted %d '%s' dictionary entries in %d ms",
                 properties.size(), name, System.currentTimeMillis() - t0));
@@ -457,7 +488,7 @@ public class DictionaryService extends BaseService {
         saveEntity(original);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(dictionary.getName());
+        invalidateDictionary(dictionary.getName());
 
         log.info(String.format("Persisted and updated %d '%s' dictionary entries in %d ms",
                 dictionary.getEntries().size(), dictionary.getName(), System.currentTimeMillis() - t0));
@@ -21,6 +21,7 @@ import org.niord.core.category.Category;
 import org.niord.core.keycloak.KeycloakIntegrationService;
 import org.niord.core.message.MessageSeriesService;
 import org.niord.core.service.BaseService;
+import org.niord.core.user.RequestIdentityContext;
 import org.niord.core.user.TicketService;
 import org.niord.core.user.UserService;
 import org.slf4j.Logger;
@@ -33,6 +34,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -59,15 +61,25 @@ public class DomainService extends BaseService {
     @Inject
     TicketService ticketService;
 
+    @Inject
+    RequestIdentityContext requestIdentityContext;
+
+    /** Incremented whenever a domain is created, updated or deleted **/
+    private final AtomicLong version = new AtomicLong();
 
-    /** Returns the current domain or null if none are set */
+
+    /**
+     * Returns the current domain or null if none are set.
+     * <p>
+     * The domain is resolved once per request, and subsequent calls within the request look up the domain by ID.
+     */
     public Domain currentDomain() {
 
         Domain currentDomain = null;
 
         String domainId = THREAD_LOCAL_DOMAIN.get();
         if (StringUtils.isNotBlank(domainId)) {
-            currentDomain = findByDomainId(domainId);
+            currentDomain = resolveForRequest(domainId);
         }
 
         if (currentDomain == null) {
@@ -75,7 +87,7 @@ public class DomainService extends BaseService {
             TicketService.TicketData ticketData = ticketService.getTicketDataForCurrentThread();
             if (ticketData != null) {
                 domainId = ticketData.getDomain();
-                currentDomain = findByDomainId(domainId);
+                currentDomain = resolveForRequest(domainId);
             }
         }
 
@@ -83,6 +95,31 @@ public class DomainService extends BaseService {
     }
 
 
+    /**
+     * Resolves the domain once per request, if a request context is active
+     *
+     * @param domainId the domain ID
+     * @return the domain
+     */
+    private Domain resolveForRequest(String domainId) {
+        RequestIdentityContext ctx = activeRequestIdentityContext();
+        if (StringUtils.isBlank(domainId) || ctx == null) {
+            return findByDomainId(domainId);
+        }
+        return ctx.resolve(
+                Domain.class,
+                domainId,
+                id -> getByPrimaryKey(Domain.class, id),
+                () -> findByDomainId(domainId));
+    }
+
+
+    /** Returns the request identity context, or null if no request context is active **/
+    protected RequestIdentityContext activeRequestIdentityContext() {
+        return RequestIdentityContext.isActive() ? requestIdentityContext : null;
+    }
+
+
 
     /**
      * May be called, e.g. from a servlet filter to set the
@@ -248,6 +285,7 @@ public class DomainService extends BaseService {
         // Substitute the message series with the persisted ones
         original.setMessageSeries(messageSeriesService.persistedMessageSeries(domain.getMessageSeries()));
 
+        domainsChanged();
         return saveEntity(original);
     }
 
@@ -275,6 +313,7 @@ public class DomainService extends BaseService {
         domain.setMessageSeries(messageSeriesService.persistedMessageSeries(domain.getMessageSeries()));
 
         domain = saveEntity(domain);
+        domainsChanged();
 
         // If request, create the domain in Keycloak - but do not throw an error in case of an error
         if (createInKeycloak) {
@@ -300,12 +339,35 @@ public class DomainService extends BaseService {
         Domain domain = findByDomainId(domainId);
         if (domain != null) {
             remove(domain);
+            domainsChanged();
             return true;
         }
         return false;
     }
 
 
+    /**
+     * Should be called whenever a domain has been created, updated or deleted.
+     * <p>
+     * Bumps the version immediately, and again when the current transaction completes, so that
+     * data derived from the domains by other threads before the changes were committed is not
+     * cached under the new version.
+     */
+    protected void domainsChanged() {
+        runNowAndAfterCompletion(version::incrementAndGet);
+    }
+
+
+    /**
+     * Returns the current version of the domains, which changes whenever a domain is created, updated or deleted.
+     * May be used for caching data derived from the domains.
+     * @return the current version of the domains
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+
     /**
      * Creates the domain as a client in Keycloak
      * @param domain the domain to create a Keycloak client for
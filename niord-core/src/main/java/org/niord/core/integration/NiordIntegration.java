@@ -45,7 +45,10 @@ import java.util.stream.Collectors;
         @NamedQuery(name="NiordIntegration.findPendingNiordIntegrations",
                 query="SELECT i FROM NiordIntegration i where i.active = true and " +
                       " (i.nextScheduledExecution is null or i.nextScheduledExecution < current_timestamp) " +
-                      " order by i.nextScheduledExecution desc")
+                      " order by i.nextScheduledExecution desc"),
+        @NamedQuery(name="NiordIntegration.updateSyncState",
+                query="UPDATE NiordIntegration i set i.syncedUntil = :syncedUntil, i.lastFullSync = :lastFullSync " +
+                      " where i.id = :id")
 })
 @SuppressWarnings("unused")
 public class NiordIntegration extends BaseEntity<Integer> {
@@ -66,6 +69,14 @@ public class NiordIntegration extends BaseEntity<Integer> {
     @Temporal(TemporalType.TIMESTAMP)
     Date nextScheduledExecution;
 
+    // The latest update time of the messages fetched from the remote Niord server
+    @Temporal(TemporalType.TIMESTAMP)
+    Date syncedUntil;
+
+    // The time of the last full synchronization with the remote Niord server
+    @Temporal(TemporalType.TIMESTAMP)
+    Date lastFullSync;
+
 
     /** No-argument constructor */
     public NiordIntegration() {
@@ -86,6 +97,8 @@ public class NiordIntegration extends BaseEntity<Integer> {
                 .filter(MessageSeriesMappingVo::mappingDefined)
                 .forEach(m -> addMessageSeriesMapping(new MessageSeriesMapping(m)));
         this.nextScheduledExecution = integration.getNextScheduledExecution();
+        this.syncedUntil = integration.getSyncedUntil();
+        this.lastFullSync = integration.getLastFullSync();
     }
 
 
@@ -102,6 +115,8 @@ public class NiordIntegration extends BaseEntity<Integer> {
                         .map(MessageSeriesMapping::toVo)
                         .collect(Collectors.toList()));
         integration.setNextScheduledExecution(nextScheduledExecution);
+        integration.setSyncedUntil(syncedUntil);
+        integration.setLastFullSync(lastFullSync);
         return integration;
     }
 
@@ -167,4 +182,20 @@ public class NiordIntegration extends BaseEntity<Integer> {
     public void setNextScheduledExecution(Date nextScheduledExecution) {
         this.nextScheduledExecution = nextScheduledExecution;
     }
+
+    public Date getSyncedUntil() {
+        return syncedUntil;
+    }
+
+    public void setSyncedUntil(Date syncedUntil) {
+        this.syncedUntil = syncedUntil;
+    }
+
+    public Date getLastFullSync() {
+        return lastFullSync;
+    }
+
+    public void setLastFullSync(Date lastFullSync) {
+        this.lastFullSync = lastFullSync;
+    }
 }
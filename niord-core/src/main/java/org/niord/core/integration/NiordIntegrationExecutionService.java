@@ -28,6 +28,7 @@ import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLContextBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.hibernate.Session;
 import org.niord.core.area.Area;
 import org.niord.core.area.AreaService;
 import org.niord.core.category.Category;
@@ -44,7 +45,6 @@ import org.niord.model.message.MessageVo;
 import org.niord.model.message.Status;
 import org.slf4j.Logger;
 
-import jakarta.ejb.Asynchronous;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
@@ -62,6 +62,9 @@ import java.util.stream.Collectors;
 public class NiordIntegrationExecutionService extends BaseService {
 
     public static final int TIMEOUT = 5; // 5 seconds
+    public static final int FULL_SYNC_HOURS = 24;
+    public static final long SYNC_OVERLAP_MS = 5L * 60L * 1000L; // 5 minutes
+    public static final int IMPORT_BATCH_SIZE = 50;
 
     @Inject
     private Logger log;
@@ -85,85 +88,147 @@ public class NiordIntegrationExecutionService extends BaseService {
     FeatureService featureService;
 
     /**
-     * Processes the given Niord Integration
+     * Processes the given Niord Integration.
+     * <p>
+     * Once a full synchronization has been performed, only the messages updated since the previous
+     * synchronization are fetched from the remote Niord server, including cancelled and expired messages.
+     * A full synchronization is performed every {@code FULL_SYNC_HOURS} hours.
+     *
+     * @param integration the Niord Integration to process
+     * @return the Niord Integration with the updated synchronization state
      */
-    @Asynchronous
     @Transactional(Transactional.TxType.REQUIRES_NEW)
-    public void processNiordIntegration(NiordIntegrationVo integration) {
+    public NiordIntegrationVo processNiordIntegration(NiordIntegrationVo integration) throws Exception {
 
         // Check that proper message series have been defined
         if (!integration.isActive() || integration.getMessageSeriesMappings().isEmpty()) {
-            return;
+            return null;
         }
 
-        try {
-            // Fetch message for all source message series
-            List<MessageVo> messages = fetchMessages(integration);
+        long t0 = System.currentTimeMillis();
+        Date now = new Date();
+        boolean fullSync = isFullSyncDue(integration, now);
 
-            Set<String> targetSeriesIds = integration.getMessageSeriesMappings().stream()
-                    .map(MessageSeriesMappingVo::getTargetSeriesId)
-                    .collect(Collectors.toSet());
+        // Fetch the messages for all source message series. Allow for some overlap with the previous
+        // synchronization, since remote messages may be committed after their update time
+        Date updatedSince = fullSync ? null : new Date(integration.getSyncedUntil().getTime() - SYNC_OVERLAP_MS);
+        List<MessageVo> messages = fetchMessages(integration, updatedSince);
 
-            // Handle target message series one by one
-            for (String targetSeriesId : targetSeriesIds) {
+        // Flush the imported messages in batches
+        em.unwrap(Session.class).setJdbcBatchSize(IMPORT_BATCH_SIZE);
 
-                MessageSeries targetSeries = messageSeriesService.findBySeriesId(targetSeriesId);
-                if (targetSeries == null) {
-                    continue;
-                }
+        Set<String> targetSeriesIds = integration.getMessageSeriesMappings().stream()
+                .map(MessageSeriesMappingVo::getTargetSeriesId)
+                .collect(Collectors.toSet());
 
-                // Get the source message series IDs that are mapped to the target message series
-                // Typically, there will only be one, but there may actually be more
-                Set<String> sourceSeriesIds = integration.getMessageSeriesMappings().stream()
-                        .filter(ms -> targetSeriesId.equals(ms.getTargetSeriesId()))
-                        .map(MessageSeriesMappingVo::getSourceSeriesId)
-                        .collect(Collectors.toSet());
-
-                // Get all source message whose message series ids should be mapped to the target message series
-                List<MessageVo> importMessages = messages.stream()
-                        .filter(m -> sourceSeriesIds.contains(m.getMessageSeries().getSeriesId()))
-                        .collect(Collectors.toList());
-                Map<String, MessageVo> importMessageMap = importMessages.stream()
-                        .collect(Collectors.toMap(MessageVo::getId, Function.identity()));
-
-                // Get our own messages for the target message series
-                List<Message> ownMessages = fetchOwnMessages(targetSeriesId);
-                Map<String, Message> ownMessageMap = ownMessages.stream()
-                        .collect(Collectors.toMap(Message::getLegacyId, Function.identity()));
-
-                // Determine which of our current messages to cancel and which of the fetched messages to import
-                List<Message> cancelMessages = ownMessages.stream()
-                        .filter(m -> !importMessageMap.containsKey(m.getLegacyId()))
-                        .collect(Collectors.toList());
-                List<MessageVo> createMessages = importMessages.stream()
-                        .filter(m -> !ownMessageMap.containsKey(m.getId()))
-                        .collect(Collectors.toList());
-                List<MessageVo> updateMessages = importMessages.stream()
-                        .filter(m -> ownMessageMap.containsKey(m.getId()))
-                        .filter(m -> m.getUpdated().after(ownMessageMap.get(m.getId()).getUpdated()))
-                        .collect(Collectors.toList());
-
-                // Cancel own message not found in the fetched message list
-                for (Message msg : cancelMessages) {
-                    messageService.updateStatus(msg.getUid(), Status.CANCELLED);
-                }
+        int created = 0, updated = 0, cancelled = 0;
 
-                // Create fetched messages not yet imported
-                for (MessageVo msg : createMessages) {
-                    importMessage(msg, targetSeries, integration);
-                }
+        // Handle target message series one by one
+        for (String targetSeriesId : targetSeriesIds) {
 
-                // Update existing message that have been updated after import
-                for (MessageVo msg : updateMessages) {
-                    Message message = ownMessageMap.get(msg.getId());
-                    messageService.updateStatus(message.getUid(), Status.CANCELLED);
-                    importMessage(msg, targetSeries, integration);
-                }
+            MessageSeries targetSeries = messageSeriesService.findBySeriesId(targetSeriesId);
+            if (targetSeries == null) {
+                continue;
             }
 
-        } catch (Exception e) {
-            log.error("Error fetching messages from integration " + integration.getId(), e);
+            // Get the source message series IDs that are mapped to the target message series
+            // Typically, there will only be one, but there may actually be more
+            Set<String> sourceSeriesIds = integration.getMessageSeriesMappings().stream()
+                    .filter(ms -> targetSeriesId.equals(ms.getTargetSeriesId()))
+                    .map(MessageSeriesMappingVo::getSourceSeriesId)
+                    .collect(Collectors.toSet());
+
+            // Get all source message whose message series ids should be mapped to the target message series
+            List<MessageVo> sourceMessages = messages.stream()
+                    .filter(m -> sourceSeriesIds.contains(m.getMessageSeries().getSeriesId()))
+                    .collect(Collectors.toList());
+            List<MessageVo> importMessages = sourceMessages.stream()
+                    .filter(m -> m.getStatus() == null || m.getStatus() == Status.PUBLISHED)
+                    .collect(Collectors.toList());
+            Map<String, MessageVo> importMessageMap = importMessages.stream()
+                    .collect(Collectors.toMap(MessageVo::getId, Function.identity()));
+
+            // Get our own published messages for the target message series.
+            // For incremental synchronizations, only the ones imported from the fetched messages
+            List<Message> ownMessages = fullSync
+                    ? fetchOwnMessages(targetSeriesId)
+                    : fetchOwnMessages(targetSeriesId, sourceMessages.stream()
+                            .map(MessageVo::getId)
+                            .collect(Collectors.toSet()));
+            Map<String, Message> ownMessageMap = ownMessages.stream()
+                    .collect(Collectors.toMap(Message::getLegacyId, Function.identity(), (m1, m2) -> m1));
+
+            // Determine which of our current messages to cancel and which of the fetched messages to import.
+            // Full synchronizations cancel messages no longer published remotely, whereas incremental
+            // synchronizations cancel messages that have been cancelled or have expired remotely.
+            List<Message> cancelMessages = ownMessages.stream()
+                    .filter(m -> !importMessageMap.containsKey(m.getLegacyId()))
+                    .collect(Collectors.toList());
+            List<MessageVo> createMessages = importMessages.stream()
+                    .filter(m -> !ownMessageMap.containsKey(m.getId()))
+                    .collect(Collectors.toList());
+            List<MessageVo> updateMessages = importMessages.stream()
+                    .filter(m -> ownMessageMap.containsKey(m.getId()))
+                    .filter(m -> m.getUpdated().after(ownMessageMap.get(m.getId()).getUpdated()))
+                    .collect(Collectors.toList());
+
+            // Cancel own message not found in the fetched message list
+            for (Message msg : cancelMessages) {
+                messageService.updateStatus(msg.getUid(), Status.CANCELLED);
+            }
+
+            // Create fetched messages not yet imported
+            for (MessageVo msg : createMessages) {
+                importMessage(msg, targetSeries, integration);
+            }
+
+            // Update existing message that have been updated after import
+            for (MessageVo msg : updateMessages) {
+                Message message = ownMessageMap.get(msg.getId());
+                messageService.updateStatus(message.getUid(), Status.CANCELLED);
+                importMessage(msg, targetSeries, integration);
+            }
+
+            em.flush();
+            created += createMessages.size();
+            updated += updateMessages.size();
+            cancelled += cancelMessages.size();
         }
+
+        log.info(String.format("%s synchronization of Niord Integration %d: fetched %d, created %d, updated %d, " +
+                        "cancelled %d messages in %d ms",
+                fullSync ? "Full" : "Incremental",
+                integration.getId(),
+                messages.size(),
+                created,
+                updated,
+                cancelled,
+                System.currentTimeMillis() - t0));
+
+        // Record how far the messages have been synchronized
+        NiordIntegrationVo result = new NiordIntegrationVo();
+        result.setId(integration.getId());
+        result.setSyncedUntil(messages.stream()
+                .map(MessageVo::getUpdated)
+                .filter(Objects::nonNull)
+                .max(Date::compareTo)
+                .orElse(fullSync ? now : integration.getSyncedUntil()));
+        result.setLastFullSync(fullSync ? now : integration.getLastFullSync());
+        return result;
+    }
+
+
+    /**
+     * Returns if a full synchronization of the given Niord Integration is due
+     *
+     * @param integration the Niord Integration
+     * @param now the current time
+     * @return if a full synchronization is due
+     */
+    boolean isFullSyncDue(NiordIntegrationVo integration, Date now) {
+        return integration.getSyncedUntil() == null
+                || integration.getLastFullSync() == null
+                || now.getTime() - integration.getLastFullSync().getTime() > FULL_SYNC_HOURS * 60L * 60L * 1000L;
     }
 
 
@@ -175,14 +240,30 @@ public class NiordIntegrationExecutionService extends BaseService {
      * @return published messages from this Niord server for the given message series
      */
     List<Message> fetchOwnMessages(String seriesId) {
-        MessageSearchParams params = new MessageSearchParams()
-                .seriesIds(Collections.singleton(seriesId))
-                .statuses(Status.PUBLISHED);
-        params.maxSize(10000);
-
-        return messageService.search(params)
-                .getData().stream()
-                .filter(m -> StringUtils.isNotBlank(m.getLegacyId()))
+        return em.createNamedQuery("Message.findPublishedLegacyMessages", Message.class)
+                .setParameter("seriesId", seriesId)
+                .setParameter("status", Status.PUBLISHED)
+                .getResultList();
+    }
+
+
+    /**
+     * Fetches published messages from this Niord server for the given message series,
+     * which have been imported from the messages with the given IDs.
+     *
+     * @param seriesId the messages series
+     * @param legacyIds the IDs of the imported messages
+     * @return published messages from this Niord server for the given message series and legacy IDs
+     */
+    List<Message> fetchOwnMessages(String seriesId, Set<String> legacyIds) {
+        if (legacyIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createNamedQuery("Message.findByLegacyIds", Message.class)
+                .setParameter("legacyIds", legacyIds)
+                .getResultList().stream()
+                .filter(m -> m.getStatus() == Status.PUBLISHED)
+                .filter(m -> seriesId.equals(m.getMessageSeries().getSeriesId()))
                 .collect(Collectors.toList());
     }
 
@@ -248,7 +329,8 @@ public class NiordIntegrationExecutionService extends BaseService {
             // Reset all attachment IDs
             message.getAttachments().forEach(att -> att.setId(null));
 
-            messageService.createMessage(message);
+            // Flushed in batches by the caller
+            messageService.createMessage(message, false);
 
             log.info("Imported message " + message);
 
@@ -262,18 +344,47 @@ public class NiordIntegrationExecutionService extends BaseService {
     /**
      * Fetches the messages defined by the Niord integration point
      * @param integration the Niord integration point to fetch message from
+     * @param updatedSince if defined, only fetch the messages updated since this time
      * @return the messages fetched from the Niord integration point
      */
-    public List<MessageVo> fetchMessages(NiordIntegrationVo integration) throws Exception {
+    public List<MessageVo> fetchMessages(NiordIntegrationVo integration, Date updatedSince) throws Exception {
 
         long t0 = System.currentTimeMillis();
+        String url = messagesUrl(integration, updatedSince);
+
+        List<MessageVo> result = fetchMessages(url);
+        log.debug("Fetching " + result.size() + " messages from URL " + url + " in " +
+                (System.currentTimeMillis() - t0) + " ms");
+        return result;
+    }
+
+
+    /**
+     * Returns the public API URL for fetching the messages defined by the Niord integration point
+     * @param integration the Niord integration point to fetch message from
+     * @param updatedSince if defined, only fetch the messages updated since this time
+     * @return the public API URL for fetching the messages
+     */
+    public static String messagesUrl(NiordIntegrationVo integration, Date updatedSince) {
 
         // Construct the URL to fetch messages from
         String params = integration.getMessageSeriesMappings().stream()
                 .map(m -> "messageSeries=" + WebUtils.encodeURIComponent(m.getSourceSeriesId()))
                 .collect(Collectors.joining("&"));
+        if (updatedSince != null) {
+            params += "&updatedSince=" + updatedSince.getTime();
+        }
 
-        String url = integration.getUrl() + "/rest/public/v1/messages?" + params;
+        return integration.getUrl() + "/rest/public/v1/messages?" + params;
+    }
+
+
+    /**
+     * Fetches the messages from the given public API URL
+     * @param url the URL to fetch messages from
+     * @return the messages fetched from the URL
+     */
+    public static List<MessageVo> fetchMessages(String url) throws Exception {
 
         // See https://stackoverflow.com/questions/19517538/ignoring-ssl-certificate-in-apache-httpclient-4-3
         SSLContextBuilder builder = new SSLContextBuilder();
@@ -287,14 +398,13 @@ public class NiordIntegrationExecutionService extends BaseService {
                 .setConnectionRequestTimeout(TIMEOUT * 1000)
                 .setSocketTimeout(TIMEOUT * 1000).build();
 
-        CloseableHttpClient client = HttpClients.custom()
-                .setDefaultRequestConfig(config)
-                .setSSLSocketFactory(sslSF)
-                .setHostnameVerifier(new AllowAllHostnameVerifier())
-                .build();
-
-
-        try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+        // NB: The client transparently requests and decompresses gzip'ed responses
+        try (CloseableHttpClient client = HttpClients.custom()
+                    .setDefaultRequestConfig(config)
+                    .setSSLSocketFactory(sslSF)
+                    .setHostnameVerifier(new AllowAllHostnameVerifier())
+                    .build();
+             CloseableHttpResponse response = client.execute(new HttpGet(url))) {
             int status = response.getStatusLine().getStatusCode();
             if (status < 200 || status > 299) {
                 try {
@@ -311,10 +421,7 @@ public class NiordIntegrationExecutionService extends BaseService {
 
 
             try (InputStream is = entity.getContent()) {
-                List<MessageVo> result = new ObjectMapper().readValue(is, new TypeReference<List<MessageVo>>(){});
-                log.debug("Fetching " + result.size() + " messages from URL " + url + " in " +
-                        (System.currentTimeMillis() - t0) + " ms");
-                return result;
+                return new ObjectMapper().readValue(is, new TypeReference<List<MessageVo>>(){});
             }
         }
     }
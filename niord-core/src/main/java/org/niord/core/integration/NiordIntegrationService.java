@@ -17,6 +17,8 @@
 package org.niord.core.integration;
 
 import io.quarkus.scheduler.Scheduled;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.niord.core.integration.vo.NiordIntegrationVo;
 import org.niord.core.service.BaseService;
 import org.slf4j.Logger;
 
@@ -24,8 +26,12 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 /**
  * Business interface for managing the Niord integration points.
@@ -45,6 +51,9 @@ public class NiordIntegrationService extends BaseService {
     @Inject
     NiordIntegrationExecutionService executionService;
 
+    @Inject
+    ManagedExecutor managedExecutor;
+
 
     /**
      * Returns the Niord integration point with the given ID or null if not found
@@ -86,8 +95,10 @@ public class NiordIntegrationService extends BaseService {
             throw new IllegalArgumentException("Cannot create existing Niord integration");
         }
 
-        // Compute the next execution time
+        // Compute the next execution time and start with a full synchronization
         computeNextScheduledExecution(integration);
+        integration.setSyncedUntil(null);
+        integration.setLastFullSync(null);
 
         log.info("Creating new Niord Integration for server " + integration.getUrl());
         return saveEntity(integration);
@@ -116,6 +127,10 @@ public class NiordIntegrationService extends BaseService {
 
         // NB: We do not update the nextScheduledExecution attribute, as this gets computed by the system
 
+        // The server or message series may have changed, so perform a full synchronization next time
+        original.setSyncedUntil(null);
+        original.setLastFullSync(null);
+
         log.info("Updating Niord integration " + integration.getId());
         return saveEntity(original);
     }
@@ -154,14 +169,50 @@ public class NiordIntegrationService extends BaseService {
 
 
     /**
-     * Called every minute and processes the next pending Niord Integration
+     * Called every minute and processes the pending Niord Integrations concurrently.
+     * <p>
+     * The integrations are processed outside of the transaction of this method, each in a transaction of its own.
      */
     @Scheduled(cron="51 */1 * * * ?")
-    void processNextPendingNiordIntegration() {
-        List<NiordIntegration> integrations = getPendingNiordIntegrations();
-        if (!integrations.isEmpty()) {
-            processNiordIntegration(integrations.get(0).getId());
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    void processPendingNiordIntegrations() {
+        List<NiordIntegrationVo> integrations = claimPendingNiordIntegrations();
+        if (integrations.isEmpty()) {
+            return;
+        }
+
+        List<Callable<Void>> tasks = integrations.stream()
+                .map(i -> (Callable<Void>) () -> {
+                    NiordIntegrationVo result = executeNiordIntegration(i);
+                    if (result != null) {
+                        updateSyncState(i.getId(), result.getSyncedUntil(), result.getLastFullSync());
+                    }
+                    return null;
+                })
+                .collect(Collectors.toList());
+
+        try {
+            managedExecutor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            log.error("Interrupted processing Niord Integrations", e);
+        }
+    }
+
+
+    /**
+     * Returns the pending Niord Integrations, and computes their next execution time, so that
+     * they will not be picked up again while being processed
+     * @return the pending Niord Integrations
+     */
+    @Transactional
+    List<NiordIntegrationVo> claimPendingNiordIntegrations() {
+        List<NiordIntegrationVo> result = new ArrayList<>();
+        for (NiordIntegration integration : getPendingNiordIntegrations()) {
+            result.add(integration.toVo());
+            computeNextScheduledExecution(integration);
+            saveEntity(integration);
         }
+        return result;
     }
 
 
@@ -177,18 +228,51 @@ public class NiordIntegrationService extends BaseService {
             throw new IllegalArgumentException("No Niord Integration with ID " + id);
         }
 
+        NiordIntegrationVo result = executeNiordIntegration(integration.toVo());
+        if (result != null) {
+            integration.setSyncedUntil(result.getSyncedUntil());
+            integration.setLastFullSync(result.getLastFullSync());
+        }
+
+        // Update the next execution time
+        computeNextScheduledExecution(integration);
+        saveEntity(integration);
+    }
+
+
+    /**
+     * Executes the given Niord Integration
+     * @param integration the Niord Integration to execute
+     * @return the Niord Integration with the updated synchronization state, or null if it failed
+     */
+    private NiordIntegrationVo executeNiordIntegration(NiordIntegrationVo integration) {
         try {
             log.debug(String.format("Processing Niord Integration %d for server %s",
                     integration.getId(),
                     integration.getUrl()));
-            executionService.processNiordIntegration(integration.toVo());
+
+            return executionService.processNiordIntegration(integration);
         } catch (Exception ex) {
             log.error("Error processing Niord Integration " + integration.getId(), ex);
+            return null;
         }
+    }
 
-        // Update the next execution time
-        computeNextScheduledExecution(integration);
-        saveEntity(integration);
+
+    /**
+     * Updates the synchronization state of the given Niord Integration
+     *
+     * @param id the ID of the Niord Integration
+     * @param syncedUntil the latest update time of the synchronized messages
+     * @param lastFullSync the time of the last full synchronization
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void updateSyncState(Integer id, Date syncedUntil, Date lastFullSync) {
+        em.createNamedQuery("NiordIntegration.updateSyncState")
+                .setParameter("id", id)
+                .setParameter("syncedUntil", syncedUntil)
+                .setParameter("lastFullSync", lastFullSync)
+                .executeUpdate();
     }
 
 }
@@ -35,6 +35,8 @@ public class NiordIntegrationVo implements IJsonSerializable {
     boolean createBaseData;
     List<MessageSeriesMappingVo> messageSeriesMappings = new ArrayList<>();
     Date nextScheduledExecution;
+    Date syncedUntil;
+    Date lastFullSync;
 
     /*************************/
     /** Getters and Setters **/
@@ -95,4 +97,20 @@ public class NiordIntegrationVo implements IJsonSerializable {
     public void setNextScheduledExecution(Date nextScheduledExecution) {
         this.nextScheduledExecution = nextScheduledExecution;
     }
+
+    public Date getSyncedUntil() {
+        return syncedUntil;
+    }
+
+    public void setSyncedUntil(Date syncedUntil) {
+        this.syncedUntil = syncedUntil;
+    }
+
+    public Date getLastFullSync() {
+        return lastFullSync;
+    }
+
+    public void setLastFullSync(Date lastFullSync) {
+        this.lastFullSync = lastFullSync;
+    }
 }
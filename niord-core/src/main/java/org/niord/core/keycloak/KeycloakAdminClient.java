@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.keycloak;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContextBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pooled, keep-alive HTTP client used for executing Keycloak admin requests.
+ * <p>
+ * The connections, and thus the TLS sessions, are reused across requests,
+ * and idle connections are evicted after {@code IDLE_CONNECTION_SECONDS} seconds.
+ */
+public class KeycloakAdminClient implements Closeable {
+
+    static final int IDLE_CONNECTION_SECONDS = 30;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+
+
+    /**
+     * Constructor
+     *
+     * @param maxConnections the max number of pooled connections
+     * @param maxConnectionsPerRoute the max number of pooled connections per route
+     * @param timeoutMs the connect and socket timeout in ms
+     */
+    public KeycloakAdminClient(int maxConnections, int maxConnectionsPerRoute, int timeoutMs) throws Exception {
+
+        // For e.g. "*.e-navigation.net", with no intermediate certificates specified, you will get an
+        // "unable to find valid certification path to requested target" exception.
+        // Code around this.
+        // See https://stackoverflow.com/questions/19517538/ignoring-ssl-certificate-in-apache-httpclient-4-3
+        SSLConnectionSocketFactory sslSF = new SSLConnectionSocketFactory(
+                new SSLContextBuilder().loadTrustMaterial(null, (chain, authType) -> true).build(),
+                NoopHostnameVerifier.INSTANCE);
+
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSF)
+                .build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(timeoutMs)
+                .setConnectionRequestTimeout(timeoutMs)
+                .setSocketTimeout(timeoutMs)
+                .build();
+
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(config)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+
+    /**
+     * Executes a Keycloak admin request and returns the result.
+     * <p>
+     * The response is always consumed, so that the connection is returned to the pool.
+     *
+     * @param request the Keycloak request to execute
+     * @param responseHandler the response handler
+     * @return the result
+     */
+    public <R> R execute(HttpRequestBase request, KeycloakResponseHandler<R> responseHandler) throws Exception {
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status < 200 || status > 299) {
+                try {
+                    response.getEntity().getContent().close();
+                } catch (Exception ignored) {
+                }
+                throw new Exception("Unable to execute request " + request.getURI() + ", status = " + status);
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return responseHandler.execute(null);
+            }
+
+            try (InputStream is = entity.getContent()) {
+                return responseHandler.execute(is);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of leased and available pooled connections
+     * @return the number of leased and available pooled connections
+     */
+    public int getPooledConnectionCount() {
+        return connectionManager.getTotalStats().getLeased() + connectionManager.getTotalStats().getAvailable();
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+
+    /**
+     * Interface that is passed along to the execute() function and handles the response
+     */
+    public interface KeycloakResponseHandler<R> {
+        R execute(InputStream in) throws IOException;
+    }
+}
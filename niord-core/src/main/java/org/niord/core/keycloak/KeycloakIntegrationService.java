@@ -26,23 +26,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.conn.ssl.AllowAllHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLContextBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.keycloak.adapters.KeycloakDeployment;
 import org.keycloak.adapters.KeycloakDeploymentBuilder;
 import org.keycloak.common.crypto.CryptoIntegration;
@@ -54,6 +48,7 @@ import org.keycloak.representations.idm.PublishedRealmRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.niord.core.NiordApp;
+import org.niord.core.keycloak.KeycloakAdminClient.KeycloakResponseHandler;
 import org.niord.core.domain.Domain;
 import org.niord.core.settings.SettingsService;
 import org.niord.core.settings.annotation.Setting;
@@ -64,11 +59,14 @@ import org.niord.core.user.vo.UserVo;
 import org.niord.core.util.WebUtils;
 import org.slf4j.Logger;
 
+import static org.niord.core.settings.Setting.Type;
+
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.quarkus.runtime.util.StringUtil;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
@@ -112,12 +110,29 @@ public class KeycloakIntegrationService {
     @Setting(value = "authServerSslRequired", defaultValue = "external", description = "Either 'external', 'none' or 'all'")
     String authServerSslRequired;
 
+    @Inject
+    @Setting(value = "keycloakAdminMaxConnections", defaultValue = "20", description = "Max number of pooled connections for Keycloak admin requests", type = Type.Integer)
+    Integer keycloakAdminMaxConnections;
+
+    @Inject
+    @Setting(value = "keycloakAdminMaxConnectionsPerRoute", defaultValue = "10", description = "Max number of pooled connections per route for Keycloak admin requests", type = Type.Integer)
+    Integer keycloakAdminMaxConnectionsPerRoute;
+
+    @Inject
+    @Setting(value = "keycloakAdminTimeout", defaultValue = "10000", description = "Connect and socket timeout in ms for Keycloak admin requests", type = Type.Integer)
+    Integer keycloakAdminTimeout;
+
     @Inject
     NiordApp app;
 
+    @Inject
+    KeycloakAdminCache adminCache;
+
     @Inject
     private Logger log;
 
+    private KeycloakAdminClient adminClient;
+
     
     static {
         CryptoIntegration.init(KeycloakIntegrationService.class.getClassLoader());
@@ -257,7 +272,7 @@ public class KeycloakIntegrationService {
      * @return the list of Keycloak clients
      */
     private List<ClientRepresentation> getKeycloakDomainClients() throws Exception {
-        return executeAdminRequest(
+        return cachedAdminRequest("clients", () -> executeAdminRequest(
                 new HttpGet(resolveAuthServerRealmUrl() + "/clients"),
                 true, // Add auth header
                 is -> {
@@ -265,7 +280,7 @@ public class KeycloakIntegrationService {
                             .readValue(is, new TypeReference<List<ClientRepresentation>>(){});
                     log.debug("Read clients from Keycloak");
                     return result;
-                });
+                }));
 //        return this.keycloakAdminClient.getRealmResource().clients().findAll();
     }
 
@@ -333,6 +348,7 @@ public class KeycloakIntegrationService {
             return false;
         }
         log.info("Created Keycloak domain client " + domain.getDomainId());
+        adminCache.getCache().remove("clients");
 
         // Get hold of the newly created client (with a proper ID)
         client = getKeycloakDomainClient(domain.getDomainId());
@@ -474,6 +490,7 @@ public class KeycloakIntegrationService {
         executeAdminRequest(new HttpDelete(resolveAuthServerRealmUrl() + "/users/" + WebUtils.encodeURIComponent(userId)),
                 true,
                 is -> true);
+        adminCache.getCache().remove("user-groups:" + userId);
     }
 
 
@@ -528,17 +545,18 @@ public class KeycloakIntegrationService {
      * @return the group tree from Keycloak
      */
     public List<GroupVo> getKeycloakGroups() throws Exception {
-        return executeAdminRequest(
+        List<GroupRepresentation> groups = cachedAdminRequest("groups", () -> executeAdminRequest(
                 new HttpGet(resolveAuthServerRealmUrl() + "/groups"),
                 true, // Add auth header
                 is -> {
                     List<GroupRepresentation> result = new ObjectMapper()
                             .readValue(is, new TypeReference<List<GroupRepresentation>>(){});
                     log.debug("Read groups from Keycloak");
-                    return result.stream()
-                            .map(this::readGroup)
-                            .collect(Collectors.toList());
-                });
+                    return result;
+                }));
+        return groups.stream()
+                .map(this::readGroup)
+                .collect(Collectors.toList());
     }
 
 
@@ -547,7 +565,7 @@ public class KeycloakIntegrationService {
      * @return the groups associated with the given user from Keycloak
      */
     public List<GroupVo> getKeycloakUserGroups(String userId) throws Exception {
-        return executeAdminRequest(
+        List<GroupRepresentation> groups = cachedAdminRequest("user-groups:" + userId, () -> executeAdminRequest(
                 new HttpGet(resolveAuthServerRealmUrl()
                         + "/users/" + WebUtils.encodeURIComponent(userId) + "/groups"),
                 true, // Add auth header
@@ -555,10 +573,11 @@ public class KeycloakIntegrationService {
                     List<GroupRepresentation> result = new ObjectMapper()
                             .readValue(is, new TypeReference<List<GroupRepresentation>>(){});
                     log.debug("Read user groups from Keycloak");
-                    return result.stream()
-                            .map(this::readGroup)
-                            .collect(Collectors.toList());
-                });
+                    return result;
+                }));
+        return groups.stream()
+                .map(this::readGroup)
+                .collect(Collectors.toList());
     }
 
 
@@ -587,6 +606,7 @@ public class KeycloakIntegrationService {
                 + "/users/" + WebUtils.encodeURIComponent(userId)
                 + "/groups/" + WebUtils.encodeURIComponent(groupId));
         executeAdminRequest(put, true, is -> true);
+        adminCache.getCache().remove("user-groups:" + userId);
     }
 
 
@@ -600,6 +620,7 @@ public class KeycloakIntegrationService {
                 + "/users/" + WebUtils.encodeURIComponent(userId)
                 + "/groups/" + WebUtils.encodeURIComponent(groupId));
         executeAdminRequest(del, true, is -> true);
+        adminCache.getCache().remove("user-groups:" + userId);
     }
 
 
@@ -608,7 +629,7 @@ public class KeycloakIntegrationService {
 
         ClientRepresentation client = getKeycloakDomainClient(domain.getDomainId());
 
-        return executeAdminRequest(
+        List<String> roles = cachedAdminRequest("group-roles:" + client.getId() + ":" + groupId, () -> executeAdminRequest(
                 new HttpGet(resolveAuthServerRealmUrl() + "/groups/"
                             + groupId + "/role-mappings/clients/" + client.getId()),
                 true, // Add auth header
@@ -619,7 +640,31 @@ public class KeycloakIntegrationService {
                     return result.stream()
                             .map(RoleRepresentation::getName)
                             .collect(Collectors.toList());
-                });
+                }));
+        return new ArrayList<>(roles);
+    }
+
+
+    /**
+     * Returns the cached result of a Keycloak admin lookup, or executes and caches the lookup.
+     * <p>
+     * NB: The lookups are only available to administrators, and the results are cached
+     * across users for the short TTL of the {@linkplain KeycloakAdminCache}.
+     *
+     * @param key the cache key
+     * @param lookup the Keycloak admin lookup
+     * @return the result
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R cachedAdminRequest(String key, Callable<R> lookup) throws Exception {
+        R result = (R) adminCache.getCache().get(key);
+        if (result == null) {
+            result = lookup.call();
+            if (result != null) {
+                adminCache.getCache().put(key, result);
+            }
+        }
+        return result;
     }
 
 
@@ -641,46 +686,36 @@ public class KeycloakIntegrationService {
             request.addHeader("Authorization", "Bearer " + userService.getKeycloakAccessToken());
         }
 
-        // For e.g. "*.e-navigation.net", with no intermediate certificates specified, you will get an
-        // "unable to find valid certification path to requested target" exception.
-        // Code around this.
-        // See https://stackoverflow.com/questions/19517538/ignoring-ssl-certificate-in-apache-httpclient-4-3
-        SSLContextBuilder builder = new SSLContextBuilder();
-        builder.loadTrustMaterial(null, (chain, authType) -> true);
-
-        SSLConnectionSocketFactory sslSF = new SSLConnectionSocketFactory(builder.build(),
-                SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-
-        CloseableHttpClient client = HttpClients.custom()
-                .setSSLSocketFactory(sslSF)
-                .setHostnameVerifier(new AllowAllHostnameVerifier())
-                .build();
-
-        try (CloseableHttpResponse response = client.execute(request)) {
-            int status = response.getStatusLine().getStatusCode();
-            if (status < 200 || status > 299) {
-                try {
-                    response.getEntity().getContent().close();
-                } catch (Exception ignored) {
-                }
-                throw new Exception("Unable to execute request " + request.getURI() + ", status = " + status);
-            }
+        return getAdminClient().execute(request, responseHandler);
+    }
 
-            HttpEntity entity = response.getEntity();
-            if (entity == null) {
-                return responseHandler.execute(null);
-            }
 
-            try (InputStream is = entity.getContent()) {
-                return responseHandler.execute(is);
-            }
+    /**
+     * Returns the pooled Keycloak admin client, which is instantiated upon first use
+     * @return the pooled Keycloak admin client
+     */
+    private synchronized KeycloakAdminClient getAdminClient() throws Exception {
+        if (adminClient == null) {
+            adminClient = new KeycloakAdminClient(
+                    keycloakAdminMaxConnections,
+                    keycloakAdminMaxConnectionsPerRoute,
+                    keycloakAdminTimeout);
+            log.info("Instantiated pooled Keycloak admin client");
         }
+        return adminClient;
     }
 
-    /**
-     * Interface that is passed along to the executeAdminRequest() function and handles the response
-     */
-    private interface KeycloakResponseHandler<R> {
-        R execute(InputStream in) throws IOException;
+
+    /** Closes the pooled Keycloak admin client **/
+    @PreDestroy
+    synchronized void closeAdminClient() {
+        if (adminClient != null) {
+            try {
+                adminClient.close();
+            } catch (IOException e) {
+                log.warn("Failed closing Keycloak admin client", e);
+            }
+            adminClient = null;
+        }
     }
 }
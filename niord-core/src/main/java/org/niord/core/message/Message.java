@@ -58,10 +58,20 @@ import java.util.stream.Stream;
                 query="SELECT msg FROM Message msg where msg.uid = :uid"),
         @NamedQuery(name="Message.findByUids",
                 query="SELECT msg FROM Message msg where msg.uid in (:uids)"),
+        @NamedQuery(name="Message.findIdsByUids",
+                query="SELECT msg.id FROM Message msg where msg.uid in (:uids)"),
         @NamedQuery(name="Message.findByIds",
                 query="SELECT msg FROM Message msg where msg.id in (:ids)"),
+        @NamedQuery(name="Message.findIdsByStatusAndSeries",
+                query="SELECT msg.id FROM Message msg where msg.status = :status "
+                        + "and msg.messageSeries.seriesId in (:seriesIds) and msg.id > :id order by msg.id"),
         @NamedQuery(name="Message.findByLegacyId",
                 query="SELECT msg FROM Message msg where msg.legacyId = :legacyId"),
+        @NamedQuery(name="Message.findByLegacyIds",
+                query="SELECT msg FROM Message msg where msg.legacyId in (:legacyIds)"),
+        @NamedQuery(name="Message.findPublishedLegacyMessages",
+                query="SELECT msg FROM Message msg where msg.messageSeries.seriesId = :seriesId "
+                        + " and msg.status = :status and msg.legacyId is not null and msg.legacyId <> ''"),
         @NamedQuery(name="Message.findByShortId",
                 query="SELECT msg FROM Message msg where msg.shortId = :shortId"),
         @NamedQuery(name="Message.findByMessageId",
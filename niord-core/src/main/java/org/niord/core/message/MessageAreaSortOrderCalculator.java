@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.niord.core.area.Area;
+import org.niord.core.area.AreaService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.niord.core.area.AreaService.AREA_SORT_ORDER_JITTER;
+
+/**
+ * Computes the area sort order of messages in bulk, and returns only the sort orders that have changed.
+ * <p>
+ * The area defining the message sorting is resolved once per area, and cached for the lifetime
+ * of the calculator. Only basic attributes of the cached areas are accessed, so the calculator may be
+ * used across persistence contexts.
+ * <p>
+ * A sort order is considered unchanged if it only differs from the computed sort order
+ * by the random jitter added by {@linkplain AreaService#computeMessageAreaSortingOrder(Message)}.
+ */
+public class MessageAreaSortOrderCalculator {
+
+    private final AreaService areaService;
+    private final Map<Integer, Optional<Area>> sortingAreas = new HashMap<>();
+
+
+    /**
+     * Constructor
+     *
+     * @param areaService the area service
+     */
+    public MessageAreaSortOrderCalculator(AreaService areaService) {
+        this.areaService = areaService;
+    }
+
+
+    /**
+     * Computes the area sort order of the given messages
+     *
+     * @param messages the messages
+     * @return the new sort orders of the messages whose area sort order has changed, indexed by message ID
+     */
+    public Map<Integer, Double> computeChangedSortOrders(List<Message> messages) {
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        for (Message message : messages) {
+            Double base = areaService.computeMessageAreaSortingBase(message, this::resolveSortingArea);
+            double current = message.getAreaSortOrder();
+
+            if (base == null) {
+                if (current != 0.0) {
+                    result.put(message.getId(), 0.0);
+                }
+            } else if (current < base || current >= base + AREA_SORT_ORDER_JITTER) {
+                result.put(message.getId(), base + ThreadLocalRandom.current().nextDouble() * AREA_SORT_ORDER_JITTER);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of areas whose message sorting area has been resolved
+     * @return the number of areas whose message sorting area has been resolved
+     */
+    public int getResolvedAreaCount() {
+        return sortingAreas.size();
+    }
+
+
+    /** Returns the area itself or the closest parent area with a "messageSorting" definition **/
+    private Area resolveSortingArea(Area area) {
+        Optional<Area> sortingArea = sortingAreas.get(area.getId());
+        if (sortingArea != null) {
+            return sortingArea.orElse(null);
+        }
+
+        // Walk up the lineage until an area with a message sorting, or a resolved area, is found
+        List<Integer> lineage = new ArrayList<>();
+        Area a = area;
+        while (a != null && a.getMessageSorting() == null && !sortingAreas.containsKey(a.getId())) {
+            lineage.add(a.getId());
+            a = a.getParent();
+        }
+
+        if (a == null) {
+            sortingArea = Optional.empty();
+        } else if (a.getMessageSorting() != null) {
+            sortingArea = Optional.of(a);
+            sortingAreas.put(a.getId(), sortingArea);
+        } else {
+            sortingArea = sortingAreas.get(a.getId());
+        }
+
+        for (Integer id : lineage) {
+            sortingAreas.put(id, sortingArea);
+        }
+        return sortingArea.orElse(null);
+    }
+}
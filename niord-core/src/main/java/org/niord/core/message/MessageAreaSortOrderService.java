@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.hibernate.Session;
+import org.niord.core.area.AreaService;
+import org.niord.core.service.BaseService;
+import org.niord.model.message.Status;
+import org.slf4j.Logger;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Re-computes the area sort order of messages in bulk.
+ * <p>
+ * The messages are processed in batches, and only the changed area sort orders are written to the database
+ * using JDBC batch updates. The messages are not otherwise updated, so no message history is recorded.
+ */
+@ApplicationScoped
+public class MessageAreaSortOrderService extends BaseService {
+
+    static final int BATCH_SIZE = 200;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    AreaService areaService;
+
+
+    /**
+     * Re-computes the area sort order of the published messages of the given message series
+     *
+     * @param seriesIds the message series IDs
+     * @return the number of messages whose area sort order was updated
+     */
+    public int recomputeAreaSortOrder(Set<String> seriesIds) {
+        if (seriesIds.isEmpty()) {
+            return 0;
+        }
+
+        long t0 = System.currentTimeMillis();
+        MessageAreaSortOrderCalculator calculator = new MessageAreaSortOrderCalculator(areaService);
+        int count = 0, updated = 0;
+        Integer lastId = 0;
+        List<Integer> ids;
+        do {
+            ids = em.createNamedQuery("Message.findIdsByStatusAndSeries", Integer.class)
+                    .setParameter("status", Status.PUBLISHED)
+                    .setParameter("seriesIds", seriesIds)
+                    .setParameter("id", lastId)
+                    .setMaxResults(BATCH_SIZE)
+                    .getResultList();
+            if (ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+
+            List<Message> messages = em.createNamedQuery("Message.findByIds", Message.class)
+                    .setParameter("ids", ids)
+                    .getResultList();
+            Map<Integer, Double> sortOrders = calculator.computeChangedSortOrders(messages);
+            updateAreaSortOrders(sortOrders);
+
+            count += messages.size();
+            updated += sortOrders.size();
+
+            // Keep the persistence context small
+            em.clear();
+        } while (ids.size() == BATCH_SIZE);
+
+        log.info(String.format("Re-computed area sort order for %d messages, updating %d, in %d ms",
+                count, updated, System.currentTimeMillis() - t0));
+        return updated;
+    }
+
+
+    /** Updates the area sort order of the given messages using a JDBC batch update **/
+    private void updateAreaSortOrders(Map<Integer, Double> sortOrders) {
+        if (sortOrders.isEmpty()) {
+            return;
+        }
+
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "UPDATE Message SET areaSortOrder = ? WHERE id = ?")) {
+                for (Map.Entry<Integer, Double> sortOrder : sortOrders.entrySet()) {
+                    stmt.setDouble(1, sortOrder.getValue());
+                    stmt.setInt(2, sortOrder.getKey());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        });
+    }
+}
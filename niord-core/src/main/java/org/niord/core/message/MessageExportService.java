@@ -15,10 +15,9 @@
  */
 package org.niord.core.message;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.conf.TextResource;
@@ -35,6 +34,10 @@ import jakarta.ws.rs.WebApplicationException;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashSet;
@@ -49,15 +52,16 @@ import java.util.zip.ZipOutputStream;
 public class MessageExportService {
 
     @Inject
-    Logger log;
+    protected Logger log;
 
     @Inject
-    RepositoryService repositoryService;
+    protected RepositoryService repositoryService;
+
+    protected static final String MESSAGES_JSON_PLACEHOLDER = "<<MESSAGES-JSON>>";
 
-    // The SQL for finding expired, published message is just too cumbersome for JPQL :-(
     @Inject
     @TextResource("/export-messages.html")
-    String messagesPreviewHtmlFile;
+    protected String messagesPreviewHtmlFile;
 
     /**
      * Exports the messages search result to the output stream
@@ -65,51 +69,124 @@ public class MessageExportService {
      * @param os the output stream
      */
     public void export(PagedSearchResultVo<SystemMessageVo> result, OutputStream os) {
+        export(page -> page == 0 ? result : new PagedSearchResultVo<>(), os);
+    }
+
+
+    /**
+     * Exports the paged messages search result to the output stream.
+     * <p>
+     * The pages are loaded one at a time, and the attachments of the messages of each page are
+     * streamed directly into the zip archive. The messages JSON is spooled to a temporary file,
+     * and added as the "messages.json" entry after the attachments, so that the memory
+     * consumption does not depend on the number of exported messages.
+     *
+     * @param pageLoader loads the search result page with the given index
+     * @param os the output stream
+     */
+    public void export(MessagePageLoader pageLoader, OutputStream os) {
 
         long t0 = System.currentTimeMillis();
+        Path messagesFile = null;
         try {
             ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(os));
+            messagesFile = Files.createTempFile("messages", ".json");
+
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+            int messageCount = 0;
+            Set<String> folderCache = new HashSet<>();
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(messagesFile.toFile(), JsonEncoding.UTF8)) {
+                PagedSearchResultVo<SystemMessageVo> result = pageLoader.loadPage(0);
+
+                // Write the messages file in the PagedSearchResultVo format
+                generator.writeStartObject();
+                generator.writeNumberField("total", result.getTotal());
+                generator.writeNumberField("size", result.getTotal());
+                if (result.getDescription() != null) {
+                    generator.writeStringField("description", result.getDescription());
+                }
+                generator.writeArrayFieldStart("data");
 
-            // Rewrite links in message description to remove "/rest/repo/file/" prefix
-            result.getData().forEach(m -> m.rewriteRepoPath("\"/rest/repo/file/" + m.getRepoPath(), "\"" + m.getRepoPath()));
+                for (int page = 0; !result.getData().isEmpty(); ) {
+                    for (SystemMessageVo message : result.getData()) {
+                        // Rewrite links in message description to remove "/rest/repo/file/" prefix
+                        message.rewriteRepoPath("\"/rest/repo/file/" + message.getRepoPath(), "\"" + message.getRepoPath());
+                        mapper.writeValue(generator, message);
+
+                        // Write the message attachments and thumbnail files to the Zip file
+                        if (message.getAttachments() != null && !message.getAttachments().isEmpty()) {
+                            exportAttachments(message, out, folderCache);
+                            exportThumbnail(message, out, folderCache);
+                        }
+                        messageCount++;
+                    }
+
+                    if (messageCount >= result.getTotal()) {
+                        break;
+                    }
+                    result = pageLoader.loadPage(++page);
+                }
+
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
 
             // Write the messages file to the Zip file
             log.debug("Adding messages.json to zip archive");
             out.putNextEntry(new ZipEntry("messages.json"));
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
-            String messages = mapper.writeValueAsString(result);
-            IOUtils.write(messages, out, "utf-8");
+            Files.copy(messagesFile, out);
             out.closeEntry();
 
             // Write the messages-preview.html file into the archive.
             // Can be used to preview the messages by someone unzipping the archive
-            String html = messagesPreviewHtmlFile.replace("<<MESSAGES-JSON>>", StringEscapeUtils.escapeJavaScript(messages));
             log.debug("Adding messages-preview.html to zip archive");
             out.putNextEntry(new ZipEntry("messages-preview.html"));
-            IOUtils.write(html, out, "utf-8");
+            writePreviewHtml(messagesFile, out);
             out.closeEntry();
 
-
-            // Write the message attachments and thumbnail files to the Zip file
-            Set<String> folderCache = new HashSet<>();
-            result.getData().stream()
-                    .filter(m -> m.getAttachments() != null && !m.getAttachments().isEmpty())
-                    .forEach(m -> {
-                        exportAttachments(m, out, folderCache);
-                        exportThumbnail(m, out, folderCache);
-                    });
-
-
             out.flush();
             out.close();
-            log.info("Created Zip export archive in " + (System.currentTimeMillis() - t0) + " ms");
+            log.info("Created Zip export archive with " + messageCount + " messages in "
+                    + (System.currentTimeMillis() - t0) + " ms");
         } catch (Exception e) {
             throw new WebApplicationException("Error generating ZIP archive for messages", e);
+        } finally {
+            if (messagesFile != null) {
+                try {
+                    Files.deleteIfExists(messagesFile);
+                } catch (IOException ignored) {
+                }
+            }
         }
     }
 
 
+    /**
+     * Writes the messages preview HTML file, with the messages JSON injected, to the output stream
+     * @param messagesFile the messages JSON file
+     * @param out the output stream
+     */
+    private void writePreviewHtml(Path messagesFile, OutputStream out) throws IOException {
+        int index = messagesPreviewHtmlFile.indexOf(MESSAGES_JSON_PLACEHOLDER);
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(messagesPreviewHtmlFile.substring(0, index));
+
+        // Escape and copy the JSON in chunks. The escaping is done per character, so chunking is safe
+        try (Reader reader = Files.newBufferedReader(messagesFile, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            int len;
+            while ((len = reader.read(buffer)) != -1) {
+                StringEscapeUtils.escapeJavaScript(writer, new String(buffer, 0, len));
+            }
+        }
+
+        writer.write(messagesPreviewHtmlFile.substring(index + MESSAGES_JSON_PLACEHOLDER.length()));
+        writer.flush();
+    }
+
+
     /**
      * Copies all attachment files associated with the message to the zip output stream.
      * Ignores all attachments that causes errors, so the result may be incomplete.
@@ -197,7 +274,7 @@ public class MessageExportService {
     private void addFile(ZipOutputStream out, String path, Path file) throws IOException {
         log.debug("Adding file " + path + " to zip archive");
         out.putNextEntry(new ZipEntry(path));
-        FileUtils.copyFile(file.toFile(), out);
+        Files.copy(file, out);
         out.closeEntry();
     }
 
@@ -219,4 +296,13 @@ public class MessageExportService {
             }
         }
     }
+
+
+    /**
+     * Loads the search result page with the given page index
+     */
+    @FunctionalInterface
+    public interface MessagePageLoader {
+        PagedSearchResultVo<SystemMessageVo> loadPage(int page) throws Exception;
+    }
 }
@@ -28,11 +28,27 @@ import java.util.Date;
 /**
  * The {@code MessageHistory} registers the history of a {@code Message} by storing a JSON snapshot
  * of the Message for every change, along with the changing user and time.
+ * <p>
+ * To limit the size of the history table, only every n'th history entry (the "keyframes") contains
+ * a full snapshot of the message. The entries in between contain a JSON patch (RFC 6902) against
+ * the snapshot of the preceding history entry, and are flagged with {@code delta = true}.
+ * Use {@code MessageService.getMessageHistorySnapshot()} to reconstruct the full snapshot.
  */
 @Entity
 @NamedQueries({
     @NamedQuery(name = "MessageHistory.findByMessageId",
-                query = "SELECT mh FROM MessageHistory mh where mh.message.id = :messageId order by mh.created desc"),
+                query = "SELECT mh FROM MessageHistory mh where mh.message.id = :messageId order by mh.id desc"),
+        @NamedQuery(name = "MessageHistory.findMetadataByMessageId",
+                query = "SELECT mh.id, mh.status, u, mh.version, mh.created FROM MessageHistory mh " +
+                        " left join mh.user u where mh.message.id = :messageId order by mh.id desc"),
+        @NamedQuery(name = "MessageHistory.countByMessageId",
+                query = "SELECT count(mh) FROM MessageHistory mh where mh.message.id = :messageId"),
+        @NamedQuery(name = "MessageHistory.findKeyframeId",
+                query = "SELECT max(mh.id) FROM MessageHistory mh where mh.message.id = :messageId " +
+                        " and mh.id <= :id and (mh.delta is null or mh.delta = false)"),
+        @NamedQuery(name = "MessageHistory.findRange",
+                query = "SELECT mh FROM MessageHistory mh where mh.message.id = :messageId " +
+                        " and mh.id >= :fromId and mh.id <= :toId order by mh.id asc"),
         @NamedQuery(name = "MessageHistory.findRecentChangesByUser",
                 query = "SELECT mh FROM MessageHistory mh where mh.user = :user and mh.created > :date " +
                         " and mh.message.messageSeries in (:messageSeries)" +
@@ -63,6 +79,9 @@ public class MessageHistory extends BaseEntity<Integer> {
     @Column(name = "snapshot", columnDefinition="BLOB")
     byte[] snapshot;
 
+    /** If set, the snapshot is a JSON patch against the snapshot of the preceding history entry **/
+    Boolean delta;
+
     @PrePersist
     protected void onCreate() {
         if (created == null) {
@@ -70,22 +89,36 @@ public class MessageHistory extends BaseEntity<Integer> {
         }
     }
 
-    /** Converts this entity to a value object */
+    /**
+     * Converts this entity to a value object.
+     * The snapshot is not included, since it may be a delta.
+     */
     public MessageHistoryVo toVo() {
         MessageHistoryVo history = new MessageHistoryVo();
-        history.setMessageId(this.getId());
+        history.setId(this.getId());
+        history.setMessageId(message.getId());
         history.setStatus(status);
         if (user != null) {
             history.setUser(user.getName());
         }
         history.setVersion(version);
         history.setCreated(created);
-        history.setSnapshot(GzipUtils.decompressStringIgnoreError(snapshot));
-
         return history;
     }
 
 
+    /** Returns the decompressed snapshot or delta **/
+    public String decompressSnapshot() {
+        return GzipUtils.decompressStringIgnoreError(snapshot);
+    }
+
+
+    /** Returns if this history entry contains a full snapshot rather than a delta **/
+    public boolean isKeyframe() {
+        return delta == null || !delta;
+    }
+
+
     /** Sets and compresses the given snapshot **/
     public void compressSnapshot(String snapshot) {
         this.snapshot = GzipUtils.compressStringIgnoreError(snapshot);
@@ -128,6 +161,14 @@ public class MessageHistory extends BaseEntity<Integer> {
         this.snapshot = snapshot;
     }
 
+    public Boolean getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Boolean delta) {
+        this.delta = delta;
+    }
+
     public int getVersion() {
         return version;
     }
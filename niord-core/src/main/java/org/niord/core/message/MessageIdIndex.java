@@ -0,0 +1,500 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.message.MessageIdMatch.MatchType;
+import org.niord.model.message.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index used for auto-completing message IDs, i.e. message UIDs, short IDs and titles.
+ * <p>
+ * Short IDs are indexed by tri-grams, which allows for efficient sub-string matching.
+ * UIDs are indexed for prefix matching and titles are indexed by word for word-prefix matching.
+ * <p>
+ * The index is thread-safe. Entries are added or replaced using {@code update()}.
+ */
+@SuppressWarnings("unused")
+public class MessageIdIndex {
+
+    /** The number of candidates to collect per requested result before ranking the matches **/
+    static final int CANDIDATE_FACTOR = 10;
+
+    /** The min length of a search text for matching UID prefixes **/
+    static final int MIN_UID_PREFIX_LENGTH = 8;
+
+    final Map<Integer, Entry> entries = new HashMap<>();
+    final TreeMap<String, Integer> uids = new TreeMap<>();
+    final Map<String, IdList> shortIdTrigrams = new HashMap<>();
+    final TreeMap<String, IdList> titleWords = new TreeMap<>();
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * Adds or replaces the given entry in the index
+     *
+     * @param entry the entry to add or replace
+     */
+    public void update(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(entry.id);
+            entries.put(entry.id, entry);
+            if (entry.uid != null) {
+                uids.put(entry.uid, entry.id);
+            }
+            for (String trigram : trigrams(entry.shortIdLower)) {
+                shortIdTrigrams.computeIfAbsent(trigram, t -> new IdList()).add(entry.id);
+            }
+            for (String word : entry.titleWords) {
+                titleWords.computeIfAbsent(word, w -> new IdList()).add(entry.id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Removes the entry with the given message database ID from the index
+     *
+     * @param id the message database ID
+     */
+    public void remove(Integer id) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /** Removes the entry with the given ID. Must be called with the write lock held **/
+    private void removeEntry(Integer id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        if (entry.uid != null) {
+            uids.remove(entry.uid);
+        }
+        for (String trigram : trigrams(entry.shortIdLower)) {
+            removeId(shortIdTrigrams, trigram, id);
+        }
+        for (String word : entry.titleWords) {
+            removeId(titleWords, word, id);
+        }
+    }
+
+
+    /** Removes the ID from the ID list with the given key **/
+    private static void removeId(Map<String, IdList> index, String key, int id) {
+        IdList ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.size() == 0) {
+                index.remove(key);
+            }
+        }
+    }
+
+
+    /** Returns the number of entries in the index **/
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Searches the index for messages whose UID, short ID or title matches the given text.
+     * <p>
+     * The matches are ranked as follows:
+     * <ul>
+     *     <li>Exact UID or short ID matches first, then short IDs starting with the text,
+     *         then short IDs containing the text and finally title matches.</li>
+     *     <li>Messages of the message series of the current domain are preferred.</li>
+     *     <li>Published messages are preferred over expired and cancelled messages,
+     *         which are preferred over draft and verified messages, and so forth.</li>
+     *     <li>Lastly, the most recently updated messages are preferred.</li>
+     * </ul>
+     *
+     * @param txt the text to match
+     * @param maxCount the max number of matches to return
+     * @param includeDeleted whether to include deleted messages or not
+     * @param domainSeries the message series IDs of the current domain
+     * @return the ranked matches
+     */
+    public List<Match> search(String txt, int maxCount, boolean includeDeleted, Set<String> domainSeries) {
+        List<Match> result = new ArrayList<>();
+        if (StringUtils.isBlank(txt) || maxCount <= 0) {
+            return result;
+        }
+
+        String term = txt.trim().toLowerCase();
+        int maxCandidates = maxCount * CANDIDATE_FACTOR;
+        Map<Integer, Match> candidates = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            // UID matches
+            String uidTo = term.length() >= MIN_UID_PREFIX_LENGTH ? term + Character.MAX_VALUE : term + Character.MIN_VALUE;
+            for (Map.Entry<String, Integer> uid : uids.subMap(term, true, uidTo, true).entrySet()) {
+                if (candidates.size() >= maxCandidates) {
+                    break;
+                }
+                addCandidate(candidates, entries.get(uid.getValue()), MatchType.UID,
+                        uid.getKey().equals(term) ? 0 : 1, includeDeleted);
+            }
+
+            // Short ID sub-string matches
+            searchShortIds(term, candidates, maxCandidates, includeDeleted);
+
+            // Title word-prefix matches
+            if (candidates.size() < maxCount) {
+                searchTitles(term, candidates, maxCandidates, includeDeleted);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        result.addAll(candidates.values());
+        Set<String> series = domainSeries != null ? domainSeries : Collections.<String>emptySet();
+        result.sort(Comparator
+                .comparingInt((Match m) -> m.rank)
+                .thenComparing(m -> !series.contains(m.entry.seriesId))
+                .thenComparing(m -> -statusSortOrder(m.entry.status))
+                .thenComparing(m -> -m.entry.updated));
+        return result.size() > maxCount ? new ArrayList<>(result.subList(0, maxCount)) : result;
+    }
+
+
+    /** Searches the short IDs for the given term **/
+    private void searchShortIds(String term, Map<Integer, Match> candidates, int maxCandidates, boolean includeDeleted) {
+        int limit = candidates.size() + maxCandidates;
+
+        if (term.length() < 3) {
+            // Too short for the tri-gram index. Scan all entries, newest first
+            entries.values().stream()
+                    .filter(e -> e.shortIdLower != null && e.shortIdLower.contains(term))
+                    .sorted(Comparator.comparingInt((Entry e) -> e.id).reversed())
+                    .limit(maxCandidates)
+                    .forEach(e -> addCandidate(candidates, e, MatchType.SHORT_ID, shortIdRank(e, term), includeDeleted));
+            return;
+        }
+
+        // Use the most selective tri-gram of the term and verify the candidates
+        IdList ids = null;
+        for (String trigram : trigrams(term)) {
+            IdList trigramIds = shortIdTrigrams.get(trigram);
+            if (trigramIds == null) {
+                return;
+            }
+            if (ids == null || trigramIds.size() < ids.size()) {
+                ids = trigramIds;
+            }
+        }
+
+        // Iterate newest messages first
+        for (int x = ids.size() - 1; x >= 0 && candidates.size() < limit; x--) {
+            Entry entry = entries.get(ids.get(x));
+            if (entry != null && entry.shortIdLower.contains(term)) {
+                addCandidate(candidates, entry, MatchType.SHORT_ID, shortIdRank(entry, term), includeDeleted);
+            }
+        }
+    }
+
+
+    /** Returns the rank of a short ID match **/
+    private int shortIdRank(Entry entry, String term) {
+        if (entry.shortIdLower.equals(term)) {
+            return 0;
+        }
+        return entry.shortIdLower.startsWith(term) ? 1 : 2;
+    }
+
+
+    /** Searches the title words for the given term **/
+    private void searchTitles(String term, Map<Integer, Match> candidates, int maxCandidates, boolean includeDeleted) {
+        String[] words = tokenize(term);
+        if (words.length == 0) {
+            return;
+        }
+
+        // Pick the query word matching the fewest messages and verify the other words for each candidate
+        List<IdList> bestLists = null;
+        int bestCount = Integer.MAX_VALUE;
+        for (String word : words) {
+            Collection<IdList> lists = titleWords.subMap(word, word + Character.MAX_VALUE).values();
+            int count = lists.stream().mapToInt(IdList::size).sum();
+            if (count == 0) {
+                return;
+            }
+            if (count < bestCount) {
+                bestCount = count;
+                bestLists = new ArrayList<>(lists);
+            }
+        }
+
+        // Merge the ID lists, newest messages first
+        int limit = candidates.size() + maxCandidates;
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> Integer.compare(b[0], a[0]));
+        for (int x = 0; x < bestLists.size(); x++) {
+            IdList ids = bestLists.get(x);
+            queue.add(new int[] { ids.get(ids.size() - 1), x, ids.size() - 1 });
+        }
+        int lastId = -1;
+        while (!queue.isEmpty() && candidates.size() < limit) {
+            int[] head = queue.poll();
+            if (head[2] > 0) {
+                IdList ids = bestLists.get(head[1]);
+                queue.add(new int[] { ids.get(head[2] - 1), head[1], head[2] - 1 });
+            }
+            if (head[0] == lastId) {
+                continue;
+            }
+            lastId = head[0];
+            Entry entry = entries.get(head[0]);
+            if (entry != null && !candidates.containsKey(entry.id) && matchesAllWords(entry, words)) {
+                addCandidate(candidates, entry, MatchType.TITLE, 3, includeDeleted);
+            }
+        }
+    }
+
+
+    /** Returns if each of the words is a prefix of a title word of the entry **/
+    private boolean matchesAllWords(Entry entry, String[] words) {
+        for (String word : words) {
+            boolean match = false;
+            for (String titleWord : entry.titleWords) {
+                if (titleWord.startsWith(word)) {
+                    match = true;
+                    break;
+                }
+            }
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /** Adds the given candidate match, unless the message is already matched with a better rank **/
+    private void addCandidate(Map<Integer, Match> candidates, Entry entry, MatchType type, int rank, boolean includeDeleted) {
+        if (entry == null || (!includeDeleted && entry.status == Status.DELETED)) {
+            return;
+        }
+        Match match = candidates.get(entry.id);
+        if (match == null || rank < match.rank) {
+            candidates.put(entry.id, new Match(entry, type, rank));
+        }
+    }
+
+
+    /** Returns a measure of importance of a message based on the message status. See MessageIdMatchComparator **/
+    private static int statusSortOrder(Status status) {
+        if (status == null) {
+            return 0;
+        }
+        switch (status) {
+            case PUBLISHED:
+                return 4;
+            case EXPIRED:
+            case CANCELLED:
+                return 3;
+            case DRAFT:
+            case VERIFIED:
+                return 2;
+            case DELETED:
+                return 1;
+        }
+        return 0;
+    }
+
+
+    /** Returns the tri-grams of the given text **/
+    static Set<String> trigrams(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        if (text != null) {
+            for (int x = 0; x + 3 <= text.length(); x++) {
+                result.add(text.substring(x, x + 3));
+            }
+        }
+        return result;
+    }
+
+
+    /** Splits the text into distinct lower-case words **/
+    static String[] tokenize(String text) {
+        if (StringUtils.isBlank(text)) {
+            return new String[0];
+        }
+        return Arrays.stream(text.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(StringUtils::isNotBlank)
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+
+    /*************************/
+    /** Helper classes      **/
+    /*************************/
+
+
+    /**
+     * An index entry, representing a single message
+     */
+    public static class Entry {
+        final int id;
+        final String uid;
+        final String shortId;
+        final String shortIdLower;
+        final Status status;
+        final String seriesId;
+        final long updated;
+        final String[] titleWords;
+
+        /** Constructor **/
+        public Entry(int id, String uid, String shortId, Status status, String seriesId, long updated, Collection<String> titles) {
+            this.id = id;
+            this.uid = uid == null ? null : uid.toLowerCase();
+            this.shortId = shortId;
+            this.shortIdLower = shortId == null ? null : shortId.toLowerCase();
+            this.status = status;
+            this.seriesId = seriesId;
+            this.updated = updated;
+            this.titleWords = titles == null
+                    ? new String[0]
+                    : tokenize(String.join(" ", titles.stream().filter(Objects::nonNull).toArray(String[]::new)));
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getUid() {
+            return uid;
+        }
+
+        public String getShortId() {
+            return shortId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+    }
+
+
+    /**
+     * A ranked search match
+     */
+    public static class Match {
+        final Entry entry;
+        final MatchType type;
+        final int rank;
+
+        /** Constructor **/
+        Match(Entry entry, MatchType type, int rank) {
+            this.entry = entry;
+            this.type = type;
+            this.rank = rank;
+        }
+
+        public Entry getEntry() {
+            return entry;
+        }
+
+        public MatchType getType() {
+            return type;
+        }
+
+        /** Returns the message ID to use for the match, i.e. the short ID or UID **/
+        public String getMessageId() {
+            if (type == MatchType.UID || entry.shortId == null) {
+                return entry.uid;
+            }
+            return entry.shortId;
+        }
+    }
+
+
+    /**
+     * A sorted list of message IDs backed by an int array
+     */
+    static class IdList {
+        int[] ids = new int[4];
+        int size;
+
+        /** Adds the ID to the list **/
+        void add(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        /** Removes the ID from the list **/
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        int get(int index) {
+            return ids[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.niord.core.service.BaseService;
+import org.niord.model.message.Status;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the in-memory {@code MessageIdIndex} used for auto-completing message IDs.
+ * <p>
+ * The index will initially load all messages, and subsequently check every minute
+ * for changed messages to add or update in the index. Additionally, messages are
+ * updated in the index whenever they are saved via {@code MessageService.saveMessage()}.
+ * <p>
+ * Until the initial load has completed, {@code isReady()} returns false and callers
+ * should fall back to querying the database.
+ */
+@ApplicationScoped
+@SuppressWarnings("unused")
+public class MessageIdIndexService extends BaseService {
+
+    final static int LOAD_BATCH_SIZE = 1000;
+
+    @Inject
+    Logger log;
+
+    final MessageIdIndex index = new MessageIdIndex();
+    private final ReentrantLock lock = new ReentrantLock();
+    volatile boolean ready;
+    Date lastUpdated = new Date(0);
+    Integer lastId = 0;
+
+
+    /**
+     * Initialize the index
+     */
+    private void init(@Observes StartupEvent ev) {
+        // Wait 5 seconds before initializing the message ID index
+        new Timer().schedule(
+                new TimerTask() {
+                    @Override
+                    public void run() {
+                        updateIndex();
+                    }
+                },
+                5000
+        );
+    }
+
+
+    /**
+     * Called when the service starts up and then every minute to update the index
+     */
+    @Transactional
+    @Scheduled(cron="48 */1 * * * ?")
+    @ActivateRequestContext
+    void updateIndex() {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            long t0 = System.currentTimeMillis();
+            int count = 0;
+            List<Object[]> rows;
+            do {
+                rows = findUpdatedMessages();
+                count += rows.size();
+                indexMessages(rows);
+            } while (rows.size() == LOAD_BATCH_SIZE);
+
+            if (!ready) {
+                ready = true;
+                log.info("Loaded " + count + " messages into the message ID index in "
+                        + (System.currentTimeMillis() - t0) + " ms");
+            } else if (count > 0) {
+                log.debug("Updated " + count + " messages in the message ID index");
+            }
+        } catch (Exception e) {
+            log.error("Error updating the message ID index", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /** Returns the next batch of messages updated since the last update **/
+    private List<Object[]> findUpdatedMessages() {
+        return em.createQuery(
+                "select m.id, m.uid, m.shortId, m.status, ms.seriesId, m.updated from Message m " +
+                " left join m.messageSeries ms " +
+                " where m.updated > :date or (m.updated = :date and m.id > :id) " +
+                " order by m.updated asc, m.id asc", Object[].class)
+                .setParameter("date", lastUpdated)
+                .setParameter("id", lastId)
+                .setMaxResults(LOAD_BATCH_SIZE)
+                .getResultList();
+    }
+
+
+    /** Adds the given message rows to the index **/
+    private void indexMessages(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        // Look up the titles of the messages in one go
+        List<Integer> ids = rows.stream()
+                .map(row -> (Integer) row[0])
+                .collect(Collectors.toList());
+        Map<Integer, List<String>> titles = new HashMap<>();
+        em.createQuery("select d.entity.id, d.title from MessageDesc d where d.entity.id in (:ids)", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> titles.computeIfAbsent((Integer) row[0], id -> new ArrayList<>()).add((String) row[1]));
+
+        for (Object[] row : rows) {
+            Integer id = (Integer) row[0];
+            Date updated = (Date) row[5];
+            index.update(new MessageIdIndex.Entry(
+                    id,
+                    (String) row[1],
+                    (String) row[2],
+                    (Status) row[3],
+                    (String) row[4],
+                    updated == null ? 0L : updated.getTime(),
+                    titles.get(id)));
+            if (updated != null) {
+                lastUpdated = updated;
+                lastId = id;
+            }
+        }
+    }
+
+
+    /**
+     * Updates the index with the given message
+     *
+     * @param message the message to update the index with
+     */
+    public void messageSaved(Message message) {
+        if (message == null || message.getId() == null) {
+            return;
+        }
+        index.update(new MessageIdIndex.Entry(
+                message.getId(),
+                message.getUid(),
+                message.getShortId(),
+                message.getStatus(),
+                message.getMessageSeries() != null ? message.getMessageSeries().getSeriesId() : null,
+                message.getUpdated() != null ? message.getUpdated().getTime() : System.currentTimeMillis(),
+                message.getDescs().stream()
+                        .map(MessageDesc::getTitle)
+                        .collect(Collectors.toList())));
+    }
+
+
+    /**
+     * Removes the message with the given ID from the index
+     *
+     * @param id the database ID of the message
+     */
+    public void messageRemoved(Integer id) {
+        index.remove(id);
+    }
+
+
+    /**
+     * Returns if the index has been fully loaded
+     * @return if the index has been fully loaded
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /**
+     * Searches the index for messages whose UID, short ID or title matches the given text.
+     * See {@code MessageIdIndex.search()} for details.
+     *
+     * @param txt the text to match
+     * @param maxCount the max number of matches to return
+     * @param includeDeleted whether to include deleted messages or not
+     * @param domainSeries the message series IDs of the current domain
+     * @return the ranked matches
+     */
+    public List<MessageIdIndex.Match> search(String txt, int maxCount, boolean includeDeleted, Set<String> domainSeries) {
+        return index.search(txt, maxCount, includeDeleted, domainSeries);
+    }
+}
@@ -29,7 +29,7 @@ import java.util.List;
 @SuppressWarnings("unused")
 public class MessageIdMatch implements IJsonSerializable {
 
-    public enum MatchType { UID, SHORT_ID, TEXT }
+    public enum MatchType { UID, SHORT_ID, TITLE, TEXT }
 
     String messageId;
     MatchType type;
@@ -28,6 +28,8 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static org.niord.core.util.WebUtils.getParameterValues;
+
 /**
  * Defines the message print parameters
  */
@@ -50,29 +52,50 @@ public class MessagePrintParams extends PagedSearchParamsVo {
      * @return the MessageSearchParams initialized with parameter values
      */
     public static MessagePrintParams instantiate(HttpServletRequest req) {
+        return instantiate(req.getParameterMap());
+    }
+
+
+    /**
+     * Returns a MessagePrintParams initialized with parameter values from a request parameter map
+     * using "default" parameter names
+     * @param reqParams the request parameters
+     * @return the MessageSearchParams initialized with parameter values
+     */
+    public static MessagePrintParams instantiate(Map<String, String[]> reqParams) {
         MessagePrintParams params = new MessagePrintParams();
-        params.report(req.getParameter("report"))
-                .pageSize(checkNull(req.getParameter("pageSize"), "A4", Function.identity()))
-                .pageOrientation(checkNull(req.getParameter("pageOrientation"), "portrait", Function.identity()))
-                .mapThumbnails(checkNull(req.getParameter("mapThumbnails"), false, Boolean::valueOf))
-                .fileName(checkNull(req.getParameter("fileName"), null, Function.identity()))
-                .debug(checkNull(req.getParameter("debug"), false, Boolean::valueOf))
-                .readReportParams(req);
+        params.report(getParameterValues(reqParams, "report"))
+                .pageSize(checkNull(getParameterValues(reqParams, "pageSize"), "A4", Function.identity()))
+                .pageOrientation(checkNull(getParameterValues(reqParams, "pageOrientation"), "portrait", Function.identity()))
+                .mapThumbnails(checkNull(getParameterValues(reqParams, "mapThumbnails"), false, Boolean::valueOf))
+                .fileName(checkNull(getParameterValues(reqParams, "fileName"), null, Function.identity()))
+                .debug(checkNull(getParameterValues(reqParams, "debug"), false, Boolean::valueOf))
+                .readReportParams(reqParams);
 
         return params;
     }
 
+
     /**
-     * Returns a valid PDF file name "Content-Disposition" header
+     * Returns a valid PDF file name, i.e. the file name or default name with a ".pdf" suffix
      * @param defaultName the default name to use if no file name has been set
-     * @return a valid PDF file name "Content-Disposition" header
+     * @return a valid PDF file name
      */
-    public String getFileNameHeader(String defaultName) {
+    public String getPdfFileName(String defaultName) {
         String name = StringUtils.defaultIfBlank(fileName, defaultName);
         if (!name.toLowerCase().endsWith(".pdf")) {
             name += ".pdf";
         }
+        return name;
+    }
 
+    /**
+     * Returns a valid PDF file name "Content-Disposition" header
+     * @param defaultName the default name to use if no file name has been set
+     * @return a valid PDF file name "Content-Disposition" header
+     */
+    public String getFileNameHeader(String defaultName) {
+        String name = getPdfFileName(defaultName);
         return "attachment; filename=\"" + WebUtils.encodeURIComponent(name) + "\"";
     }
 
@@ -154,8 +177,8 @@ public class MessagePrintParams extends PagedSearchParamsVo {
         return params;
     }
 
-    private MessagePrintParams readReportParams(HttpServletRequest request) {
-        request.getParameterMap().entrySet().stream()
+    private MessagePrintParams readReportParams(Map<String, String[]> reqParams) {
+        reqParams.entrySet().stream()
                 .filter(e -> e.getKey().startsWith("param:"))
                 .forEach(e -> {
                     String key = e.getKey().substring("param:".length());
@@ -25,6 +25,7 @@ import static org.niord.core.message.MessageSearchParams.CommentsType.ANY_UNACK;
 import static org.niord.core.message.MessageSearchParams.CommentsType.OWN;
 import static org.niord.core.message.MessageSearchParams.CommentsType.OWN_UNACK;
 import static org.niord.core.message.vo.SystemMessageSeriesVo.NumberSequenceType.MANUAL;
+import static org.niord.core.settings.Setting.Type;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -65,6 +66,7 @@ import org.niord.core.geojson.FeatureService;
 import org.niord.core.geojson.JtsConverter;
 import org.niord.core.message.MessageSearchParams.DateType;
 import org.niord.core.message.MessageSearchParams.UserType;
+import org.niord.core.message.vo.MessageHistoryVo;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.core.promulgation.BaseMessagePromulgation;
 import org.niord.core.promulgation.PromulgationManager;
@@ -72,9 +74,11 @@ import org.niord.core.promulgation.PromulgationType;
 import org.niord.core.publication.PublicationService;
 import org.niord.core.repo.RepositoryService;
 import org.niord.core.service.BaseService;
+import org.niord.core.settings.annotation.Setting;
 import org.niord.core.user.Roles;
 import org.niord.core.user.User;
 import org.niord.core.user.UserService;
+import org.niord.core.util.JsonPatchUtils;
 import org.niord.model.DataFilter;
 import org.niord.model.geojson.FeatureCollectionVo;
 import org.niord.model.message.AreaVo;
@@ -88,6 +92,7 @@ import org.niord.model.search.PagedSearchParamsVo.SortOrder;
 import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
@@ -139,7 +144,7 @@ public class MessageService extends BaseService {
     String messageStatusTopic;
 
     @Inject
-    UserService userService;
+    protected UserService userService;
 
     @Inject
     MessageSeriesService messageSeriesService;
@@ -153,6 +158,9 @@ public class MessageService extends BaseService {
     @Inject
     MessageLuceneIndex messageLuceneIndex;
 
+    @Inject
+    MessageIdIndexService messageIdIndexService;
+
     @Inject
     AreaService areaService;
 
@@ -171,6 +179,11 @@ public class MessageService extends BaseService {
     @Inject
     FeatureService featureService;
 
+    @Inject
+    @Setting(value = "messageHistoryKeyframeInterval", defaultValue = "10", type = Type.Integer,
+            description = "Store a full message snapshot for every n'th history entry and deltas in between")
+    protected Integer historyKeyframeInterval;
+
     @Inject
     PromulgationManager promulgationManager;
 
@@ -308,6 +321,8 @@ public class MessageService extends BaseService {
     /**
      * Returns a list of message IDs (UID or shortId) that - possibly partially - matches
      * real text.
+     * <p>
+     * Once loaded, the in-memory {@code MessageIdIndex} is used, which also matches message titles.
      *
      * @param lang the language to return the title in
      * @param txt the text to match
@@ -327,6 +342,25 @@ public class MessageService extends BaseService {
             result.add(new MessageIdMatch(txt, TEXT, null));
         }
 
+        // Use the in-memory message ID index, once it has been loaded
+        if (messageIdIndexService.isReady()) {
+            Domain domain = domainService.currentDomain();
+            Set<String> domainSeries = domain == null
+                    ? Collections.emptySet()
+                    : domain.getMessageSeries().stream()
+                        .map(MessageSeries::getSeriesId)
+                        .collect(Collectors.toSet());
+            for (MessageIdIndex.Match match : messageIdIndexService.search(txt, maxGroupCount, includeDeleted, domainSeries)) {
+                Message message = em.find(Message.class, match.getEntry().getId());
+                if (message != null) {
+                    result.add(new MessageIdMatch(match.getMessageId(), match.getType(), message, lang));
+                } else {
+                    messageIdIndexService.messageRemoved(match.getEntry().getId());
+                }
+            }
+            return result;
+        }
+
         // Check for a matching UID
         Message message = findByUid(txt);
         if (message != null) {
@@ -373,6 +407,9 @@ public class MessageService extends BaseService {
         // Save a MessageHistory entity for the message
         saveHistory(message);
 
+        // Update the message ID auto-complete index
+        messageIdIndexService.messageSaved(message);
+
         return message;
     }
 
@@ -385,6 +422,22 @@ public class MessageService extends BaseService {
      */
     @Transactional
     public Message createMessage(Message message) throws Exception {
+        return createMessage(message, true);
+    }
+
+
+    /**
+     * Creates a new message as a draft message.
+     * <p>
+     * Batch imports may pass {@code flush = false} and flush once per chunk instead,
+     * allowing the inserts of the chunk to be batched.
+     *
+     * @param message the template for the message to create
+     * @param flush whether to flush the entity manager after creating the message
+     * @return the new message
+     */
+    @Transactional
+    public Message createMessage(Message message, boolean flush) throws Exception {
 
         // Validate the message
         if (message.isPersisted()) {
@@ -439,7 +492,9 @@ public class MessageService extends BaseService {
         message = saveMessage(message);
         log.info("Saved message " + message.getUid());
 
-        em.flush();
+        if (flush) {
+            em.flush();
+        }
         return message;
     }
 
@@ -1083,9 +1138,9 @@ public class MessageService extends BaseService {
             Join<Message, Area> areas = msgRoot.join("areas", JoinType.LEFT);
             if (!param.getAreaIds().isEmpty()) {
                 Predicate[] areaMatch = param.getAreaIds().stream()
-                        .map(aid -> areaService.findByAreaId(aid))
+                        .map(aid -> areaService.findLineageByAreaId(aid))
                         .filter(Objects::nonNull)
-                        .map(a -> builder.like(areas.get("lineage"), a.getLineage() + "%"))
+                        .map(lineage -> builder.like(areas.get("lineage"), lineage + "%"))
                         .toArray(Predicate[]::new);
                 criteriaHelper.add(builder.or(areaMatch));
             }
@@ -1096,9 +1151,9 @@ public class MessageService extends BaseService {
         if (!param.getCategoryIds().isEmpty()) {
             Join<Message, Category> categories = msgRoot.join("categories", JoinType.LEFT);
             Predicate[] categoryMatch = param.getCategoryIds().stream()
-                    .map(cid -> categoryService.findByCategoryId(cid))
+                    .map(cid -> categoryService.findLineageByCategoryId(cid))
                     .filter(Objects::nonNull)
-                    .map(c -> builder.like(categories.get("lineage"), c.getLineage() + "%"))
+                    .map(lineage -> builder.like(categories.get("lineage"), lineage + "%"))
                     .toArray(Predicate[]::new);
             criteriaHelper.add(builder.or(categoryMatch));
         }
@@ -1240,7 +1295,7 @@ public class MessageService extends BaseService {
             areaRoot = msgRoot.join("area", JoinType.LEFT);
             // General messages (without an associated area) should be sorted last
             treeSortOrder = builder.selectCase()
-                    .when(builder.isNull(areaRoot.get("treeSortOrder")), 999999)
+                    .when(builder.isNull(areaRoot.get("treeSortOrder")), Integer.MAX_VALUE)
                     .otherwise(areaRoot.get("treeSortOrder"));
             fields.add(treeSortOrder);
             fields.add(msgRoot.get("areaSortOrder"));
@@ -1422,7 +1477,11 @@ public class MessageService extends BaseService {
 
 
     /**
-     * Saves a history entity containing a snapshot of the message
+     * Saves a history entity containing a snapshot of the message.
+     * <p>
+     * Every {@code messageHistoryKeyframeInterval} history entry will contain a full snapshot
+     * of the message. The history entries in between only contain a JSON patch
+     * against the snapshot of the previous history entry.
      *
      * @param message the message to save a snapshot for
      */
@@ -1438,12 +1497,24 @@ public class MessageService extends BaseService {
             hist.setVersion(message.getVersion() + 1);
 
             // Create a snapshot of the message
-            ObjectMapper jsonMapper = new ObjectMapper();
-            jsonMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false); // Use ISO-8601 format
+            ObjectMapper jsonMapper = historyJsonMapper();
             DataFilter dataFilter = DataFilter.get()
                     .fields("Message.details", "Message.geometry", "Message.promulgations");
-            MessageVo snapshot = message.toVo(SystemMessageVo.class, dataFilter);
-            hist.compressSnapshot(jsonMapper.writeValueAsString(snapshot));
+            MessageVo snapshotVo = message.toVo(SystemMessageVo.class, dataFilter);
+            String snapshot = jsonMapper.writeValueAsString(snapshotVo);
+            hist.compressSnapshot(snapshot);
+
+            // Check if we should store a delta against the previous history entry instead
+            MessageHistory previous = message.getId() == null ? null : getLatestMessageHistory(message.getId());
+            if (previous != null && historyKeyframeInterval != null && historyKeyframeInterval > 1) {
+                List<MessageHistory> chain = getMessageHistoryChain(previous);
+                if (!chain.isEmpty() && chain.size() < historyKeyframeInterval) {
+                    JsonNode previousSnapshot = reconstructSnapshot(jsonMapper, chain);
+                    JsonNode patch = JsonPatchUtils.diff(previousSnapshot, jsonMapper.readTree(snapshot));
+                    hist.compressSnapshot(jsonMapper.writeValueAsString(patch));
+                    hist.setDelta(true);
+                }
+            }
 
             saveEntity(hist);
 
@@ -1453,19 +1524,134 @@ public class MessageService extends BaseService {
         }
     }
 
+
     /**
-     * Returns the message history for the given message ID
+     * Returns a page of the message history for the given message ID, sorted with the latest entry first.
+     * <p>
+     * The snapshots are not included in the result.
+     * Use {@code getMessageHistorySnapshot()} to fetch the snapshot of a specific history entry.
      *
      * @param messageId the message ID
+     * @param page the page index
+     * @param maxSize the max number of history entries to return
      * @return the message history
      */
-    public List<MessageHistory> getMessageHistory(Integer messageId) {
+    public PagedSearchResultVo<MessageHistoryVo> getMessageHistory(Integer messageId, int page, int maxSize) {
+
+        PagedSearchResultVo<MessageHistoryVo> result = new PagedSearchResultVo<>();
+        result.setTotal(em.createNamedQuery("MessageHistory.countByMessageId", Long.class)
+                .setParameter("messageId", messageId)
+                .getSingleResult());
+        result.setSize(maxSize);
+
+        List<Object[]> rows = em.createNamedQuery("MessageHistory.findMetadataByMessageId", Object[].class)
+                .setParameter("messageId", messageId)
+                .setFirstResult(page * maxSize)
+                .setMaxResults(maxSize)
+                .getResultList();
+        for (Object[] row : rows) {
+            MessageHistoryVo hist = new MessageHistoryVo();
+            hist.setId((Integer) row[0]);
+            hist.setMessageId(messageId);
+            hist.setStatus((Status) row[1]);
+            if (row[2] != null) {
+                hist.setUser(((User) row[2]).getName());
+            }
+            hist.setVersion((Integer) row[3]);
+            hist.setCreated((Date) row[4]);
+            result.getData().add(hist);
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the history entry with the given ID with the full, reconstructed message snapshot
+     *
+     * @param messageId the message ID
+     * @param historyId the ID of the history entry
+     * @return the history entry with the full snapshot, or null if not found
+     */
+    public MessageHistoryVo getMessageHistorySnapshot(Integer messageId, Integer historyId) {
+        MessageHistory hist = getByPrimaryKey(MessageHistory.class, historyId);
+        if (hist == null || !Objects.equals(hist.getMessage().getId(), messageId)) {
+            return null;
+        }
+
+        MessageHistoryVo result = hist.toVo();
+        try {
+            ObjectMapper jsonMapper = historyJsonMapper();
+            JsonNode snapshot = reconstructSnapshot(jsonMapper, getMessageHistoryChain(hist));
+            result.setSnapshot(jsonMapper.writeValueAsString(snapshot));
+        } catch (Exception e) {
+            log.error("Error reconstructing history entry " + historyId + " for message " + messageId, e);
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the latest history entry for the given message, or null if none exists.
+     * <p>
+     * The latest entry is the one with the highest ID, since the delta chains are also resolved by ID.
+     */
+    protected MessageHistory getLatestMessageHistory(Integer messageId) {
         return em.createNamedQuery("MessageHistory.findByMessageId", MessageHistory.class)
                 .setParameter("messageId", messageId)
+                .setMaxResults(1)
+                .getResultList()
+                .stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+
+    /**
+     * Returns the history entries needed to reconstruct the snapshot of the given history entry,
+     * i.e. the preceding keyframe and all subsequent deltas up to and including the history entry.
+     */
+    protected List<MessageHistory> getMessageHistoryChain(MessageHistory hist) {
+        if (hist.isKeyframe()) {
+            return Collections.singletonList(hist);
+        }
+
+        Integer messageId = hist.getMessage().getId();
+        Integer keyframeId = em.createNamedQuery("MessageHistory.findKeyframeId", Integer.class)
+                .setParameter("messageId", messageId)
+                .setParameter("id", hist.getId())
+                .getSingleResult();
+        if (keyframeId == null) {
+            return Collections.emptyList();
+        }
+        return em.createNamedQuery("MessageHistory.findRange", MessageHistory.class)
+                .setParameter("messageId", messageId)
+                .setParameter("fromId", keyframeId)
+                .setParameter("toId", hist.getId())
                 .getResultList();
     }
 
 
+    /** Reconstructs the snapshot by applying the deltas of the chain to the initial keyframe **/
+    private JsonNode reconstructSnapshot(ObjectMapper jsonMapper, List<MessageHistory> chain) throws IOException {
+        if (chain.isEmpty() || !chain.get(0).isKeyframe()) {
+            throw new IOException("History chain does not start with a keyframe");
+        }
+        JsonNode snapshot = jsonMapper.readTree(chain.get(0).decompressSnapshot());
+        for (MessageHistory delta : chain.subList(1, chain.size())) {
+            snapshot = JsonPatchUtils.apply(snapshot, jsonMapper.readTree(delta.decompressSnapshot()));
+        }
+        return snapshot;
+    }
+
+
+    /** Returns the JSON mapper used for message history snapshots **/
+    private ObjectMapper historyJsonMapper() {
+        ObjectMapper jsonMapper = new ObjectMapper();
+        jsonMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false); // Use ISO-8601 format
+        return jsonMapper;
+    }
+
+
     /**
      * Returns the messages most recently edited by the current user
      * within the last month
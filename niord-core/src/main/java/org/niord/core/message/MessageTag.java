@@ -16,6 +16,7 @@
 package org.niord.core.message;
 
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.Hibernate;
 import org.niord.core.domain.Domain;
 import org.niord.core.message.vo.MessageTagVo;
 import org.niord.core.message.vo.MessageTagVo.MessageTagType;
@@ -27,6 +28,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQueries;
@@ -61,12 +64,21 @@ import java.util.UUID;
                 query="SELECT t FROM MessageTag t where t.tagId in (:tagIds)"),
         @NamedQuery(name= "MessageTag.findTagsByMessageUid",
                 query="SELECT t FROM MessageTag t join t.messages m where m.uid = :messageUid and t.type <> 'TEMP'"),
+        @NamedQuery(name= "MessageTag.findMemberIds",
+                query="SELECT m.id FROM MessageTag t join t.messages m where t.id = :tagId and m.id in (:ids)"),
+        @NamedQuery(name= "MessageTag.addToMessageCount",
+                query="UPDATE MessageTag t set t.messageCount = t.messageCount + :delta where t.id = :tagId"),
+        @NamedQuery(name= "MessageTag.resetMessageCount",
+                query="UPDATE MessageTag t set t.messageCount = 0 where t.id = :tagId"),
         @NamedQuery(name= "MessageTag.findExpiredMessageTags",
                 query="SELECT t FROM MessageTag t where t.expiryDate is not null and t.expiryDate < current_timestamp"),
 })
 @SuppressWarnings("unused")
 public class MessageTag extends VersionedEntity<Integer> implements Comparable<MessageTag> {
 
+    // NB: The join table is updated directly by MessageTagService when adding or removing messages
+    public static final String MESSAGE_JOIN_TABLE = "MessageTag_Message";
+
     @Column(unique = true, nullable = false)
     String tagId;
 
@@ -87,6 +99,9 @@ public class MessageTag extends VersionedEntity<Integer> implements Comparable<M
     Date expiryDate;
 
     @ManyToMany
+    @JoinTable(name = MESSAGE_JOIN_TABLE,
+            joinColumns = @JoinColumn(name = "MessageTag_id"),
+            inverseJoinColumns = @JoinColumn(name = "messages_id"))
     List<Message> messages = new ArrayList<>();
 
     // Weak lock mechanism used by UI to prevent changes
@@ -145,7 +160,10 @@ public class MessageTag extends VersionedEntity<Integer> implements Comparable<M
         if (StringUtils.isBlank(name)) {
             name = UUID.randomUUID().toString();
         }
-        messageCount = messages.size();
+        // Avoid loading the messages of an existing tag just to count them
+        if (Hibernate.isInitialized(messages)) {
+            messageCount = messages.size();
+        }
     }
 
 
@@ -228,4 +246,8 @@ public class MessageTag extends VersionedEntity<Integer> implements Comparable<M
     public int getMessageCount() {
         return messageCount;
     }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the changes to the membership of a message tag.
+ * <p>
+ * The members are kept as a set of message IDs, so checking the membership of a message is a
+ * constant-time operation regardless of the size of the tag. Only the message IDs relevant
+ * for the operation at hand need to be loaded, rather than the full message collection of the tag.
+ */
+public class MessageTagMembership {
+
+    private final Set<Integer> memberIds;
+
+    /**
+     * Constructor
+     *
+     * @param memberIds the IDs of the messages currently in the tag
+     */
+    public MessageTagMembership(Collection<Integer> memberIds) {
+        this.memberIds = new HashSet<>(memberIds);
+    }
+
+
+    /**
+     * Returns if the message with the given ID is a member of the tag
+     *
+     * @param messageId the message ID
+     * @return if the message is a member of the tag
+     */
+    public boolean isMember(Integer messageId) {
+        return memberIds.contains(messageId);
+    }
+
+
+    /**
+     * Adds the given message IDs to the membership and returns the ones that were not already members.
+     * The order of the message IDs is preserved and duplicates are ignored.
+     *
+     * @param messageIds the message IDs to add
+     * @return the message IDs that were added
+     */
+    public List<Integer> add(Collection<Integer> messageIds) {
+        List<Integer> added = new ArrayList<>();
+        for (Integer messageId : messageIds) {
+            if (messageId != null && memberIds.add(messageId)) {
+                added.add(messageId);
+            }
+        }
+        return added;
+    }
+
+
+    /**
+     * Removes the given message IDs from the membership and returns the ones that were members.
+     * The order of the message IDs is preserved and duplicates are ignored.
+     *
+     * @param messageIds the message IDs to remove
+     * @return the message IDs that were removed
+     */
+    public List<Integer> remove(Collection<Integer> messageIds) {
+        List<Integer> removed = new ArrayList<>();
+        for (Integer messageId : messageIds) {
+            if (messageId != null && memberIds.remove(messageId)) {
+                removed.add(messageId);
+            }
+        }
+        return removed;
+    }
+}
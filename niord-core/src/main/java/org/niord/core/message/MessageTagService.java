@@ -17,6 +17,7 @@ package org.niord.core.message;
 
 import io.quarkus.scheduler.Scheduled;
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.Session;
 import org.niord.core.db.CriteriaHelper;
 import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
@@ -31,6 +32,7 @@ import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.criteria.*;
 import jakarta.transaction.Transactional;
+import java.sql.PreparedStatement;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -50,6 +52,8 @@ public class MessageTagService extends BaseService {
 
     public static final int TEMP_TAG_EXPIRY_MINUTES = 5; // 5 minutes
 
+    public static final int MEMBERSHIP_BATCH_SIZE = 1000;
+
     @Inject
     Logger log;
 
@@ -379,9 +383,13 @@ public class MessageTagService extends BaseService {
         MessageTag original = findTag(tagId);
         if (original != null) {
             log.info("Clearing message tag " + tagId);
-            original.getMessages().clear();
-            original.updateMessageCount();
-            saveEntity(original);
+            em.createNativeQuery("DELETE FROM " + MessageTag.MESSAGE_JOIN_TABLE + " WHERE MessageTag_id = :tagId")
+                    .setParameter("tagId", original.getId())
+                    .executeUpdate();
+            em.createNamedQuery("MessageTag.resetMessageCount")
+                    .setParameter("tagId", original.getId())
+                    .executeUpdate();
+            em.refresh(original);
             return true;
         }
         return false;
@@ -401,17 +409,9 @@ public class MessageTagService extends BaseService {
             throw new IllegalArgumentException("No message tag with ID " + tagId);
         }
 
-        int prevMsgCnt = tag.getMessages().size();
-        for (Message message : messagesForUids(messageUids)) {
-            if (!tag.getMessages().contains(message)) {
-                tag.getMessages().add(message);
-            }
-        }
-
-        if (tag.getMessages().size() != prevMsgCnt) {
-            tag.updateMessageCount();
-            tag = saveEntity(tag);
-            log.info("Added " + (tag.getMessages().size() - prevMsgCnt) + " messages to tag " + tag.getName());
+        int added = addMessageIdsToTag(tag, messageIdsForUids(messageUids));
+        if (added > 0) {
+            log.info("Added " + added + " messages to tag " + tag.getName());
         }
 
         return tag;
@@ -431,17 +431,9 @@ public class MessageTagService extends BaseService {
             throw new IllegalArgumentException("No message tag with ID " + tagId);
         }
 
-        int prevMsgCnt = tag.getMessages().size();
-        for (Message message : messagesForUids(messageUids)) {
-            if (tag.getMessages().contains(message)) {
-                tag.getMessages().remove(message);
-            }
-        }
-
-        if (tag.getMessages().size() != prevMsgCnt) {
-            tag.updateMessageCount();
-            tag = saveEntity(tag);
-            log.info("Removed " + (prevMsgCnt - tag.getMessages().size()) + " messages from tag " + tag.getName());
+        int removed = removeMessageIdsFromTag(tag, messageIdsForUids(messageUids));
+        if (removed > 0) {
+            log.info("Removed " + removed + " messages from tag " + tag.getName());
         }
 
         return tag;
@@ -463,6 +455,147 @@ public class MessageTagService extends BaseService {
                 .getResultList();
     }
 
+    /**
+     * Returns the IDs of the messages with the given UIDs
+     *
+     * @param uids the list of message UIDs
+     * @return the IDs of the messages with the given UIDs
+     */
+    public List<Integer> messageIdsForUids(List<String> uids) {
+        if (uids == null || uids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createNamedQuery("Message.findIdsByUids", Integer.class)
+                .setParameter("uids", uids)
+                .getResultList();
+    }
+
+
+    /**
+     * Returns the subset of the given message IDs that are members of the message tag.
+     * <p>
+     * Only the given message IDs are looked up, so the full message collection of the tag is never loaded.
+     *
+     * @param tag the message tag
+     * @param messageIds the message IDs to check
+     * @return the subset of the message IDs that are members of the message tag
+     */
+    public Set<Integer> findTagMemberIds(MessageTag tag, Collection<Integer> messageIds) {
+        Set<Integer> memberIds = new HashSet<>();
+        for (List<Integer> ids : partition(messageIds)) {
+            memberIds.addAll(em.createNamedQuery("MessageTag.findMemberIds", Integer.class)
+                    .setParameter("tagId", tag.getId())
+                    .setParameter("ids", ids)
+                    .getResultList());
+        }
+        return memberIds;
+    }
+
+
+    /**
+     * Adds the messages with the given IDs to the message tag.
+     * <p>
+     * Messages that are already members of the tag are skipped. The join table rows of the new members
+     * are inserted using a JDBC batch insert, and the message count of the tag is updated in a single update.
+     *
+     * @param tag the message tag
+     * @param messageIds the IDs of the messages to add
+     * @return the number of messages added to the tag
+     */
+    public int addMessageIdsToTag(MessageTag tag, Collection<Integer> messageIds) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return 0;
+        }
+
+        MessageTagMembership membership = new MessageTagMembership(findTagMemberIds(tag, messageIds));
+        List<Integer> added = membership.add(messageIds);
+        if (added.isEmpty()) {
+            return 0;
+        }
+
+        // Flush pending changes to the tag, such as a newly persisted tag, before inserting join table rows
+        em.flush();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "INSERT INTO " + MessageTag.MESSAGE_JOIN_TABLE + " (MessageTag_id, messages_id) VALUES (?, ?)")) {
+                for (List<Integer> ids : partition(added)) {
+                    for (Integer id : ids) {
+                        stmt.setInt(1, tag.getId());
+                        stmt.setInt(2, id);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            }
+        });
+
+        updateMessageCount(tag, added.size());
+        return added.size();
+    }
+
+
+    /**
+     * Removes the messages with the given IDs from the message tag.
+     * <p>
+     * The join table rows are deleted directly, and the message count of the tag is updated in a single update.
+     *
+     * @param tag the message tag
+     * @param messageIds the IDs of the messages to remove
+     * @return the number of messages removed from the tag
+     */
+    public int removeMessageIdsFromTag(MessageTag tag, Collection<Integer> messageIds) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return 0;
+        }
+
+        MessageTagMembership membership = new MessageTagMembership(findTagMemberIds(tag, messageIds));
+        List<Integer> removed = membership.remove(messageIds);
+        if (removed.isEmpty()) {
+            return 0;
+        }
+
+        em.flush();
+        for (List<Integer> ids : partition(removed)) {
+            em.createNativeQuery("DELETE FROM " + MessageTag.MESSAGE_JOIN_TABLE
+                    + " WHERE MessageTag_id = :tagId AND messages_id IN (:ids)")
+                    .setParameter("tagId", tag.getId())
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+        }
+
+        updateMessageCount(tag, -removed.size());
+        return removed.size();
+    }
+
+
+    /**
+     * Adds the given delta to the message count of the tag, and refreshes the tag entity,
+     * since the message collection of the tag has been updated directly in the database
+     */
+    private void updateMessageCount(MessageTag tag, int delta) {
+        em.createNamedQuery("MessageTag.addToMessageCount")
+                .setParameter("delta", delta)
+                .setParameter("tagId", tag.getId())
+                .executeUpdate();
+        if (em.contains(tag)) {
+            em.refresh(tag);
+        } else {
+            tag.setMessageCount(tag.getMessageCount() + delta);
+        }
+    }
+
+
+    /** Partitions the message IDs into lists of at most MEMBERSHIP_BATCH_SIZE elements **/
+    private static List<List<Integer>> partition(Collection<Integer> messageIds) {
+        List<Integer> ids = new ArrayList<>(messageIds);
+        List<List<Integer>> partitions = new ArrayList<>();
+        for (int x = 0; x < ids.size(); x += MEMBERSHIP_BATCH_SIZE) {
+            partitions.add(ids.subList(x, Math.min(ids.size(), x + MEMBERSHIP_BATCH_SIZE)));
+        }
+        return partitions;
+    }
+
+
     /**
      * Every hour, expired message tags will be removed
      */
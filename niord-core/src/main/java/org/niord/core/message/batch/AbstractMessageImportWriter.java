@@ -25,6 +25,9 @@ import org.niord.core.message.MessageTagService;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Base class for message import writers. Adds support for adding messages to tags based on the
@@ -35,14 +38,17 @@ public abstract class AbstractMessageImportWriter extends AbstractItemHandler {
     @Inject
     MessageTagService messageTagService;
 
+    private final List<Message> tagMessages = new ArrayList<>();
+
     /**
-     * If the message is not already added to the tag, add it.
+     * Registers the message for being added to the tag. The messages are added to the tag
+     * by a subsequent call to {@code saveMessageTag()}.
      * @param message the message to add
      * @param tag the tag, or null if undefined.
      */
     protected MessageTag checkAddMessageToTag(Message message, MessageTag tag) {
-        if (tag != null && !tag.getMessages().stream().anyMatch(m -> m.getId().equals(message.getId()))) {
-            tag.getMessages().add(message);
+        if (tag != null) {
+            tagMessages.add(message);
             message.getTags().add(tag);
         }
         return tag;
@@ -50,16 +56,21 @@ public abstract class AbstractMessageImportWriter extends AbstractItemHandler {
 
 
     /**
-     * Updates the message tag and persists it
+     * Adds the registered messages to the message tag.
+     * <p>
+     * Only the join table rows of the messages not already in the tag are inserted,
+     * so the full message collection of the tag is never loaded or re-written.
      * @param tag the tag, or null if undefined.
      */
     @Transactional
     protected MessageTag saveMessageTag(MessageTag tag) {
-        if (tag != null) {
-            tag.updateMessageCount();
-            tag = messageTagService.saveEntity(tag);
-            getLog().info(String.format("Updated tag '%s' with messages", tag.getTagId()));
+        if (tag != null && !tagMessages.isEmpty()) {
+            int added = messageTagService.addMessageIdsToTag(
+                    tag,
+                    tagMessages.stream().map(Message::getId).collect(Collectors.toList()));
+            getLog().info(String.format("Updated tag '%s' with %d messages", tag.getTagId(), added));
         }
+        tagMessages.clear();
         return tag;
     }
 
@@ -67,6 +78,9 @@ public abstract class AbstractMessageImportWriter extends AbstractItemHandler {
     /** Looks up and caches the message tag associated with the batch job */
     protected MessageTag getMessageTag() throws IOException {
 
+        // Called at the start of each chunk, so discard messages registered by a failed chunk
+        tagMessages.clear();
+
         String tagId = (String)job.getProperties().get("tagId");
         if (StringUtils.isBlank(tagId)) {
             return null;
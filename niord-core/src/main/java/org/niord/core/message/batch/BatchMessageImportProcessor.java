@@ -16,13 +16,7 @@
 package org.niord.core.message.batch;
 
 import org.apache.commons.lang.StringUtils;
-import org.niord.core.area.Area;
-import org.niord.core.area.AreaService;
 import org.niord.core.batch.AbstractItemHandler;
-import org.niord.core.category.Category;
-import org.niord.core.category.CategoryService;
-import org.niord.core.chart.Chart;
-import org.niord.core.chart.ChartService;
 import org.niord.core.message.Message;
 import org.niord.core.message.MessageSeries;
 import org.niord.core.message.MessageSeriesService;
@@ -35,8 +29,8 @@ import org.niord.model.message.Status;
 import jakarta.enterprise.context.Dependent;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Processes imported messages.
@@ -53,6 +47,8 @@ public class BatchMessageImportProcessor extends AbstractItemHandler {
             .editable(true)
             .web(false);
 
+    /** Serializes the creation of base data across the partitions of partitioned message imports **/
+    private static final Lock BASE_DATA_LOCK = new ReentrantLock();
 
     @Inject
     protected MessageService messageService;
@@ -64,13 +60,7 @@ public class BatchMessageImportProcessor extends AbstractItemHandler {
     SettingsService settingsService;
 
     @Inject
-    AreaService areaService;
-
-    @Inject
-    CategoryService categoryService;
-
-    @Inject
-    ChartService chartService;
+    MessageImportBaseDataService baseDataService;
 
     MessageSeries defaultMessageSeries;
 
@@ -105,35 +95,8 @@ public class BatchMessageImportProcessor extends AbstractItemHandler {
                 messageSeriesService.updateMessageIdsFromMessageSeries(message, false);
             }
 
-            // Make sure areas are created
-            List<Area> areas = new ArrayList<>();
-            for (Area area : message.getAreas()) {
-                area = areaService.importArea(area, true, false);
-                if (area != null) {
-                    areas.add(area);
-                }
-            }
-            message.setAreas(areas);
-
-            // Make sure categories are created
-            List<Category> categories = new ArrayList<>();
-            for (Category category : message.getCategories()) {
-                category = categoryService.importCategory(category, true, false);
-                if (category != null) {
-                    categories.add(category);
-                }
-            }
-            message.setCategories(categories);
-
-            // Make sure charts are created
-            List<Chart> charts = new ArrayList<>();
-            for (Chart chart : message.getCharts()) {
-                chart = chartService.importChart(chart, true, false);
-                if (chart != null) {
-                    charts.add(chart);
-                }
-            }
-            message.setCharts(charts);
+            // Make sure areas, categories and charts are created
+            importBaseData(message);
 
             getLog().info("Processed message " + message);
             return message;
@@ -144,6 +107,25 @@ public class BatchMessageImportProcessor extends AbstractItemHandler {
         }
     }
 
+    /**
+     * Ensures that the areas, categories and charts of the message are created.
+     * <p>
+     * When the import is partitioned, the partitions may share base data. The base data is then
+     * created in a separate transaction, one partition at a time.
+     */
+    protected void importBaseData(Message message) {
+        if (isPartitioned()) {
+            BASE_DATA_LOCK.lock();
+            try {
+                baseDataService.importBaseDataInNewTransaction(message);
+            } finally {
+                BASE_DATA_LOCK.unlock();
+            }
+        } else {
+            baseDataService.importBaseData(message);
+        }
+    }
+
     /**
      * If the message series is not defined for the message, it may either have been defined
      * by the "seriesId" batch property, or the "batchMessageSeriesId" system setting
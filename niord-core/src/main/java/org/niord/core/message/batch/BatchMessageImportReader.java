@@ -152,20 +152,37 @@ public class BatchMessageImportReader extends AbstractItemHandler {
     /** {@inheritDoc} **/
     @Override
     public Object readItem() throws Exception {
-        if (messageNo < messages.size()) {
+        while (messageNo < messages.size()) {
 
             // Every now and then, update the progress
             if (messageNo % 10 == 0) {
                 updateProgress((int)(100.0 * messageNo / messages.size()));
             }
 
-            getLog().info("Reading message no " + messageNo);
-            return messages.get(messageNo++);
+            // When partitioned, all messages of a message series are read by the same partition
+            SystemMessageVo message = messages.get(messageNo);
+            if (inPartition(partitionKey(message))) {
+                getLog().info("Reading message no " + messageNo);
+                messageNo++;
+                return message;
+            }
+            messageNo++;
         }
         return null;
     }
 
 
+    /**
+     * Returns the key used for assigning the message to a partition, i.e. the ID of the message series.
+     * Messages without a message series are imported into the "seriesId" message series of the batch job.
+     **/
+    protected Object partitionKey(SystemMessageVo message) {
+        return message.getMessageSeries() != null
+                ? message.getMessageSeries().getSeriesId()
+                : job.getProperties().get("seriesId");
+    }
+
+
     /** {@inheritDoc} **/
     @Override
     public Serializable checkpointInfo() throws Exception {
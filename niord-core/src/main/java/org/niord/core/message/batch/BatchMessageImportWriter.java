@@ -15,6 +15,7 @@
  */
 package org.niord.core.message.batch;
 
+import org.hibernate.Session;
 import org.niord.core.message.Message;
 import org.niord.core.message.MessageService;
 import org.niord.core.message.MessageTag;
@@ -22,6 +23,7 @@ import org.niord.core.message.MessageTag;
 import jakarta.enterprise.context.Dependent;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
 import java.util.List;
 
 /**
@@ -34,18 +36,24 @@ public class BatchMessageImportWriter extends AbstractMessageImportWriter {
     @Inject
     MessageService messageService;
 
+    @Inject
+    EntityManager em;
+
     /** {@inheritDoc} **/
     @Override
     public void writeItems(List<Object> items) throws Exception {
         long t0 = System.currentTimeMillis();
 
+        // Flush the messages of the chunk at once, allowing the inserts to be batched
+        em.unwrap(Session.class).setJdbcBatchSize(Math.max(1, items.size()));
+
         MessageTag tag = getMessageTag();
 
         for (Object i : items) {
             Message message = (Message)i;
 
             if (message.isNew()) {
-                messageService.createMessage(message);
+                messageService.createMessage(message, false);
             } else {
                 messageService.saveMessage(message);
             }
@@ -54,6 +62,8 @@ public class BatchMessageImportWriter extends AbstractMessageImportWriter {
             tag = checkAddMessageToTag(message, tag);
         }
 
+        em.flush();
+
         // Update and save the message tag
         saveMessageTag(tag);
 
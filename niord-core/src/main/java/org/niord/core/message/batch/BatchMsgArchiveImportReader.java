@@ -15,36 +15,39 @@
  */
 package org.niord.core.message.batch;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.batch.AbstractItemHandler;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.core.repo.RepositoryService;
-import org.niord.model.search.PagedSearchResultVo;
+import org.niord.core.util.JsonArrayStreamReader;
 
 import jakarta.enterprise.context.Dependent;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * Imports a list of messages from a zip file containing a messages.json file along with message attachments.
  * <p>
+ * The archive is extracted in parallel, after which the messages are streamed one at a time from
+ * the messages.json file, so the memory consumption does not depend on the number of messages.
+ * <p>
  * Please note, the actual msg-archive-import.xml job file is not placed in the META-INF/batch-jobs of this project,
  * but rather, in the META-INF/batch-jobs folder of the niord-web project.<br>
  * This is because of a class-loading bug in the Wildfly implementation. See e.g.
@@ -77,11 +80,16 @@ import java.util.zip.ZipFile;
 @Named("batchMsgArchiveImportReader")
 public class BatchMsgArchiveImportReader extends AbstractItemHandler {
 
-    List<ExtractedArchiveMessageVo> messages;
-    int messageNo = 0;
+    /** The max number of threads used for extracting the archive **/
+    static final int EXTRACT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    protected JsonArrayStreamReader<SystemMessageVo> messages;
+    protected String tempArchiveRepoPath;
+    protected int messageCount;
+    protected int messageNo = 0;
 
     @Inject
-    RepositoryService repositoryService;
+    protected RepositoryService repositoryService;
 
 
     /** {@inheritDoc} **/
@@ -94,28 +102,43 @@ public class BatchMsgArchiveImportReader extends AbstractItemHandler {
             throw new Exception("Missing seriesId batch property");
         }
 
-        // Extract the zip archive and get hold of the messages
+        // Extract the zip archive and open a stream to the messages
         messages = extractMessageArchive();
 
         if (prevCheckpointInfo != null) {
-            messageNo = (Integer) prevCheckpointInfo;
+            messageNo = messages.skip((Integer) prevCheckpointInfo);
         }
 
-        getLog().info("Start processing " + messages.size() + " messages from index " + messageNo);
+        getLog().info("Start processing " + messageCount + " messages from index " + messageNo);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void close() throws Exception {
+        if (messages != null) {
+            messages.close();
+            messages = null;
+        }
     }
 
 
-    /** Extracts the message archive and reads in the batch import messages */
-    protected List<ExtractedArchiveMessageVo> extractMessageArchive() throws Exception {
+    /**
+     * Extracts the message archive and returns a stream reader for the batch import messages.
+     * <p>
+     * The messages are read one at a time from the extracted messages.json file, rather
+     * than all being loaded into memory.
+     */
+    protected JsonArrayStreamReader<SystemMessageVo> extractMessageArchive() throws Exception {
 
-        // Default implementation reads the messages from a message.json batch file
-        Path path = batchService.getBatchJobDataFile(jobContext.getInstanceId());
+        Path path = getMessageArchiveFile();
 
         // Extract the archive into a temporary repository path
-        String tempArchiveRepoPath = repositoryService.getNewTempDir().getPath();
+        tempArchiveRepoPath = repositoryService.getNewTempDir().getPath();
         Path dest = repositoryService.getRepoRoot().resolve(tempArchiveRepoPath);
+        long t0 = System.currentTimeMillis();
         extractMessageArchive(path, dest);
-        getLog().info("Extracted message archive to " + dest);
+        getLog().info("Extracted message archive to " + dest + " in " + (System.currentTimeMillis() - t0) + " ms");
 
         // Fetch the messages.json from the root of the extracted archive
         Path messageFilePath = dest.resolve("messages.json");
@@ -124,37 +147,40 @@ public class BatchMsgArchiveImportReader extends AbstractItemHandler {
             throw new Exception("No valid messages.json file found in the archive");
         }
 
-        // Read the messages.json file
-        PagedSearchResultVo<SystemMessageVo> messages;
+        // Count the messages and open the messages.json file for streaming
         try {
             ObjectMapper mapper = new ObjectMapper();
-            messages = mapper.readValue(
-                    messageFilePath.toFile(),
-                    new TypeReference<PagedSearchResultVo<SystemMessageVo>>() {});
+            messageCount = JsonArrayStreamReader.count(mapper, messageFilePath, "data");
+            return new JsonArrayStreamReader<>(mapper, messageFilePath, "data", SystemMessageVo.class);
         } catch (IOException e) {
             getLog().log(Level.SEVERE, "Invalid messages.json file");
             throw new Exception("Invalid messages.json file");
         }
+    }
+
 
-        // Wrap the messages as ExtractedArchiveMessageVo with the "editRepoPath" pointing to the extracted archive
-        return messages.getData().stream()
-                .map(m -> new ExtractedArchiveMessageVo(m, tempArchiveRepoPath + "/" + m.getRepoPath()))
-                .collect(Collectors.toList());
+    /** Returns the message archive zip file uploaded for the batch job **/
+    protected Path getMessageArchiveFile() {
+        return batchService.getBatchJobDataFile(jobContext.getInstanceId());
     }
 
 
     /** {@inheritDoc} **/
     @Override
     public Object readItem() throws Exception {
-        if (messageNo < messages.size()) {
+        SystemMessageVo message = messages.next();
+        if (message != null) {
 
             // For every 5 read messages, update the progress
-            if (messageNo % 5 == 0) {
-                updateProgress((int)(100.0 * messageNo / messages.size()));
+            if (messageNo % 5 == 0 && messageCount > 0) {
+                updateProgress((int)(100.0 * messageNo / messageCount));
             }
 
             getLog().info("Reading message no " + messageNo);
-            return messages.get(messageNo++);
+            messageNo++;
+
+            // Wrap the message as ExtractedArchiveMessageVo with the "editRepoPath" pointing to the extracted archive
+            return new ExtractedArchiveMessageVo(message, tempArchiveRepoPath + "/" + message.getRepoPath());
         }
         return null;
     }
@@ -167,24 +193,46 @@ public class BatchMsgArchiveImportReader extends AbstractItemHandler {
     }
 
 
-    /** Utility method that extracts the given zip file to a given destination **/
-    @SuppressWarnings("all")
-    private void extractMessageArchive(Path path, Path destination) throws IOException {
+    /**
+     * Utility method that extracts the given zip file to a given destination.
+     * The file entries are extracted in parallel.
+     **/
+    private void extractMessageArchive(Path path, Path destination) throws Exception {
+        Path root = destination.normalize();
+        ExecutorService executor = Executors.newFixedThreadPool(EXTRACT_THREADS);
         try (ZipFile zipFile = new ZipFile(path.toFile())) {
+            List<Future<?>> tasks = new ArrayList<>();
             Enumeration<? extends ZipEntry> entries = zipFile.entries();
             while (entries.hasMoreElements()) {
                 ZipEntry entry = entries.nextElement();
-                File entryDestination = new File(destination.toFile(),  entry.getName());
+                Path entryDestination = root.resolve(entry.getName()).normalize();
+                if (!entryDestination.startsWith(root)) {
+                    getLog().warning("Skipping invalid zip entry " + entry.getName());
+                    continue;
+                }
                 if (entry.isDirectory()) {
-                    entryDestination.mkdirs();
+                    Files.createDirectories(entryDestination);
                 } else {
-                    entryDestination.getParentFile().mkdirs();
-                    try (InputStream in = zipFile.getInputStream(entry);
-                         OutputStream out = new FileOutputStream(entryDestination)) {
-                        IOUtils.copy(in, out);
-                    }
+                    tasks.add(executor.submit(() -> {
+                        Files.createDirectories(entryDestination.getParent());
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            Files.copy(in, entryDestination, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                        return null;
+                    }));
+                }
+            }
+
+            // Wait for all entries to be extracted
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException ? (IOException) e.getCause() : e;
                 }
             }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message.batch;
+
+import org.niord.core.area.Area;
+import org.niord.core.area.AreaService;
+import org.niord.core.category.Category;
+import org.niord.core.category.CategoryService;
+import org.niord.core.chart.Chart;
+import org.niord.core.chart.ChartService;
+import org.niord.core.message.Message;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ensures that the areas, categories and charts of imported messages are created.
+ * <p>
+ * When a message import is partitioned, the partitions may share base data. Hence, the base data must
+ * then be created in a separate transaction, serialized across partitions, using
+ * {@linkplain #importBaseDataInNewTransaction(Message)}. The resulting detached entities are substituted
+ * with the persisted ones by {@code MessageService.createMessage()}.
+ */
+@ApplicationScoped
+public class MessageImportBaseDataService {
+
+    @Inject
+    AreaService areaService;
+
+    @Inject
+    CategoryService categoryService;
+
+    @Inject
+    ChartService chartService;
+
+
+    /**
+     * Replaces the template areas, categories and charts of the message with persisted entities,
+     * creating the entities as needed
+     *
+     * @param message the message
+     */
+    @Transactional
+    public void importBaseData(Message message) {
+        doImportBaseData(message);
+    }
+
+
+    /**
+     * Replaces the template areas, categories and charts of the message with persisted entities,
+     * creating and committing the entities in a new transaction
+     *
+     * @param message the message
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void importBaseDataInNewTransaction(Message message) {
+        doImportBaseData(message);
+    }
+
+
+    /** Replaces the template areas, categories and charts of the message with persisted entities **/
+    private void doImportBaseData(Message message) {
+
+        // Make sure areas are created
+        List<Area> areas = new ArrayList<>();
+        for (Area area : message.getAreas()) {
+            area = areaService.importArea(area, true, false);
+            if (area != null) {
+                areas.add(area);
+            }
+        }
+        message.setAreas(areas);
+
+        // Make sure categories are created
+        List<Category> categories = new ArrayList<>();
+        for (Category category : message.getCategories()) {
+            category = categoryService.importCategory(category, true, false);
+            if (category != null) {
+                categories.add(category);
+            }
+        }
+        message.setCategories(categories);
+
+        // Make sure charts are created
+        List<Chart> charts = new ArrayList<>();
+        for (Chart chart : message.getCharts()) {
+            chart = chartService.importChart(chart, true, false);
+            if (chart != null) {
+                charts.add(chart);
+            }
+        }
+        message.setCharts(charts);
+    }
+}
@@ -26,6 +26,7 @@ import java.util.Date;
 @SuppressWarnings("unused")
 public class MessageHistoryVo implements IJsonSerializable {
 
+    Integer id;
     Integer messageId;
     Status status;
     String user;
@@ -37,6 +38,14 @@ public class MessageHistoryVo implements IJsonSerializable {
     /** Getters and Setters **/
     /*************************/
 
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
     public Integer getMessageId() {
         return messageId;
     }
@@ -552,43 +552,52 @@ public class PublicationService extends BaseService {
         List<Message> messages = messageService.search(params).getData();
 
         // For each message, check if it should be included in the associated message tag
-        messages.forEach(m -> checkMessageForRecordingPublication(publication, m, PHASE_START_RECORDING));
+        checkMessagesForRecordingPublication(publication, messages, PHASE_START_RECORDING);
     }
 
 
     /**
-     * Check if the message should be assigned to the associated message tag of the recording publication
+     * Check if the messages should be assigned to the associated message tag of the recording publication
      * @param publication the publication
-     * @param message the message
+     * @param messages the messages
      * @param phase the phase
      */
-    private void checkMessageForRecordingPublication(Publication publication, Message message, String phase) {
+    private void checkMessagesForRecordingPublication(Publication publication, List<Message> messages, String phase) {
 
         MessageTag tag = publication.getMessageTag();
-        boolean isIncluded = tag.getMessages().contains(message);
-
-        // "data" parameter for the message tag filter function
-        Map<String, Object> data = new HashMap<>();
-        data.put("phase", phase);
-        data.put("isIncluded", isIncluded);
+        Set<Integer> memberIds = messageTagService.findTagMemberIds(
+                tag,
+                messages.stream().map(Message::getId).collect(Collectors.toList()));
 
         // Determine the message tag filter to test
         String messageTagFilter = StringUtils.defaultIfBlank(
                 publication.getMessageTagFilter(),
                 DEFAULT_MESSAGE_TAG_FILTER);
 
-        // Check if the message should be included in the associated message tag
-        boolean includeMessage = messageScriptFilterService.includeMessage(messageTagFilter, message, data);
-
-        if (includeMessage && !isIncluded) {
-            tag.getMessages().add(message);
-            tag.updateMessageCount();
-            log.info("Added message " + message.getUid() + " to tag: " + tag.getName());
-        } else if (!includeMessage && isIncluded) {
-            tag.getMessages().remove(message);
-            tag.updateMessageCount();
-            log.info("Removed message " + message.getUid() + " from tag: " + tag.getName());
+        List<Integer> addedIds = new ArrayList<>();
+        List<Integer> removedIds = new ArrayList<>();
+        for (Message message : messages) {
+            boolean isIncluded = memberIds.contains(message.getId());
+
+            // "data" parameter for the message tag filter function
+            Map<String, Object> data = new HashMap<>();
+            data.put("phase", phase);
+            data.put("isIncluded", isIncluded);
+
+            // Check if the message should be included in the associated message tag
+            boolean includeMessage = messageScriptFilterService.includeMessage(messageTagFilter, message, data);
+
+            if (includeMessage && !isIncluded) {
+                addedIds.add(message.getId());
+                log.info("Adding message " + message.getUid() + " to tag: " + tag.getName());
+            } else if (!includeMessage && isIncluded) {
+                removedIds.add(message.getId());
+                log.info("Removing message " + message.getUid() + " from tag: " + tag.getName());
+            }
         }
+
+        messageTagService.addMessageIdsToTag(tag, addedIds);
+        messageTagService.removeMessageIdsFromTag(tag, removedIds);
     }
 
 
@@ -606,7 +615,7 @@ public class PublicationService extends BaseService {
 
         // Find publications that are recording messages, and check them against their filter
         for (Publication publication : findRecordingPublications(message.getMessageSeries())) {
-            checkMessageForRecordingPublication(publication, message, PHASE_MESSAGE_STATUS_CHANGE);
+            checkMessagesForRecordingPublication(publication, Collections.singletonList(message), PHASE_MESSAGE_STATUS_CHANGE);
         }
     }
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.repo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Defines an inclusive byte range of a file, as requested via the HTTP "Range" header.
+ */
+public class ByteRange {
+
+    /** The max number of ranges accepted in a "Range" header **/
+    public static final int MAX_RANGES = 16;
+
+    final long start;
+    final long end;
+
+
+    /**
+     * Constructor
+     *
+     * @param start the first byte position
+     * @param end the last byte position, inclusive
+     */
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+
+    /**
+     * Parses the value of a "Range" header for a file of the given length.
+     * <p>
+     * Returns null if the header is undefined or invalid, in which case the header should be ignored and the
+     * entire file returned. Returns an empty list if none of the ranges can be satisfied.
+     * Overlapping and adjacent ranges are coalesced.
+     *
+     * @param header the "Range" header value
+     * @param length the length of the file
+     * @return the byte ranges, or null if the header is undefined or invalid
+     */
+    public static List<ByteRange> parse(String header, long length) {
+        if (header == null || !header.trim().toLowerCase().startsWith("bytes=")) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : header.trim().substring("bytes=".length()).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String from = spec.substring(0, dash).trim();
+                String to = spec.substring(dash + 1).trim();
+                if (from.isEmpty()) {
+                    // Suffix range, i.e. the last N bytes
+                    long suffixLength = Long.parseLong(to);
+                    if (suffixLength < 0) {
+                        return null;
+                    } else if (suffixLength > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffixLength), length - 1));
+                    }
+                } else {
+                    long start = Long.parseLong(from);
+                    long end = to.isEmpty() ? Long.MAX_VALUE : Long.parseLong(to);
+                    if (start < 0 || end < start) {
+                        return null;
+                    } else if (start < length) {
+                        ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        ranges = coalesce(ranges);
+        return ranges.size() > MAX_RANGES ? null : ranges;
+    }
+
+
+    /** Coalesces overlapping and adjacent ranges **/
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> result = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (ByteRange range : sorted.subList(1, sorted.size())) {
+            if (range.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, range.end));
+            } else {
+                result.add(current);
+                current = range;
+            }
+        }
+        result.add(current);
+        return result.size() == ranges.size() ? ranges : result;
+    }
+
+
+    /**
+     * Returns the value of the "Content-Range" header for this range of a file with the given length
+     *
+     * @param length the length of the file
+     * @return the "Content-Range" header value
+     */
+    public String toContentRange(long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+
+    /** Returns the number of bytes in the range **/
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
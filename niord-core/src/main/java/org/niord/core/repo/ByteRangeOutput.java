@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.repo;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streams one or more byte ranges of a file.
+ * <p>
+ * The bytes are transferred using {@code FileChannel.transferTo()}, which avoids copying the file via
+ * the Java heap where the target channel supports it. Multiple ranges are streamed as a "multipart/byteranges" body.
+ */
+public class ByteRangeOutput implements StreamingOutput {
+
+    private static final String CRLF = "\r\n";
+
+    private final Path file;
+    private final long fileLength;
+    private final List<ByteRange> ranges;
+    private final String contentType;
+    private final String boundary;
+
+
+    /**
+     * Constructor
+     *
+     * @param file the file to stream
+     * @param fileLength the length of the file
+     * @param ranges the byte ranges to stream
+     * @param contentType the content type of the file
+     */
+    public ByteRangeOutput(Path file, long fileLength, List<ByteRange> ranges, String contentType) {
+        this.file = file;
+        this.fileLength = fileLength;
+        this.ranges = ranges;
+        this.contentType = contentType;
+        this.boundary = ranges.size() > 1 ? UUID.randomUUID().toString().replace("-", "") : null;
+    }
+
+
+    /**
+     * Returns an output that streams the entire file
+     *
+     * @param file the file to stream
+     * @param fileLength the length of the file
+     * @param contentType the content type of the file
+     * @return the output
+     */
+    public static ByteRangeOutput entireFile(Path file, long fileLength, String contentType) {
+        List<ByteRange> ranges = fileLength > 0
+                ? Collections.singletonList(new ByteRange(0, fileLength - 1))
+                : Collections.emptyList();
+        return new ByteRangeOutput(file, fileLength, ranges, contentType);
+    }
+
+
+    /** Returns if the output is a "multipart/byteranges" body **/
+    public boolean isMultipart() {
+        return boundary != null;
+    }
+
+
+    /** Returns the content type of the response **/
+    public String getResponseContentType() {
+        return isMultipart() ? "multipart/byteranges; boundary=" + boundary : contentType;
+    }
+
+
+    /** Returns the "Content-Range" header value of a single-range response **/
+    public String getContentRange() {
+        return isMultipart() || ranges.isEmpty() ? null : ranges.get(0).toContentRange(fileLength);
+    }
+
+
+    /** Returns the exact number of bytes of the response **/
+    public long getContentLength() {
+        if (!isMultipart()) {
+            return ranges.stream().mapToLong(ByteRange::getLength).sum();
+        }
+        long length = 0;
+        for (ByteRange range : ranges) {
+            length += partHeader(range).length + range.getLength();
+        }
+        return length + partTrailer().length;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void write(OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (ByteRange range : ranges) {
+                if (isMultipart()) {
+                    out.write(partHeader(range));
+                }
+                transfer(channel, range, target);
+            }
+            if (isMultipart()) {
+                out.write(partTrailer());
+            }
+        }
+        out.flush();
+    }
+
+
+    /** Transfers the byte range of the file channel to the target channel **/
+    private void transfer(FileChannel channel, ByteRange range, WritableByteChannel target) throws IOException {
+        long position = range.getStart();
+        long remaining = range.getLength();
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new EOFException("File truncated while streaming " + file);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+
+    /** Returns the header preceding a range of a "multipart/byteranges" body **/
+    private byte[] partHeader(ByteRange range) {
+        return (CRLF + "--" + boundary + CRLF
+                + "Content-Type: " + contentType + CRLF
+                + "Content-Range: " + range.toContentRange(fileLength) + CRLF
+                + CRLF).getBytes(StandardCharsets.US_ASCII);
+    }
+
+
+    /** Returns the trailer of a "multipart/byteranges" body **/
+    private byte[] partTrailer() {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+    }
+}
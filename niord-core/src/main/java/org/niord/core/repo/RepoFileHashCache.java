@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.repo;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.niord.core.cache.BaseCache;
+import org.niord.core.settings.annotation.Setting;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import static org.niord.core.settings.Setting.Type;
+
+/**
+ * Implements a cache for the content hashes of repository files, as used for strong ETags
+ * by the {@linkplain RepositoryService}.
+ * <p>
+ * The cache keys include the last-modified time and size of the files, so a changed file is hashed anew.
+ */
+@ApplicationScoped
+public class RepoFileHashCache extends BaseCache<String, String> {
+
+    final static String CACHE_ID = "repoFileHashCache";
+
+    @Inject
+    @Setting(value="repoFileHashCacheTTL", defaultValue="3600", description="Time in seconds to cache the content hashes of repo files", type = Type.Integer)
+    Integer cacheTTL;
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCacheId() {
+        return CACHE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Configuration createCacheConfiguration() {
+        return new ConfigurationBuilder()
+                .clustering().cacheMode(CacheMode.LOCAL)
+                .locking().isolationLevel(IsolationLevel.REPEATABLE_READ)
+                .expiration().lifespan(cacheTTL * 1000L)
+                .build();
+    }
+}
@@ -38,12 +38,18 @@ import jakarta.ws.rs.core.*;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 import static org.niord.core.settings.Setting.Type;
@@ -85,6 +91,9 @@ public class RepositoryService {
     @Inject
     ThumbnailService thumbnailService;
 
+    @Inject
+    RepoFileHashCache repoFileHashCache;
+
     /**
      * Initializes the repository
      */
@@ -200,14 +209,22 @@ public class RepositoryService {
 
 
     /**
-     * Streams the file specified by the path
+     * Streams the file specified by the path.
+     * <p>
+     * Supports single and multi-part byte range requests via the "Range" header, conditioned by an
+     * optional "If-Range" header. Files are tagged with a strong ETag based on the file content hash.
+     *
      * @param path the path
+     * @param range the optional "Range" header
+     * @param ifRange the optional "If-Range" header
      * @param request the servlet request
      * @return the response
      */
     @GET
     @jakarta.ws.rs.Path("/file/{file:.+}")
     public Response streamFile(@PathParam("file") String path,
+                               @HeaderParam("Range") String range,
+                               @HeaderParam("If-Range") String ifRange,
                                @Context Request request) throws IOException {
 
         Path f = repoRoot.resolve(path);
@@ -224,9 +241,11 @@ public class RepositoryService {
         Date expirationDate = new Date(System.currentTimeMillis() + 1000L * 60L * cacheTimeout);
 
         String mt = fileTypes.getContentType(f);
+        long length = Files.size(f);
+        long lastModified = Files.getLastModifiedTime(f).toMillis();
 
         // Check for an ETag match
-        EntityTag etag = new EntityTag("" + Files.getLastModifiedTime(f).toMillis() + "_" + Files.size(f), true);
+        EntityTag etag = new EntityTag(getContentHash(f, lastModified, length));
         Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(etag);
         if (responseBuilder != null) {
             // Etag match
@@ -236,14 +255,99 @@ public class RepositoryService {
                     .build();
         }
 
-        log.trace("Streaming file: " + f);
+        // Check for a byte range request. Ranges are ignored if the "If-Range" validator does not match
+        List<ByteRange> ranges = ifRangeMatches(ifRange, etag, lastModified)
+                ? ByteRange.parse(range, length)
+                : null;
+        if (ranges != null && ranges.isEmpty()) {
+            log.trace("Unsatisfiable range " + range + " for file " + f);
+            return Response
+                    .status(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + length)
+                    .header("Accept-Ranges", "bytes")
+                    .build();
+        }
+
+        ByteRangeOutput output = ranges == null
+                ? ByteRangeOutput.entireFile(f, length, mt)
+                : new ByteRangeOutput(f, length, ranges, mt);
+
+        log.trace("Streaming file: " + f + (ranges == null ? "" : ", ranges " + ranges));
         return Response
-                .ok(f.toFile(), mt)
+                .status(ranges == null ? HttpServletResponse.SC_OK : HttpServletResponse.SC_PARTIAL_CONTENT)
+                .entity(output)
+                .type(output.getResponseContentType())
+                .header(HttpHeaders.CONTENT_LENGTH, output.getContentLength())
+                .header("Content-Range", output.getContentRange())
+                .header("Accept-Ranges", "bytes")
+                .lastModified(new Date(lastModified))
                 .expires(expirationDate)
                 .tag(etag)
                 .build();
     }
 
+
+    /**
+     * Returns if the "If-Range" header, if defined, matches the current version of the file.
+     * The header may either be a strong ETag or the last-modified date of the file.
+     *
+     * @param ifRange the "If-Range" header
+     * @param etag the current ETag of the file
+     * @param lastModified the last-modified time of the file
+     * @return if the "If-Range" header matches the current version of the file
+     */
+    private boolean ifRangeMatches(String ifRange, EntityTag etag, long lastModified) {
+        if (StringUtils.isBlank(ifRange)) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Weak ETags never match
+            return ifRange.equals("\"" + etag.getValue() + "\"");
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return date == lastModified / 1000L;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Returns the content hash of the file, as used for strong ETags.
+     * The hash is cached per file version, as given by the last-modified time and size of the file.
+     *
+     * @param f the file
+     * @param lastModified the last-modified time of the file
+     * @param length the length of the file
+     * @return the content hash of the file
+     */
+    private String getContentHash(Path f, long lastModified, long length) throws IOException {
+        String key = f.toAbsolutePath() + ":" + lastModified + ":" + length;
+        String hash = repoFileHashCache.getCache().get(key);
+        if (hash == null) {
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("This should never happen");
+            }
+            try (FileChannel channel = FileChannel.open(f, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    md.update(buffer);
+                    buffer.clear();
+                }
+            }
+            hash = Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest());
+            repoFileHashCache.getCache().put(key, hash);
+        }
+        return hash;
+    }
+
+
     /**
      * Deletes the file specified by the path
      * @param path the path
@@ -38,6 +38,12 @@ import java.util.stream.Collectors;
 @SuppressWarnings("unused")
 public class FmReportService extends BaseService {
 
+    /** The template used by the standard and draft message list reports **/
+    public static final String MESSAGE_LIST_TEMPLATE_PATH = "/templates/messages/message-list-pdf.ftl";
+
+    /** Report property that flags that the report template may be rendered in chunks of messages **/
+    public static final String CHUNKABLE_PROPERTY = "chunkable";
+
     @Inject
     Logger log;
 
@@ -69,7 +75,7 @@ public class FmReportService extends BaseService {
             report.setReportId("standard");
             report.setName("Standard");
             report.setSortOrder(0);
-            report.setTemplatePath("/templates/messages/message-list-pdf.ftl");
+            report.setTemplatePath(MESSAGE_LIST_TEMPLATE_PATH);
             try {
                 em.persist(report);
                 log.info("Created standard report");
@@ -92,7 +98,7 @@ public class FmReportService extends BaseService {
             report.setReportId("draft");
             report.setName("Draft");
             report.setSortOrder(1);
-            report.setTemplatePath("/templates/messages/message-list-pdf.ftl");
+            report.setTemplatePath(MESSAGE_LIST_TEMPLATE_PATH);
             report.getProperties().put("draft", true);
             try {
                 em.persist(report);
@@ -134,6 +140,22 @@ public class FmReportService extends BaseService {
     }
 
 
+    /**
+     * Returns whether the report template may be rendered in chunks of messages, i.e. whether
+     * it merely renders the messages as a list, rather than e.g. grouping them into sections.
+     * <p>
+     * This is the case for the message list template, and for reports that
+     * explicitly set the "chunkable" property.
+     *
+     * @param report the report
+     * @return whether the report template may be rendered in chunks of messages
+     */
+    public boolean supportsChunkedRendering(FmReport report) {
+        return MESSAGE_LIST_TEMPLATE_PATH.equals(report.getTemplatePath())
+                || Boolean.TRUE.equals(report.getProperties().get(CHUNKABLE_PROPERTY));
+    }
+
+
     /**
      * Returns the reports available in the current domain
      * @return the reports available in the current domain
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.schedule;
+
+import org.niord.core.area.vo.SystemAreaVo;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable catalogue of the firing areas of a domain, including their parent areas, descriptions
+ * and geometries in a specific language, as used by the firing schedule calendar.
+ * <p>
+ * The catalogue is cached by the {@linkplain FiringScheduleService}, and the area value objects are shared
+ * between requests, so they must be treated as read-only.
+ */
+public class FiringAreaCatalogue {
+
+    private final List<SystemAreaVo> areas;
+    private final Map<Integer, SystemAreaVo> areaLookup = new LinkedHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param areas the firing areas sorted by their tree sort order
+     */
+    public FiringAreaCatalogue(List<SystemAreaVo> areas) {
+        areas.forEach(a -> areaLookup.put(a.getId(), a));
+        this.areas = Collections.unmodifiableList(areas);
+    }
+
+
+    /** Returns the firing areas sorted by their tree sort order **/
+    public List<SystemAreaVo> getAreas() {
+        return areas;
+    }
+
+
+    /** Returns the firing area with the given ID, or null if not found **/
+    public SystemAreaVo getArea(Integer id) {
+        return areaLookup.get(id);
+    }
+}
@@ -46,6 +46,8 @@ import java.util.Date;
                 query = "select distinct fp FROM FiringPeriod fp where fp.area = :area order by fp.fromDate, fp.toDate"),
         @NamedQuery(name="FiringPeriod.findLegacyFiringPeriods",
                 query = "select distinct fp FROM FiringPeriod fp where fp.legacyId is not null order by fp.fromDate, fp.toDate"),
+        @NamedQuery(name="FiringPeriod.findAllIntervals",
+                query = "select fp.id, fp.legacyId, fp.area.id, fp.fromDate, fp.toDate FROM FiringPeriod fp"),
         @NamedQuery(name="FiringPeriod.findByDateInterval",
                 query = "select distinct fp FROM FiringPeriod fp where fp.fromDate <= :toDate and fp.toDate >= :fromDate "
                         + " and fp.area.active in (:active) "
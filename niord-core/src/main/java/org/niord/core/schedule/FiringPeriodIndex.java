@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.schedule;
+
+import org.niord.core.schedule.vo.FiringPeriodVo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable in-memory index of firing periods, used for looking up the firing periods
+ * that overlap a date interval.
+ * <p>
+ * The firing periods are sorted by their from-date. Since no firing period is longer than the
+ * longest indexed period, the firing periods overlapping a date interval are found by a binary search
+ * for the last period starting before the end of the interval, followed by a backwards scan that stops
+ * at periods starting more than the longest period duration before the start of the interval.
+ * <p>
+ * The returned firing periods are copies, so they may safely be modified by the caller.
+ */
+public class FiringPeriodIndex {
+
+    private static final Comparator<FiringPeriodVo> FIRING_PERIOD_ORDER =
+            Comparator.comparing(FiringPeriodVo::getFromDate)
+                    .thenComparing(FiringPeriodVo::getToDate)
+                    .thenComparing(FiringPeriodVo::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final FiringPeriodVo[] firingPeriods;
+    private final long[] fromTimes;
+    private final long maxDuration;
+
+
+    /**
+     * Constructor
+     *
+     * @param firingPeriods the firing periods to index. Firing periods without from- or to-dates are ignored
+     */
+    public FiringPeriodIndex(List<FiringPeriodVo> firingPeriods) {
+        this.firingPeriods = firingPeriods.stream()
+                .filter(fp -> fp.getFromDate() != null && fp.getToDate() != null)
+                .map(FiringPeriodIndex::copy)
+                .sorted(FIRING_PERIOD_ORDER)
+                .toArray(FiringPeriodVo[]::new);
+
+        fromTimes = new long[this.firingPeriods.length];
+        long duration = 0;
+        for (int x = 0; x < this.firingPeriods.length; x++) {
+            FiringPeriodVo fp = this.firingPeriods[x];
+            fromTimes[x] = fp.getFromDate().getTime();
+            duration = Math.max(duration, fp.getToDate().getTime() - fromTimes[x]);
+        }
+        maxDuration = duration;
+    }
+
+
+    /**
+     * Returns the firing periods overlapping the given date interval, i.e. the firing periods with
+     * {@code fromDate <= toDate} and {@code toDate >= fromDate}, sorted by their from- and to-dates.
+     *
+     * @param fromDate the start of the date interval
+     * @param toDate the end of the date interval
+     * @return the firing periods overlapping the date interval
+     */
+    public List<FiringPeriodVo> findByDateInterval(Date fromDate, Date toDate) {
+        Objects.requireNonNull(fromDate);
+        Objects.requireNonNull(toDate);
+        long from = fromDate.getTime();
+        long to = toDate.getTime();
+
+        List<FiringPeriodVo> result = new ArrayList<>();
+        long minFrom = from - maxDuration;
+        for (int x = lastStartingBefore(to); x >= 0 && fromTimes[x] >= minFrom; x--) {
+            if (firingPeriods[x].getToDate().getTime() >= from) {
+                result.add(copy(firingPeriods[x]));
+            }
+        }
+
+        // The periods were collected in reverse order
+        result.sort(FIRING_PERIOD_ORDER);
+        return result;
+    }
+
+
+    /** Returns the number of indexed firing periods **/
+    public int size() {
+        return firingPeriods.length;
+    }
+
+
+    /** Returns the index of the last firing period with a from-date at or before the given time, or -1 if none **/
+    private int lastStartingBefore(long time) {
+        int low = 0, high = fromTimes.length - 1, result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (fromTimes[mid] <= time) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+
+    /** Returns a copy of the firing period **/
+    private static FiringPeriodVo copy(FiringPeriodVo fp) {
+        FiringPeriodVo result = new FiringPeriodVo();
+        result.setId(fp.getId());
+        result.setLegacyId(fp.getLegacyId());
+        result.setAreaId(fp.getAreaId());
+        result.setFromDate(fp.getFromDate() == null ? null : new Date(fp.getFromDate().getTime()));
+        result.setToDate(fp.getToDate() == null ? null : new Date(fp.getToDate().getTime()));
+        return result;
+    }
+}
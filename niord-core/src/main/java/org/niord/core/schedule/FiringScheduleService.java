@@ -29,6 +29,7 @@ import org.niord.core.geojson.FeatureCollection;
 import org.niord.core.message.*;
 import org.niord.core.model.BaseEntity;
 import org.niord.core.schedule.vo.FiringAreaPeriodsVo;
+import org.niord.core.schedule.vo.FiringPeriodVo;
 import org.niord.core.service.BaseService;
 import org.niord.core.util.TimeUtils;
 import org.niord.model.DataFilter;
@@ -43,7 +44,7 @@ import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.WebApplicationException;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static java.lang.Boolean.FALSE;
@@ -80,6 +81,15 @@ public class FiringScheduleService extends BaseService {
     @Inject
     MessageSeriesService messageSeriesService;
 
+    @Inject
+    MessageTagService messageTagService;
+
+    @Inject
+    FiringScheduleCache firingScheduleCache;
+
+    /** Incremented whenever a firing period is created, updated or deleted **/
+    private final AtomicLong firingPeriodVersion = new AtomicLong();
+
 
     /***************************************/
     /** Firing Schedules                  **/
@@ -205,50 +215,62 @@ public class FiringScheduleService extends BaseService {
      * @return the firing area periods that matches the parameters
      */
     public List<FiringAreaPeriodsVo> searchFiringAreaPeriods(Date date, String query, Set<Integer> areaIds, boolean inactive, String lang) {
+        return searchFiringAreaPeriods(date, date, query, areaIds, inactive, lang);
+    }
 
-        Set<Boolean> activeSet = inactive
-            ? new HashSet<>(Arrays.asList(TRUE, FALSE))
-            : Collections.singleton(TRUE);
 
-        // Adjust the date for the time-zone of the current domain
+    /**
+     * Fetches the firing area periods, i.e. all firing areas and their firing periods that matches the parameters.
+     * <p>
+     * The firing areas are looked up in a cached firing area catalogue and the firing periods in a cached
+     * firing period index, so multi-day date intervals, such as a month, can be fetched in a single call.
+     *
+     * @param fromDate the first date of the date interval
+     * @param toDate the last date of the date interval
+     * @param query a search query
+     * @param areaIds area subtrees to search
+     * @param inactive whether to include inactive areas or not
+     * @param lang the language to filter areas by
+     * @return the firing area periods that matches the parameters
+     */
+    public List<FiringAreaPeriodsVo> searchFiringAreaPeriods(Date fromDate, Date toDate, String query, Set<Integer> areaIds, boolean inactive, String lang) {
+
+        // Adjust the dates for the time-zone of the current domain
         Domain domain = domainService.currentDomain();
         TimeZone timeZone = domain != null ? domain.timeZone() : null;
-        Date fromDate = TimeUtils.resetTime(date, timeZone);
-        Date toDate = TimeUtils.endOfDay(date, timeZone);
-
-        // Find the firing periods
-        List<FiringPeriod> fps = em.createNamedQuery("FiringPeriod.findByDateInterval", FiringPeriod.class)
-                .setParameter("active", activeSet)
-                .setParameter("fromDate", fromDate)
-                .setParameter("toDate", toDate)
-                .getResultList();
+        Date from = TimeUtils.resetTime(fromDate, timeZone);
+        Date to = TimeUtils.endOfDay(toDate, timeZone);
+
+        // Optionally, restrict the firing areas to the ones matching the search query and area subtrees
+        Set<Integer> matchingAreaIds = null;
+        if (StringUtils.isNotBlank(query) || (areaIds != null && !areaIds.isEmpty())) {
+            AreaSearchParams param = new AreaSearchParams()
+                    .name(query)
+                    .domain(domain == null ? null : domain.getDomainId())
+                    .areaIds(areaIds)
+                    .inactive(inactive)
+                    .type(AreaType.FIRING_AREA);
+            matchingAreaIds = areaService.searchAreas(param).stream()
+                    .map(Area::getId)
+                    .collect(Collectors.toSet());
+        }
 
         // Look up all firing areas for the current domain
-        DataFilter filter = DataFilter.get()
-                .fields(DataFilter.PARENT, DataFilter.DETAILS, DataFilter.GEOMETRY)
-                .lang(lang);
-
-        AreaSearchParams param = new AreaSearchParams()
-                .name(query)
-                .domain(domain == null ? null : domain.getDomainId())
-                .areaIds(areaIds)
-                .inactive(inactive)
-                .type(AreaType.FIRING_AREA);
-        param.sortBy(TREE_SORT_ORDER).sortOrder(ASC);
-
-        List<FiringAreaPeriodsVo> result = areaService.searchAreas(param).stream()
-                .map(a -> a.toVo(SystemAreaVo.class, filter))
-                .map(FiringAreaPeriodsVo::new)
-                .collect(Collectors.toList());
-
-        Map<Integer, FiringAreaPeriodsVo> areaLookup = result.stream()
-                .collect(Collectors.toMap(s -> s.getArea().getId(), Function.identity()));
+        List<FiringAreaPeriodsVo> result = new ArrayList<>();
+        Map<Integer, FiringAreaPeriodsVo> areaLookup = new HashMap<>();
+        for (SystemAreaVo area : getFiringAreaCatalogue(domain, lang).getAreas()) {
+            if ((inactive || area.isActive()) && (matchingAreaIds == null || matchingAreaIds.contains(area.getId()))) {
+                FiringAreaPeriodsVo firingAreaPeriods = new FiringAreaPeriodsVo(area);
+                result.add(firingAreaPeriods);
+                areaLookup.put(area.getId(), firingAreaPeriods);
+            }
+        }
 
         // Group the firing periods by area
-        for (FiringPeriod fp : fps) {
-            FiringAreaPeriodsVo firingAreaPeriods = areaLookup.get(fp.getArea().getId());
+        for (FiringPeriodVo fp : getFiringPeriodIndex().findByDateInterval(from, to)) {
+            FiringAreaPeriodsVo firingAreaPeriods = areaLookup.get(fp.getAreaId());
             if (firingAreaPeriods != null) {
-                firingAreaPeriods.getFiringPeriods().add(fp.toVo());
+                firingAreaPeriods.getFiringPeriods().add(fp);
             }
         }
 
@@ -256,6 +278,76 @@ public class FiringScheduleService extends BaseService {
     }
 
 
+    /**
+     * Returns the cached catalogue of firing areas, including inactive firing areas, for the given domain and language.
+     * The catalogue is re-computed whenever the areas or domains are updated.
+     *
+     * @param domain the domain
+     * @param lang the language to filter areas by
+     * @return the firing area catalogue
+     */
+    FiringAreaCatalogue getFiringAreaCatalogue(Domain domain, String lang) {
+        String domainId = domain == null ? null : domain.getDomainId();
+        String key = String.format("areas:%s:%s:%d:%d",
+                domainId, lang, areaService.getVersion(), domainService.getVersion());
+
+        FiringAreaCatalogue catalogue = (FiringAreaCatalogue) firingScheduleCache.getCache().get(key);
+        if (catalogue == null) {
+            long t0 = System.currentTimeMillis();
+            DataFilter filter = DataFilter.get()
+                    .fields(DataFilter.PARENT, DataFilter.DETAILS, DataFilter.GEOMETRY)
+                    .lang(lang);
+
+            AreaSearchParams param = new AreaSearchParams()
+                    .domain(domainId)
+                    .inactive(true)
+                    .type(AreaType.FIRING_AREA);
+            param.sortBy(TREE_SORT_ORDER).sortOrder(ASC);
+
+            catalogue = new FiringAreaCatalogue(areaService.searchAreas(param).stream()
+                    .map(a -> a.toVo(SystemAreaVo.class, filter))
+                    .collect(Collectors.toList()));
+            firingScheduleCache.getCache().put(key, catalogue);
+            log.debug(String.format("Computed catalogue of %d firing areas for domain %s in %d ms",
+                    catalogue.getAreas().size(), domainId, System.currentTimeMillis() - t0));
+        }
+        return catalogue;
+    }
+
+
+    /**
+     * Returns the cached index of all firing periods.
+     * The index is re-computed whenever a firing period is created, updated or deleted.
+     *
+     * @return the firing period index
+     */
+    FiringPeriodIndex getFiringPeriodIndex() {
+        String key = "periods:" + getFiringPeriodVersion();
+
+        FiringPeriodIndex index = (FiringPeriodIndex) firingScheduleCache.getCache().get(key);
+        if (index == null) {
+            long t0 = System.currentTimeMillis();
+            List<FiringPeriodVo> firingPeriods = em.createNamedQuery("FiringPeriod.findAllIntervals", Object[].class)
+                    .getResultList().stream()
+                    .map(row -> {
+                        FiringPeriodVo fp = new FiringPeriodVo();
+                        fp.setId((Integer) row[0]);
+                        fp.setLegacyId((String) row[1]);
+                        fp.setAreaId((Integer) row[2]);
+                        fp.setFromDate((Date) row[3]);
+                        fp.setToDate((Date) row[4]);
+                        return fp;
+                    })
+                    .collect(Collectors.toList());
+            index = new FiringPeriodIndex(firingPeriods);
+            firingScheduleCache.getCache().put(key, index);
+            log.debug(String.format("Computed index of %d firing periods in %d ms",
+                    index.size(), System.currentTimeMillis() - t0));
+        }
+        return index;
+    }
+
+
     /**
      * Fetches the firing area periods, i.e. the area and its firing periods on the specified date, and null if not found
      * @param areaId the id of the area
@@ -265,7 +357,6 @@ public class FiringScheduleService extends BaseService {
      */
     public FiringAreaPeriodsVo getFiringAreaPeriods(Integer areaId, Date date, String lang) {
 
-        // TODO: Not very efficient
         return searchFiringAreaPeriods(date, null, null, true, lang).stream()
                 .filter(fap -> Objects.equals(fap.getArea().getId(), areaId))
                 .findFirst()
@@ -334,6 +425,23 @@ public class FiringScheduleService extends BaseService {
     }
 
 
+    /**
+     * Should be called whenever a firing period has been created, updated or deleted.
+     * <p>
+     * Bumps the firing period version immediately, and again when the current transaction completes, so that
+     * an index computed by other threads before the changes were committed is not cached under the new version.
+     */
+    protected void firingPeriodsChanged() {
+        runNowAndAfterCompletion(firingPeriodVersion::incrementAndGet);
+    }
+
+
+    /** Returns the current firing period version **/
+    protected long getFiringPeriodVersion() {
+        return firingPeriodVersion.get();
+    }
+
+
     /**
      * Creates a new firing period based on the given template
      * @param templatePeriod the template firing period
@@ -349,7 +457,9 @@ public class FiringScheduleService extends BaseService {
             throw new IllegalArgumentException("Firing period must defined area, from- and to-dates");
         }
 
-        return saveEntity(templatePeriod);
+        FiringPeriod firingPeriod = saveEntity(templatePeriod);
+        firingPeriodsChanged();
+        return firingPeriod;
     }
 
 
@@ -371,7 +481,9 @@ public class FiringScheduleService extends BaseService {
         FiringPeriod originalFp = getByPrimaryKey(FiringPeriod.class, templatePeriod.getId());
         originalFp.updateFiringPeriod(templatePeriod);
 
-        return saveEntity(originalFp);
+        originalFp = saveEntity(originalFp);
+        firingPeriodsChanged();
+        return originalFp;
     }
 
 
@@ -385,6 +497,7 @@ public class FiringScheduleService extends BaseService {
         FiringPeriod firingPeriod = getByPrimaryKey(FiringPeriod.class, id);
         if (firingPeriod != null) {
             remove(firingPeriod);
+            firingPeriodsChanged();
             return true;
         }
         return false;
@@ -465,7 +578,6 @@ public class FiringScheduleService extends BaseService {
 
             // Add to message tag
             if (messageTag != null) {
-                messageTag.getMessages().add(message);
                 message.getTags().add(messageTag);
             }
 
@@ -474,8 +586,9 @@ public class FiringScheduleService extends BaseService {
         }
 
         if (messageTag != null) {
-            messageTag.updateMessageCount();
-            saveEntity(messageTag);
+            messageTagService.addMessageIdsToTag(
+                    messageTag,
+                    faMessages.stream().map(Message::getId).collect(Collectors.toList()));
         }
 
         return faMessages;
@@ -20,6 +20,7 @@ import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapperBuilder;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
+import io.quarkus.arc.All;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.NiordApp;
@@ -27,7 +28,10 @@ import org.niord.core.dictionary.DictionaryService;
 import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
 import org.niord.core.script.directive.MultiResourceBundleModel;
+import org.niord.core.script.pdf.ChunkedHtmlToPdfRenderer;
 import org.niord.core.script.pdf.HtmlToPdfRenderer;
+import org.niord.core.script.pdf.PdfRendererPool;
+import org.niord.core.script.pdf.PdfResourceResolver;
 import org.niord.core.service.BaseService;
 import org.niord.core.settings.annotation.Setting;
 import org.slf4j.Logger;
@@ -37,12 +41,14 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.niord.core.settings.Setting.Type.Boolean;
+import static org.niord.core.settings.Setting.Type.Integer;
 import static org.niord.core.settings.Setting.Type.Password;
 
 
@@ -69,6 +75,15 @@ public class FmTemplateService extends BaseService {
             defaultValue = "Samuel Pepys started the 1666 fire", type = Password)
     String pdfEncryptionPassword;
 
+    @Inject
+    @Setting(value = "pdfRenderConcurrency", description = "The max number of PDF reports rendered concurrently. Defaults to the number of processors",
+            defaultValue = "0", type = Integer)
+    java.lang.Integer pdfRenderConcurrency;
+
+    @Inject
+    @All
+    List<PdfResourceResolver> pdfResourceResolvers;
+
     @Inject
     DictionaryService dictionaryService;
 
@@ -84,6 +99,8 @@ public class FmTemplateService extends BaseService {
     @Inject
     Logger log;
 
+    private PdfRendererPool pdfRendererPool;
+
 
 
     /************************************/
@@ -187,6 +204,57 @@ public class FmTemplateService extends BaseService {
     }
 
 
+    /**
+     * Returns the process-wide pool of PDF renderers, which bounds the number of concurrent
+     * PDF renderings and retains the fonts and parsed stylesheets of the renderers
+     * @return the pool of PDF renderers
+     */
+    private synchronized PdfRendererPool getPdfRendererPool() {
+        if (pdfRendererPool == null) {
+            int size = pdfRenderConcurrency != null && pdfRenderConcurrency > 0
+                    ? pdfRenderConcurrency
+                    : Runtime.getRuntime().availableProcessors();
+            pdfRendererPool = new PdfRendererPool(size);
+            log.info("Created PDF renderer pool of size " + size);
+        }
+        return pdfRendererPool;
+    }
+
+
+    /**
+     * Resolves the resources of PDF reports locally using the registered resource resolvers
+     * @param path the resource path relative to the base URI
+     * @return the resource input stream, or null if not resolved locally
+     */
+    private InputStream openPdfResource(String path) throws IOException {
+        for (PdfResourceResolver resolver : pdfResourceResolvers) {
+            InputStream in = resolver.openStream(path);
+            if (in != null) {
+                return in;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Creates a new renderer for generating a single PDF from a sequence of HTML chunks,
+     * e.g. as produced by processing a template for successive pages of a large result.
+     * The renderer must be closed after use.
+     *
+     * @param out the PDF output stream
+     * @return the new chunked PDF renderer
+     */
+    public ChunkedHtmlToPdfRenderer newChunkedPdfRenderer(OutputStream out) throws InterruptedException {
+        return ChunkedHtmlToPdfRenderer.newRenderer(
+                out,
+                getBaseUri(),
+                getPdfRendererPool(),
+                this::openPdfResource,
+                getPDFEncryptionPassword());
+    }
+
+
     /************************************/
     /** Freemarker Template Builder    **/
     /************************************/
@@ -270,13 +338,7 @@ public class FmTemplateService extends BaseService {
 
                 } else if (format == ProcessFormat.PDF) {
 
-                    HtmlToPdfRenderer.newBuilder()
-                            .baseUri(templateService.getBaseUri())
-                            .html(result)
-                            .encrypt(templateService.getPDFEncryptionPassword())
-                            .pdf(out)
-                            .build()
-                            .render();
+                    pdfRenderer(result, out).render();
 
                     log.info("Completed Freemarker PDF generation for " + getTemplatePath()
                             + " in " + (System.currentTimeMillis() - t0) + " ms");
@@ -289,6 +351,34 @@ public class FmTemplateService extends BaseService {
         }
 
 
+        /**
+         * Processes the Freemarker HTML template in the current thread and returns a PDF renderer
+         * for the resulting HTML.
+         * <p>
+         * The template must be processed within the current transaction, whereas the returned
+         * renderer does not depend on the transaction and may be invoked from any thread.
+         *
+         * @param out the PDF output stream
+         * @return the PDF renderer
+         */
+        public HtmlToPdfRenderer pdfRenderer(OutputStream out) throws Exception {
+            return pdfRenderer(process(), out);
+        }
+
+
+        /** Returns a PDF renderer for the given HTML **/
+        private HtmlToPdfRenderer pdfRenderer(String html, OutputStream out) {
+            return HtmlToPdfRenderer.newBuilder()
+                    .baseUri(templateService.getBaseUri())
+                    .html(html)
+                    .encrypt(templateService.getPDFEncryptionPassword())
+                    .resourceResolver(templateService::openPdfResource)
+                    .pool(templateService.getPdfRendererPool())
+                    .pdf(out)
+                    .build();
+        }
+
+
         /*****************************************/
         /** Method-chaining Getters and Setters **/
         /***/
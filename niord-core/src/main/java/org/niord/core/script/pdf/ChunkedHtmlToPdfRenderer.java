@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.jsoup.Jsoup;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.OutputStream;
+
+/**
+ * Used for creating a single PDF file from a sequence of HTML documents, or chunks.
+ * <p>
+ * Each chunk is laid out separately and its pages are appended to the PDF output stream,
+ * so only a single chunk needs to be held in memory at any time. All chunks share the
+ * same renderer, and thus the same fonts, stylesheet cache and image cache.
+ * <p>
+ * Page numbers continue across the chunks. However, since each chunk is laid out separately,
+ * links and target-counters only resolve within the chunk they are defined in.
+ */
+public class ChunkedHtmlToPdfRenderer implements AutoCloseable {
+
+    private final PdfRendererPool.Lease lease;
+    private final String baseUri;
+    private final OutputStream pdf;
+    private int chunkCount = 0;
+    private int pageCount = 0;
+    private boolean finished;
+
+    /** Constructor **/
+    private ChunkedHtmlToPdfRenderer(OutputStream pdf, String baseUri, PdfRendererPool.Lease lease) {
+        this.pdf = pdf;
+        this.baseUri = baseUri;
+        this.lease = lease;
+    }
+
+
+    /**
+     * Creates a new chunked PDF renderer.
+     * The renderer is leased from the given pool, if specified, and must be closed after use.
+     *
+     * @param pdf the output for the generated PDF
+     * @param baseUri the base URI to use for the HTML
+     * @param pool the optional renderer pool
+     * @param resourceResolver the optional resource resolver
+     * @param pdfEncryptionPassword if defined, the PDF encryption password
+     * @return the new chunked PDF renderer
+     */
+    public static ChunkedHtmlToPdfRenderer newRenderer(OutputStream pdf, String baseUri, PdfRendererPool pool,
+                                                       PdfResourceResolver resourceResolver,
+                                                       String pdfEncryptionPassword) throws InterruptedException {
+        if (pdf == null) {
+            throw new IllegalArgumentException("No PDF output defined");
+        }
+        PdfRendererPool.Lease lease = PdfRendererPool.lease(pool, resourceResolver, pdfEncryptionPassword);
+        return new ChunkedHtmlToPdfRenderer(pdf, baseUri != null ? baseUri : "", lease);
+    }
+
+
+    /**
+     * Renders the HTML chunk and appends the resulting pages to the PDF
+     * @param html the HTML chunk
+     */
+    public void render(String html) throws Exception {
+
+        org.w3c.dom.Document xhtmlContent = HtmlToPdfRenderer.toXhtml(Jsoup.parse(html));
+
+        try {
+            ITextRenderer renderer = lease.getRenderer();
+            renderer.setDocument(xhtmlContent, baseUri);
+            renderer.layout();
+
+            if (chunkCount == 0) {
+                renderer.createPDF(pdf, false, pageCount + 1);
+            } else {
+                renderer.writeNextDocument(pageCount + 1);
+            }
+
+            chunkCount++;
+            pageCount += renderer.getRootBox().getLayer().getPages().size();
+        } catch (Exception e) {
+            lease.invalidate();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Completes the PDF. Must be called after the last chunk has been rendered
+     */
+    public void finish() {
+        if (chunkCount == 0) {
+            throw new IllegalStateException("No HTML chunks rendered");
+        }
+        lease.getRenderer().finishPDF();
+        finished = true;
+    }
+
+
+    /**
+     * Releases the renderer. If the PDF has not been completed, the renderer is discarded
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            lease.invalidate();
+        }
+        lease.close();
+    }
+
+
+    /** Returns the number of chunks rendered so far **/
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+
+    /** Returns the number of pages rendered so far **/
+    public int getPageCount() {
+        return pageCount;
+    }
+}
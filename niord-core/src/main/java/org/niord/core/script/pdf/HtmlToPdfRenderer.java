@@ -21,7 +21,6 @@ import org.jsoup.helper.W3CDom;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Node;
 import org.xhtmlrenderer.pdf.ITextRenderer;
-import org.xhtmlrenderer.pdf.PDFEncryption;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -44,6 +43,8 @@ public class HtmlToPdfRenderer {
     private String pdfEncryptionPassword = null;
     private String baseUri = "";
     private OutputStream pdf = null;
+    private PdfResourceResolver resourceResolver = null;
+    private PdfRendererPool pool = null;
 
     /** No-access constructor **/
     private HtmlToPdfRenderer() {
@@ -60,36 +61,41 @@ public class HtmlToPdfRenderer {
      */
     public void render() throws Exception {
 
-        // Clean up HTML. Sometimes they paste html into fields that contain illegal tags, e.g. "<o:p></o:p>"
-        cleanUpHtml();
-
-        // Update all SVG elements
-        updateSvgElements();
-
         // Convert the JSoup Document to an XML Document
-        W3CDom w3cDom = new W3CDom();
-        org.w3c.dom.Document xhtmlContent = w3cDom.fromJsoup(doc);
-
-        // NB: We cannot use JTidy to clean the document, as it will remove all SVG tags :-(
-        // TextUtils.cleanHtml(html);
+        org.w3c.dom.Document xhtmlContent = toXhtml(doc);
 
         // Generate PDF from the HTML
-        ITextRenderer renderer = new ITextRenderer();
+        try (PdfRendererPool.Lease lease = PdfRendererPool.lease(pool, resourceResolver, pdfEncryptionPassword)) {
+            try {
+                ITextRenderer renderer = lease.getRenderer();
+                renderer.setDocument(xhtmlContent, baseUri);
+                renderer.layout();
+                renderer.createPDF(pdf);
+            } catch (Exception e) {
+                lease.invalidate();
+                throw e;
+            }
+        }
+    }
 
-        // Add support for SVG in PDF generation
-        ChainingReplacedElementFactory chainingReplacedElementFactory = new ChainingReplacedElementFactory();
-        chainingReplacedElementFactory.addReplacedElementFactory(renderer.getSharedContext().getReplacedElementFactory());
-        chainingReplacedElementFactory.addReplacedElementFactory(new SVGReplacedElementFactory());
-        renderer.getSharedContext().setReplacedElementFactory(chainingReplacedElementFactory);
 
-        // Check if we need to encrypt the PDF
-        if (StringUtils.isNotBlank(pdfEncryptionPassword)) {
-            renderer.setPDFEncryption(new PDFEncryption(null, pdfEncryptionPassword.getBytes()));
-        }
+    /**
+     * Cleans up the HTML document and converts it to an XML Document suitable for the PDF renderer
+     * @param doc the HTML document
+     * @return the XML Document
+     */
+    static org.w3c.dom.Document toXhtml(Document doc) {
+
+        // Clean up HTML. Sometimes they paste html into fields that contain illegal tags, e.g. "<o:p></o:p>"
+        cleanUpHtml(doc);
+
+        // Update all SVG elements
+        updateSvgElements(doc);
 
-        renderer.setDocument(xhtmlContent, baseUri);
-        renderer.layout();
-        renderer.createPDF(pdf);
+        // Convert the JSoup Document to an XML Document
+        // NB: We cannot use JTidy to clean the document, as it will remove all SVG tags :-(
+        W3CDom w3cDom = new W3CDom();
+        return w3cDom.fromJsoup(doc);
     }
 
 
@@ -97,7 +103,7 @@ public class HtmlToPdfRenderer {
      * Clean up HTML.
      * Sometimes they paste html into fields that contain illegal tags, e.g. "<o:p></o:p>"
      */
-    private void cleanUpHtml() {
+    private static void cleanUpHtml(Document doc) {
         // Remove tags with a namespace component to get rid of e.g. "<o:p></o:p>" tags
         doc.select("*").stream()
                 .filter(e -> e.tagName().contains(":"))
@@ -110,7 +116,7 @@ public class HtmlToPdfRenderer {
      * by copying svg width and height into a style attributes.
      * Otherwise, the PDF rendering just doesn't know how to size the SVG element.
      */
-    private void updateSvgElements() {
+    private static void updateSvgElements(Document doc) {
         doc.select("svg").forEach(svg -> {
             String style = svg.attr("style");
             if (!style.matches("[^-]width")) {
@@ -179,6 +185,20 @@ public class HtmlToPdfRenderer {
         }
 
 
+        /** Sets the resolver used for loading stylesheets and images locally rather than via the base URI **/
+        public HtmlToPdfRendererBuilder resourceResolver(PdfResourceResolver resourceResolver) {
+            renderer.resourceResolver = resourceResolver;
+            return this;
+        }
+
+
+        /** Sets the pool to lease the renderer from. If undefined, a new renderer is created **/
+        public HtmlToPdfRendererBuilder pool(PdfRendererPool pool) {
+            renderer.pool = pool;
+            return this;
+        }
+
+
         /** Sets the output for the generated PDF **/
         public HtmlToPdfRendererBuilder pdf(OutputStream pdf) {
             renderer.pdf = pdf;
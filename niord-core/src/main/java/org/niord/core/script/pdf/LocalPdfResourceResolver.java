@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.apache.commons.io.IOUtils;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.util.WebUtils;
+import org.slf4j.Logger;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the resources of PDF reports directly from disk rather than via HTTP:
+ * <ul>
+ *     <li>Repository files, i.e. "/rest/repo/file/...", are read from the repository.</li>
+ *     <li>Static web resources, such as "/css/templates/pdf.css", are read from the class path
+ *         and cached, since they are immutable for the lifetime of the application.</li>
+ * </ul>
+ * Other REST resources are not resolved, and are thus fetched via the base URI.
+ */
+@ApplicationScoped
+public class LocalPdfResourceResolver implements PdfResourceResolver {
+
+    static final String REPO_FILE_PREFIX = "/rest/repo/file/";
+    static final String REST_PREFIX = "/rest/";
+    static final String STATIC_RESOURCE_ROOT = "META-INF/resources";
+    static final int MAX_CACHED_RESOURCE_SIZE = 1024 * 1024;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    private final Map<String, byte[]> staticResources = new ConcurrentHashMap<>();
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public InputStream openStream(String path) throws IOException {
+
+        if (path.startsWith(REPO_FILE_PREFIX)) {
+            Path file = getRepoFile(path.substring(REPO_FILE_PREFIX.length()));
+            return file != null ? new BufferedInputStream(Files.newInputStream(file)) : null;
+
+        } else if (!path.startsWith(REST_PREFIX)) {
+            byte[] data = getStaticResource(path);
+            return data != null ? new ByteArrayInputStream(data) : null;
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the repository file with the given URI-encoded repository path,
+     * or null if the file does not exist or is not within the repository
+     */
+    private Path getRepoFile(String repoPath) {
+        Path repoRoot = repositoryService.getRepoRoot().toAbsolutePath().normalize();
+        Path file = repoRoot.resolve(WebUtils.urlDecode(repoPath.replace("+", "%2B"))).normalize();
+        return file.startsWith(repoRoot) && Files.isRegularFile(file) ? file : null;
+    }
+
+
+    /**
+     * Returns the static web resource with the given path, or null if not found
+     */
+    private byte[] getStaticResource(String path) throws IOException {
+        byte[] data = staticResources.get(path);
+        if (data != null) {
+            return data;
+        }
+
+        // Guard against path traversal
+        if (path.contains("..")) {
+            return null;
+        }
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader() != null
+                ? Thread.currentThread().getContextClassLoader()
+                : getClass().getClassLoader();
+        try (InputStream in = classLoader.getResourceAsStream(STATIC_RESOURCE_ROOT + WebUtils.urlDecode(path))) {
+            if (in == null) {
+                return null;
+            }
+            data = IOUtils.toByteArray(in);
+        }
+
+        if (data.length <= MAX_CACHED_RESOURCE_SIZE) {
+            staticResources.put(path, data);
+            log.debug("Cached PDF resource " + path);
+        }
+        return data;
+    }
+}
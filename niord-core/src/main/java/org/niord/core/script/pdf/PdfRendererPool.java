@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.apache.commons.lang.StringUtils;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.pdf.PDFEncryption;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of PDF renderers.
+ * <p>
+ * Creating an ITextRenderer is expensive, as it registers fonts and parses stylesheets from scratch.
+ * Pooled renderers are re-used across reports, so that the fonts and parsed stylesheets are retained,
+ * and the size of the pool bounds the number of reports being rendered concurrently.
+ * <p>
+ * Lease a renderer using {@code acquire()} and always close the lease after use.
+ */
+public class PdfRendererPool {
+
+    private final int size;
+    private final Semaphore permits;
+    private final Deque<PooledRenderer> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Constructor
+     * @param size the max number of renderers in use concurrently
+     */
+    public PdfRendererPool(int size) {
+        this.size = Math.max(1, size);
+        this.permits = new Semaphore(this.size, true);
+    }
+
+
+    /**
+     * Leases a renderer from the pool, blocking until a renderer is available
+     *
+     * @param resourceResolver the optional resource resolver to use
+     * @param pdfEncryptionPassword if defined, the PDF encryption password
+     * @return the renderer lease, which must be closed after use
+     */
+    public Lease acquire(PdfResourceResolver resourceResolver, String pdfEncryptionPassword) throws InterruptedException {
+        permits.acquire();
+        try {
+            PooledRenderer renderer = idle.pollFirst();
+            return new Lease(this, renderer != null ? renderer : new PooledRenderer(), resourceResolver, pdfEncryptionPassword);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Leases a renderer from the given pool, or if no pool is specified, returns a lease for a new un-pooled renderer
+     *
+     * @param pool the optional renderer pool
+     * @param resourceResolver the optional resource resolver to use
+     * @param pdfEncryptionPassword if defined, the PDF encryption password
+     * @return the renderer lease, which must be closed after use
+     */
+    public static Lease lease(PdfRendererPool pool, PdfResourceResolver resourceResolver, String pdfEncryptionPassword)
+            throws InterruptedException {
+        return pool != null
+                ? pool.acquire(resourceResolver, pdfEncryptionPassword)
+                : new Lease(null, new PooledRenderer(), resourceResolver, pdfEncryptionPassword);
+    }
+
+
+    /** Returns the max number of renderers in use concurrently **/
+    public int getSize() {
+        return size;
+    }
+
+
+    /** Returns the number of idle renderers in the pool **/
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+
+    /**
+     * A renderer with support for SVG and local resource resolution
+     */
+    static class PooledRenderer {
+        final ITextRenderer renderer;
+        final PdfUserAgent userAgent;
+
+        PooledRenderer() {
+            renderer = new ITextRenderer();
+
+            // Resolve stylesheets and images via the resource resolver
+            userAgent = new PdfUserAgent(renderer.getOutputDevice());
+            userAgent.setSharedContext(renderer.getSharedContext());
+            renderer.getSharedContext().setUserAgentCallback(userAgent);
+
+            // Add support for SVG in PDF generation
+            ChainingReplacedElementFactory chainingReplacedElementFactory = new ChainingReplacedElementFactory();
+            chainingReplacedElementFactory.addReplacedElementFactory(renderer.getSharedContext().getReplacedElementFactory());
+            chainingReplacedElementFactory.addReplacedElementFactory(new SVGReplacedElementFactory());
+            renderer.getSharedContext().setReplacedElementFactory(chainingReplacedElementFactory);
+        }
+    }
+
+
+    /**
+     * A lease of a renderer. Closing the lease returns the renderer to the pool
+     */
+    public static class Lease implements AutoCloseable {
+
+        private final PdfRendererPool pool;
+        private final PooledRenderer pooledRenderer;
+        private boolean reusable = true;
+        private boolean closed;
+
+        /** Constructor **/
+        private Lease(PdfRendererPool pool, PooledRenderer pooledRenderer,
+                      PdfResourceResolver resourceResolver, String pdfEncryptionPassword) {
+            this.pool = pool;
+            this.pooledRenderer = pooledRenderer;
+
+            pooledRenderer.userAgent.setResourceResolver(resourceResolver);
+
+            // Check if we need to encrypt the PDF
+            pooledRenderer.renderer.setPDFEncryption(StringUtils.isNotBlank(pdfEncryptionPassword)
+                    ? new PDFEncryption(null, pdfEncryptionPassword.getBytes())
+                    : null);
+        }
+
+
+        /** Returns the leased renderer **/
+        public ITextRenderer getRenderer() {
+            return pooledRenderer.renderer;
+        }
+
+
+        /** Flags that the renderer should not be returned to the pool, e.g. after a failed rendering **/
+        public void invalidate() {
+            reusable = false;
+        }
+
+
+        /** Returns the renderer to the pool **/
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            // Only cache images for the duration of a lease, since e.g. message map images may change
+            pooledRenderer.userAgent.setResourceResolver(null);
+            pooledRenderer.userAgent.clearImageCache();
+
+            if (pool != null) {
+                if (reusable) {
+                    pool.idle.offerFirst(pooledRenderer);
+                }
+                pool.permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resolves resources, such as stylesheets and images, referenced by the HTML of a PDF report
+ * directly, rather than by fetching them from the server via the base URI.
+ */
+@FunctionalInterface
+public interface PdfResourceResolver {
+
+    /**
+     * Opens the resource with the given path, e.g. "/css/templates/pdf.css".
+     * Returns null if the resource cannot be resolved locally, in which case it is fetched via the base URI.
+     *
+     * @param path the path of the resource relative to the base URI
+     * @return the resource input stream, or null if not resolved
+     */
+    InputStream openStream(String path) throws IOException;
+
+}
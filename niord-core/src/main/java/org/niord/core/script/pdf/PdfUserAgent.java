@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xhtmlrenderer.pdf.ITextOutputDevice;
+import org.xhtmlrenderer.pdf.ITextUserAgent;
+
+import java.io.InputStream;
+
+/**
+ * User agent callback used by the PDF renderer for loading stylesheets and images.
+ * <p>
+ * Resources referenced relative to the base URI are first looked up via the
+ * resource resolver, and only fetched via HTTP if the resolver cannot resolve them.
+ */
+public class PdfUserAgent extends ITextUserAgent {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfUserAgent.class);
+
+    private PdfResourceResolver resourceResolver;
+
+    /** Constructor **/
+    public PdfUserAgent(ITextOutputDevice outputDevice) {
+        super(outputDevice);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected InputStream resolveAndOpenStream(String uri) {
+        String path = resourceResolver != null ? localPath(uri) : null;
+        if (path != null) {
+            try {
+                InputStream in = resourceResolver.openStream(path);
+                if (in != null) {
+                    return in;
+                }
+            } catch (Exception e) {
+                log.warn("Failed resolving PDF resource " + path + " locally: " + e);
+            }
+        }
+        return super.resolveAndOpenStream(uri);
+    }
+
+
+    /**
+     * Returns the path of the URI relative to the base URI, or null if the URI is not relative to the base URI
+     * @param uri the URI
+     * @return the path of the URI relative to the base URI
+     */
+    String localPath(String uri) {
+        String baseUri = StringUtils.removeEnd(getBaseURL(), "/");
+        String resolvedUri = resolveURI(uri);
+        if (StringUtils.isBlank(baseUri) || resolvedUri == null || !resolvedUri.startsWith(baseUri + "/")) {
+            return null;
+        }
+
+        String path = resolvedUri.substring(baseUri.length());
+        path = StringUtils.substringBefore(path, "#");
+        path = StringUtils.substringBefore(path, "?");
+        return path;
+    }
+
+
+    public PdfResourceResolver getResourceResolver() {
+        return resourceResolver;
+    }
+
+    public void setResourceResolver(PdfResourceResolver resourceResolver) {
+        this.resourceResolver = resourceResolver;
+    }
+}
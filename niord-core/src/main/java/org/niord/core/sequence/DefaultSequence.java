@@ -22,6 +22,7 @@ public final class DefaultSequence implements Sequence {
 
     String name;
     long initialValue;
+    int blockSize;
 
     @SuppressWarnings("unused")
     public DefaultSequence(String name) {
@@ -29,8 +30,13 @@ public final class DefaultSequence implements Sequence {
     }
 
     public DefaultSequence(String name, long initialValue) {
+        this(name, initialValue, 1);
+    }
+
+    public DefaultSequence(String name, long initialValue, int blockSize) {
         this.name = name;
         this.initialValue = initialValue;
+        this.blockSize = blockSize;
     }
 
     @Override
@@ -42,4 +48,9 @@ public final class DefaultSequence implements Sequence {
     public long initialValue() {
         return initialValue;
     }
+
+    @Override
+    public int blockSize() {
+        return blockSize;
+    }
 }
@@ -33,4 +33,18 @@ public interface Sequence {
     default long initialValue() {
         return 0L;
     }
+
+    /**
+     * Returns the number of values to allocate from the database at a time.
+     * <p>
+     * The default block size of 1 makes the sequence gapless. Larger block sizes use a hi-lo scheme,
+     * where the values of a block are handed out from memory. Such sequences are not gapless, since
+     * the unused values of a block are lost upon restart, and the values allocated by concurrent
+     * nodes will not be strictly increasing.
+     *
+     * @return the number of values to allocate from the database at a time
+     */
+    default int blockSize() {
+        return 1;
+    }
 }
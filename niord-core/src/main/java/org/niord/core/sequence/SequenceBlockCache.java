@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.sequence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out sequence values from blocks allocated by a {@linkplain BlockAllocator}.
+ * <p>
+ * Gapless sequences, i.e. with a block size of 1, are always allocated directly via the block allocator.
+ * For sequences with a larger block size, a block of values is allocated at a time and handed out from
+ * memory (hi-lo), so that only one in every block-size values requires a database round-trip.
+ */
+public class SequenceBlockCache {
+
+    private final BlockAllocator allocator;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor
+     *
+     * @param allocator allocates blocks of sequence values
+     */
+    public SequenceBlockCache(BlockAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+
+    /**
+     * Returns and bumps the next value of the given sequence
+     *
+     * @param sequence the sequence
+     * @return the next value
+     */
+    public long nextValue(Sequence sequence) {
+        int blockSize = sequence.blockSize();
+        if (blockSize <= 1) {
+            return allocator.allocate(sequence, 1);
+        }
+
+        Block block = blocks.computeIfAbsent(sequence.getName(), name -> new Block());
+        synchronized (block) {
+            if (block.next >= block.limit) {
+                block.next = allocator.allocate(sequence, blockSize);
+                block.limit = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+
+    /**
+     * Returns the next value of the given sequence handed out from memory, or null if
+     * the next value must be allocated via the block allocator
+     *
+     * @param sequence the sequence
+     * @return the next in-memory value, or null if undefined
+     */
+    public Long peekNextValue(Sequence sequence) {
+        Block block = blocks.get(sequence.getName());
+        if (block != null) {
+            synchronized (block) {
+                if (block.next < block.limit) {
+                    return block.next;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Discards the in-memory values of the given sequence
+     *
+     * @param sequence the sequence
+     */
+    public void reset(Sequence sequence) {
+        Block block = blocks.get(sequence.getName());
+        if (block != null) {
+            synchronized (block) {
+                block.next = block.limit = 0L;
+            }
+        }
+    }
+
+
+    /**
+     * Interface that must be implemented by the class that atomically allocates
+     * blocks of sequence values, e.g. from the database
+     */
+    public interface BlockAllocator {
+
+        /**
+         * Allocates a block of values of the given sequence
+         *
+         * @param sequence the sequence
+         * @param blockSize the number of values to allocate
+         * @return the first value of the allocated block
+         */
+        long allocate(Sequence sequence, int blockSize);
+    }
+
+
+    /** The current block of values of a sequence **/
+    private static class Block {
+        long next;
+        long limit;
+    }
+}
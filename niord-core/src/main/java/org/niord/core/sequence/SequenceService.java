@@ -17,25 +17,41 @@ package org.niord.core.sequence;
 
 import org.slf4j.Logger;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 
 /**
- * Provides an interface for managing sequences
+ * Provides an interface for managing sequences.
+ * <p>
+ * Sequence values are allocated by locking the sequence row, so that concurrent transactions,
+ * possibly on separate nodes, never hand out the same value. Sequences with a block size larger
+ * than 1 allocate a block of values at a time, which are then handed out from memory.
  */
 @ApplicationScoped
 @SuppressWarnings("unused")
 public class SequenceService {
 
+    static final int MAX_ALLOCATION_ATTEMPTS = 3;
+
     @Inject
     private Logger log;
 
     @Inject
     protected EntityManager em;
 
+    SequenceBlockCache blockCache;
+
+
+    /** Initializes the in-memory sequence blocks **/
+    @PostConstruct
+    void init() {
+        blockCache = new SequenceBlockCache(this::allocateBlockWithRetry);
+    }
+
 
     /**
      * Peeks the next value of the given sequence
@@ -44,6 +60,10 @@ public class SequenceService {
      */
     @Transactional(Transactional.TxType.REQUIRES_NEW)
     public long peekNextValue(Sequence sequence) {
+        Long nextValue = blockCache.peekNextValue(sequence);
+        if (nextValue != null) {
+            return nextValue;
+        }
         SequenceEntity seq = em.find(SequenceEntity.class, sequence.getName());
         return seq != null ? seq.getNextValue() : sequence.initialValue();
     }
@@ -55,11 +75,11 @@ public class SequenceService {
      */
     @Transactional(Transactional.TxType.REQUIRES_NEW)
     public void resetNextValue(Sequence sequence) {
-        SequenceEntity seq = em.find(SequenceEntity.class, sequence.getName());
+        blockCache.reset(sequence);
+        SequenceEntity seq = em.find(SequenceEntity.class, sequence.getName(), LockModeType.PESSIMISTIC_WRITE);
 
         if (seq != null) {
             seq.setNextValue(sequence.initialValue());
-            em.merge(seq);
         } else {
             seq = new SequenceEntity();
             seq.setName(sequence.getName());
@@ -70,23 +90,61 @@ public class SequenceService {
 
 
     /**
-     * Returns and bumps the next value of the given sequence
+     * Returns and bumps the next value of the given sequence.
+     * <p>
+     * For sequences with a block size larger than 1, a new transaction is only
+     * started when the in-memory block of values has been used up.
+     *
      * @param sequence the sequence
      * @return the next value
      */
-    @Transactional(Transactional.TxType.REQUIRES_NEW)
     public long nextValue(Sequence sequence) {
+        return blockCache.nextValue(sequence);
+    }
+
+
+    /**
+     * Allocates a block of values of the given sequence. If the sequence is created concurrently
+     * by another transaction, one of the transactions will fail, and the allocation is retried.
+     *
+     * @param sequence the sequence
+     * @param blockSize the number of values to allocate
+     * @return the first value of the allocated block
+     */
+    private long allocateBlockWithRetry(Sequence sequence, int blockSize) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return allocateBlock(sequence, blockSize);
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ALLOCATION_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Failed allocating values of sequence " + sequence.getName() + ", retrying: " + e);
+            }
+        }
+    }
+
+
+    /**
+     * Allocates a block of values of the given sequence whilst holding a lock on the sequence row
+     *
+     * @param sequence the sequence
+     * @param blockSize the number of values to allocate
+     * @return the first value of the allocated block
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    long allocateBlock(Sequence sequence, int blockSize) {
         long nextValue;
-        SequenceEntity seq = em.find(SequenceEntity.class, sequence.getName());
+        SequenceEntity seq = em.find(SequenceEntity.class, sequence.getName(), LockModeType.PESSIMISTIC_WRITE);
         if (seq != null) {
             // Fetch and bump the next value
-            nextValue = seq.nextValue();
-            em.merge(seq);
+            nextValue = seq.getNextValue();
+            seq.setNextValue(nextValue + blockSize);
         } else {
             nextValue = sequence.initialValue();
             seq = new SequenceEntity();
             seq.setName(sequence.getName());
-            seq.setNextValue(nextValue + 1);
+            seq.setNextValue(nextValue + blockSize);
             em.persist(seq);
         }
 
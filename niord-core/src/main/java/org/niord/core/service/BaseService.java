@@ -23,6 +23,9 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 import java.io.Serializable;
 import java.util.List;
@@ -41,6 +44,9 @@ public abstract class BaseService {
     @Inject
     protected EntityManager em;
 
+    @Inject
+    protected TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
     /**
      * Constructor
      */
@@ -71,6 +77,31 @@ public abstract class BaseService {
         }
     }
 
+    /**
+     * Runs the given action immediately, and again when the current transaction, if any, completes.
+     * <p>
+     * Used for invalidating data cached across transactions, so that data derived by other threads
+     * before the changes of the current transaction were committed, is also invalidated.
+     *
+     * @param action the action to run
+     */
+    protected void runNowAndAfterCompletion(Runnable action) {
+        action.run();
+        if (transactionSynchronizationRegistry != null &&
+                transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
     /**
      * Returns the persistence entity manager as a hibernate node builder which
      * can be used to generate SQM expressions.
@@ -62,6 +62,65 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
     public abstract List<E> getRootEntities();
 
 
+    /**
+     * Called whenever the entity tree has changed.
+     * Sub-classes may override this method to invalidate data derived from the tree, such as tree snapshots.
+     */
+    protected void treeChanged() {
+    }
+
+
+    /**
+     * Should be called whenever the entity tree has changed.
+     * <p>
+     * Calls {@code treeChanged()} immediately, and again when the current transaction completes, so that data
+     * derived from the tree by other threads before the changes were committed, is also invalidated.
+     */
+    protected void notifyTreeChanged() {
+        runNowAndAfterCompletion(this::treeChanged);
+    }
+
+
+    /**
+     * Returns if the sub-tree of the entity shares the tree sort order of the entity.
+     * Sub-classes may override this method, e.g. to sort all sub-areas of an area with a message sorting as the area.
+     *
+     * @param entity the entity
+     * @return if the sub-tree of the entity shares the tree sort order of the entity
+     */
+    protected boolean sharesTreeSortOrder(E entity) {
+        return false;
+    }
+
+
+    /** Returns a tree sort order helper for the entity tree **/
+    protected TreeSortOrder<E> treeSortOrder() {
+        return new TreeSortOrder<>(this::getRootEntities, this::sharesTreeSortOrder);
+    }
+
+
+    /**
+     * Updates the tree sort order of the sub-tree rooted at the given entity, e.g. after the entity has been
+     * created, moved or re-ordered among its siblings. Only if there is no room for the sub-tree between
+     * the neighbouring keys, is the tree sort order of the entire tree renumbered.
+     * <p>
+     * The caller should call {@code notifyTreeChanged()} afterwards.
+     *
+     * @param entity the root of the sub-tree to update
+     * @return the number of updated entities
+     */
+    protected int updateTreeSortOrder(E entity) {
+        List<E> updated = treeSortOrder().update(entity);
+        if (updated == null) {
+            log.info("Tree sort order exhausted for entity " + entity.getId() + ". Renumbering tree.");
+            updated = treeSortOrder().renumber();
+        }
+
+        updated.forEach(this::saveEntity);
+        return updated.size();
+    }
+
+
     /**
      * Moves the entity to the given parent id
      * @param entityId the id of the entity to create
@@ -100,7 +159,9 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
         // Update all lineages
         updateLineages(clz);
         entity.updateActiveFlag();
+        updateTreeSortOrder(entity);
 
+        notifyTreeChanged();
         return true;
     }
 
@@ -122,6 +183,10 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
         // Persist the changes
         updated.forEach(this::saveEntity);
         em.flush();
+
+        if (!updated.isEmpty()) {
+            notifyTreeChanged();
+        }
     }
 
 
@@ -206,6 +271,8 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
             log.info("Updates sort order for entity " + entity.getId() + " to " + entity.getSiblingSortOrder());
             // Save the entity
             saveEntity(entity);
+            updateTreeSortOrder(entity);
+            notifyTreeChanged();
         }
 
         return updated;
@@ -223,7 +290,10 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
      * Re-sort the entity tree.
      *
      * Potentially, a heavy-duty function that scans the entire entity tree,
-     * sorts it and update the treeSortOrder. Use with care.
+     * sorts it and renumbers the treeSortOrder. Use with care.
+     * <p>
+     * The tree sort order is otherwise maintained incrementally via {@code updateTreeSortOrder()}, so this is
+     * only needed for repairing the tree sort order, e.g. after importing entities.
      *
      * @return if the sort order was updated
      */
@@ -247,12 +317,8 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
             return false;
         }
 
-        // Get root entities (sorted)
-        List<E> roots = getRootEntities();
-
         // Re-compute the tree sort order
-        List<E> updated = new ArrayList<>();
-        recomputeTreeSortOrder(roots, 0, updated, false);
+        List<E> updated = treeSortOrder().renumber();
 
         // Persist changed entities
         updated.forEach(this::saveEntity);
@@ -262,40 +328,13 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
         // Update the last processed date
         settingsService.setDate(lastProcessedSettingsKey, lastEntityUpdate);
 
+        if (!updated.isEmpty()) {
+            notifyTreeChanged();
+        }
+
         log.info("Recomputed tree sort order in " + (System.currentTimeMillis() - t0) + " ms");
 
         return updated.size() > 0;
     }
 
-
-    /**
-     * Recursively recomputes the "treeSortOrder", by enumerating the sorted tree entity list and their children.
-     *
-     * @param entities the list of entities to update
-     * @param index the current entity index
-     * @param updatedEntities the list of updated entities given by sub-tree roots.
-     * @param ancestorUpdated if an ancestor entity has been updated
-     * @return the index after processing the list of entities.
-     */
-    @SuppressWarnings("all")
-    protected int recomputeTreeSortOrder(List<E> entities, int index, List<E> updatedEntities, boolean ancestorUpdated) {
-
-        for (E entity : entities) {
-            index++;
-            boolean updated = ancestorUpdated;
-            if (index != entity.getTreeSortOrder()) {
-                entity.setTreeSortOrder(index);
-                updated = true;
-                if (!ancestorUpdated) {
-                    updatedEntities.add(entity);
-                }
-            }
-
-            // NB: entity.getChildren() is by definition sorted (by "siblingSortOrder")
-            index = recomputeTreeSortOrder(entity.getChildren(), index, updatedEntities, updated);
-        }
-
-        return index;
-    }
-
 }
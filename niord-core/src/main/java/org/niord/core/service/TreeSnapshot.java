@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * An immutable in-memory snapshot of a tree of entities, such as the area or category tree.
+ * <p>
+ * The nodes are laid out in pre-order, with siblings sorted by their sibling sort order, which makes
+ * the sub-tree of a node a contiguous range of positions. Node look-ups are O(1), and the ancestors
+ * of every node are pre-computed, so lineage and sub-tree checks never walk the entity parents.
+ * <p>
+ * Each node may hold additional data, e.g. the message sorting type of an area.
+ *
+ * @param <T> the type of additional node data
+ */
+public class TreeSnapshot<T> {
+
+    private static final int[] NO_ANCESTORS = new int[0];
+
+    private final long version;
+    private final Map<Integer, Integer> positions = new HashMap<>();
+    private final int[] ids;
+    private final int[] parents;
+    private final int[] subtreeEnds;
+    private final int[][] ancestors;
+    private final List<T> data;
+
+
+    /**
+     * Constructor
+     *
+     * @param version the version of the snapshot
+     * @param nodes the tree nodes. Nodes whose parent is not included are treated as root nodes
+     */
+    public TreeSnapshot(long version, List<Node<T>> nodes) {
+        this.version = version;
+
+        // Group the nodes by parent
+        Map<Integer, Node<T>> nodeLookup = new HashMap<>();
+        nodes.forEach(n -> nodeLookup.put(n.id, n));
+        Map<Integer, List<Node<T>>> children = new HashMap<>();
+        List<Node<T>> roots = new ArrayList<>();
+        for (Node<T> node : nodes) {
+            if (node.parentId != null && nodeLookup.containsKey(node.parentId) && !node.parentId.equals(node.id)) {
+                children.computeIfAbsent(node.parentId, id -> new ArrayList<>()).add(node);
+            } else {
+                roots.add(node);
+            }
+        }
+
+        int size = nodeLookup.size();
+        ids = new int[size];
+        parents = new int[size];
+        subtreeEnds = new int[size];
+        ancestors = new int[size][];
+        data = new ArrayList<>(size);
+
+        // Lay out the nodes in pre-order, using an explicit stack to support deep trees
+        int position = 0;
+        Deque<StackEntry<T>> stack = new ArrayDeque<>();
+        roots.sort(Node.SIBLING_ORDER);
+        for (int r = roots.size() - 1; r >= 0; r--) {
+            stack.push(new StackEntry<>(roots.get(r), -1));
+        }
+        while (!stack.isEmpty()) {
+            StackEntry<T> entry = stack.pop();
+            Node<T> node = entry.node;
+            if (positions.containsKey(node.id)) {
+                continue;
+            }
+
+            int pos = position++;
+            positions.put(node.id, pos);
+            ids[pos] = node.id;
+            parents[pos] = entry.parent;
+            data.add(node.data);
+            if (entry.parent < 0) {
+                ancestors[pos] = NO_ANCESTORS;
+            } else {
+                int[] parentAncestors = ancestors[entry.parent];
+                ancestors[pos] = Arrays.copyOf(parentAncestors, parentAncestors.length + 1);
+                ancestors[pos][parentAncestors.length] = entry.parent;
+            }
+
+            List<Node<T>> nodeChildren = children.getOrDefault(node.id, Collections.emptyList());
+            nodeChildren.sort(Node.SIBLING_ORDER);
+            for (int c = nodeChildren.size() - 1; c >= 0; c--) {
+                stack.push(new StackEntry<>(nodeChildren.get(c), pos));
+            }
+        }
+
+        // Nodes in a parent cycle are unreachable from the roots and not included
+        int included = position;
+
+        // Compute the sub-tree ranges. A sub-tree ends where the next node outside it starts
+        for (int pos = included - 1; pos >= 0; pos--) {
+            subtreeEnds[pos] = Math.max(subtreeEnds[pos], pos + 1);
+            if (parents[pos] >= 0) {
+                subtreeEnds[parents[pos]] = Math.max(subtreeEnds[parents[pos]], subtreeEnds[pos]);
+            }
+        }
+    }
+
+
+    /** Returns the version of the snapshot **/
+    public long getVersion() {
+        return version;
+    }
+
+
+    /** Returns the number of nodes in the snapshot **/
+    public int size() {
+        return positions.size();
+    }
+
+
+    /** Returns if the snapshot contains the node with the given ID **/
+    public boolean contains(Integer id) {
+        return id != null && positions.containsKey(id);
+    }
+
+
+    /**
+     * Returns the pre-order position of the node, i.e. its index in the sorted tree, or -1 if not found
+     *
+     * @param id the node ID
+     * @return the pre-order position of the node
+     */
+    public int getPosition(Integer id) {
+        Integer pos = id == null ? null : positions.get(id);
+        return pos == null ? -1 : pos;
+    }
+
+
+    /** Returns the data of the node with the given ID, or null if not found **/
+    public T getData(Integer id) {
+        int pos = getPosition(id);
+        return pos < 0 ? null : data.get(pos);
+    }
+
+
+    /** Returns the ID of the parent node, or null if the node is a root or not found **/
+    public Integer getParentId(Integer id) {
+        int pos = getPosition(id);
+        return pos < 0 || parents[pos] < 0 ? null : ids[parents[pos]];
+    }
+
+
+    /** Returns the depth of the node, i.e. 0 for root nodes, or -1 if not found **/
+    public int getDepth(Integer id) {
+        int pos = getPosition(id);
+        return pos < 0 ? -1 : ancestors[pos].length;
+    }
+
+
+    /**
+     * Returns the IDs of the lineage of the node, i.e. the ancestors and the node itself in root-most order
+     *
+     * @param id the node ID
+     * @return the lineage IDs of the node, or an empty list if not found
+     */
+    public List<Integer> getLineageIds(Integer id) {
+        int pos = getPosition(id);
+        if (pos < 0) {
+            return Collections.emptyList();
+        }
+        List<Integer> result = new ArrayList<>(ancestors[pos].length + 1);
+        for (int ancestor : ancestors[pos]) {
+            result.add(ids[ancestor]);
+        }
+        result.add(ids[pos]);
+        return result;
+    }
+
+
+    /**
+     * Returns the lineage of the node in the "/root-id/.../parent-id/id/" format used by tree entities
+     *
+     * @param id the node ID
+     * @return the lineage of the node, or null if not found
+     */
+    public String getLineage(Integer id) {
+        int pos = getPosition(id);
+        if (pos < 0) {
+            return null;
+        }
+        StringBuilder lineage = new StringBuilder("/");
+        for (int ancestor : ancestors[pos]) {
+            lineage.append(ids[ancestor]).append('/');
+        }
+        return lineage.append(id).append('/').toString();
+    }
+
+
+    /**
+     * Returns if the node is in the sub-tree of the given root node, including the root node itself
+     *
+     * @param id the node ID
+     * @param rootId the ID of the sub-tree root
+     * @return if the node is in the sub-tree of the given root node
+     */
+    public boolean isInSubtree(Integer id, Integer rootId) {
+        int pos = getPosition(id);
+        int rootPos = getPosition(rootId);
+        return pos >= 0 && rootPos >= 0 && pos >= rootPos && pos < subtreeEnds[rootPos];
+    }
+
+
+    /**
+     * Returns the IDs of the sub-tree rooted at the given node, including the node itself, in pre-order
+     *
+     * @param rootId the ID of the sub-tree root
+     * @return the IDs of the sub-tree, or an empty list if not found
+     */
+    public List<Integer> getSubtreeIds(Integer rootId) {
+        int rootPos = getPosition(rootId);
+        if (rootPos < 0) {
+            return Collections.emptyList();
+        }
+        List<Integer> result = new ArrayList<>(subtreeEnds[rootPos] - rootPos);
+        for (int pos = rootPos; pos < subtreeEnds[rootPos]; pos++) {
+            result.add(ids[pos]);
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the ID of the node itself or its closest ancestor whose data matches the predicate
+     *
+     * @param id the node ID
+     * @param predicate the predicate to test the node data with
+     * @return the ID of the closest matching node, or null if none is found
+     */
+    public Integer findClosest(Integer id, Predicate<T> predicate) {
+        int pos = getPosition(id);
+        if (pos < 0) {
+            return null;
+        }
+        if (predicate.test(data.get(pos))) {
+            return id;
+        }
+        int[] nodeAncestors = ancestors[pos];
+        for (int x = nodeAncestors.length - 1; x >= 0; x--) {
+            if (predicate.test(data.get(nodeAncestors[x]))) {
+                return ids[nodeAncestors[x]];
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * A tree node used for building a snapshot
+     *
+     * @param <T> the type of additional node data
+     */
+    public static class Node<T> {
+
+        static final Comparator<Node<?>> SIBLING_ORDER = Comparator
+                .comparingDouble((Node<?> n) -> n.siblingSortOrder)
+                .thenComparing(n -> n.id);
+
+        final Integer id;
+        final Integer parentId;
+        final double siblingSortOrder;
+        final T data;
+
+        /** Constructor **/
+        public Node(Integer id, Integer parentId, double siblingSortOrder, T data) {
+            this.id = id;
+            this.parentId = parentId;
+            this.siblingSortOrder = siblingSortOrder;
+            this.data = data;
+        }
+    }
+
+
+    /** A node on the stack used for laying out the nodes, along with the position of its parent **/
+    private static class StackEntry<T> {
+        final Node<T> node;
+        final int parent;
+
+        StackEntry(Node<T> node, int parent) {
+            this.node = node;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds the current {@linkplain TreeSnapshot} of a tree of entities.
+ * <p>
+ * The version is incremented whenever the tree is changed, and the snapshot is re-loaded and swapped
+ * atomically upon the next access. A snapshot loaded while the tree was being changed is never installed.
+ *
+ * @param <T> the type of additional node data
+ */
+public class TreeSnapshotHolder<T> {
+
+    private final AtomicLong version = new AtomicLong();
+    private final Supplier<List<TreeSnapshot.Node<T>>> loader;
+    private volatile TreeSnapshot<T> snapshot;
+
+
+    /**
+     * Constructor
+     *
+     * @param loader loads the current tree nodes
+     */
+    public TreeSnapshotHolder(Supplier<List<TreeSnapshot.Node<T>>> loader) {
+        this.loader = loader;
+    }
+
+
+    /**
+     * Returns the current tree snapshot, and re-loads it if the tree has changed
+     *
+     * @return the current tree snapshot
+     */
+    public TreeSnapshot<T> get() {
+        long currentVersion = version.get();
+        TreeSnapshot<T> current = snapshot;
+        if (current != null && current.getVersion() == currentVersion) {
+            return current;
+        }
+
+        TreeSnapshot<T> loaded = new TreeSnapshot<>(currentVersion, loader.get());
+        if (version.get() == currentVersion) {
+            snapshot = loaded;
+        }
+        return loaded;
+    }
+
+
+    /** Returns the current version of the tree **/
+    public long getVersion() {
+        return version.get();
+    }
+
+
+    /** Should be called whenever the tree has been changed **/
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.service;
+
+import org.niord.core.model.TreeBaseEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Maintains the "treeSortOrder" of tree entities, i.e. a key that orders the entities of the entire tree in pre-order.
+ * <p>
+ * The keys are spaced by {@code GAP}, which leaves room for assigning keys incrementally to a created, moved
+ * or re-ordered sub-tree, without touching the rest of the tree. Only when there is no room left between the
+ * neighbouring keys of a sub-tree, must the entire tree be renumbered.
+ * <p>
+ * The sub-tree of an entity may share the tree sort order of the entity, as is the case for areas that
+ * define a message sorting.
+ *
+ * @param <E> the type of tree entity
+ */
+public class TreeSortOrder<E extends TreeBaseEntity<E>> {
+
+    /** The spacing between the keys of consecutive entities when renumbering the tree **/
+    public static final int GAP = 1000;
+
+    private final Supplier<List<E>> rootEntities;
+    private final Predicate<E> sharesTreeSortOrder;
+
+
+    /**
+     * Constructor
+     *
+     * @param rootEntities returns the root entities of the tree
+     * @param sharesTreeSortOrder returns if the sub-tree of an entity shares the tree sort order of the entity
+     */
+    public TreeSortOrder(Supplier<List<E>> rootEntities, Predicate<E> sharesTreeSortOrder) {
+        this.rootEntities = rootEntities;
+        this.sharesTreeSortOrder = sharesTreeSortOrder;
+    }
+
+
+    /**
+     * Renumbers the tree sort order of the entire tree
+     *
+     * @return the entities whose tree sort order was updated
+     */
+    public List<E> renumber() {
+        List<E> updated = new ArrayList<>();
+        assign(sorted(rootEntities.get()), 0, GAP, false, updated);
+        return updated;
+    }
+
+
+    /**
+     * Assigns tree sort order keys to the sub-tree rooted at the given entity, e.g. after the entity has been
+     * created, moved or re-ordered among its siblings. The keys are spaced evenly between the keys of the
+     * entities preceding and following the sub-tree in the sorted tree.
+     * <p>
+     * Returns null if there is no room for the sub-tree between the neighbouring keys, in which case
+     * the entire tree should be renumbered.
+     *
+     * @param entity the root of the sub-tree to update
+     * @return the entities whose tree sort order was updated, or null if the keys are exhausted
+     */
+    public List<E> update(E entity) {
+        List<E> updated = new ArrayList<>();
+
+        // If an ancestor entity shares its tree sort order with its sub-tree, so does this entity
+        if (inheritsTreeSortOrder(entity)) {
+            assign(Collections.singletonList(entity), entity.getParent().getTreeSortOrder(), 0, true, updated);
+            return updated;
+        }
+
+        long lo = predecessorKey(entity);
+        Integer successorKey = successorKey(entity);
+        int count = keyCount(entity, false);
+
+        long step = successorKey == null ? GAP : (successorKey - lo) / (count + 1);
+        if (step < 1 || lo + count * step > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        assign(Collections.singletonList(entity), (int) lo, (int) step, false, updated);
+        return updated;
+    }
+
+
+    /**
+     * Recursively assigns tree sort order keys to the entities and their sub-trees in pre-order
+     *
+     * @param entities the sorted entities to update
+     * @param key the key preceding the entities
+     * @param step the spacing between the keys
+     * @param shared whether the entities share the key of an ancestor entity
+     * @param updated the list of updated entities
+     * @return the last key assigned
+     */
+    private int assign(List<E> entities, int key, int step, boolean shared, List<E> updated) {
+        for (E entity : entities) {
+            if (!shared) {
+                key += step;
+            }
+            if (entity.getTreeSortOrder() != key) {
+                entity.setTreeSortOrder(key);
+                updated.add(entity);
+            }
+            key = assign(sorted(entity.getChildren()), key, step, shared || sharesTreeSortOrder.test(entity), updated);
+        }
+        return key;
+    }
+
+
+    /** Returns the number of distinct keys needed for the sub-tree rooted at the given entity **/
+    private int keyCount(E entity, boolean shared) {
+        int count = shared ? 0 : 1;
+        boolean childrenShared = shared || sharesTreeSortOrder.test(entity);
+        for (E child : entity.getChildren()) {
+            count += keyCount(child, childrenShared);
+        }
+        return count;
+    }
+
+
+    /** Returns if an ancestor entity shares its tree sort order with its sub-tree **/
+    private boolean inheritsTreeSortOrder(E entity) {
+        for (E ancestor = entity.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            if (sharesTreeSortOrder.test(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /** Returns the key of the entity preceding the sub-tree of the given entity in the sorted tree, or 0 if none **/
+    private long predecessorKey(E entity) {
+        List<E> siblings = siblings(entity);
+        int index = siblings.indexOf(entity);
+        if (index > 0) {
+            // The last entity of the sub-tree of the preceding sibling
+            E predecessor = siblings.get(index - 1);
+            while (!predecessor.getChildren().isEmpty()) {
+                predecessor = Collections.max(predecessor.getChildren());
+            }
+            return predecessor.getTreeSortOrder();
+        }
+        return entity.getParent() != null ? entity.getParent().getTreeSortOrder() : 0;
+    }
+
+
+    /** Returns the key of the entity following the sub-tree of the given entity in the sorted tree, or null if none **/
+    private Integer successorKey(E entity) {
+        for (E e = entity; e != null; e = e.getParent()) {
+            List<E> siblings = siblings(e);
+            int index = siblings.indexOf(e);
+            if (index < siblings.size() - 1) {
+                return siblings.get(index + 1).getTreeSortOrder();
+            }
+        }
+        return null;
+    }
+
+
+    /** Returns the sorted siblings of the entity, including the entity itself **/
+    private List<E> siblings(E entity) {
+        return sorted(entity.getParent() != null ? entity.getParent().getChildren() : rootEntities.get());
+    }
+
+
+    /** Returns a sorted copy of the entities **/
+    private List<E> sorted(List<E> entities) {
+        List<E> result = new ArrayList<>(entities);
+        Collections.sort(result);
+        return result;
+    }
+}
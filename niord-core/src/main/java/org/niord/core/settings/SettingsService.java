@@ -43,6 +43,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -66,6 +67,9 @@ public class SettingsService extends BaseService {
     @Inject
     SettingsCache settingsCache;
 
+    /** Incremented whenever a setting is created or updated **/
+    private final AtomicLong version = new AtomicLong();
+
     /**
      * Called when the system starts up.
      *
@@ -221,6 +225,7 @@ public class SettingsService extends BaseService {
                 if (result == null) {
                     result = new Setting(setting);
                     em.persist(result);
+                    runNowAndAfterCompletion(version::incrementAndGet);
                 }
                 value = new CacheElement<>(result.getValue());
 
@@ -347,9 +352,29 @@ public class SettingsService extends BaseService {
     }
 
 
-    /** Evicts any setting with the given key from the cache **/
+    /**
+     * Evicts any setting with the given key from the cache and bumps the settings version.
+     * <p>
+     * This is done immediately, and again when the current transaction completes, so that values
+     * read by other threads before the change was committed are not cached.
+     *
+     * @param key the setting key
+     */
     public void evictFromCache(String key) {
-        settingsCache.getCache().remove(key);
+        runNowAndAfterCompletion(() -> {
+            settingsCache.getCache().remove(key);
+            version.incrementAndGet();
+        });
+    }
+
+
+    /**
+     * Returns the current version of the settings, which changes whenever a setting is created or updated.
+     * May be used for caching data derived from the settings.
+     * @return the current version of the settings
+     */
+    public long getVersion() {
+        return version.get();
     }
 
 
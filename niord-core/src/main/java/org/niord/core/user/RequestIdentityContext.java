@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.user;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ArcContainer;
+import org.niord.core.model.BaseEntity;
+
+import jakarta.enterprise.context.RequestScoped;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caches the identity of the current request, i.e. the current user and domain.
+ * <p>
+ * The current user and domain are looked up many times within a single request, e.g. by security checks,
+ * message access validation and history recording. The first look-up resolves the entity by name, and
+ * subsequent look-ups within the same request are resolved by primary key, which is served by the
+ * persistence context or the second-level cache rather than by a database query.
+ * <p>
+ * Only entity IDs are cached, since each look-up may take place in a separate transaction.
+ */
+@RequestScoped
+public class RequestIdentityContext {
+
+    private final Map<String, Integer> entityIds = new HashMap<>();
+
+
+    /**
+     * Returns if a request context is active for the current thread, i.e. if the
+     * request identity context can be used
+     *
+     * @return if a request context is active for the current thread
+     */
+    public static boolean isActive() {
+        ArcContainer container = Arc.container();
+        return container != null && container.requestContext().isActive();
+    }
+
+
+    /**
+     * Resolves the entity with the given name once per request.
+     * Subsequent calls look up the entity by ID.
+     *
+     * @param entityClass the entity class, e.g. User or Domain
+     * @param name the name of the entity, e.g. the username or domain ID
+     * @param findById looks up the entity by ID
+     * @param resolver resolves the entity by name
+     * @return the entity, or null if not found
+     */
+    public <E extends BaseEntity<Integer>> E resolve(Class<E> entityClass, String name, Function<Integer, E> findById, Supplier<E> resolver) {
+        String key = entityClass.getSimpleName() + ":" + name;
+
+        Integer id = entityIds.get(key);
+        if (id != null) {
+            E entity = findById.apply(id);
+            if (entity != null) {
+                return entity;
+            }
+        }
+
+        E entity = resolver.get();
+        if (entity != null && entity.getId() != null) {
+            entityIds.put(key, entity.getId());
+        } else {
+            entityIds.remove(key);
+        }
+        return entity;
+    }
+
+
+    /** Clears the cached identity **/
+    public void clear() {
+        entityIds.clear();
+    }
+}
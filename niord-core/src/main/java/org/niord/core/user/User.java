@@ -93,6 +93,25 @@ public class User extends VersionedEntity<Integer> implements IMailable {
     }
 
 
+    /** Copies the access token user values of the template user into this entity */
+    public void copyTokenData(User template) {
+        setUsername(template.getUsername());
+        setFirstName(template.getFirstName());
+        setLastName(template.getLastName());
+        setEmail(template.getEmail());
+    }
+
+
+    /** Returns a fingerprint of the access token user values, as compared by userChanged() **/
+    public static String tokenFingerprint(OidcJwtCallerPrincipal principal) {
+        return UserTokenCache.fingerprint(
+                principal.getName(),
+                principal.getClaim("given_name"),
+                principal.getClaim("family_name"),
+                principal.getClaim("email"));
+    }
+
+
     /** Copies the user values to this entity **/
     public void copyUser(UserVo user) {
         setUsername(user.getUsername());
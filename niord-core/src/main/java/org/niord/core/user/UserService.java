@@ -19,6 +19,7 @@ package org.niord.core.user;
 import io.quarkus.oidc.runtime.OidcJwtCallerPrincipal;
 import io.quarkus.security.identity.SecurityIdentity;
 import org.apache.commons.lang.StringUtils;
+import org.eclipse.microprofile.context.ManagedExecutor;
 import org.jose4j.jwt.JwtClaims;
 import org.niord.core.domain.Domain;
 import org.niord.core.keycloak.KeycloakIntegrationService;
@@ -34,8 +35,10 @@ import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.transaction.Transactional;
+import jakarta.transaction.Transactional.TxType;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -51,7 +54,7 @@ public class UserService extends BaseService {
                     + "[A-Za-z0-9-]+(\\.[A-Za-z0-9]+)*(\\.[A-Za-z]{2,})$");
 
     @Inject
-    private Logger log;
+    protected Logger log;
 
     @Inject
     TicketService ticketService;
@@ -60,7 +63,16 @@ public class UserService extends BaseService {
     KeycloakIntegrationService keycloakIntegrationService;
 
     @Inject
-    SecurityIdentity identity;
+    protected SecurityIdentity identity;
+
+    @Inject
+    RequestIdentityContext requestIdentityContext;
+
+    @Inject
+    protected ManagedExecutor managedExecutor;
+
+    /** Caches the access token data last synchronized to the user entities **/
+    protected final UserTokenCache userTokenCache = new UserTokenCache();
 
 
     /************************/
@@ -130,6 +142,8 @@ public class UserService extends BaseService {
     /**
      * Returns the currently authenticated user.
      * If necessary the user is created and updated in the database
+     * <p>
+     * The user is resolved once per request, and subsequent calls within the request look up the user by ID.
      *
      * @return the currently authenticated user
      */
@@ -140,27 +154,109 @@ public class UserService extends BaseService {
             // Check if the ticket service has resolved a ticket for the current thread
             TicketService.TicketData ticketData = ticketService.getTicketDataForCurrentThread();
             if (ticketData != null && StringUtils.isNotBlank(ticketData.getUser())) {
-                return findByUsername(ticketData.getUser());
+                return resolveForRequest(ticketData.getUser(), () -> findByUsername(ticketData.getUser()));
             } else {
                 return null;
             }
         }
 
-        User user = findByUsername(this.getCallerPrincipal().getName());
+        OidcJwtCallerPrincipal principal = this.getCallerPrincipal();
+        return resolveForRequest(principal.getName(), () -> resolveTokenUser(principal));
+    }
+
+
+    /**
+     * Resolves the user once per request, if a request context is active
+     *
+     * @param username the username
+     * @param resolver resolves the user
+     * @return the user
+     */
+    private User resolveForRequest(String username, Supplier<User> resolver) {
+        RequestIdentityContext ctx = activeRequestIdentityContext();
+        if (ctx == null) {
+            return resolver.get();
+        }
+        return ctx.resolve(User.class, username, id -> getByPrimaryKey(User.class, id), resolver);
+    }
+
+
+    /** Returns the request identity context, or null if no request context is active **/
+    protected RequestIdentityContext activeRequestIdentityContext() {
+        return RequestIdentityContext.isActive() ? requestIdentityContext : null;
+    }
+
+
+    /**
+     * Resolves the user of the access token.
+     * <p>
+     * If the access token matches the data last synchronized to the user entity, the user is looked up by ID.
+     * Otherwise, the user is looked up by username, and created if it does not exist. If the user data of the
+     * access token has changed, the user entity is updated asynchronously.
+     *
+     * @param principal the access token principal
+     * @return the user of the access token
+     */
+    private User resolveTokenUser(OidcJwtCallerPrincipal principal) {
+        String fingerprint = User.tokenFingerprint(principal);
+
+        Integer userId = userTokenCache.getUserId(principal.getName(), fingerprint);
+        if (userId != null) {
+            User user = getByPrimaryKey(User.class, userId);
+            if (user != null) {
+                return user;
+            }
+        }
+
+        User user = findByUsername(principal.getName());
 
         if (user == null) {
             // New user
-            user = new User(this.getCallerPrincipal());
+            user = new User(principal);
             user = saveEntity(user);
             log.info("Created new user " + user);
 
-        } else if (user.userChanged(this.getCallerPrincipal())) {
-            // User data updated
-            user.copyToken(this.getCallerPrincipal());
+        } else if (user.userChanged(principal)) {
+            // User data updated - update the user in a separate transaction
+            updateTokenUserAsync(user.getId(), new User(principal));
+        }
+
+        userTokenCache.register(principal.getName(), user.getId(), fingerprint);
+        return user;
+    }
+
+
+    /**
+     * Asynchronously updates the user with the access token data of the template user
+     *
+     * @param userId the ID of the user to update
+     * @param template the template user containing the access token data
+     */
+    private void updateTokenUserAsync(Integer userId, User template) {
+        managedExecutor.runAsync(() -> updateTokenUser(userId, template))
+                .exceptionally(e -> {
+                    // Make sure that the update is re-attempted
+                    userTokenCache.invalidate(template.getUsername());
+                    log.error("Failed updating user " + template.getUsername(), e);
+                    return null;
+                });
+    }
+
+
+    /**
+     * Updates the user with the access token data of the template user
+     *
+     * @param userId the ID of the user to update
+     * @param template the template user containing the access token data
+     */
+    @Transactional(TxType.REQUIRES_NEW)
+    void updateTokenUser(Integer userId, User template) {
+        User user = getByPrimaryKey(User.class, userId);
+        if (user != null) {
+            user.copyTokenData(template);
             user = saveEntity(user);
             log.info("Updated user " + user);
         }
-        return user;
     }
 
 
@@ -336,6 +432,7 @@ public class UserService extends BaseService {
             // User data updated
             user.copyUser(userVo);
             user = saveEntity(user);
+            userTokenCache.invalidate(user.getUsername());
             log.info("Updated user from Keycloak " + user.getUsername());
         }
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.user;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Caches a fingerprint of the access token user data, such as names and email, that was last
+ * synchronized to the user entity, along with the ID of the user entity.
+ * <p>
+ * As long as the access token of a user matches the cached fingerprint, the user entity is known to be
+ * up-to-date, and it can be looked up by ID rather than by username and compared with the token.
+ */
+public class UserTokenCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+
+    /**
+     * Returns a fingerprint of the given access token values
+     *
+     * @param values the access token values
+     * @return the fingerprint
+     */
+    public static String fingerprint(String... values) {
+        return Stream.of(values)
+                .map(v -> Objects.toString(v, ""))
+                .collect(Collectors.joining("\u0000"));
+    }
+
+
+    /**
+     * Returns the ID of the user entity, if the user entity is known to be up-to-date with the given fingerprint.
+     * Otherwise, null is returned.
+     *
+     * @param username the username
+     * @param fingerprint the fingerprint of the access token
+     * @return the ID of the user entity or null
+     */
+    public Integer getUserId(String username, String fingerprint) {
+        Entry entry = entries.get(key(username));
+        return entry != null && entry.fingerprint.equals(fingerprint) ? entry.userId : null;
+    }
+
+
+    /**
+     * Registers that the user entity is up-to-date with the given fingerprint
+     *
+     * @param username the username
+     * @param userId the ID of the user entity
+     * @param fingerprint the fingerprint of the access token
+     */
+    public void register(String username, Integer userId, String fingerprint) {
+        entries.put(key(username), new Entry(userId, fingerprint));
+    }
+
+
+    /**
+     * Invalidates the cached fingerprint for the given user, e.g. when the user entity has been updated
+     *
+     * @param username the username
+     */
+    public void invalidate(String username) {
+        if (username != null) {
+            entries.remove(key(username));
+        }
+    }
+
+
+    /** Usernames are case-insensitive **/
+    private static String key(String username) {
+        return username.toLowerCase();
+    }
+
+
+    /** A cache entry **/
+    private static class Entry {
+        final Integer userId;
+        final String fingerprint;
+
+        Entry(Integer userId, String fingerprint) {
+            this.userId = userId;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
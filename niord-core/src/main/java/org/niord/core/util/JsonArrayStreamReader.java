@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Streams the elements of an array field of the root object of a JSON file,
+ * e.g. the "data" field of a serialized {@code PagedSearchResultVo}.
+ * <p>
+ * Only one element is held in memory at a time, so arbitrarily large files can be read.
+ */
+@SuppressWarnings("unused")
+public class JsonArrayStreamReader<T> implements Closeable {
+
+    final ObjectMapper mapper;
+    final JsonParser parser;
+    final Class<T> elementClass;
+    boolean done;
+
+    /**
+     * Constructor
+     *
+     * @param mapper the object mapper used for parsing the elements
+     * @param path the JSON file
+     * @param arrayField the name of the array field of the root object
+     * @param elementClass the class of the array elements
+     */
+    public JsonArrayStreamReader(ObjectMapper mapper, Path path, String arrayField, Class<T> elementClass) throws IOException {
+        this.mapper = mapper;
+        this.elementClass = elementClass;
+        this.parser = mapper.getFactory().createParser(path.toFile());
+        try {
+            if (!seekArrayField(parser, arrayField)) {
+                throw new IOException("No array field " + arrayField + " found in " + path);
+            }
+        } catch (IOException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+
+    /** Positions the parser at the start of the given array field of the root object **/
+    private static boolean seekArrayField(JsonParser parser, String arrayField) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (arrayField.equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns the next element, or null if all elements have been read
+     * @return the next element, or null if all elements have been read
+     */
+    public T next() throws IOException {
+        if (done) {
+            return null;
+        }
+        if (parser.nextToken() == JsonToken.END_ARRAY) {
+            done = true;
+            return null;
+        }
+        return mapper.readValue(parser, elementClass);
+    }
+
+
+    /**
+     * Skips the given number of elements
+     * @param count the number of elements to skip
+     * @return the number of elements skipped
+     */
+    public int skip(int count) throws IOException {
+        int skipped = 0;
+        while (skipped < count && !done) {
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                done = true;
+            } else {
+                parser.skipChildren();
+                skipped++;
+            }
+        }
+        return skipped;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+
+    /**
+     * Counts the elements of the array field of the root object of the JSON file,
+     * without parsing the elements
+     *
+     * @param mapper the object mapper
+     * @param path the JSON file
+     * @param arrayField the name of the array field of the root object
+     * @return the number of elements, or -1 if the array field was not found
+     */
+    public static int count(ObjectMapper mapper, Path path, String arrayField) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(path.toFile())) {
+            if (!seekArrayField(parser, arrayField)) {
+                return -1;
+            }
+            int count = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                parser.skipChildren();
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes and applies JSON patches, as defined by RFC 6902.
+ * <p>
+ * Only the "add", "remove" and "replace" operations are produced by {@code diff()}
+ * and supported by {@code apply()}, which is sufficient for storing deltas between
+ * two versions of the same JSON document.
+ */
+@SuppressWarnings("unused")
+public class JsonPatchUtils {
+
+    private JsonPatchUtils() {
+    }
+
+
+    /**
+     * Computes the JSON patch that will transform the source document into the target document
+     *
+     * @param source the source document
+     * @param target the target document
+     * @return the JSON patch
+     */
+    public static ArrayNode diff(JsonNode source, JsonNode target) {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+        diff(source, target, "", patch);
+        return patch;
+    }
+
+
+    /** Recursively computes the difference between the source and target nodes **/
+    private static void diff(JsonNode source, JsonNode target, String path, ArrayNode patch) {
+        if (source.equals(target)) {
+            return;
+        }
+
+        if (source.isObject() && target.isObject()) {
+            Iterator<String> sourceFields = source.fieldNames();
+            while (sourceFields.hasNext()) {
+                String field = sourceFields.next();
+                if (!target.has(field)) {
+                    addOp(patch, "remove", path + "/" + escape(field), null);
+                }
+            }
+            Iterator<Map.Entry<String, JsonNode>> targetFields = target.fields();
+            while (targetFields.hasNext()) {
+                Map.Entry<String, JsonNode> field = targetFields.next();
+                String fieldPath = path + "/" + escape(field.getKey());
+                if (!source.has(field.getKey())) {
+                    addOp(patch, "add", fieldPath, field.getValue());
+                } else {
+                    diff(source.get(field.getKey()), field.getValue(), fieldPath, patch);
+                }
+            }
+
+        } else if (source.isArray() && target.isArray()) {
+            int sourceSize = source.size();
+            int targetSize = target.size();
+
+            // Skip common prefix and suffix, so that insertions and deletions
+            // in the middle of the array do not cause all subsequent elements to be replaced
+            int prefix = 0;
+            while (prefix < sourceSize && prefix < targetSize
+                    && source.get(prefix).equals(target.get(prefix))) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < sourceSize - prefix && suffix < targetSize - prefix
+                    && source.get(sourceSize - 1 - suffix).equals(target.get(targetSize - 1 - suffix))) {
+                suffix++;
+            }
+
+            int sourceMiddle = sourceSize - prefix - suffix;
+            int targetMiddle = targetSize - prefix - suffix;
+            int common = Math.min(sourceMiddle, targetMiddle);
+            for (int x = 0; x < common; x++) {
+                diff(source.get(prefix + x), target.get(prefix + x), path + "/" + (prefix + x), patch);
+            }
+            for (int x = common; x < targetMiddle; x++) {
+                addOp(patch, "add", path + "/" + (prefix + x), target.get(prefix + x));
+            }
+            for (int x = common; x < sourceMiddle; x++) {
+                addOp(patch, "remove", path + "/" + (prefix + common), null);
+            }
+
+        } else {
+            addOp(patch, "replace", path, target);
+        }
+    }
+
+
+    /** Adds a new operation to the patch **/
+    private static void addOp(ArrayNode patch, String op, String path, JsonNode value) {
+        ObjectNode operation = patch.addObject();
+        operation.put("op", op);
+        operation.put("path", path);
+        if (value != null) {
+            operation.set("value", value.deepCopy());
+        }
+    }
+
+
+    /**
+     * Applies the JSON patch to the given document and returns the result.
+     * The source document is not modified.
+     *
+     * @param source the source document
+     * @param patch the JSON patch to apply
+     * @return the patched document
+     */
+    public static JsonNode apply(JsonNode source, JsonNode patch) {
+        JsonNode result = source.deepCopy();
+        for (JsonNode operation : patch) {
+            String op = operation.path("op").asText();
+            List<String> path = parsePath(operation.path("path").asText());
+            JsonNode value = operation.get("value");
+
+            if (path.isEmpty()) {
+                if (!"replace".equals(op) && !"add".equals(op)) {
+                    throw new IllegalArgumentException("Unsupported operation on document root: " + op);
+                }
+                result = value.deepCopy();
+                continue;
+            }
+
+            JsonNode parent = result;
+            for (String token : path.subList(0, path.size() - 1)) {
+                parent = parent.isArray() ? parent.get(Integer.parseInt(token)) : parent.get(token);
+                if (parent == null) {
+                    throw new IllegalArgumentException("Invalid patch path " + operation.path("path").asText());
+                }
+            }
+            String last = path.get(path.size() - 1);
+
+            if (parent.isObject()) {
+                ObjectNode obj = (ObjectNode) parent;
+                switch (op) {
+                    case "add":
+                    case "replace":
+                        obj.set(last, value.deepCopy());
+                        break;
+                    case "remove":
+                        obj.remove(last);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported patch operation " + op);
+                }
+            } else if (parent.isArray()) {
+                ArrayNode arr = (ArrayNode) parent;
+                int index = "-".equals(last) ? arr.size() : Integer.parseInt(last);
+                switch (op) {
+                    case "add":
+                        arr.insert(index, value.deepCopy());
+                        break;
+                    case "replace":
+                        arr.set(index, value.deepCopy());
+                        break;
+                    case "remove":
+                        arr.remove(index);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported patch operation " + op);
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid patch path " + operation.path("path").asText());
+            }
+        }
+        return result;
+    }
+
+
+    /** Escapes a field name as a JSON pointer token **/
+    private static String escape(String token) {
+        return token.replace("~", "~0").replace("/", "~1");
+    }
+
+
+    /** Parses a JSON pointer into its unescaped tokens **/
+    private static List<String> parsePath(String path) {
+        List<String> tokens = new ArrayList<>();
+        if (path.isEmpty()) {
+            return tokens;
+        }
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("Invalid JSON pointer " + path);
+        }
+        for (String token : path.substring(1).split("/", -1)) {
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.batch.BatchFolderWatcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the batch job drop folder watcher and measures the latency from a file being
+ * dropped until it is handed over for processing
+ */
+public class BatchFolderWatcherTest {
+
+    private static final long SETTLE_TIME_MS = 300L;
+
+    private Path root;
+    private BatchFolderWatcher watcher;
+    private final BlockingQueue<Dropped> dropped = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("batch-jobs");
+        Files.createDirectories(root.resolve("msg-import").resolve("in"));
+        watcher = new BatchFolderWatcher(root, SETTLE_TIME_MS, (jobName, file) -> {
+            dropped.add(new Dropped(jobName, file, Files.size(file), System.currentTimeMillis()));
+            Files.delete(file);
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        watcher.close();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testStartupRescan() throws Exception {
+        Path file = Files.write(root.resolve("msg-import").resolve("in").resolve("existing.json"), "[]".getBytes());
+
+        watcher.start();
+
+        Dropped d = dropped.poll(5, TimeUnit.SECONDS);
+        assertNotNull(d);
+        assertEquals("msg-import", d.jobName);
+        assertEquals(file, d.file);
+    }
+
+    @Test
+    public void testRenameIntoPlace() throws Exception {
+        watcher.start();
+
+        Path tmp = Files.write(root.resolve("msg-import").resolve(".messages.json"), "[]".getBytes());
+        long t0 = System.currentTimeMillis();
+        Files.move(tmp, root.resolve("msg-import").resolve("in").resolve("messages.json"), StandardCopyOption.ATOMIC_MOVE);
+
+        Dropped d = dropped.poll(5, TimeUnit.SECONDS);
+        assertNotNull(d);
+        long latency = d.time - t0;
+        assertTrue("Pickup latency " + latency + " ms", latency < 1000L);
+    }
+
+    @Test
+    public void testSlowWriteAndNewJobFolder() throws Exception {
+        watcher.start();
+
+        // Batch job folders created after the watcher has started must be watched as well
+        Path in = Files.createDirectories(root.resolve("aton-import").resolve("in"));
+        Thread.sleep(100);
+
+        // Write the file slowly. It must not be picked up before it has been written completely
+        byte[] chunk = new byte[1024];
+        int chunks = 10;
+        long t0;
+        try (OutputStream out = Files.newOutputStream(in.resolve("atons.xml"))) {
+            for (int x = 0; x < chunks; x++) {
+                out.write(chunk);
+                out.flush();
+                Thread.sleep(SETTLE_TIME_MS / 2);
+                assertNull(dropped.poll());
+            }
+            t0 = System.currentTimeMillis();
+        }
+
+        Dropped d = dropped.poll(5, TimeUnit.SECONDS);
+        assertNotNull(d);
+        assertEquals("aton-import", d.jobName);
+        assertEquals(chunks * chunk.length, d.size);
+        long latency = d.time - t0;
+        assertTrue("Pickup latency " + latency + " ms", latency < 1000L);
+    }
+
+    private static class Dropped {
+        final String jobName;
+        final Path file;
+        final long size;
+        final long time;
+
+        Dropped(String jobName, Path file, long size, long time) {
+            this.jobName = jobName;
+            this.file = file;
+            this.size = size;
+            this.time = time;
+        }
+    }
+}
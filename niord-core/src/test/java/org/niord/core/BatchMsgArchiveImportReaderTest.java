@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.batch.BatchData;
+import org.niord.core.message.batch.BatchMsgArchiveImportReader;
+import org.niord.core.message.batch.BatchMsgArchiveImportReader.ExtractedArchiveMessageVo;
+import org.niord.core.message.vo.SystemMessageVo;
+import org.niord.core.repo.RepoFileVo;
+import org.niord.core.repo.RepositoryService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@code BatchMsgArchiveImportReader} extracts a message archive and streams the messages
+ */
+public class BatchMsgArchiveImportReaderTest {
+
+    static final int MESSAGE_COUNT = 1000;
+
+    ObjectMapper mapper = new ObjectMapper();
+    Path repoRoot;
+    Path archive;
+
+    @Before
+    public void setUp() throws IOException {
+        repoRoot = Files.createTempDirectory("niord-repo-test");
+        archive = Files.createTempFile("niord-archive-test", ".zip");
+        writeArchive();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(archive);
+        Files.walk(repoRoot)
+                .sorted((p1, p2) -> p2.compareTo(p1))
+                .forEach(p -> p.toFile().delete());
+    }
+
+
+    @Test
+    public void testReadArchive() throws Exception {
+
+        TestArchiveImportReader reader = new TestArchiveImportReader("dma-nw");
+        reader.open(null);
+        try {
+            // The attachments are extracted to the temporary repository folder
+            Path extracted = repoRoot.resolve(reader.getTempArchiveRepoPath());
+            assertTrue(Files.exists(extracted.resolve("messages/7/uid-7/1/attachment.txt")));
+            assertEquals("uid-7", new String(
+                    Files.readAllBytes(extracted.resolve("messages/7/uid-7/1/attachment.txt")),
+                    StandardCharsets.UTF_8));
+
+            // Zip entries outside the destination folder are skipped
+            assertFalse(Files.exists(repoRoot.resolve("temp/evil.txt")));
+
+            // The messages are read one at a time, in order
+            for (int x = 0; x < MESSAGE_COUNT; x++) {
+                ExtractedArchiveMessageVo message = (ExtractedArchiveMessageVo) reader.readItem();
+                assertEquals("NW-" + x, message.getMessage().getShortId());
+                assertEquals(reader.getTempArchiveRepoPath() + "/messages/" + x % 10 + "/uid-" + x,
+                        message.getEditRepoPath());
+                assertEquals(x + 1, reader.checkpointInfo());
+            }
+            assertNull(reader.readItem());
+            assertEquals(MESSAGE_COUNT, reader.getMessageCount());
+            assertEquals(Integer.valueOf(99), reader.progress.get(reader.progress.size() - 1));
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+
+        TestArchiveImportReader reader = new TestArchiveImportReader("dma-nw");
+        reader.open(MESSAGE_COUNT - 2);
+        try {
+            ExtractedArchiveMessageVo message = (ExtractedArchiveMessageVo) reader.readItem();
+            assertEquals("NW-" + (MESSAGE_COUNT - 2), message.getMessage().getShortId());
+            message = (ExtractedArchiveMessageVo) reader.readItem();
+            assertEquals("NW-" + (MESSAGE_COUNT - 1), message.getMessage().getShortId());
+            assertNull(reader.readItem());
+            assertEquals(MESSAGE_COUNT, reader.checkpointInfo());
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    @Test(expected = Exception.class)
+    public void testMissingSeriesId() throws Exception {
+        TestArchiveImportReader reader = new TestArchiveImportReader(null);
+        reader.open(null);
+    }
+
+
+    /** Writes a message archive with a messages.json file placed before the attachments **/
+    private void writeArchive() throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive))) {
+            out.putNextEntry(new ZipEntry("messages.json"));
+            mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeNumberField("total", MESSAGE_COUNT);
+                generator.writeArrayFieldStart("data");
+                for (int x = 0; x < MESSAGE_COUNT; x++) {
+                    SystemMessageVo message = new SystemMessageVo();
+                    message.setId("uid-" + x);
+                    message.setShortId("NW-" + x);
+                    message.setRepoPath("messages/" + x % 10 + "/uid-" + x);
+                    mapper.writeValue(generator, message);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            out.closeEntry();
+
+            for (int x = 0; x < MESSAGE_COUNT; x++) {
+                out.putNextEntry(new ZipEntry("messages/" + x % 10 + "/uid-" + x + "/1/attachment.txt"));
+                out.write(("uid-" + x).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+
+            out.putNextEntry(new ZipEntry("../evil.txt"));
+            out.write("evil".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+    }
+
+
+    /**
+     * Archive import reader that reads the test archive into the test repository
+     */
+    class TestArchiveImportReader extends BatchMsgArchiveImportReader {
+
+        List<Integer> progress = new ArrayList<>();
+
+        TestArchiveImportReader(String seriesId) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("seriesId", seriesId);
+            job = new BatchData();
+            job.setProperties(properties);
+            repositoryService = new RepositoryService() {
+                @Override
+                public Path getRepoRoot() {
+                    return repoRoot;
+                }
+
+                @Override
+                public RepoFileVo getNewTempDir() {
+                    RepoFileVo dir = new RepoFileVo();
+                    dir.setPath("temp/import");
+                    dir.setDirectory(true);
+                    return dir;
+                }
+            };
+        }
+
+        String getTempArchiveRepoPath() {
+            return tempArchiveRepoPath;
+        }
+
+        int getMessageCount() {
+            return messageCount;
+        }
+
+        @Override
+        protected Path getMessageArchiveFile() {
+            return archive;
+        }
+
+        @Override
+        protected Logger getLog() {
+            Logger log = Logger.getLogger(BatchMsgArchiveImportReaderTest.class.getName());
+            log.setLevel(Level.WARNING);
+            return log;
+        }
+
+        @Override
+        protected void updateProgress(Integer progress) {
+            this.progress.add(progress);
+        }
+    }
+}
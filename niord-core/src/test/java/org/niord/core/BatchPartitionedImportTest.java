@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.batch.BatchData;
+import org.niord.core.batch.BatchPartitionMapper;
+import org.niord.core.message.batch.BatchMessageImportReader;
+import org.niord.core.message.vo.SystemMessageVo;
+import org.niord.model.message.MessageSeriesVo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the partitions of a partitioned message import step each read a disjoint subset of the
+ * messages, and that all messages of a message series are read by the same partition, in order.
+ */
+public class BatchPartitionedImportTest {
+
+    private static final int MESSAGE_COUNT = 2000;
+    private static final int SERIES_COUNT = 8;
+    private static final int PARTITIONS = 4;
+    private static final String DEFAULT_SERIES_ID = "dma-nw";
+
+    @Test
+    public void testPartitionedRead() throws Exception {
+
+        List<SystemMessageVo> messages = createMessages();
+
+        // Read the messages with each partition
+        Map<String, Integer> messagePartitions = new HashMap<>();
+        Map<String, List<Integer>> seriesNumbers = new HashMap<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            TestMessageImportReader reader = new TestMessageImportReader(messages, partition, PARTITIONS);
+            reader.open(null);
+            SystemMessageVo message;
+            while ((message = (SystemMessageVo) reader.readItem()) != null) {
+                assertNull("Message read twice " + message.getId(), messagePartitions.put(message.getId(), partition));
+                seriesNumbers.computeIfAbsent(seriesId(message), s -> new ArrayList<>()).add(message.getNumber());
+            }
+            reader.close();
+        }
+
+        // Each message must have been read by exactly one partition
+        assertEquals(MESSAGE_COUNT, messagePartitions.size());
+
+        // All messages of a message series, including messages without a message series, which
+        // belong to the default message series, must have been read by the same partition
+        Map<String, Set<Integer>> seriesPartitions = new HashMap<>();
+        for (SystemMessageVo message : messages) {
+            seriesPartitions.computeIfAbsent(seriesId(message), s -> new HashSet<>())
+                    .add(messagePartitions.get(message.getId()));
+        }
+        assertEquals(SERIES_COUNT + 1, seriesPartitions.size());
+        seriesPartitions.values().forEach(partitions -> assertEquals(1, partitions.size()));
+        assertEquals(BatchPartitionMapper.partitionOf(DEFAULT_SERIES_ID, PARTITIONS),
+                (int) seriesPartitions.get(DEFAULT_SERIES_ID).iterator().next());
+
+        // The series are spread over more than one partition
+        Set<Integer> usedPartitions = new HashSet<>(messagePartitions.values());
+        assertTrue(usedPartitions.size() > 1);
+
+        // Within a message series, the messages are read in order
+        seriesNumbers.values().forEach(numbers -> {
+            for (int x = 1; x < numbers.size(); x++) {
+                assertTrue(numbers.get(x - 1) < numbers.get(x));
+            }
+        });
+    }
+
+
+    @Test
+    public void testRestartPartition() throws Exception {
+
+        List<SystemMessageVo> messages = createMessages();
+        int partition = BatchPartitionMapper.partitionOf(DEFAULT_SERIES_ID, PARTITIONS);
+
+        // Read all messages of the partition in one go
+        List<String> expected = new ArrayList<>();
+        TestMessageImportReader reader = new TestMessageImportReader(messages, partition, PARTITIONS);
+        reader.open(null);
+        SystemMessageVo message;
+        while ((message = (SystemMessageVo) reader.readItem()) != null) {
+            expected.add(message.getId());
+        }
+
+        // Read half of the messages, and restart from the checkpoint
+        List<String> ids = new ArrayList<>();
+        reader = new TestMessageImportReader(messages, partition, PARTITIONS);
+        reader.open(null);
+        for (int x = 0; x < expected.size() / 2; x++) {
+            ids.add(((SystemMessageVo) reader.readItem()).getId());
+        }
+        Serializable checkpoint = reader.checkpointInfo();
+
+        reader = new TestMessageImportReader(messages, partition, PARTITIONS);
+        reader.open(checkpoint);
+        while ((message = (SystemMessageVo) reader.readItem()) != null) {
+            ids.add(message.getId());
+        }
+        assertEquals(expected, ids);
+    }
+
+
+    @Test
+    public void testSinglePartition() throws Exception {
+
+        List<SystemMessageVo> messages = createMessages();
+        TestMessageImportReader reader = new TestMessageImportReader(messages, 0, 1);
+        reader.open(null);
+        int count = 0;
+        while (reader.readItem() != null) {
+            count++;
+        }
+        assertEquals(MESSAGE_COUNT, count);
+    }
+
+
+    /**
+     * Generates the messages, numbered consecutively within each message series.
+     * Every tenth message has no message series, and will be assigned the default message series.
+     */
+    private List<SystemMessageVo> createMessages() {
+        List<SystemMessageVo> messages = new ArrayList<>();
+        for (int x = 0; x < MESSAGE_COUNT; x++) {
+            SystemMessageVo message = new SystemMessageVo();
+            message.setId("uid-" + x);
+            message.setNumber(x + 1);
+            if (x % 10 != 0) {
+                MessageSeriesVo series = new MessageSeriesVo();
+                series.setSeriesId("series-" + (x % SERIES_COUNT));
+                message.setMessageSeries(series);
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+
+    /** Returns the message series ID that the message will be imported into **/
+    private String seriesId(SystemMessageVo message) {
+        return message.getMessageSeries() != null ? message.getMessageSeries().getSeriesId() : DEFAULT_SERIES_ID;
+    }
+
+
+    /**
+     * Message import reader for the given partition, which reads the given messages
+     */
+    static class TestMessageImportReader extends BatchMessageImportReader {
+
+        final List<SystemMessageVo> testMessages;
+        final int partitionIndex;
+        final int partitionCount;
+
+        TestMessageImportReader(List<SystemMessageVo> messages, int partition, int partitions) {
+            this.testMessages = messages;
+            this.partitionIndex = partition;
+            this.partitionCount = partitions;
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("seriesId", DEFAULT_SERIES_ID);
+            job = new BatchData();
+            job.setProperties(properties);
+        }
+
+        @Override
+        protected List<SystemMessageVo> readMessages() {
+            return testMessages;
+        }
+
+        @Override
+        protected int getPartition() {
+            return partitionIndex;
+        }
+
+        @Override
+        protected int getPartitionCount() {
+            return partitionCount;
+        }
+
+        @Override
+        protected Logger getLog() {
+            Logger log = Logger.getLogger(BatchPartitionedImportTest.class.getName());
+            log.setLevel(Level.WARNING);
+            return log;
+        }
+
+        @Override
+        protected void updateProgress(Integer progress) {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.batch.BatchProgressTracker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the time spent on progress bookkeeping for a 10k item batch import
+ * with and without throttled progress persistence
+ */
+public class BatchProgressTrackerTest {
+
+    private static final int ITEMS = 10000;
+    private static final int CHUNK_SIZE = 10;
+
+    /** Simulated cost in ms of persisting the progress in the database **/
+    private static final long PERSIST_TIME_MS = 1L;
+
+    private final AtomicInteger persisted = new AtomicInteger();
+    private final Map<Long, Integer> persistedProgress = new ConcurrentHashMap<>();
+
+    private final BatchProgressTracker.ProgressPersister persister = (instanceId, progress) -> {
+        persisted.incrementAndGet();
+        persistedProgress.put(instanceId, progress);
+        try {
+            Thread.sleep(PERSIST_TIME_MS);
+        } catch (InterruptedException ignored) {
+        }
+    };
+
+    @Test
+    public void testThrottledProgress() {
+
+        // Unthrottled, every progress update is persisted
+        BatchProgressTracker unthrottled = new BatchProgressTracker(0, 0, persister);
+        long t0 = System.currentTimeMillis();
+        runImport(1L, unthrottled);
+        long unthrottledTime = System.currentTimeMillis() - t0;
+        int unthrottledPersisted = persisted.getAndSet(0);
+
+        // Throttled, using the default settings
+        BatchProgressTracker throttled = new BatchProgressTracker(5000, 5, persister);
+        t0 = System.currentTimeMillis();
+        runImport(2L, throttled);
+        long throttledTime = System.currentTimeMillis() - t0;
+        int throttledPersisted = persisted.getAndSet(0);
+
+        assertEquals(ITEMS / CHUNK_SIZE + 1, unthrottledPersisted);
+        assertTrue(throttledPersisted <= 100 / 5 + 2);
+        assertTrue(throttledTime < unthrottledTime);
+
+        // The final progress must always be persisted
+        assertEquals(Integer.valueOf(100), persistedProgress.get(1L));
+        assertEquals(Integer.valueOf(100), persistedProgress.get(2L));
+        assertNull(throttled.getProgress(2L));
+    }
+
+    @Test
+    public void testInMemoryProgress() {
+        BatchProgressTracker tracker = new BatchProgressTracker(60000, 10, persister);
+
+        tracker.update(1L, 0);
+        tracker.update(1L, 3);
+        tracker.update(1L, 7);
+
+        // The in-memory value is the latest, whereas only the first update has been persisted
+        assertEquals(Integer.valueOf(7), tracker.getProgress(1L));
+        assertEquals(Integer.valueOf(0), persistedProgress.get(1L));
+
+        tracker.update(1L, 12);
+        assertEquals(Integer.valueOf(12), persistedProgress.get(1L));
+
+        // Flushing persists the latest progress and stops tracking the job
+        tracker.update(1L, 15);
+        tracker.flush(1L);
+        assertEquals(Integer.valueOf(15), persistedProgress.get(1L));
+        assertNull(tracker.getProgress(1L));
+        assertEquals(3, persisted.get());
+    }
+
+    /** Simulates an import where the reader reports progress once per chunk **/
+    private void runImport(Long instanceId, BatchProgressTracker tracker) {
+        for (int itemNo = 0; itemNo < ITEMS; itemNo++) {
+            if (itemNo % CHUNK_SIZE == 0) {
+                tracker.update(instanceId, (int) (100.0 * itemNo / ITEMS));
+            }
+        }
+        tracker.update(instanceId, 100);
+        tracker.flush(instanceId);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.script.pdf.ChunkedHtmlToPdfRenderer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests rendering a large message report in chunks into a single PDF document
+ */
+public class ChunkedPdfReportTest {
+
+    private static final int MESSAGES = 5000;
+    private static final int CHUNK_SIZE = 1000;
+
+    @Test
+    public void testChunkedPdfReport() throws Exception {
+
+        File chunkedFile = File.createTempFile("chunked-report-test-", ".pdf");
+        chunkedFile.deleteOnExit();
+
+        ChunkedHtmlToPdfRenderer renderer;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(chunkedFile));
+             ChunkedHtmlToPdfRenderer chunkedRenderer = ChunkedHtmlToPdfRenderer.newRenderer(out, null, null, null, null)) {
+            renderer = chunkedRenderer;
+            for (int x = 0; x < MESSAGES; x += CHUNK_SIZE) {
+                renderer.render(reportHtml(x, Math.min(x + CHUNK_SIZE, MESSAGES), x == 0));
+            }
+            renderer.finish();
+        }
+
+        assertEquals(MESSAGES / CHUNK_SIZE, renderer.getChunkCount());
+        assertTrue(renderer.getPageCount() > MESSAGES / CHUNK_SIZE);
+        assertTrue(chunkedFile.length() > 0);
+    }
+
+
+    /** Returns a report HTML document for the given range of messages **/
+    private String reportHtml(int from, int to, boolean frontPage) {
+        StringBuilder html = new StringBuilder()
+                .append("<html><head><style type='text/css'>")
+                .append("@page { size: A4 portrait; @top-right { content: counter(page); } }")
+                .append(".message { border-bottom: 1px solid #ddd; padding: 2mm 0; }")
+                .append("</style></head><body>");
+        if (frontPage) {
+            html.append("<h1>Messages</h1><p>").append(MESSAGES).append(" messages</p>");
+        }
+        for (int x = from; x < to; x++) {
+            html.append("<div class='message'><h4>NW-").append(x).append("-17. Test area - Test message ")
+                    .append(x).append("</h4><p>Light buoy ").append(x)
+                    .append(" in pos. 55&deg; 42.2'N - 012&deg; 36.5'E is unlit. Mariners are advised to navigate with caution.</p></div>");
+        }
+        return html.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.dictionary.Dictionary;
+import org.niord.core.dictionary.DictionaryBundle;
+import org.niord.core.dictionary.DictionaryEntry;
+import org.niord.core.dictionary.DictionaryService;
+import org.niord.core.dictionary.vo.DictionaryEntryVo;
+import org.niord.core.dictionary.vo.DictionaryVo;
+import org.niord.core.model.BaseEntity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the merged dictionary bundles, and the caching and invalidation of the bundles by the DictionaryService
+ */
+public class DictionaryBundleTest {
+
+    static final String[] NAMES = { "web", "message", "pdf" };
+    static final String[] LANGUAGES = { "da", "en" };
+
+    @Test
+    public void testMergedBundle() {
+        DictionaryVo dict1 = createDictionary("web", 0, 3);
+        DictionaryVo dict2 = createDictionary("message", 0, 3);
+        dict2.getEntries().get("key-1").getDesc("en").setValue("overridden");
+
+        DictionaryBundle bundle = DictionaryBundle.merge(Arrays.asList(dict1, null, dict2), "en");
+        assertEquals(Locale.ENGLISH, bundle.getLocale());
+        assertEquals(3, bundle.keySet().size());
+        assertEquals("overridden", bundle.getString("key-1"));
+        assertEquals("message en 2", bundle.getString("key-2"));
+        assertTrue(bundle.containsKey("key-0"));
+        assertFalse(bundle.containsKey("key-3"));
+    }
+
+
+    @Test
+    public void testCachedBundles() {
+        InMemoryDictionaryService service = new InMemoryDictionaryService();
+
+        DictionaryBundle en = service.getDictionaryBundle(NAMES, "en");
+        assertEquals("pdf en 10", en.getString("key-10"));
+        assertEquals("message en 5", en.getString("key-5"));
+        assertEquals("web en 1", en.getString("key-1"));
+        assertEquals(15, en.keySet().size());
+
+        // The bundles are cached per language and list of dictionary names
+        assertSame(en, service.getDictionaryBundle(NAMES, "en"));
+        assertSame(en, service.getDictionariesAsResourceBundle(NAMES, "en"));
+        assertEquals(3, service.lookups.get());
+        assertNotSame(en, service.getDictionaryBundle(NAMES, "da"));
+        assertEquals("da", service.getDictionaryBundle(NAMES, "da").getLocale().getLanguage());
+        assertEquals("message da 7", service.getDictionaryBundle(NAMES, "da").getString("key-7"));
+        assertNotSame(en, service.getDictionaryBundle(new String[] { "web" }, "en"));
+        assertEquals(7, service.lookups.get());
+
+        // The properties are copied from the cached bundle
+        Properties properties = service.getDictionariesAsProperties(NAMES, "en");
+        assertEquals(en.getValues(), properties);
+        properties.setProperty("key-1", "changed");
+        assertEquals("web en 1", service.getDictionaryBundle(NAMES, "en").getString("key-1"));
+        assertEquals(7, service.lookups.get());
+    }
+
+
+    @Test
+    public void testInvalidateBundles() {
+        InMemoryDictionaryService service = new InMemoryDictionaryService();
+        DictionaryBundle bundle = service.getDictionaryBundle(NAMES, "en");
+        long version = service.getVersion();
+
+        // Updating an entry
+        DictionaryEntry entry = new DictionaryEntry();
+        entry.setKey("key-5");
+        entry.createDesc("en").setValue("updated");
+        service.updateEntry("message", entry);
+        assertTrue(service.getVersion() > version);
+        DictionaryBundle updated = service.getDictionaryBundle(NAMES, "en");
+        assertNotSame(bundle, updated);
+        assertEquals("updated", updated.getString("key-5"));
+        assertEquals("web en 1", updated.getString("key-1"));
+
+        // Creating an entry
+        entry = new DictionaryEntry();
+        entry.setKey("key-new");
+        entry.createDesc("en").setValue("created");
+        service.createEntry("pdf", entry);
+        assertEquals("created", service.getDictionaryBundle(NAMES, "en").getString("key-new"));
+
+        // Deleting an entry
+        assertTrue(service.deleteEntry("pdf", "key-new"));
+        assertFalse(service.getDictionaryBundle(NAMES, "en").containsKey("key-new"));
+
+        // Invalidating one dictionary discards bundles that do not include it as well
+        DictionaryBundle webBundle = service.getDictionaryBundle(new String[] { "web" }, "en");
+        assertTrue(service.deleteEntry("pdf", "key-10"));
+        assertNotSame(webBundle, service.getDictionaryBundle(new String[] { "web" }, "en"));
+    }
+
+
+    @Test
+    public void testInvalidateWhileMerging() {
+        InMemoryDictionaryService service = new InMemoryDictionaryService();
+
+        // Update the "pdf" dictionary after the "message" dictionary has been looked up,
+        // but before the bundle has been merged
+        service.onLookup = name -> {
+            if ("pdf".equals(name)) {
+                service.onLookup = null;
+                DictionaryEntry entry = new DictionaryEntry();
+                entry.setKey("key-1");
+                entry.createDesc("en").setValue("updated");
+                service.updateEntry("web", entry);
+            }
+        };
+        DictionaryBundle stale = service.getDictionaryBundle(NAMES, "en");
+        assertEquals("web en 1", stale.getString("key-1"));
+
+        // The bundle merged during the invalidation must not be reused
+        DictionaryBundle bundle = service.getDictionaryBundle(NAMES, "en");
+        assertNotSame(stale, bundle);
+        assertEquals("updated", bundle.getString("key-1"));
+    }
+
+
+    private DictionaryVo createDictionary(String name, int firstKey, int count) {
+        DictionaryVo dict = new DictionaryVo();
+        dict.setName(name);
+        for (int x = firstKey; x < firstKey + count; x++) {
+            DictionaryEntryVo entry = new DictionaryEntryVo();
+            entry.setKey("key-" + x);
+            for (String lang : LANGUAGES) {
+                entry.createDesc(lang).setValue(name + " " + lang + " " + x);
+            }
+            dict.getEntries().put(entry.getKey(), entry);
+        }
+        return dict;
+    }
+
+
+    /**
+     * Dictionary service that keeps the dictionaries in memory rather than in the database.
+     * The "web", "message" and "pdf" dictionaries define the keys 0-4, 5-9 and 10-14 respectively.
+     */
+    class InMemoryDictionaryService extends DictionaryService {
+
+        final Map<String, Dictionary> dictionaries = new HashMap<>();
+        final AtomicInteger lookups = new AtomicInteger();
+        Consumer<String> onLookup;
+
+        InMemoryDictionaryService() {
+            for (int x = 0; x < NAMES.length; x++) {
+                dictionaries.put(NAMES[x], new Dictionary(createDictionary(NAMES[x], x * 5, 5)));
+            }
+        }
+
+        /** Counts the dictionaries loaded by the bundle lookups, i.e. excluding the updates **/
+        @Override
+        public DictionaryVo getCachedDictionary(String name) {
+            DictionaryVo dict = super.getCachedDictionary(name);
+            lookups.incrementAndGet();
+            if (onLookup != null) {
+                onLookup.accept(name);
+            }
+            return dict;
+        }
+
+        @Override
+        public Dictionary findByName(String name) {
+            return dictionaries.get(name);
+        }
+
+        @Override
+        public <E extends BaseEntity> E saveEntity(E entity) {
+            return entity;
+        }
+
+        @Override
+        public void remove(BaseEntity entity) {
+        }
+    }
+}
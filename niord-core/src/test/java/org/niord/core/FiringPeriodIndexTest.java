@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.junit.Test;
+import org.niord.core.schedule.FiringPeriodIndex;
+import org.niord.core.schedule.FiringScheduleService;
+import org.niord.core.schedule.vo.FiringPeriodVo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the firing period index, and the versioning of the cached index in {@code FiringScheduleService}
+ */
+public class FiringPeriodIndexTest {
+
+    static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    static final long DAY = TimeUnit.DAYS.toMillis(1);
+    static final int AREAS = 200;
+    static final int YEARS = 10;
+    static final int DAYS = 30;
+
+    @Test
+    public void testDateIntervals() {
+        long t = 1_000 * DAY;
+        FiringPeriodIndex index = new FiringPeriodIndex(Arrays.asList(
+                firingPeriod(1, 1, t, t + 2 * HOUR),
+                firingPeriod(2, 1, t - DAY, t + DAY),
+                firingPeriod(3, 2, t + 3 * HOUR, t + 4 * HOUR),
+                firingPeriod(4, 2, t + 2 * DAY, t + 3 * DAY),
+                firingPeriod(5, 3, t - 5 * DAY, t - 4 * DAY),
+                firingPeriod(6, 3, null, t)));
+
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList(2, 1), ids(index.findByDateInterval(new Date(t), new Date(t + HOUR))));
+        assertEquals(Arrays.asList(2, 1, 3), ids(index.findByDateInterval(new Date(t), new Date(t + 3 * HOUR))));
+        assertEquals(Arrays.asList(2, 4), ids(index.findByDateInterval(new Date(t + DAY), new Date(t + 2 * DAY))));
+        assertEquals(Arrays.asList(5, 2, 1, 3, 4), ids(index.findByDateInterval(new Date(0), new Date(t + 10 * DAY))));
+        assertTrue(index.findByDateInterval(new Date(t + 4 * DAY), new Date(t + 5 * DAY)).isEmpty());
+
+        // The returned firing periods are copies
+        index.findByDateInterval(new Date(t), new Date(t)).get(0).setAreaId(99);
+        assertEquals(1, (int)index.findByDateInterval(new Date(t), new Date(t)).get(1).getAreaId());
+    }
+
+
+    @Test
+    public void testThirtyDayRange() {
+        // A few firing periods per area per week over ten years
+        Random random = new Random(42);
+        long start = 17_000 * DAY;
+        List<FiringPeriodVo> firingPeriods = new ArrayList<>();
+        for (int x = 0; x < AREAS * YEARS * 52 * 2; x++) {
+            long from = start + (long)(random.nextDouble() * YEARS * 365 * DAY);
+            long duration = HOUR + (long)(random.nextDouble() * 12 * HOUR);
+            firingPeriods.add(firingPeriod(x, random.nextInt(AREAS), from, from + duration));
+        }
+        FiringPeriodIndex index = new FiringPeriodIndex(firingPeriods);
+
+        long from = start + 5 * 365 * DAY;
+        long to = from + DAYS * DAY - 1;
+
+        List<Integer> scanned = scanDayByDay(firingPeriods, from);
+        List<FiringPeriodVo> found = index.findByDateInterval(new Date(from), new Date(to));
+
+        assertFalse(found.isEmpty());
+        assertEquals(
+                scanned.stream().distinct().sorted().collect(Collectors.toList()),
+                ids(found).stream().sorted().collect(Collectors.toList()));
+    }
+
+
+    @Test
+    public void testVersionBumpedAfterCompletion() {
+        TestTransactionRegistry registry = new TestTransactionRegistry();
+        TestFiringScheduleService firingScheduleService = new TestFiringScheduleService(registry);
+
+        // Outside of a transaction, the version is bumped once
+        firingScheduleService.firingPeriodsChanged();
+        assertEquals(1, firingScheduleService.getFiringPeriodVersion());
+        assertTrue(registry.synchronizations.isEmpty());
+
+        // Within a transaction, the version is bumped again when the transaction completes, so that an
+        // index computed from the uncommitted state is not cached under the version seen after commit
+        registry.status = Status.STATUS_ACTIVE;
+        firingScheduleService.firingPeriodsChanged();
+        long uncommittedVersion = firingScheduleService.getFiringPeriodVersion();
+        assertEquals(2, uncommittedVersion);
+        assertEquals(1, registry.synchronizations.size());
+
+        registry.complete(Status.STATUS_COMMITTED);
+        assertTrue(firingScheduleService.getFiringPeriodVersion() > uncommittedVersion);
+
+        // Rolled back transactions also bump the version
+        registry.status = Status.STATUS_ACTIVE;
+        firingScheduleService.firingPeriodsChanged();
+        uncommittedVersion = firingScheduleService.getFiringPeriodVersion();
+        registry.complete(Status.STATUS_ROLLEDBACK);
+        assertTrue(firingScheduleService.getFiringPeriodVersion() > uncommittedVersion);
+    }
+
+
+    /** Filters all firing periods once per day, as done by the former per-day calendar look-ups **/
+    private List<Integer> scanDayByDay(List<FiringPeriodVo> firingPeriods, long from) {
+        List<Integer> result = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            long dayFrom = from + day * DAY;
+            long dayTo = dayFrom + DAY - 1;
+            firingPeriods.stream()
+                    .filter(fp -> fp.getFromDate().getTime() <= dayTo && fp.getToDate().getTime() >= dayFrom)
+                    .forEach(fp -> result.add(fp.getId()));
+        }
+        return result;
+    }
+
+
+    /** Exposes the firing period versioning of the firing schedule service **/
+    static class TestFiringScheduleService extends FiringScheduleService {
+
+        TestFiringScheduleService(TransactionSynchronizationRegistry registry) {
+            transactionSynchronizationRegistry = registry;
+        }
+
+        @Override
+        protected void firingPeriodsChanged() {
+            super.firingPeriodsChanged();
+        }
+
+        @Override
+        protected long getFiringPeriodVersion() {
+            return super.getFiringPeriodVersion();
+        }
+    }
+
+
+    /** Transaction synchronization registry that completes the registered synchronizations on demand **/
+    static class TestTransactionRegistry implements TransactionSynchronizationRegistry {
+
+        int status = Status.STATUS_NO_TRANSACTION;
+        List<Synchronization> synchronizations = new ArrayList<>();
+
+        void complete(int completionStatus) {
+            synchronizations.forEach(Synchronization::beforeCompletion);
+            status = Status.STATUS_NO_TRANSACTION;
+            synchronizations.forEach(s -> s.afterCompletion(completionStatus));
+            synchronizations.clear();
+        }
+
+        @Override
+        public Object getTransactionKey() {
+            return status == Status.STATUS_NO_TRANSACTION ? null : this;
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization sync) {
+            synchronizations.add(sync);
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return status;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+
+
+    private static List<Integer> ids(List<FiringPeriodVo> firingPeriods) {
+        return firingPeriods.stream().map(FiringPeriodVo::getId).collect(Collectors.toList());
+    }
+
+
+    private static FiringPeriodVo firingPeriod(int id, int areaId, Long from, long to) {
+        FiringPeriodVo fp = new FiringPeriodVo();
+        fp.setId(id);
+        fp.setAreaId(areaId);
+        fp.setFromDate(from == null ? null : new Date(from));
+        fp.setToDate(new Date(to));
+        return fp;
+    }
+}
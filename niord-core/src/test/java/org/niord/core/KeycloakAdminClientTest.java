@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.keycloak.KeycloakAdminClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the pooled Keycloak admin client reuses its connections, using a local stand-in
+ * for the Keycloak admin API, and compares it with using a new client for every request
+ */
+public class KeycloakAdminClientTest {
+
+    static final int REQUESTS = 200;
+    static final int THREADS = 4;
+    static final String GROUPS = "[{\"id\":\"1\",\"name\":\"Admins\",\"path\":\"/Admins\",\"subGroups\":[]}]";
+
+    HttpServer server;
+    Set<String> connections = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/auth/admin/realms/niord/groups", this::handleGroups);
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+
+    @Test
+    public void testPooledClient() throws Exception {
+
+        // Emulate the previous behaviour, with a new client for every request
+        for (int x = 0; x < REQUESTS; x++) {
+            try (KeycloakAdminClient client = new KeycloakAdminClient(THREADS, THREADS, 5000)) {
+                assertEquals(GROUPS, fetchGroups(client));
+            }
+        }
+        int unpooledConnections = connections.size();
+        connections.clear();
+
+        // Use one pooled client from concurrent threads
+        try (KeycloakAdminClient client = new KeycloakAdminClient(THREADS, THREADS, 5000)) {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<String>> results = new ArrayList<>();
+                for (int x = 0; x < REQUESTS; x++) {
+                    results.add(executor.submit(() -> fetchGroups(client)));
+                }
+                for (Future<String> result : results) {
+                    assertEquals(GROUPS, result.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertTrue(client.getPooledConnectionCount() <= THREADS);
+        }
+        int pooledConnections = connections.size();
+
+        assertEquals(REQUESTS, unpooledConnections);
+        assertTrue(pooledConnections <= THREADS);
+    }
+
+
+    /** Fetches the groups from the stand-in Keycloak server **/
+    private String fetchGroups(KeycloakAdminClient client) throws Exception {
+        HttpGet get = new HttpGet("http://localhost:" + server.getAddress().getPort() + "/auth/admin/realms/niord/groups");
+        return client.execute(get, is -> new String(is.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+
+    /** Emulates the Keycloak groups endpoint, and registers the client connection **/
+    private void handleGroups(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress().toString());
+        byte[] data = GROUPS.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.message.MessageExportService;
+import org.niord.core.message.vo.SystemMessageVo;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.util.JsonArrayStreamReader;
+import org.niord.model.message.AttachmentVo;
+import org.niord.model.search.PagedSearchResultVo;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@code MessageExportService} streams the message archive page by page
+ */
+public class MessageArchiveStreamingTest {
+
+    static final int MESSAGE_COUNT = 250;
+    static final int PAGE_SIZE = 20;
+    static final int ATTACHMENT_SIZE = 16 * 1024;
+
+    ObjectMapper mapper = new ObjectMapper();
+    MessageExportService exportService;
+    Path repoRoot;
+    Path tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        repoRoot = Files.createTempDirectory("niord-repo-test");
+        tempDir = Files.createTempDirectory("niord-archive-test");
+
+        exportService = new TestMessageExportService(repoRoot);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path dir : new Path[] { repoRoot, tempDir }) {
+            if (dir != null) {
+                Files.walk(dir)
+                        .sorted((p1, p2) -> p2.compareTo(p1))
+                        .forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+
+    @Test
+    public void testStreamingExport() throws Exception {
+
+        // Loads the pages of messages and records how much of the archive had been written at the time
+        List<Integer> pageSizes = new ArrayList<>();
+        List<Long> writtenBeforePage = new ArrayList<>();
+        Path archive = tempDir.resolve("messages.zip");
+        try (CountingOutputStream out = new CountingOutputStream(Files.newOutputStream(archive))) {
+            exportService.export(page -> {
+                writtenBeforePage.add(out.count);
+                PagedSearchResultVo<SystemMessageVo> result = createPage(page);
+                pageSizes.add(result.getData().size());
+                return result;
+            }, out);
+        }
+
+        // The messages must be loaded one bounded page at a time
+        int pageCount = (MESSAGE_COUNT + PAGE_SIZE - 1) / PAGE_SIZE;
+        assertEquals(pageCount, pageSizes.size());
+        assertTrue(pageSizes.stream().allMatch(size -> size <= PAGE_SIZE));
+        assertEquals(MESSAGE_COUNT, pageSizes.stream().mapToInt(Integer::intValue).sum());
+
+        // The attachments of each page must have been written to the output stream before the next page is loaded
+        for (int page = 1; page < pageCount; page++) {
+            assertTrue("Page " + page, writtenBeforePage.get(page)
+                    > writtenBeforePage.get(page - 1) + (PAGE_SIZE - 1) * ATTACHMENT_SIZE);
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+
+            // The messages.json entry is added after the attachments
+            List<String> entries = new ArrayList<>();
+            Collections.list(zipFile.entries()).forEach(e -> entries.add(e.getName()));
+            int messagesIndex = entries.indexOf("messages.json");
+            assertEquals(entries.size() - 2, messagesIndex);
+            assertEquals("messages-preview.html", entries.get(entries.size() - 1));
+
+            // Check a couple of attachments
+            for (int x : new int[] { 0, MESSAGE_COUNT / 2, MESSAGE_COUNT - 1 }) {
+                ZipEntry entry = zipFile.getEntry(repoPath(x) + "/1/attachment.bin");
+                assertNotNull(entry);
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(attachmentData(x), in.readAllBytes());
+                }
+            }
+
+            // Stream the messages back from messages.json
+            Path messagesFile = tempDir.resolve("messages.json");
+            try (InputStream in = zipFile.getInputStream(zipFile.getEntry("messages.json"))) {
+                Files.copy(in, messagesFile);
+            }
+            assertEquals(MESSAGE_COUNT, JsonArrayStreamReader.count(mapper, messagesFile, "data"));
+            try (JsonArrayStreamReader<SystemMessageVo> reader =
+                         new JsonArrayStreamReader<>(mapper, messagesFile, "data", SystemMessageVo.class)) {
+                for (int x = 0; x < MESSAGE_COUNT; x++) {
+                    SystemMessageVo message = reader.next();
+                    assertEquals("NW-" + x, message.getShortId());
+                    assertEquals(repoPath(x) + "/1/attachment.bin", message.getAttachments().get(0).getPath());
+                }
+                assertNull(reader.next());
+            }
+
+            // The preview HTML contains the escaped messages JSON
+            try (InputStream in = zipFile.getInputStream(zipFile.getEntry("messages-preview.html"))) {
+                String html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(html.startsWith("<html><script>var messages = '{"));
+                assertTrue(html.contains("NW-" + (MESSAGE_COUNT - 1)));
+                assertTrue(html.endsWith("}';</script></html>"));
+            }
+        }
+    }
+
+
+    @Test
+    public void testExportSearchResult() throws Exception {
+
+        // A single search result is exported as one page
+        PagedSearchResultVo<SystemMessageVo> result = createPage(0);
+        result.setTotal(result.getData().size());
+        Path archive = tempDir.resolve("messages.zip");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            exportService.export(result, out);
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile());
+             InputStream in = zipFile.getInputStream(zipFile.getEntry("messages.json"))) {
+            JsonNode json = mapper.readTree(in);
+            assertEquals(PAGE_SIZE, json.path("total").asInt());
+            assertEquals(PAGE_SIZE, json.path("data").size());
+        }
+    }
+
+
+    /** Creates the given page of messages, each with an attachment file in the repository **/
+    private PagedSearchResultVo<SystemMessageVo> createPage(int page) throws IOException {
+        PagedSearchResultVo<SystemMessageVo> result = new PagedSearchResultVo<>();
+        result.setTotal(MESSAGE_COUNT);
+        for (int x = page * PAGE_SIZE; x < Math.min(MESSAGE_COUNT, (page + 1) * PAGE_SIZE); x++) {
+            String repoPath = repoPath(x);
+            Path folder = repoRoot.resolve(repoPath).resolve("1");
+            Files.createDirectories(folder);
+            Files.write(folder.resolve("attachment.bin"), attachmentData(x));
+
+            SystemMessageVo message = new SystemMessageVo();
+            message.setId("uid-" + x);
+            message.setShortId("NW-" + x);
+            message.setRepoPath(repoPath);
+            AttachmentVo att = new AttachmentVo();
+            att.setPath(repoPath + "/1/attachment.bin");
+            att.setFileName("attachment.bin");
+            message.checkCreateAttachments().add(att);
+            result.getData().add(message);
+        }
+        return result;
+    }
+
+
+    /** Returns the repository path of the message with the given index **/
+    private String repoPath(int index) {
+        return "messages/" + index % 10 + "/uid-" + index;
+    }
+
+
+    /** Returns incompressible attachment data for the message with the given index **/
+    private byte[] attachmentData(int index) {
+        byte[] data = new byte[ATTACHMENT_SIZE];
+        new Random(index).nextBytes(data);
+        return data;
+    }
+
+
+    /** Message export service with a preview HTML template and a repository rooted in the given folder **/
+    static class TestMessageExportService extends MessageExportService {
+
+        TestMessageExportService(Path repoRoot) {
+            log = LoggerFactory.getLogger(MessageExportService.class);
+            messagesPreviewHtmlFile = "<html><script>var messages = '"
+                    + MESSAGES_JSON_PLACEHOLDER + "';</script></html>";
+            repositoryService = new RepositoryService() {
+                @Override
+                public Path getRepoRoot() {
+                    return repoRoot;
+                }
+            };
+        }
+    }
+
+
+    /** Counts the bytes written to the underlying output stream **/
+    static class CountingOutputStream extends OutputStream {
+        final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.area.Area;
+import org.niord.core.area.AreaService;
+import org.niord.core.area.vo.SystemAreaVo.AreaMessageSorting;
+import org.niord.core.geojson.FeatureCollection;
+import org.niord.core.message.Message;
+import org.niord.core.message.MessageAreaSortOrderCalculator;
+import org.niord.core.message.MessagePart;
+import org.niord.model.geojson.FeatureCollectionVo;
+import org.niord.model.geojson.FeatureVo;
+import org.niord.model.geojson.PointVo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the bulk computation of message area sort orders
+ */
+public class MessageAreaSortOrderTest {
+
+    static final int MESSAGE_COUNT = 10000;
+    static final int AREA_COUNT = 50;
+
+    AreaService areaService = new AreaService();
+
+    @Test
+    public void testBulkAreaSortOrder() {
+
+        // Set up an area tree where only the root areas define the message sorting
+        List<Area> leafAreas = new ArrayList<>();
+        int areaId = 1;
+        for (AreaMessageSorting sorting : new AreaMessageSorting[] { AreaMessageSorting.NS, AreaMessageSorting.CW }) {
+            Area root = createArea(areaId++, null);
+            root.setMessageSorting(sorting);
+            root.setOriginLatitude(56f);
+            root.setOriginLongitude(11f);
+            for (int x = 0; x < AREA_COUNT / 2; x++) {
+                leafAreas.add(createArea(areaId++, createArea(areaId++, root)));
+            }
+        }
+
+        Random random = new Random(42);
+        List<Message> messages = new ArrayList<>();
+        for (int x = 0; x < MESSAGE_COUNT; x++) {
+            messages.add(createMessage(x + 1,
+                    leafAreas.get(random.nextInt(leafAreas.size())),
+                    54 + random.nextDouble() * 4,
+                    8 + random.nextDouble() * 6));
+        }
+
+        // The initial computation should update all messages
+        MessageAreaSortOrderCalculator calculator = new MessageAreaSortOrderCalculator(areaService);
+        Map<Integer, Double> sortOrders = calculator.computeChangedSortOrders(messages);
+        assertEquals(MESSAGE_COUNT, sortOrders.size());
+        assertEquals(areaId - 1, calculator.getResolvedAreaCount());
+
+        // The results must match the sort order computed for individual messages, bar the jitter
+        for (Message message : messages) {
+            double bulk = sortOrders.get(message.getId());
+            double single = areaService.computeMessageAreaSortingOrder(message);
+            assertTrue(Math.abs(bulk - single) < AreaService.AREA_SORT_ORDER_JITTER);
+            message.setAreaSortOrder(bulk);
+        }
+
+        // Re-computing the sort order should not update any messages
+        assertTrue(calculator.computeChangedSortOrders(messages).isEmpty());
+
+        // Moving a message should only update the moved message
+        Message moved = messages.get(0);
+        moved.setParts(new ArrayList<>());
+        moved.addPart(createPart(50.0, 5.0));
+        assertEquals(1, calculator.computeChangedSortOrders(messages).size());
+
+        // Messages without areas have a zero sort order
+        moved.getAreas().clear();
+        assertEquals(0.0, calculator.computeChangedSortOrders(messages).get(moved.getId()), 0.0);
+    }
+
+
+    private Area createArea(int id, Area parent) {
+        Area area = new Area();
+        area.setId(id);
+        area.setParent(parent);
+        return area;
+    }
+
+
+    private Message createMessage(int id, Area area, double lat, double lon) {
+        Message message = new Message();
+        message.setId(id);
+        message.getAreas().add(area);
+        message.addPart(createPart(lat, lon));
+        return message;
+    }
+
+
+    private MessagePart createPart(double lat, double lon) {
+        FeatureVo feature = new FeatureVo();
+        feature.setGeometry(new PointVo(new double[] { lon, lat }));
+        FeatureCollectionVo fc = new FeatureCollectionVo();
+        fc.setFeatures(new FeatureVo[] { feature });
+
+        MessagePart part = new MessagePart();
+        part.setGeometry(FeatureCollection.fromGeoJson(fc));
+        return part;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.message.Message;
+import org.niord.core.message.MessageHistory;
+import org.niord.core.message.MessagePart;
+import org.niord.core.message.MessagePartDesc;
+import org.niord.core.message.MessageService;
+import org.niord.core.model.BaseEntity;
+import org.niord.core.user.User;
+import org.niord.core.user.UserService;
+import org.niord.core.util.JsonPatchUtils;
+import org.niord.model.message.MessagePartType;
+import org.niord.model.message.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the message history keyframes and deltas stored by {@code MessageService.saveHistory()}
+ * and the snapshot reconstruction of {@code MessageService.getMessageHistorySnapshot()}
+ */
+public class MessageHistoryDeltaTest {
+
+    static final int KEYFRAME_INTERVAL = 10;
+    static final int EDITS = 25;
+
+    ObjectMapper mapper = new ObjectMapper();
+    InMemoryHistoryMessageService messageService;
+    Message message;
+
+    @Before
+    public void init() {
+        messageService = new InMemoryHistoryMessageService(KEYFRAME_INTERVAL);
+
+        message = new Message();
+        message.setId(1);
+        message.setStatus(Status.DRAFT);
+        message.checkCreateDesc("en").setTitle("Denmark. The Sound. Buoy off position.");
+        for (int x = 0; x < 3; x++) {
+            StringBuilder text = new StringBuilder("<p>");
+            for (int y = 0; y < 40; y++) {
+                text.append("Lorem ipsum dolor sit amet ").append(y).append(' ');
+            }
+            MessagePart part = message.addPart(new MessagePart(MessagePartType.DETAILS));
+            part.checkCreateDesc("en").setDetails(text.append("</p>").toString());
+        }
+    }
+
+
+    @Test
+    public void testDiffAndApply() throws Exception {
+
+        JsonNode source = mapper.readTree(
+                "{\"a\":1,\"b\":[1,2,3,4],\"c\":{\"d\":\"x\",\"e/f\":true},\"g\":[{\"h\":1},{\"h\":2}]}");
+        JsonNode target = mapper.readTree(
+                "{\"a\":2,\"b\":[0,1,3,4,5],\"c\":{\"e/f\":false,\"i\":null},\"g\":[{\"h\":2}],\"j\":\"new\"}");
+
+        JsonNode patch = JsonPatchUtils.diff(source, target);
+        assertEquals(target, JsonPatchUtils.apply(source, patch));
+
+        // Source must not be modified
+        assertEquals(source, mapper.readTree(
+                "{\"a\":1,\"b\":[1,2,3,4],\"c\":{\"d\":\"x\",\"e/f\":true},\"g\":[{\"h\":1},{\"h\":2}]}"));
+
+        // Identical documents yield an empty patch
+        assertEquals(0, JsonPatchUtils.diff(source, source.deepCopy()).size());
+
+        // Changing the type of the root
+        assertEquals(source, JsonPatchUtils.apply(mapper.readTree("[1]"),
+                JsonPatchUtils.diff(mapper.readTree("[1]"), source)));
+    }
+
+
+    @Test
+    public void testKeyframesAndDeltas() throws Exception {
+
+        for (int x = 0; x < EDITS; x++) {
+            editMessage(x);
+            messageService.saveHistory(message);
+        }
+
+        List<MessageHistory> history = messageService.history;
+        assertEquals(EDITS, history.size());
+        for (int x = 0; x < EDITS; x++) {
+            assertEquals("Entry " + x, x % KEYFRAME_INTERVAL == 0, history.get(x).isKeyframe());
+            assertEquals(x + 1, history.get(x).getVersion());
+        }
+
+        // The deltas are JSON patches against the previous snapshot
+        assertTrue(mapper.readTree(history.get(0).decompressSnapshot()).isObject());
+        assertTrue(mapper.readTree(history.get(1).decompressSnapshot()).isArray());
+
+        // Reconstruct all versions and check that they reflect the edits
+        for (int x = 0; x < EDITS; x++) {
+            MessageHistory hist = history.get(x);
+            String snapshot = messageService.getMessageHistorySnapshot(message.getId(), hist.getId()).getSnapshot();
+            assertNotNull(snapshot);
+            JsonNode json = mapper.readTree(snapshot);
+            assertEquals("Denmark. The Sound. Edit " + x, json.path("descs").get(0).path("title").asText());
+            assertEquals(x % 2 == 0 ? "DRAFT" : "VERIFIED", json.path("status").asText());
+            assertEquals(3, json.path("parts").size());
+            assertTrue(json.path("parts").get(x % 3).path("descs").get(0).path("details").asText()
+                    .contains("Edit " + x));
+        }
+
+        // History entries of other messages are not returned
+        assertNull(messageService.getMessageHistorySnapshot(2, history.get(0).getId()));
+    }
+
+
+    @Test
+    public void testKeyframesOnly() throws Exception {
+
+        messageService = new InMemoryHistoryMessageService(1);
+        for (int x = 0; x < 3; x++) {
+            editMessage(x);
+            messageService.saveHistory(message);
+        }
+
+        assertTrue(messageService.history.stream().allMatch(MessageHistory::isKeyframe));
+        JsonNode json = mapper.readTree(messageService
+                .getMessageHistorySnapshot(message.getId(), messageService.history.get(2).getId())
+                .getSnapshot());
+        assertEquals("Denmark. The Sound. Edit 2", json.path("descs").get(0).path("title").asText());
+    }
+
+
+    @Test
+    public void testMissingKeyframe() throws Exception {
+
+        for (int x = 0; x < 3; x++) {
+            editMessage(x);
+            messageService.saveHistory(message);
+        }
+
+        // If the keyframe is gone, a new keyframe must be stored
+        messageService.history.remove(0);
+        editMessage(3);
+        messageService.saveHistory(message);
+        assertTrue(messageService.history.get(2).isKeyframe());
+        assertFalse(messageService.history.get(1).isKeyframe());
+    }
+
+
+    /** Applies a typical edit to the message **/
+    private void editMessage(int edit) {
+        message.setVersion(edit);
+        message.setStatus(edit % 2 == 0 ? Status.DRAFT : Status.VERIFIED);
+        message.getDescs().get(0).setTitle("Denmark. The Sound. Edit " + edit);
+        MessagePartDesc desc = message.getParts().get(edit % 3).getDescs().get(0);
+        desc.setDetails(desc.getDetails().replaceFirst("amet \\d+ ", "amet Edit " + edit + " "));
+    }
+
+
+    /**
+     * Message service that keeps the message history in memory rather than in the database
+     */
+    static class InMemoryHistoryMessageService extends MessageService {
+
+        List<MessageHistory> history = new ArrayList<>();
+        int nextId = 1;
+
+        InMemoryHistoryMessageService(int keyframeInterval) {
+            historyKeyframeInterval = keyframeInterval;
+            userService = new UserService() {
+                @Override
+                public User currentUser() {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <E extends BaseEntity> E saveEntity(E entity) {
+            MessageHistory hist = (MessageHistory) entity;
+            hist.setId(nextId++);
+            history.add(hist);
+            return entity;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <E extends BaseEntity> E getByPrimaryKey(Class<E> clazz, Object id) {
+            return (E) history.stream()
+                    .filter(h -> Objects.equals(h.getId(), id))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        /** Corresponds to the "MessageHistory.findByMessageId" named query **/
+        @Override
+        protected MessageHistory getLatestMessageHistory(Integer messageId) {
+            return history.isEmpty() ? null : history.get(history.size() - 1);
+        }
+
+        /** Corresponds to the "MessageHistory.findKeyframeId" and "MessageHistory.findRange" named queries **/
+        @Override
+        protected List<MessageHistory> getMessageHistoryChain(MessageHistory hist) {
+            int index = history.indexOf(hist);
+            int keyframe = index;
+            while (keyframe >= 0 && !history.get(keyframe).isKeyframe()) {
+                keyframe--;
+            }
+            return keyframe < 0
+                    ? Collections.emptyList()
+                    : history.subList(keyframe, index + 1).stream().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.message.MessageIdIndex;
+import org.niord.core.message.MessageIdMatch.MatchType;
+import org.niord.model.message.Status;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the in-memory message ID auto-complete index
+ */
+public class MessageIdIndexTest {
+
+    static final int MESSAGE_COUNT = 100000;
+    static final String[] SERIES = { "dma-nw", "dma-nm", "fa-nw", "sfa-nw" };
+    static final String[] WORDS = { "Denmark", "Sweden", "The Sound", "Kattegat", "Buoy", "Light", "Wreck",
+            "Firing", "Exercises", "Unlit", "Missing", "Off position", "Obstruction", "Works", "Cable" };
+
+    @Test
+    public void testRanking() {
+        MessageIdIndex index = new MessageIdIndex();
+        index.update(new MessageIdIndex.Entry(1, "uid-1", "NW-012-17", Status.PUBLISHED, "dma-nw", 1000L,
+                Collections.singletonList("Denmark. The Sound. Buoy missing.")));
+        index.update(new MessageIdIndex.Entry(2, "uid-2", "NW-112-17", Status.PUBLISHED, "dma-nw", 2000L,
+                Collections.singletonList("Denmark. Kattegat. Light unlit.")));
+        index.update(new MessageIdIndex.Entry(3, "uid-3", "NW-012-16", Status.DELETED, "dma-nw", 3000L,
+                Collections.singletonList("Sweden. Wreck.")));
+        index.update(new MessageIdIndex.Entry(4, "uid-4", "FA-012-17", Status.PUBLISHED, "fa-nw", 4000L,
+                Collections.singletonList("Firing exercises.")));
+
+        // Exact match first, then sub-string matches
+        List<MessageIdIndex.Match> result = index.search("NW-012-17", 10, false, null);
+        assertEquals(1, result.size());
+        assertEquals("NW-012-17", result.get(0).getMessageId());
+
+        result = index.search("012-17", 10, false, null);
+        assertEquals(Arrays.asList(4, 1), ids(result));
+
+        // Prefer current domain
+        result = index.search("012-17", 10, false, Collections.singleton("dma-nw"));
+        assertEquals(Arrays.asList(1, 4), ids(result));
+
+        // Deleted messages
+        assertEquals(3, index.search("012", 10, true, null).size());
+        assertEquals(2, index.search("012", 10, false, null).size());
+
+        // Title word prefix matches
+        result = index.search("kattegat lig", 10, false, null);
+        assertEquals(Collections.singletonList(2), ids(result));
+        assertEquals(MatchType.TITLE, result.get(0).getType());
+        assertEquals("NW-112-17", result.get(0).getMessageId());
+
+        // UID
+        result = index.search("uid-4", 10, false, null);
+        assertEquals(MatchType.UID, result.get(0).getType());
+        assertEquals("uid-4", result.get(0).getMessageId());
+
+        // Updates replace the old index entries
+        index.update(new MessageIdIndex.Entry(2, "uid-2", "NW-999-17", Status.PUBLISHED, "dma-nw", 5000L,
+                Collections.singletonList("Sweden. Cable.")));
+        assertEquals(0, index.search("kattegat", 10, false, null).size());
+        assertEquals(0, index.search("112-17", 10, false, null).size());
+        assertEquals(1, index.search("999", 10, false, null).size());
+
+        index.remove(2);
+        assertEquals(0, index.search("999", 10, false, null).size());
+        assertEquals(3, index.size());
+    }
+
+
+    /**
+     * Searches a large index and checks that the results are bounded and exclude deleted messages
+     */
+    @Test
+    public void testLargeIndex() {
+        Random random = new Random(42);
+        MessageIdIndex index = new MessageIdIndex();
+        Status[] statuses = Status.values();
+
+        for (int x = 1; x <= MESSAGE_COUNT; x++) {
+            String series = SERIES[random.nextInt(SERIES.length)];
+            String shortId = String.format("%s-%03d-%02d", series.toUpperCase(), x % 1000, x / 1000);
+            String title = WORDS[random.nextInt(WORDS.length)] + ". " + WORDS[random.nextInt(WORDS.length)]
+                    + ". " + WORDS[random.nextInt(WORDS.length)] + ".";
+            index.update(new MessageIdIndex.Entry(x, UUID.randomUUID().toString(), shortId,
+                    statuses[random.nextInt(statuses.length)], series, x, Arrays.asList(title, title)));
+        }
+
+        String[] terms = { "nw-123", "234-5", "fa-nw-0", "nw-999-9", "kattegat buo", "wre", "dma-nm-5" };
+        Set<String> domainSeries = Collections.singleton("dma-nw");
+        for (String term : terms) {
+            List<MessageIdIndex.Match> result = index.search(term, 10, false, domainSeries);
+            assertTrue(term, result.size() > 0);
+            assertTrue(term, result.size() <= 10);
+            assertTrue(term, result.stream().noneMatch(m -> m.getEntry().getStatus() == Status.DELETED));
+        }
+    }
+
+
+    /** Returns the message IDs of the matches **/
+    private List<Integer> ids(List<MessageIdIndex.Match> matches) {
+        return matches.stream()
+                .map(m -> m.getEntry().getId())
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.message.MessageTag;
+import org.niord.core.message.MessageTagMembership;
+import org.niord.core.message.MessageTagService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the message tag membership, and the join table operations of
+ * {@code MessageTagService.addMessageIdsToTag()} and {@code MessageTagService.removeMessageIdsFromTag()}.
+ * <p>
+ * The entity manager of the service is backed by an in-memory join table, which executes the
+ * member look-ups, the batched native inserts, the native deletes and the message count updates
+ * issued by the service.
+ */
+public class MessageTagMembershipTest {
+
+    static final String INSERT_SQL = "INSERT INTO " + MessageTag.MESSAGE_JOIN_TABLE
+            + " (MessageTag_id, messages_id) VALUES (?, ?)";
+    static final String DELETE_SQL = "DELETE FROM " + MessageTag.MESSAGE_JOIN_TABLE
+            + " WHERE MessageTag_id = :tagId AND messages_id IN (:ids)";
+
+    InMemoryJoinTable db;
+    MessageTagService tagService;
+    MessageTag tag;
+
+    @Before
+    public void init() {
+        db = new InMemoryJoinTable();
+        tagService = new MessageTagService() {
+            {
+                em = db.entityManager();
+            }
+        };
+
+        tag = new MessageTag();
+        tag.setId(1);
+        db.messageCounts.put(tag.getId(), 0);
+        db.managed.add(tag);
+    }
+
+
+    @Test
+    public void testSetSemantics() {
+        MessageTagMembership membership = new MessageTagMembership(Arrays.asList(1, 2, 3));
+        assertTrue(membership.isMember(2));
+        assertFalse(membership.isMember(4));
+
+        assertEquals(Arrays.asList(4, 5), membership.add(Arrays.asList(3, 4, 4, null, 5, 1)));
+        assertTrue(membership.isMember(5));
+        assertEquals(Collections.emptyList(), membership.add(Arrays.asList(4, 5)));
+
+        assertEquals(Arrays.asList(5, 1), membership.remove(Arrays.asList(5, 6, 5, 1)));
+        assertFalse(membership.isMember(1));
+        assertEquals(Collections.emptyList(), membership.remove(Arrays.asList(5, 6)));
+    }
+
+
+    @Test
+    public void testAddMessages() {
+        assertEquals(3, tagService.addMessageIdsToTag(tag, Arrays.asList(10, 11, 12)));
+        assertEquals(Arrays.asList(10, 11, 12), db.rows(tag));
+        assertEquals(3, db.messageCount(tag));
+        assertEquals(3, tag.getMessageCount());
+
+        // Existing members and duplicates are skipped
+        assertEquals(2, tagService.addMessageIdsToTag(tag, Arrays.asList(11, 13, 13, 10, 14, 12)));
+        assertEquals(Arrays.asList(10, 11, 12, 13, 14), db.rows(tag));
+        assertEquals(5, db.messageCount(tag));
+        assertEquals(5, tag.getMessageCount());
+
+        // Nothing is written when all messages are members
+        int inserts = db.insertedRows;
+        int updates = db.countUpdates;
+        assertEquals(0, tagService.addMessageIdsToTag(tag, Arrays.asList(14, 10)));
+        assertEquals(0, tagService.addMessageIdsToTag(tag, Collections.emptyList()));
+        assertEquals(inserts, db.insertedRows);
+        assertEquals(updates, db.countUpdates);
+        assertEquals(5, tag.getMessageCount());
+    }
+
+
+    @Test
+    public void testAddManyMessages() {
+        int batchSize = MessageTagService.MEMBERSHIP_BATCH_SIZE;
+        List<Integer> members = IntStream.range(0, 2 * batchSize).boxed().collect(Collectors.toList());
+        assertEquals(members.size(), tagService.addMessageIdsToTag(tag, members));
+        assertEquals(2, db.executedBatches);
+
+        // Half of the added messages are already members of the tag
+        List<Integer> added = IntStream.range(members.size() - batchSize / 2, members.size() + batchSize / 2)
+                .boxed()
+                .collect(Collectors.toList());
+        int inserts = db.insertedRows;
+        assertEquals(batchSize / 2, tagService.addMessageIdsToTag(tag, added));
+        assertEquals(batchSize / 2, db.insertedRows - inserts);
+
+        // Only the candidate message IDs are looked up, in chunks of at most the batch size
+        assertTrue(db.lookedUpIds.stream().allMatch(ids -> ids.size() <= batchSize));
+        assertEquals(members.size() + batchSize / 2, db.rows(tag).size());
+        assertEquals(new HashSet<>(db.rows(tag)).size(), db.rows(tag).size());
+        assertEquals(members.size() + batchSize / 2, db.messageCount(tag));
+        assertEquals(members.size() + batchSize / 2, tag.getMessageCount());
+    }
+
+
+    @Test
+    public void testRemoveMessages() {
+        tagService.addMessageIdsToTag(tag, Arrays.asList(10, 11, 12, 13));
+
+        // Non-members and duplicates are skipped
+        assertEquals(2, tagService.removeMessageIdsFromTag(tag, Arrays.asList(11, 20, 11, 13)));
+        assertEquals(Arrays.asList(10, 12), db.rows(tag));
+        assertEquals(2, db.messageCount(tag));
+        assertEquals(2, tag.getMessageCount());
+
+        int deletes = db.deletedRows;
+        int updates = db.countUpdates;
+        assertEquals(0, tagService.removeMessageIdsFromTag(tag, Arrays.asList(11, 20)));
+        assertEquals(deletes, db.deletedRows);
+        assertEquals(updates, db.countUpdates);
+
+        assertEquals(2, tagService.removeMessageIdsFromTag(tag, Arrays.asList(10, 12)));
+        assertEquals(Collections.emptyList(), db.rows(tag));
+        assertEquals(0, db.messageCount(tag));
+        assertEquals(0, tag.getMessageCount());
+    }
+
+
+    @Test
+    public void testManagedTagIsRefreshed() {
+        // The database rows were added by another transaction, so the managed tag holds a stale count
+        db.joinRows.put(tag.getId(), new ArrayList<>(Arrays.asList(1, 2, 3)));
+        db.messageCounts.put(tag.getId(), 3);
+
+        assertEquals(1, tagService.addMessageIdsToTag(tag, Arrays.asList(3, 4)));
+        assertEquals(1, db.refreshes);
+        assertEquals(4, tag.getMessageCount());
+    }
+
+
+    @Test
+    public void testDetachedTagIsUpdated() {
+        db.managed.clear();
+        tag.setMessageCount(2);
+        db.joinRows.put(tag.getId(), new ArrayList<>(Arrays.asList(1, 2)));
+        db.messageCounts.put(tag.getId(), 2);
+
+        assertEquals(2, tagService.addMessageIdsToTag(tag, Arrays.asList(2, 3, 4)));
+        assertEquals(0, db.refreshes);
+        assertEquals(4, db.messageCount(tag));
+        assertEquals(4, tag.getMessageCount());
+
+        assertEquals(3, tagService.removeMessageIdsFromTag(tag, Arrays.asList(1, 2, 3)));
+        assertEquals(1, db.messageCount(tag));
+        assertEquals(1, tag.getMessageCount());
+    }
+
+
+    /**
+     * An in-memory message tag join table, exposed through an entity manager
+     * that only supports the statements issued by the message tag membership operations
+     */
+    static class InMemoryJoinTable {
+
+        final Map<Integer, List<Integer>> joinRows = new HashMap<>();
+        final Map<Integer, Integer> messageCounts = new HashMap<>();
+        final Set<MessageTag> managed = new HashSet<>();
+        final List<List<Integer>> lookedUpIds = new ArrayList<>();
+        int insertedRows, deletedRows, executedBatches, countUpdates, refreshes;
+
+        List<Integer> rows(MessageTag tag) {
+            return joinRows.getOrDefault(tag.getId(), Collections.emptyList());
+        }
+
+        int messageCount(MessageTag tag) {
+            return messageCounts.get(tag.getId());
+        }
+
+        EntityManager entityManager() {
+            return proxy(EntityManager.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "createNamedQuery":
+                    case "createNativeQuery":
+                        return query((String) args[0]);
+                    case "unwrap":
+                        return session();
+                    case "contains":
+                        return managed.contains(args[0]);
+                    case "refresh":
+                        MessageTag tag = (MessageTag) args[0];
+                        if (!managed.contains(tag)) {
+                            throw new IllegalArgumentException("Entity not managed");
+                        }
+                        tag.setMessageCount(messageCount(tag));
+                        refreshes++;
+                        return null;
+                    case "flush":
+                        return null;
+                    default:
+                        return unsupported(method.getName());
+                }
+            });
+        }
+
+        /** Returns a query supporting the member look-ups, message count updates and native deletes **/
+        TypedQuery<?> query(String query) {
+            Map<String, Object> params = new HashMap<>();
+            return proxy(TypedQuery.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setParameter":
+                        params.put((String) args[0], args[1]);
+                        return proxy;
+                    case "getResultList":
+                        if (!"MessageTag.findMemberIds".equals(query)) {
+                            return unsupported(query);
+                        }
+                        List<Integer> ids = new ArrayList<>(ids(params.get("ids")));
+                        lookedUpIds.add(ids);
+                        List<Integer> rows = joinRows.getOrDefault((Integer) params.get("tagId"), Collections.emptyList());
+                        return rows.stream().filter(ids::contains).collect(Collectors.toList());
+                    case "executeUpdate":
+                        return executeUpdate(query, params);
+                    default:
+                        return unsupported(method.getName());
+                }
+            });
+        }
+
+        int executeUpdate(String query, Map<String, Object> params) {
+            Integer tagId = (Integer) params.get("tagId");
+            if ("MessageTag.addToMessageCount".equals(query)) {
+                messageCounts.merge(tagId, (Integer) params.get("delta"), Integer::sum);
+                countUpdates++;
+                return 1;
+            } else if (DELETE_SQL.equals(query)) {
+                List<Integer> rows = joinRows.getOrDefault(tagId, new ArrayList<>());
+                int count = rows.size();
+                rows.removeAll(ids(params.get("ids")));
+                deletedRows += count - rows.size();
+                return count - rows.size();
+            }
+            return (Integer) unsupported(query);
+        }
+
+        /** Returns a session that runs JDBC work against a connection supporting the batched native inserts **/
+        Session session() {
+            Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+                if ("prepareStatement".equals(method.getName()) && INSERT_SQL.equals(args[0])) {
+                    return insertStatement();
+                }
+                return unsupported(method.getName());
+            });
+            return proxy(Session.class, (proxy, method, args) -> {
+                if ("doWork".equals(method.getName())) {
+                    ((Work) args[0]).execute(connection);
+                    return null;
+                }
+                return unsupported(method.getName());
+            });
+        }
+
+        PreparedStatement insertStatement() {
+            Integer[] row = new Integer[2];
+            List<Integer[]> batch = new ArrayList<>();
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setInt":
+                        row[(Integer) args[0] - 1] = (Integer) args[1];
+                        return null;
+                    case "addBatch":
+                        batch.add(row.clone());
+                        return null;
+                    case "executeBatch":
+                        int[] result = new int[batch.size()];
+                        for (int x = 0; x < batch.size(); x++) {
+                            List<Integer> rows = joinRows.computeIfAbsent(batch.get(x)[0], id -> new ArrayList<>());
+                            if (rows.contains(batch.get(x)[1])) {
+                                throw new IllegalStateException("Duplicate join table row " + Arrays.toString(batch.get(x)));
+                            }
+                            rows.add(batch.get(x)[1]);
+                            result[x] = 1;
+                        }
+                        insertedRows += batch.size();
+                        executedBatches++;
+                        batch.clear();
+                        return result;
+                    case "close":
+                        return null;
+                    default:
+                        return unsupported(method.getName());
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        static Collection<Integer> ids(Object ids) {
+            return (Collection<Integer>) ids;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(
+                    InMemoryJoinTable.class.getClassLoader(),
+                    new Class<?>[] { type },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return type.getSimpleName() + " proxy";
+                            default:
+                                return handler.invoke(proxy, method, args);
+                        }
+                    });
+        }
+
+        static Object unsupported(String operation) {
+            throw new UnsupportedOperationException("Unsupported operation " + operation);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.integration.vo.MessageSeriesMappingVo;
+import org.niord.core.integration.vo.NiordIntegrationVo;
+import org.niord.model.message.MessagePartVo;
+import org.niord.model.message.MessageSeriesVo;
+import org.niord.model.message.MessageVo;
+import org.niord.model.message.Status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.niord.core.integration.NiordIntegrationExecutionService.SYNC_OVERLAP_MS;
+import static org.niord.core.integration.NiordIntegrationExecutionService.fetchMessages;
+import static org.niord.core.integration.NiordIntegrationExecutionService.messagesUrl;
+
+/**
+ * Tests full and incremental Niord integration fetches against a local stand-in
+ * for the public API of a remote Niord server
+ */
+public class NiordIntegrationSyncTest {
+
+    static final int MESSAGE_COUNT = 5000;
+    static final int CHANGED_COUNT = 50;
+    static final String SERIES_ID = "dma-nw";
+
+    ObjectMapper mapper = new ObjectMapper();
+    List<MessageVo> remoteMessages = new ArrayList<>();
+    AtomicLong bytesSent = new AtomicLong();
+    HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        long now = System.currentTimeMillis();
+        for (int x = 0; x < MESSAGE_COUNT; x++) {
+            remoteMessages.add(createMessage(x, new Date(now - (MESSAGE_COUNT - x) * 60_000L)));
+        }
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/public/v1/messages", this::handleMessages);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+
+    @Test
+    public void testIncrementalSync() throws Exception {
+
+        NiordIntegrationVo integration = new NiordIntegrationVo();
+        integration.setUrl("http://localhost:" + server.getAddress().getPort());
+        MessageSeriesMappingVo mapping = new MessageSeriesMappingVo();
+        mapping.setSourceSeriesId(SERIES_ID);
+        mapping.setTargetSeriesId(SERIES_ID);
+        integration.getMessageSeriesMappings().add(mapping);
+
+        // Initial full synchronization
+        List<MessageVo> messages = fetchMessages(messagesUrl(integration, null));
+        long fullBytes = bytesSent.getAndSet(0);
+        assertEquals(MESSAGE_COUNT, messages.size());
+        Date syncedUntil = messages.stream().map(MessageVo::getUpdated).max(Date::compareTo).orElse(null);
+
+        // Update and cancel a few remote messages
+        Date updated = new Date(syncedUntil.getTime() + 60_000L);
+        for (int x = 0; x < CHANGED_COUNT; x++) {
+            MessageVo msg = remoteMessages.get(x * (MESSAGE_COUNT / CHANGED_COUNT));
+            msg.setUpdated(updated);
+            msg.setStatus(x % 5 == 0 ? Status.CANCELLED : Status.PUBLISHED);
+        }
+
+        // Incremental synchronization
+        messages = fetchMessages(messagesUrl(integration, new Date(syncedUntil.getTime() - SYNC_OVERLAP_MS)));
+        long incrementalBytes = bytesSent.getAndSet(0);
+
+        // All changes, including the cancelled messages, must be included, plus the overlap
+        Set<String> changedIds = messages.stream()
+                .filter(m -> m.getUpdated().equals(updated))
+                .map(MessageVo::getId)
+                .collect(Collectors.toSet());
+        assertEquals(CHANGED_COUNT, changedIds.size());
+        assertEquals(CHANGED_COUNT / 5, messages.stream().filter(m -> m.getStatus() == Status.CANCELLED).count());
+        assertTrue(messages.size() <= CHANGED_COUNT + SYNC_OVERLAP_MS / 60_000L + 1);
+
+        assertTrue(incrementalBytes * 20 < fullBytes);
+    }
+
+
+    /** Emulates the public API message endpoint, including the updatedSince parameter **/
+    private void handleMessages(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        Date updatedSince = null;
+        for (String param : query.split("&")) {
+            if (param.startsWith("updatedSince=")) {
+                updatedSince = new Date(Long.parseLong(param.substring("updatedSince=".length())));
+            }
+        }
+
+        Set<Status> statuses = updatedSince == null
+                ? EnumSet.of(Status.PUBLISHED)
+                : EnumSet.of(Status.PUBLISHED, Status.CANCELLED, Status.EXPIRED);
+        Date since = updatedSince;
+        List<MessageVo> result = remoteMessages.stream()
+                .filter(m -> statuses.contains(m.getStatus()))
+                .filter(m -> since == null || !m.getUpdated().before(since))
+                .collect(Collectors.toList());
+
+        byte[] data = mapper.writeValueAsBytes(result);
+        String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (encoding != null && encoding.contains("gzip")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                gzip.write(data);
+            }
+            data = bytes.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+        bytesSent.addAndGet(data.length);
+    }
+
+
+    private MessageVo createMessage(int index, Date updated) {
+        MessageVo msg = new MessageVo();
+        msg.setId("id-" + index);
+        MessageSeriesVo series = new MessageSeriesVo();
+        series.setSeriesId(SERIES_ID);
+        msg.setMessageSeries(series);
+        msg.setStatus(Status.PUBLISHED);
+        msg.setShortId("NW-" + index + "-17");
+        msg.setCreated(updated);
+        msg.setUpdated(updated);
+        msg.createDesc("en").setTitle("Message " + index);
+        MessagePartVo part = new MessagePartVo();
+        part.createDesc("en").setDetails("Details of message " + index + ". Buoy unlit in position 55° 42.0'N 012° 36.0'E.");
+        msg.checkCreateParts().add(part);
+        return msg;
+    }
+}
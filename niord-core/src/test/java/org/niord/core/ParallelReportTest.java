@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.script.pdf.HtmlToPdfRenderer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests rendering the PDF reports of a multi-language publication in parallel,
+ * as is done when a publication is released
+ */
+public class ParallelReportTest {
+
+    private static final int LANGUAGES = 4;
+
+    @Test
+    public void testParallelReports() throws Exception {
+
+        // Render a single report first
+        assertTrue(renderReport().length() > 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(LANGUAGES, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<File>> results = new ArrayList<>();
+            for (int x = 0; x < LANGUAGES; x++) {
+                results.add(executor.submit(this::renderReport));
+            }
+            for (Future<File> result : results) {
+                assertTrue(result.get().length() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /** Renders a test PDF report to a temporary file **/
+    private File renderReport() throws Exception {
+        File file = File.createTempFile( "parallel-report-test-", ".pdf");
+        file.deleteOnExit();
+
+        HtmlToPdfRenderer.newBuilder()
+                .html(getClass().getResourceAsStream("/svg.html"))
+                .pdf(file)
+                .build()
+                .render();
+        return file;
+    }
+}
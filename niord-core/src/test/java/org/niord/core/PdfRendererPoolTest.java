@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.script.pdf.HtmlToPdfRenderer;
+import org.niord.core.script.pdf.PdfRendererPool;
+import org.niord.core.script.pdf.PdfResourceResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests PDF rendering of a typical 50-message report with new renderers versus pooled renderers,
+ * and with locally resolved stylesheets
+ */
+public class PdfRendererPoolTest {
+
+    private static final String BASE_URI = "http://localhost:8080";
+    private static final int MESSAGES = 50;
+    private static final int REPORTS = 20;
+    private static final int THREADS = 4;
+
+    private static final String CSS = "body { font-family: Helvetica, sans-serif; font-size: 10pt; }\n"
+            + ".message { border-bottom: 1px solid #ddd; padding: 2mm 0; }\n"
+            + "h4 { margin: 0; color: #333; }\n";
+
+    private final AtomicInteger resolved = new AtomicInteger();
+    private final PdfResourceResolver resolver = path -> {
+        if ("/css/templates/test.css".equals(path)) {
+            resolved.incrementAndGet();
+            return new ByteArrayInputStream(CSS.getBytes(StandardCharsets.UTF_8));
+        }
+        return null;
+    };
+
+    @Test
+    public void testPooledPdfRendering() throws Exception {
+
+        String html = reportHtml();
+        PdfRendererPool pool = new PdfRendererPool(THREADS);
+
+        // New renderers
+        assertTrue(render(html, null) > 0);
+        assertEquals(0, pool.getIdleCount());
+
+        // Sequential rendering re-uses the same pooled renderer
+        for (int x = 0; x < REPORTS; x++) {
+            assertTrue(render(html, pool) > 0);
+        }
+        assertEquals(1, pool.getIdleCount());
+
+        // Concurrent rendering with more threads than pooled renderers
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS * 2);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int x = 0; x < REPORTS; x++) {
+                results.add(executor.submit(() -> render(html, pool)));
+            }
+            for (Future<Integer> result : results) {
+                assertTrue(result.get() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The stylesheet must have been resolved locally, and the pool bounds the number of renderers
+        assertTrue(resolved.get() > 0);
+        assertTrue(pool.getIdleCount() <= THREADS);
+        assertEquals(THREADS, pool.getSize());
+    }
+
+
+    /** Renders the PDF and returns the size **/
+    private int render(String html, PdfRendererPool pool) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HtmlToPdfRenderer.newBuilder()
+                .baseUri(BASE_URI)
+                .html(html)
+                .resourceResolver(resolver)
+                .pool(pool)
+                .pdf(out)
+                .build()
+                .render();
+        return out.size();
+    }
+
+
+    /** Returns a typical message report HTML document **/
+    private String reportHtml() {
+        StringBuilder html = new StringBuilder()
+                .append("<html><head>")
+                .append("<link rel='stylesheet' type='text/css' href='/css/templates/test.css'>")
+                .append("</head><body><h1>Messages</h1>");
+        for (int x = 0; x < MESSAGES; x++) {
+            html.append("<div class='message'><h4>NW-").append(x).append("-17. Test area - Test message ")
+                    .append(x).append("</h4><p>Light buoy ").append(x)
+                    .append(" in pos. 55&deg; 42.2'N - 012&deg; 36.5'E is unlit. Mariners are advised to navigate with caution.</p></div>");
+        }
+        return html.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.repo.ByteRange;
+import org.niord.core.repo.ByteRangeOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests streaming byte ranges of repository files, and resuming an interrupted
+ * download of a multi-megabyte file
+ */
+public class RepoFileStreamingTest {
+
+    static final int FILE_SIZE = 8 * 1024 * 1024;
+
+    @Test
+    public void testParseRanges() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=abc", 1000));
+        assertNull(ByteRange.parse("bytes=20-10", 1000));
+
+        assertEquals("[0-99]", ByteRange.parse("bytes=0-99", 1000).toString());
+        assertEquals("[500-999]", ByteRange.parse("bytes=500-", 1000).toString());
+        assertEquals("[900-999]", ByteRange.parse("bytes=-100", 1000).toString());
+        assertEquals("[0-999]", ByteRange.parse("bytes=-2000", 1000).toString());
+        assertEquals("[990-999]", ByteRange.parse("bytes=990-2000", 1000).toString());
+        assertEquals("[200-299, 0-9]", ByteRange.parse("bytes=200-299, 0-9", 1000).toString());
+
+        // Overlapping and adjacent ranges are coalesced
+        assertEquals("[0-20, 50-59]", ByteRange.parse("bytes=50-59,0-10,5-20", 1000).toString());
+        assertEquals("[0-19]", ByteRange.parse("bytes=0-9,10-19", 1000).toString());
+
+        // Unsatisfiable ranges
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-", 0).isEmpty());
+    }
+
+
+    @Test
+    public void testStreamRanges() throws IOException {
+        Path file = createFile(10_000);
+        byte[] data = Files.readAllBytes(file);
+        try {
+            // Single range
+            ByteRangeOutput output = new ByteRangeOutput(file, data.length, ByteRange.parse("bytes=100-199", data.length), "video/mp4");
+            byte[] body = write(output);
+            assertFalse(output.isMultipart());
+            assertEquals("video/mp4", output.getResponseContentType());
+            assertEquals("bytes 100-199/10000", output.getContentRange());
+            assertEquals(100, output.getContentLength());
+            assertArrayEquals(Arrays.copyOfRange(data, 100, 200), body);
+
+            // Multiple ranges
+            output = new ByteRangeOutput(file, data.length, ByteRange.parse("bytes=0-9,-10", data.length), "video/mp4");
+            body = write(output);
+            assertTrue(output.isMultipart());
+            assertTrue(output.getResponseContentType().startsWith("multipart/byteranges; boundary="));
+            assertNull(output.getContentRange());
+            assertEquals(output.getContentLength(), body.length);
+            String text = new String(body, StandardCharsets.ISO_8859_1);
+            assertTrue(text.contains("Content-Range: bytes 0-9/10000\r\n\r\n"
+                    + new String(data, 0, 10, StandardCharsets.ISO_8859_1) + "\r\n--"));
+            assertTrue(text.contains("Content-Range: bytes 9990-9999/10000\r\n\r\n"
+                    + new String(data, 9990, 10, StandardCharsets.ISO_8859_1) + "\r\n--"));
+            assertTrue(text.endsWith("--\r\n"));
+
+            // Entire file
+            output = ByteRangeOutput.entireFile(file, data.length, "video/mp4");
+            assertArrayEquals(data, write(output));
+            assertEquals(data.length, output.getContentLength());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+
+    @Test
+    public void testResumedDownload() throws IOException {
+        Path file = createFile(FILE_SIZE);
+        byte[] data = Files.readAllBytes(file);
+        try {
+            // The first download is interrupted after 5 MB
+            long interruptedAt = 5L * 1024 * 1024 + 123;
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            try {
+                ByteRangeOutput.entireFile(file, FILE_SIZE, "application/pdf")
+                        .write(new InterruptedOutputStream(received, interruptedAt));
+            } catch (IOException expected) {
+            }
+            assertEquals(interruptedAt, received.size());
+
+            // Without range support, the download restarts from scratch
+            long restartBytes = write(ByteRangeOutput.entireFile(file, FILE_SIZE, "application/pdf")).length;
+
+            // With range support, the download resumes where it was interrupted
+            List<ByteRange> ranges = ByteRange.parse("bytes=" + received.size() + "-", FILE_SIZE);
+            byte[] remainder = write(new ByteRangeOutput(file, FILE_SIZE, ranges, "application/pdf"));
+            received.write(remainder);
+            assertArrayEquals(data, received.toByteArray());
+
+            assertEquals(FILE_SIZE - interruptedAt, remainder.length);
+            assertEquals(FILE_SIZE, restartBytes);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+
+    private static Path createFile(int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        Path file = Files.createTempFile("niord-repo-test", ".bin");
+        Files.write(file, data);
+        return file;
+    }
+
+
+    private static byte[] write(ByteRangeOutput output) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.write(out);
+        return out.toByteArray();
+    }
+
+
+    /** Emulates a client connection that is closed after the given number of bytes **/
+    private static class InterruptedOutputStream extends OutputStream {
+        final OutputStream out;
+        long remaining;
+
+        InterruptedOutputStream(OutputStream out, long limit) {
+            this.out = out;
+            this.remaining = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int n = (int) Math.min(len, remaining);
+            out.write(b, off, n);
+            remaining -= n;
+            if (n < len) {
+                throw new IOException("Broken pipe");
+            }
+        }
+    }
+}
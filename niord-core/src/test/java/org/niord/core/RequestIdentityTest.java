@@ -0,0 +1,387 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import io.quarkus.oidc.runtime.OidcJwtCallerPrincipal;
+import io.quarkus.security.identity.SecurityIdentity;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.jose4j.jwt.JwtClaims;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainService;
+import org.niord.core.model.BaseEntity;
+import org.niord.core.user.RequestIdentityContext;
+import org.niord.core.user.User;
+import org.niord.core.user.UserService;
+import org.niord.core.user.UserTokenCache;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that {@code UserService.currentUser()} and {@code DomainService.currentDomain()} resolve the
+ * current user and domain by name once per request, and by ID for the remainder of the request.
+ * <p>
+ * The services are backed by in-memory entities, and count the look-ups by name, i.e. the queries,
+ * separately from the look-ups by ID, which are served by the persistence context or second-level cache.
+ */
+public class RequestIdentityTest {
+
+    InMemoryUserService userService;
+    InMemoryDomainService domainService;
+
+    @Before
+    public void init() {
+        userService = new InMemoryUserService();
+        domainService = new InMemoryDomainService();
+    }
+
+
+    @After
+    public void cleanUp() {
+        domainService.removeDomainForCurrentThread();
+    }
+
+
+    @Test
+    public void testCurrentUser() {
+        userService.principal = principal("editor", "Ed", "Itor", "editor@niord.org");
+
+        // First request: the new user is looked up by name and created
+        userService.beginRequest();
+        User user = userService.currentUser();
+        assertEquals("editor", user.getUsername());
+        assertEquals("Ed", user.getFirstName());
+        for (int x = 0; x < 5; x++) {
+            assertSame(user, userService.currentUser());
+        }
+        assertEquals(1, userService.nameLookups);
+        assertEquals(1, userService.saves);
+        assertEquals(5, userService.idLookups);
+
+        // Subsequent requests: the token matches the cached fingerprint, so the user is looked up by ID
+        userService.beginRequest();
+        for (int x = 0; x < 5; x++) {
+            assertSame(user, userService.currentUser());
+        }
+        assertEquals(1, userService.nameLookups);
+        assertEquals(1, userService.saves);
+        assertTrue(userService.pendingUpdates.isEmpty());
+    }
+
+
+    @Test
+    public void testChangedTokenUpdatesUserAsync() {
+        User user = userService.addUser("editor", "Ed", "Itor", "editor@niord.org");
+        userService.principal = principal("editor", "Edward", "Itor", "editor@niord.org");
+
+        userService.beginRequest();
+        assertSame(user, userService.currentUser());
+        assertSame(user, userService.currentUser());
+        assertEquals(1, userService.nameLookups);
+
+        // The user is updated in a separate task, and not as part of the request
+        assertEquals("Ed", user.getFirstName());
+        assertEquals(1, userService.pendingUpdates.size());
+        userService.runPendingUpdates();
+        assertEquals("Edward", user.getFirstName());
+        assertEquals(1, userService.saves);
+
+        // The fingerprint of the updated token is cached
+        userService.beginRequest();
+        assertSame(user, userService.currentUser());
+        assertEquals(1, userService.nameLookups);
+        assertTrue(userService.pendingUpdates.isEmpty());
+    }
+
+
+    @Test
+    public void testFailedUpdateIsRetried() {
+        User user = userService.addUser("editor", "Ed", "Itor", "editor@niord.org");
+        userService.principal = principal("editor", "Edward", "Itor", "editor@niord.org");
+
+        userService.beginRequest();
+        assertSame(user, userService.currentUser());
+        userService.failLookups = true;
+        userService.runPendingUpdates();
+        assertEquals("Ed", user.getFirstName());
+
+        // The failed update invalidates the fingerprint, so the next request resolves and updates the user again
+        userService.failLookups = false;
+        userService.beginRequest();
+        assertEquals(user.getId(), userService.currentUser().getId());
+        assertEquals(2, userService.nameLookups);
+        assertEquals(1, userService.pendingUpdates.size());
+        userService.runPendingUpdates();
+        assertEquals("Edward", userService.users.get(user.getId()).getFirstName());
+    }
+
+
+    @Test
+    public void testCurrentUserOutsideRequest() {
+        User user = userService.addUser("editor", "Ed", "Itor", "editor@niord.org");
+        userService.principal = principal("editor", "Ed", "Itor", "editor@niord.org");
+
+        // Without a request context, the token fingerprint is still used to look up the user by ID
+        for (int x = 0; x < 3; x++) {
+            assertSame(user, userService.currentUser());
+        }
+        assertEquals(1, userService.nameLookups);
+        assertEquals(2, userService.idLookups);
+
+        // Syncing the user from Keycloak invalidates the fingerprint
+        userService.invalidateUserToken("EDITOR");
+        assertSame(user, userService.currentUser());
+        assertEquals(2, userService.nameLookups);
+    }
+
+
+    @Test
+    public void testCurrentDomain() {
+        Domain domain = domainService.addDomain("niord-nw");
+        domainService.setDomainForCurrentThread("niord-nw");
+
+        domainService.beginRequest();
+        for (int x = 0; x < 5; x++) {
+            assertSame(domain, domainService.currentDomain());
+        }
+        assertEquals(1, domainService.nameLookups);
+        assertEquals(4, domainService.idLookups);
+
+        // Each request resolves the domain by name once
+        domainService.beginRequest();
+        assertSame(domain, domainService.currentDomain());
+        assertSame(domain, domainService.currentDomain());
+        assertEquals(2, domainService.nameLookups);
+
+        // If the domain has been deleted, it is resolved by name again
+        domainService.domains.remove(domain.getId());
+        Domain newDomain = domainService.addDomain("niord-nw");
+        assertNotSame(domain, domainService.currentDomain());
+        assertSame(newDomain, domainService.currentDomain());
+        assertEquals(3, domainService.nameLookups);
+    }
+
+
+    @Test
+    public void testCurrentDomainOutsideRequest() {
+        Domain domain = domainService.addDomain("niord-nw");
+        domainService.setDomainForCurrentThread("niord-nw");
+
+        for (int x = 0; x < 3; x++) {
+            assertSame(domain, domainService.currentDomain());
+        }
+        assertEquals(3, domainService.nameLookups);
+        assertEquals(0, domainService.idLookups);
+    }
+
+
+    @Test
+    public void testUserTokenCache() {
+        UserTokenCache cache = new UserTokenCache();
+        String fingerprint = UserTokenCache.fingerprint("editor", null, "Itor", "editor@niord.org");
+        assertNotEquals(fingerprint, UserTokenCache.fingerprint("editor", "Itor", null, "editor@niord.org"));
+
+        assertNull(cache.getUserId("editor", fingerprint));
+        cache.register("Editor", 42, fingerprint);
+        assertEquals(42, (int)cache.getUserId("editor", fingerprint));
+        assertNull(cache.getUserId("editor", UserTokenCache.fingerprint("editor")));
+
+        cache.invalidate("EDITOR");
+        assertNull(cache.getUserId("editor", fingerprint));
+    }
+
+
+    /** Returns an access token principal with the given user data **/
+    private static OidcJwtCallerPrincipal principal(String username, String firstName, String lastName, String email) {
+        JwtClaims claims = new JwtClaims();
+        claims.setClaim("preferred_username", username);
+        claims.setClaim("given_name", firstName);
+        claims.setClaim("family_name", lastName);
+        claims.setClaim("email", email);
+        return new OidcJwtCallerPrincipal(claims, null, "preferred_username");
+    }
+
+
+    /** Returns a proxy for the given interface, which delegates to the given handler **/
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(RequestIdentityTest.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+
+    /** A user service backed by in-memory users **/
+    static class InMemoryUserService extends UserService {
+
+        final Map<Integer, User> users = new HashMap<>();
+        final List<Runnable> pendingUpdates = new ArrayList<>();
+        RequestIdentityContext requestContext;
+        OidcJwtCallerPrincipal principal;
+        boolean failLookups;
+        int nameLookups, idLookups, saves, nextId = 1;
+
+        InMemoryUserService() {
+            log = LoggerFactory.getLogger(UserService.class);
+            identity = proxy(SecurityIdentity.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "isAnonymous":
+                        return principal == null;
+                    case "getPrincipal":
+                        return principal;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+            // Queues the asynchronous user updates, so that the test controls when they run
+            managedExecutor = proxy(ManagedExecutor.class, (proxy, method, args) -> {
+                if (!"runAsync".equals(method.getName()) || args.length != 1) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                CompletableFuture<Void> result = new CompletableFuture<>();
+                pendingUpdates.add(() -> {
+                    try {
+                        ((Runnable) args[0]).run();
+                        result.complete(null);
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+                return result;
+            });
+        }
+
+        void beginRequest() {
+            requestContext = new RequestIdentityContext();
+        }
+
+        void invalidateUserToken(String username) {
+            userTokenCache.invalidate(username);
+        }
+
+        void runPendingUpdates() {
+            List<Runnable> updates = new ArrayList<>(pendingUpdates);
+            pendingUpdates.clear();
+            updates.forEach(Runnable::run);
+        }
+
+        User addUser(String username, String firstName, String lastName, String email) {
+            User user = new User();
+            user.setUsername(username);
+            user.setFirstName(firstName);
+            user.setLastName(lastName);
+            user.setEmail(email);
+            user.setId(nextId++);
+            users.put(user.getId(), user);
+            return user;
+        }
+
+        @Override
+        protected RequestIdentityContext activeRequestIdentityContext() {
+            return requestContext;
+        }
+
+        @Override
+        public OidcJwtCallerPrincipal getCallerPrincipal() {
+            return principal;
+        }
+
+        @Override
+        public User findByUsername(String username) {
+            nameLookups++;
+            return users.values().stream()
+                    .filter(u -> u.getUsername().equalsIgnoreCase(username))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <E extends BaseEntity> E getByPrimaryKey(Class<E> clazz, Object id) {
+            if (failLookups) {
+                throw new IllegalStateException("Look-up failed");
+            }
+            idLookups++;
+            return (E) users.get(id);
+        }
+
+        @Override
+        public <E extends BaseEntity> E saveEntity(E entity) {
+            User user = (User) entity;
+            if (user.isNew()) {
+                user.setId(nextId++);
+            }
+            users.put(user.getId(), user);
+            saves++;
+            return entity;
+        }
+    }
+
+
+    /** A domain service backed by in-memory domains **/
+    static class InMemoryDomainService extends DomainService {
+
+        final Map<Integer, Domain> domains = new HashMap<>();
+        RequestIdentityContext requestContext;
+        int nameLookups, idLookups, nextId = 1;
+
+        void beginRequest() {
+            requestContext = new RequestIdentityContext();
+        }
+
+        Domain addDomain(String domainId) {
+            Domain domain = new Domain();
+            domain.setDomainId(domainId);
+            domain.setId(nextId++);
+            domains.put(domain.getId(), domain);
+            return domain;
+        }
+
+        @Override
+        protected RequestIdentityContext activeRequestIdentityContext() {
+            return requestContext;
+        }
+
+        @Override
+        public Domain findByDomainId(String domainId) {
+            nameLookups++;
+            return domains.values().stream()
+                    .filter(d -> d.getDomainId().equals(domainId))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <E extends BaseEntity> E getByPrimaryKey(Class<E> clazz, Object id) {
+            idLookups++;
+            return (E) domains.get(id);
+        }
+    }
+}
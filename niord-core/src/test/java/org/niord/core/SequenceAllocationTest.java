@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.sequence.DefaultSequence;
+import org.niord.core.sequence.Sequence;
+import org.niord.core.sequence.SequenceBlockCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that sequence values allocated concurrently via the {@code SequenceBlockCache} are unique,
+ * also when several nodes, each with their own cache, share the same sequence.
+ * <p>
+ * The database sequence row is emulated by a block allocator that atomically bumps the next value,
+ * but which does not serialize its callers.
+ */
+public class SequenceAllocationTest {
+
+    static final int THREADS = 8;
+    static final int VALUES_PER_THREAD = 500;
+    static final int BLOCK_SIZE = 50;
+
+    @Test
+    public void testGaplessSequence() throws Exception {
+        Sequence sequence = new DefaultSequence("GAPLESS", 1);
+        SequenceRow row = new SequenceRow();
+        SequenceBlockCache cache = new SequenceBlockCache(row);
+
+        Set<Long> values = allocateConcurrently(sequence, cache);
+
+        // All values must be unique and without gaps, and each value is allocated via the allocator
+        assertEquals(THREADS * VALUES_PER_THREAD, values.size());
+        for (long v = 1; v <= THREADS * VALUES_PER_THREAD; v++) {
+            assertTrue(values.contains(v));
+        }
+        assertEquals(THREADS * VALUES_PER_THREAD, row.allocations.get());
+        assertNull(cache.peekNextValue(sequence));
+    }
+
+
+    @Test
+    public void testBlockSequence() throws Exception {
+        Sequence sequence = new DefaultSequence("BLOCK", 1, BLOCK_SIZE);
+        SequenceRow row = new SequenceRow();
+
+        // Two nodes sharing the same sequence row allocate values at the same time
+        NodeAllocator allocator1 = new NodeAllocator(row);
+        NodeAllocator allocator2 = new NodeAllocator(row);
+        Set<Long> values = allocateConcurrently(sequence,
+                new SequenceBlockCache(allocator1),
+                new SequenceBlockCache(allocator2));
+
+        // All values must be unique, and each node only allocates a new block when the previous is used up
+        int valueCount = 2 * THREADS * VALUES_PER_THREAD;
+        assertEquals(valueCount, values.size());
+        assertEquals(valueCount / BLOCK_SIZE, row.allocations.get());
+        for (long v = 1; v <= valueCount; v++) {
+            assertTrue(values.contains(v));
+        }
+
+        // A node never allocates more than one block of the sequence at a time
+        assertEquals(1, allocator1.maxInFlight.get());
+        assertEquals(1, allocator2.maxInFlight.get());
+    }
+
+
+    @Test
+    public void testResetBlock() throws Exception {
+        Sequence sequence = new DefaultSequence("RESET", 1, BLOCK_SIZE);
+        SequenceRow row = new SequenceRow();
+        SequenceBlockCache cache = new SequenceBlockCache(row);
+
+        assertNull(cache.peekNextValue(sequence));
+        assertEquals(1L, cache.nextValue(sequence));
+        assertEquals(Long.valueOf(2L), cache.peekNextValue(sequence));
+
+        // After a reset, the next value is taken from a new block
+        cache.reset(sequence);
+        assertNull(cache.peekNextValue(sequence));
+        assertEquals(1L + BLOCK_SIZE, cache.nextValue(sequence));
+        assertEquals(2, row.allocations.get());
+    }
+
+
+    /**
+     * Allocates values from the given sequence concurrently, using {@code THREADS} threads per cache,
+     * and returns the set of values. Fails if a value is allocated twice.
+     **/
+    private Set<Long> allocateConcurrently(Sequence sequence, SequenceBlockCache... caches) throws Exception {
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS * caches.length);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SequenceBlockCache cache : caches) {
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(executor.submit((Callable<Void>) () -> {
+                        start.await();
+                        for (int x = 0; x < VALUES_PER_THREAD; x++) {
+                            if (!values.add(cache.nextValue(sequence))) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, duplicates.get());
+        return values;
+    }
+
+
+    /**
+     * Emulates a database sequence row, which atomically bumps the next value of the sequence.
+     * Callers are not serialized, and a short pause widens the window for races in the block cache.
+     */
+    static class SequenceRow implements SequenceBlockCache.BlockAllocator {
+        final AtomicLong nextValue = new AtomicLong(-1);
+        final AtomicInteger allocations = new AtomicInteger();
+
+        @Override
+        public long allocate(Sequence sequence, int blockSize) {
+            allocations.incrementAndGet();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            nextValue.compareAndSet(-1, sequence.initialValue());
+            return nextValue.getAndAdd(blockSize);
+        }
+    }
+
+
+    /**
+     * The block allocator of a node, which records the max number of concurrent allocations of the node
+     */
+    static class NodeAllocator implements SequenceBlockCache.BlockAllocator {
+        final SequenceRow row;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        NodeAllocator(SequenceRow row) {
+            this.row = row;
+        }
+
+        @Override
+        public long allocate(Sequence sequence, int blockSize) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                return row.allocate(sequence, blockSize);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.service.TreeSnapshot;
+import org.niord.core.service.TreeSnapshot.Node;
+import org.niord.core.service.TreeSnapshotHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the tree snapshot, by comparing the lineages and sub-trees resolved with the
+ * snapshot against walking the parent and child relations of the tree
+ */
+public class TreeSnapshotTest {
+
+    static final int NODES = 5000;
+    static final int LOOKUPS = 20_000;
+
+    @Test
+    public void testTreeSnapshot() {
+        //       1            6
+        //     /   \          |
+        //    3     2         7
+        //   / \
+        //  4   5
+        TreeSnapshot<String> tree = new TreeSnapshot<>(1L, Arrays.asList(
+                new Node<>(1, null, 1, "sort-1"),
+                new Node<>(2, 1, 2, null),
+                new Node<>(3, 1, 1, "sort-3"),
+                new Node<>(4, 3, 1, null),
+                new Node<>(5, 3, 2, null),
+                new Node<>(6, null, 2, null),
+                new Node<>(7, 6, 1, null),
+                new Node<>(8, 9, 1, null),      // Parent cycle
+                new Node<>(9, 8, 1, null)));
+
+        assertEquals(7, tree.size());
+        assertFalse(tree.contains(8));
+        List<Integer> preOrder = Arrays.asList(1, 3, 4, 5, 2, 6, 7);
+        for (int pos = 0; pos < preOrder.size(); pos++) {
+            assertEquals(pos, tree.getPosition(preOrder.get(pos)));
+        }
+        assertEquals(Arrays.asList(1, 3, 4, 5, 2), tree.getSubtreeIds(1));
+        assertEquals(Arrays.asList(3, 4, 5), tree.getSubtreeIds(3));
+        assertEquals(Arrays.asList(1, 3, 5), tree.getLineageIds(5));
+        assertEquals("/1/3/5/", tree.getLineage(5));
+        assertEquals("/6/7/", tree.getLineage(7));
+        assertNull(tree.getLineage(100));
+        assertEquals(2, tree.getDepth(4));
+        assertEquals(3, (int)tree.getParentId(4));
+        assertNull(tree.getParentId(1));
+
+        assertTrue(tree.isInSubtree(5, 1));
+        assertTrue(tree.isInSubtree(3, 3));
+        assertFalse(tree.isInSubtree(2, 3));
+        assertFalse(tree.isInSubtree(7, 1));
+
+        assertEquals(3, (int)tree.findClosest(5, Objects::nonNull));
+        assertEquals(1, (int)tree.findClosest(2, Objects::nonNull));
+        assertNull(tree.findClosest(7, Objects::nonNull));
+    }
+
+
+    @Test
+    public void testTreeSnapshotHolder() {
+        AtomicInteger loads = new AtomicInteger();
+        List<Node<Void>> nodes = new ArrayList<>();
+        nodes.add(new Node<>(1, null, 1, null));
+        TreeSnapshotHolder<Void> holder = new TreeSnapshotHolder<>(() -> {
+            loads.incrementAndGet();
+            return new ArrayList<>(nodes);
+        });
+
+        assertEquals(1, holder.get().size());
+        assertEquals(1, holder.get().size());
+        assertEquals(1, loads.get());
+
+        nodes.add(new Node<>(2, 1, 1, null));
+        holder.invalidate();
+        assertEquals("/1/2/", holder.get().getLineage(2));
+        assertEquals(2, loads.get());
+
+        // A snapshot loaded while the tree is changed is not installed
+        List<TreeSnapshotHolder<Void>> racingHolder = new ArrayList<>();
+        racingHolder.add(new TreeSnapshotHolder<>(() -> {
+            if (loads.getAndIncrement() == 0) {
+                racingHolder.get(0).invalidate();
+            }
+            return new ArrayList<>(nodes);
+        }));
+        loads.set(0);
+        racingHolder.get(0).get();
+        racingHolder.get(0).get();
+        racingHolder.get(0).get();
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    public void testLineageLookups() {
+        // Build a random area-like tree
+        Random random = new Random(42);
+        List<Node<String>> nodes = new ArrayList<>();
+        Map<Integer, ParentNode> parentNodes = new HashMap<>();
+        for (int id = 1; id <= NODES; id++) {
+            Integer parentId = id <= 10 ? null : 1 + random.nextInt(id - 1);
+            String sorting = random.nextInt(50) == 0 ? "sort-" + id : null;
+            nodes.add(new Node<>(id, parentId, random.nextDouble(), sorting));
+            ParentNode node = new ParentNode(id, parentId == null ? null : parentNodes.get(parentId), sorting);
+            if (node.parent != null) {
+                node.parent.children.add(node);
+            }
+            parentNodes.put(id, node);
+        }
+        TreeSnapshot<String> tree = new TreeSnapshot<>(1L, nodes);
+
+        int[] lookupIds = random.ints(LOOKUPS, 1, NODES + 1).toArray();
+
+        assertEquals(walkLookups(parentNodes, lookupIds), snapshotLookups(tree, lookupIds));
+        for (int id : Arrays.copyOf(lookupIds, 100)) {
+            assertEquals(parentNodes.get(id).lineage(), tree.getLineage(id));
+            assertEquals(parentNodes.get(id).subtreeSize(), tree.getSubtreeIds(id).size());
+        }
+    }
+
+
+    /** Resolves lineages and message sorting nodes by walking the parents, as done via the entity relations **/
+    private long walkLookups(Map<Integer, ParentNode> nodes, int[] lookupIds) {
+        long result = 0;
+        for (int id : lookupIds) {
+            ParentNode node = nodes.get(id);
+            result += node.lineage().length();
+            ParentNode sortingNode = node;
+            while (sortingNode != null && sortingNode.sorting == null) {
+                sortingNode = sortingNode.parent;
+            }
+            result += sortingNode == null ? 0 : sortingNode.id;
+        }
+        return result;
+    }
+
+
+    /** Resolves lineages and message sorting nodes via the tree snapshot **/
+    private long snapshotLookups(TreeSnapshot<String> tree, int[] lookupIds) {
+        long result = 0;
+        for (int id : lookupIds) {
+            result += tree.getLineage(id).length();
+            Integer sortingId = tree.findClosest(id, Objects::nonNull);
+            result += sortingId == null ? 0 : sortingId;
+        }
+        return result;
+    }
+
+
+    /** Emulates a tree entity with parent and child relations **/
+    private static class ParentNode {
+        final Integer id;
+        final ParentNode parent;
+        final String sorting;
+        final List<ParentNode> children = new ArrayList<>();
+
+        ParentNode(Integer id, ParentNode parent, String sorting) {
+            this.id = id;
+            this.parent = parent;
+            this.sorting = sorting;
+        }
+
+        String lineage() {
+            return parent == null ? "/" + id + "/" : parent.lineage() + id + "/";
+        }
+
+        int subtreeSize() {
+            return 1 + children.stream().mapToInt(ParentNode::subtreeSize).sum();
+        }
+    }
+}
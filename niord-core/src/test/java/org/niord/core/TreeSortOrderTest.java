@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.model.TreeBaseEntity;
+import org.niord.core.service.TreeSortOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the incremental tree sort order maintenance, and compares the number of entities updated
+ * per move in a 5000-node tree against renumbering the entire tree
+ */
+public class TreeSortOrderTest {
+
+    static final int NODES = 5000;
+    static final int MOVES = 500;
+
+    /** Sub-trees of nodes with an ID divisible by 97 share the tree sort order of the node **/
+    static final Predicate<Node> SHARES = n -> n.getId() % 97 == 0;
+
+    @Test
+    public void testUpdate() {
+        List<Node> roots = new ArrayList<>();
+        Node n1 = node(1, null, 1, roots);
+        Node n2 = node(2, n1, 1, roots);
+        Node n3 = node(3, n1, 2, roots);
+        Node n4 = node(4, null, 2, roots);
+        TreeSortOrder<Node> treeSortOrder = new TreeSortOrder<>(() -> roots, n -> false);
+
+        assertEquals(4, treeSortOrder.renumber().size());
+        assertEquals(Arrays.asList(1000, 2000, 3000, 4000), keys(n1, n2, n3, n4));
+
+        // Create a node between 2 and 3
+        Node n5 = node(5, n1, 1.5, roots);
+        assertEquals(Collections.singletonList(n5), treeSortOrder.update(n5));
+        assertEquals(2500, n5.getTreeSortOrder());
+
+        // Move 1 and its sub-tree below 4
+        roots.remove(n1);
+        n4.addChild(n1);
+        assertEquals(4, treeSortOrder.update(n1).size());
+        assertEquals(Arrays.asList(5000, 6000, 7000, 8000), keys(n1, n2, n5, n3));
+
+        // Exhaust the keys between 2 and 5
+        n4.getChildren().remove(n1);
+        n1.setParent(null);
+        roots.add(0, n1);
+        n1.setSiblingSortOrder(0);
+        treeSortOrder.renumber();
+        int created = 0;
+        Node node;
+        do {
+            node = node(100 + created++, n1, 1.0 + 0.4 / created, roots);
+        } while (treeSortOrder.update(node) != null);
+        assertEquals(10, created);
+
+        // Renumbering makes room again
+        treeSortOrder.renumber();
+        assertNotNull(treeSortOrder.update(node(200, n1, 1.0001, roots)));
+    }
+
+
+    @Test
+    public void testSharedTreeSortOrder() {
+        List<Node> roots = new ArrayList<>();
+        Node n1 = node(1, null, 1, roots);
+        Node n97 = node(97, n1, 1, roots);
+        Node n2 = node(2, n97, 1, roots);
+        Node n3 = node(3, n2, 1, roots);
+        Node n4 = node(4, n1, 2, roots);
+        TreeSortOrder<Node> treeSortOrder = new TreeSortOrder<>(() -> roots, SHARES);
+
+        treeSortOrder.renumber();
+        assertEquals(Arrays.asList(1000, 2000, 2000, 2000, 3000), keys(n1, n97, n2, n3, n4));
+
+        // Move 4 into the sub-tree of 97
+        n1.getChildren().remove(n4);
+        n3.addChild(n4);
+        n4.setTreeSortOrder(3000);
+        assertEquals(Collections.singletonList(n4), treeSortOrder.update(n4));
+        assertEquals(2000, n4.getTreeSortOrder());
+
+        // Move 2 and its sub-tree out of the sub-tree of 97
+        n97.getChildren().remove(n2);
+        n1.addChild(n2);
+        n2.setSiblingSortOrder(2);
+        assertEquals(3, treeSortOrder.update(n2).size());
+        assertEquals(Arrays.asList(1000, 2000, 3000, 4000, 5000), keys(n1, n97, n2, n3, n4));
+    }
+
+
+    @Test
+    public void testRowsWrittenPerMove() {
+        Random random = new Random(42);
+        List<Node> incrementalRoots = new ArrayList<>();
+        List<Node> renumberRoots = new ArrayList<>();
+        List<Node> incrementalNodes = buildTree(incrementalRoots, new Random(7));
+        List<Node> renumberNodes = buildTree(renumberRoots, new Random(7));
+        TreeSortOrder<Node> incremental = new TreeSortOrder<>(() -> incrementalRoots, SHARES);
+        TreeSortOrder<Node> renumber = new TreeSortOrder<>(() -> renumberRoots, SHARES);
+        incremental.renumber();
+        renumber.renumber();
+
+        long incrementalRows = 0, renumberRows = 0;
+        for (int x = 0; x < MOVES; x++) {
+            int index = random.nextInt(NODES);
+            int parentIndex = random.nextInt(NODES + 1) - 1;
+            double siblingSortOrder = random.nextDouble() * 100;
+            if (parentIndex >= 0 && isInSubtree(incrementalNodes.get(parentIndex), incrementalNodes.get(index))) {
+                continue;
+            }
+
+            move(incrementalNodes, incrementalRoots, index, parentIndex, siblingSortOrder);
+            List<Node> updated = incremental.update(incrementalNodes.get(index));
+            if (updated == null) {
+                updated = incremental.renumber();
+            }
+            incrementalRows += updated.size();
+            assertPreOrder(incrementalRoots);
+
+            move(renumberNodes, renumberRoots, index, parentIndex, siblingSortOrder);
+            renumberRows += renumber.renumber().size();
+        }
+
+        assertTrue(incrementalRows < renumberRows);
+    }
+
+
+    /** Builds a random tree with NODES nodes **/
+    private List<Node> buildTree(List<Node> roots, Random random) {
+        List<Node> nodes = new ArrayList<>();
+        for (int id = 1; id <= NODES; id++) {
+            Node parent = id <= 20 ? null : nodes.get(random.nextInt(Math.min(nodes.size(), 1000 + id / 2)));
+            nodes.add(node(id, parent, random.nextDouble() * 100, roots));
+        }
+        return nodes;
+    }
+
+
+    /** Moves the node with the given index to the parent with the given index, or to the root if negative **/
+    private void move(List<Node> nodes, List<Node> roots, int index, int parentIndex, double siblingSortOrder) {
+        Node node = nodes.get(index);
+        if (node.getParent() != null) {
+            node.getParent().getChildren().remove(node);
+            node.setParent(null);
+        } else {
+            roots.remove(node);
+        }
+        node.setSiblingSortOrder(siblingSortOrder);
+        if (parentIndex >= 0) {
+            nodes.get(parentIndex).addChild(node);
+        } else {
+            roots.add(node);
+        }
+    }
+
+
+    /** Checks that the keys increase in pre-order, except within shared sub-trees **/
+    private void assertPreOrder(List<Node> roots) {
+        List<Node> preOrder = new ArrayList<>();
+        sorted(roots).forEach(n -> preOrder(n, preOrder));
+        for (int x = 1; x < preOrder.size(); x++) {
+            Node node = preOrder.get(x);
+            boolean shared = node.lineageAsList().stream().skip(1).anyMatch(SHARES);
+            if (shared) {
+                assertEquals(preOrder.get(x - 1).getTreeSortOrder(), node.getTreeSortOrder());
+            } else {
+                assertTrue(preOrder.get(x - 1).getTreeSortOrder() < node.getTreeSortOrder());
+            }
+        }
+    }
+
+
+    private void preOrder(Node node, List<Node> result) {
+        result.add(node);
+        sorted(node.getChildren()).forEach(n -> preOrder(n, result));
+    }
+
+
+    private static boolean isInSubtree(Node node, Node root) {
+        for (Node n = node; n != null; n = n.getParent()) {
+            if (n == root) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static List<Node> sorted(List<Node> nodes) {
+        List<Node> result = new ArrayList<>(nodes);
+        Collections.sort(result);
+        return result;
+    }
+
+
+    private static List<Integer> keys(Node... nodes) {
+        return Arrays.stream(nodes).map(Node::getTreeSortOrder).collect(Collectors.toList());
+    }
+
+
+    private static Node node(int id, Node parent, double siblingSortOrder, List<Node> roots) {
+        Node node = new Node();
+        node.setId(id);
+        node.setSiblingSortOrder(siblingSortOrder);
+        if (parent != null) {
+            parent.addChild(node);
+        } else {
+            roots.add(node);
+        }
+        return node;
+    }
+
+
+    /** Tree entity used for testing **/
+    public static class Node extends TreeBaseEntity<Node> {
+
+        @Override
+        public Node asEntity() {
+            return this;
+        }
+    }
+}
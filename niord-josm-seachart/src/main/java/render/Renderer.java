@@ -22,24 +22,39 @@ import symbols.Areas;
 import symbols.Symbols;
 import symbols.Symbols.*;
 
+/**
+ * Renders an S57 map.
+ * <p>
+ * All rendering state lives in the Renderer instance, so a new Renderer is used for each
+ * rendering, and multiple renderings may take place concurrently in separate threads.
+ */
 public class Renderer {
 
 	public static final double symbolScale[] = { 256.0, 128.0, 64.0, 32.0, 16.0, 8.0, 4.0, 2.0, 1.0, 0.61, 0.372, 0.227, 0.138, 0.0843, 0.0514, 0.0313, 0.0191, 0.0117, 0.007 };
 
 	public enum LabelStyle { NONE, RRCT, RECT, ELPS, CIRC, VCLR, PCLR, HCLR }
 
-	static ChartContext context;
-	static S57map map;
-	static double sScale;
-	static Graphics2D g2;
-	static int zoom;
+	final ChartContext context;
+	final S57map map;
+	final double sScale;
+	final Graphics2D g2;
+	final int zoom;
+	final Rules rules;
 
-	public static void reRender(Graphics2D g, Rectangle rect, int z, double factor, S57map m, ChartContext c) {
+	public Renderer(Graphics2D g, int z, double factor, S57map m, ChartContext c) {
 		g2 = g;
 		zoom = z;
 		context = c;
 		map = m;
 		sScale = symbolScale[zoom] * factor;
+		rules = new Rules(this);
+	}
+
+	public static void reRender(Graphics2D g, Rectangle rect, int z, double factor, S57map m, ChartContext c) {
+		new Renderer(g, z, factor, m, c).render(rect);
+	}
+
+	public void render(Rectangle rect) {
 		if (map != null) {
 			if (context.clip()) {
 				Point2D tl = context.getPoint(map.new Snode(map.bounds.maxlat, map.bounds.minlon));
@@ -51,28 +66,28 @@ public class Renderer {
 			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 			g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_GASP);
 			g2.setStroke(new BasicStroke(0, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
-			Rules.rules();
+			rules.rules();
 		}
 	}
 
-	public static void symbol(Symbol symbol) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
+	public void symbol(Symbol symbol) {
+		Point2D point = context.getPoint(rules.feature.geom.centre);
 		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), null, null);
 	}
-	public static void symbol(Symbol symbol, Scheme scheme) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
+	public void symbol(Symbol symbol, Scheme scheme) {
+		Point2D point = context.getPoint(rules.feature.geom.centre);
 		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), scheme, null);
 	}
-	public static void symbol(Symbol symbol, Delta delta) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
+	public void symbol(Symbol symbol, Delta delta) {
+		Point2D point = context.getPoint(rules.feature.geom.centre);
 		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), null, delta);
 	}
-	public static void symbol(Symbol symbol, Scheme scheme, Delta delta) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
+	public void symbol(Symbol symbol, Scheme scheme, Delta delta) {
+		Point2D point = context.getPoint(rules.feature.geom.centre);
 		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), scheme, delta);
 	}
 	
-	public static void cluster(ArrayList<Symbol> symbols) {
+	public void cluster(ArrayList<Symbol> symbols) {
 		Rectangle2D.Double bbox = null;
 		if (symbols.size() > 4) {
 			for (Instr instr : symbols.get(0)) {
@@ -150,7 +165,7 @@ public class Renderer {
 		}
 	}
 
-	private static Rectangle2D.Double symbolSize(Symbol symbol) {
+	private Rectangle2D.Double symbolSize(Symbol symbol) {
 		Symbol ssymb = symbol;
 		while (ssymb != null) {
 			for (Instr item : symbol) {
@@ -168,8 +183,8 @@ public class Renderer {
 		return null;
 	}
 
-	public static void lineSymbols(Symbol prisymb, double space, Symbol secsymb, Symbol tersymb, int ratio, Color col) {
-		if ((Rules.feature.geom.prim == Pflag.NOSP) || (Rules.feature.geom.prim == Pflag.POINT))
+	public void lineSymbols(Symbol prisymb, double space, Symbol secsymb, Symbol tersymb, int ratio, Color col) {
+		if ((rules.feature.geom.prim == Pflag.NOSP) || (rules.feature.geom.prim == Pflag.POINT))
 			return;
 		Rectangle2D.Double prect = symbolSize(prisymb);
 		Rectangle2D.Double srect = symbolSize(secsymb);
@@ -191,7 +206,7 @@ public class Renderer {
 			int stcount = ratio;
 			boolean stflag = false;
 			Symbol symbol = prisymb;
-			GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+			GeomIterator git = map.new GeomIterator(rules.feature.geom);
 			while (git.hasComp()) {
 				git.nextComp();
 				boolean first = true;
@@ -252,11 +267,11 @@ public class Renderer {
 		}
 	}
 
-	public static void lineVector(LineStyle style) {
+	public void lineVector(LineStyle style) {
 		Path2D.Double p = new Path2D.Double();
 		p.setWindingRule(GeneralPath.WIND_EVEN_ODD);
 		Point2D point;
-		GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+		GeomIterator git = map.new GeomIterator(rules.feature.geom);
 		while (git.hasComp()) {
 			git.nextComp();
 			boolean first = true;
@@ -277,7 +292,7 @@ public class Renderer {
 				}
 			}
 		}
-		if ((style.fill != null) && (Rules.feature.geom.prim == Pflag.AREA)) {
+		if ((style.fill != null) && (rules.feature.geom.prim == Pflag.AREA)) {
 			g2.setPaint(style.fill);
 			g2.fill(p);
 		}
@@ -297,7 +312,7 @@ public class Renderer {
 		}
 	}
 	
-	public static void lineCircle(LineStyle style, double radius, UniHLU units) {
+	public void lineCircle(LineStyle style, double radius, UniHLU units) {
 		switch (units) {
 		case HLU_FEET:
 			radius /= 6076;
@@ -317,7 +332,7 @@ public class Renderer {
 			radius /= 1852;
 			break;
 		}
-		radius *= context.mile(Rules.feature);
+		radius *= context.mile(rules.feature);
 		Symbol circle = new Symbol();
 		if (style.fill != null) {
 			circle.add(new Instr(Form.FILL, style.fill));
@@ -326,22 +341,22 @@ public class Renderer {
 		circle.add(new Instr(Form.FILL, style.line));
 		circle.add(new Instr(Form.STRK, new BasicStroke(style.width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1, style.dash, 0)));
 		circle.add(new Instr(Form.ELPS, new Ellipse2D.Double(-radius,-radius,radius*2,radius*2)));
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
+		Point2D point = context.getPoint(rules.feature.geom.centre);
 		Symbols.drawSymbol(g2, circle, 1, point.getX(), point.getY(), null, null);
 	}
 
-	public static void fillPattern(BufferedImage image) {
+	public void fillPattern(BufferedImage image) {
 		Path2D.Double p = new Path2D.Double();
 		p.setWindingRule(GeneralPath.WIND_EVEN_ODD);
 		Point2D point;
-		switch (Rules.feature.geom.prim) {
+		switch (rules.feature.geom.prim) {
 		case POINT:
-			point = context.getPoint(Rules.feature.geom.centre);
+			point = context.getPoint(rules.feature.geom.centre);
 			g2.drawImage(image, new AffineTransformOp(AffineTransform.getScaleInstance(sScale, sScale), AffineTransformOp.TYPE_NEAREST_NEIGHBOR),
 					(int)(point.getX() - (50 * sScale)), (int)(point.getY() - (50 * sScale)));
 			break;
 		case AREA:
-			GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+			GeomIterator git = map.new GeomIterator(rules.feature.geom);
 			while (git.hasComp()) {
 				git.nextComp();
 				while (git.hasEdge()) {
@@ -364,22 +379,22 @@ public class Renderer {
 		}
 	}
 	
-	public static void labelText(String str, Font font, Color tc) {
+	public void labelText(String str, Font font, Color tc) {
 		labelText(str, font, tc, LabelStyle.NONE, null, null, null);
 	}
-	public static void labelText(String str, Font font, Color tc, Delta delta) {
+	public void labelText(String str, Font font, Color tc, Delta delta) {
 		labelText(str, font, tc, LabelStyle.NONE, null, null, delta);
 	}
-	public static void labelText(String str, Font font, Color tc, LabelStyle style, Color fg) {
+	public void labelText(String str, Font font, Color tc, LabelStyle style, Color fg) {
 		labelText(str, font, tc, style, fg, null, null);
 	}
-	public static void labelText(String str, Font font, Color tc, LabelStyle style, Color fg, Color bg) {
+	public void labelText(String str, Font font, Color tc, LabelStyle style, Color fg, Color bg) {
 		labelText(str, font, tc, style, fg, bg, null);
 	}
-	public static void labelText(String str, Font font, Color tc, LabelStyle style, Color fg, Delta delta) {
+	public void labelText(String str, Font font, Color tc, LabelStyle style, Color fg, Delta delta) {
 		labelText(str, font, tc, style, fg, null, delta);
 	}
-	public static void labelText(String str, Font font, Color tc, LabelStyle style, Color fg, Color bg, Delta delta) {
+	public void labelText(String str, Font font, Color tc, LabelStyle style, Color fg, Color bg, Delta delta) {
 		if (delta == null) delta = new Delta(Handle.CC);
 		if (bg == null) bg = new Color(0x00000000, true);
 		if ((str == null) || (str.isEmpty())) str = " ";
@@ -474,11 +489,11 @@ public class Renderer {
 			break;
 		}
 		label.add(new Instr(Form.TEXT, new Caption(str, font, tc, new Delta(Handle.TL, AffineTransform.getTranslateInstance(tx, ty)))));
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
+		Point2D point = context.getPoint(rules.feature.geom.centre);
 		Symbols.drawSymbol(g2, label, sScale, point.getX(), point.getY(), null, delta);
 	}
 
-	public static void lineText(String str, Font font, Color colour, double offset, double dy) {
+	public void lineText(String str, Font font, Color colour, double offset, double dy) {
 		if (!str.isEmpty()) {
 			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 	    g2.setPaint(colour);
@@ -492,8 +507,8 @@ public class Renderer {
 			boolean piv = false;
 			double angle = 0;
 			int index = 0;
-			double gwidth = offset * (Rules.feature.geom.length * context.mile(Rules.feature) - gv.getLogicalBounds().getWidth()) + gv.getGlyphMetrics(0).getAdvance();
-			GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+			double gwidth = offset * (rules.feature.geom.length * context.mile(rules.feature) - gv.getLogicalBounds().getWidth()) + gv.getGlyphMetrics(0).getAdvance();
+			GeomIterator git = map.new GeomIterator(rules.feature.geom);
 			while (git.hasComp()) {
 				git.nextComp();
 				boolean first = true;
@@ -547,15 +562,15 @@ public class Renderer {
 		}
 	}
 	
-	public static void lightSector(Color col1, Color col2, double radius, double s1, double s2, Double dir, String str) {
+	public void lightSector(Color col1, Color col2, double radius, double s1, double s2, Double dir, String str) {
 		if ((zoom >= 16) && (radius > 0.2)) {
 			radius /= (Math.pow(2, zoom-15));
 		}
 		double mid = (((s1 + s2)  / 2) + (s1 > s2 ? 180 : 0)) % 360;
 		g2.setStroke(new BasicStroke((float) (3.0 * sScale), BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 1, new float[] {20 * (float)sScale, 20 * (float)sScale}, 0));
 		g2.setPaint(Color.black);
-		Point2D.Double centre = (Point2D.Double) context.getPoint(Rules.feature.geom.centre);
-		double radial = radius * context.mile(Rules.feature);
+		Point2D.Double centre = (Point2D.Double) context.getPoint(rules.feature.geom.centre);
+		double radial = radius * context.mile(rules.feature);
 		if (dir != null) {
 			g2.draw(new Line2D.Double(centre.x, centre.y, centre.x - radial * Math.sin(Math.toRadians(dir)), centre.y + radial * Math.cos(Math.toRadians(dir))));
 		} else {
@@ -584,11 +599,11 @@ public class Renderer {
 			AffineTransform at = AffineTransform.getTranslateInstance(-radial * Math.sin(phi) / sScale, radial * Math.cos(phi) / sScale);
 			if (gv.getLogicalBounds().getWidth() < awidth) {
 				at.rotate(Math.toRadians(mid + (hand ? 0 : 180)));
-				Renderer.labelText(str, font, Color.black, new Delta(Handle.CC, at));
+				labelText(str, font, Color.black, new Delta(Handle.CC, at));
 			} else if (gv.getLogicalBounds().getHeight() < awidth) {
 				hand = (mid < 180);
 				at.rotate(Math.toRadians(mid + (hand ? -90 : 90)));
-				Renderer.labelText(str, font, Color.black, hand ? new Delta(Handle.RC, at) : new Delta(Handle.LC, at));
+				labelText(str, font, Color.black, hand ? new Delta(Handle.RC, at) : new Delta(Handle.LC, at));
 			}
 			if (dir != null) {
 				font = new Font("Arial", Font.PLAIN, 30);
@@ -598,7 +613,7 @@ public class Renderer {
 				radial -= 70 * sScale;
 				at = AffineTransform.getTranslateInstance(-radial * Math.sin(phi) / sScale, radial * Math.cos(phi) / sScale);
 				at.rotate(Math.toRadians(dir + (hand ? 90 : -90)));
-				Renderer.labelText(str, font, Color.black, hand ? new Delta(Handle.BR, at) : new Delta(Handle.BL, at));
+				labelText(str, font, Color.black, hand ? new Delta(Handle.BR, at) : new Delta(Handle.BL, at));
 			}
 		}
 	}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.josm.seachart;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import render.ChartContext;
+import render.Renderer;
+import s57.S57map;
+import s57.S57map.Feature;
+import s57.S57map.Snode;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests that the seachart Renderer is re-entrant, i.e. that icons rendered concurrently
+ * are identical to icons rendered by a single thread.
+ */
+public class RendererConcurrencyTest {
+
+    static final int THREADS = 8;
+    static final int ROUNDS = 50;
+
+    @Test
+    public void testConcurrentRendering() throws Exception {
+
+        List<Icon> icons = loadIcons();
+
+        // Render all icons single-threaded
+        List<int[]> expected = new ArrayList<>();
+        for (Icon icon : icons) {
+            expected.add(icon.render());
+        }
+
+        // Render the same icons concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Icon icon : icons) {
+                results.add(executor.submit(icon::render));
+            }
+        }
+        for (int x = 0; x < results.size(); x++) {
+            assertArrayEquals(expected.get(x % icons.size()), results.get(x).get());
+        }
+        executor.shutdown();
+    }
+
+
+    /** Loads the example icons */
+    private List<Icon> loadIcons() throws Exception {
+        List<Icon> icons = new ArrayList<>();
+        try (InputStream in = getClass().getResourceAsStream("/examples.xml")) {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            NodeList iconElements = doc.getElementsByTagName("icon");
+            for (int x = 0; x < iconElements.getLength(); x++) {
+                Element iconElement = (Element) iconElements.item(x);
+                Icon icon = new Icon();
+                icon.w = Integer.parseInt(iconElement.getAttribute("width"));
+                icon.h = Integer.parseInt(iconElement.getAttribute("height"));
+                icon.x = iconElement.hasAttribute("x") ? Integer.parseInt(iconElement.getAttribute("x")) : icon.w / 2;
+                icon.y = iconElement.hasAttribute("y") ? Integer.parseInt(iconElement.getAttribute("y")) : icon.h / 2;
+                icon.s = Double.parseDouble(iconElement.getAttribute("scale"));
+                NodeList tags = iconElement.getElementsByTagName("tag");
+                for (int t = 0; t < tags.getLength(); t++) {
+                    Element tag = (Element) tags.item(t);
+                    icon.tags.add(new String[] { tag.getAttribute("k"), tag.getAttribute("v") });
+                }
+                icons.add(icon);
+            }
+        }
+        return icons;
+    }
+
+
+    /** An example icon **/
+    static class Icon {
+        int w, h, x, y;
+        double s;
+        List<String[]> tags = new ArrayList<>();
+
+        /** Renders the icon and returns the pixels **/
+        int[] render() {
+            S57map map = new S57map(true);
+            map.addNode(0, 0, 0);
+            tags.forEach(t -> map.addTag(t[0], t[1]));
+            map.tagsDone(0);
+
+            BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = img.createGraphics();
+            new Renderer(g2, 16, s / Renderer.symbolScale[16], map, new Context(this))
+                    .render(new Rectangle(x, y, w, h));
+            g2.dispose();
+            return img.getRGB(0, 0, w, h, null, 0, w);
+        }
+    }
+
+
+    /** The chart context used for rendering icons **/
+    static class Context implements ChartContext {
+        final Icon icon;
+
+        Context(Icon icon) {
+            this.icon = icon;
+        }
+
+        public Point2D getPoint(Snode coord) {
+            return new Point2D.Double(icon.x, icon.y);
+        }
+
+        public double mile(Feature feature) {
+            return Math.min(icon.w, icon.h);
+        }
+
+        public boolean clip() {
+            return false;
+        }
+
+        public Color background(S57map map) {
+            return new Color(0, true);
+        }
+
+        public RuleSet ruleset() {
+            return RuleSet.SEAMARK;
+        }
+    }
+}
@@ -21,6 +21,8 @@ import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.niord.core.message.MessageSearchParams;
+import org.niord.s124.S124Service.S124PageLoader;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
@@ -30,15 +32,21 @@ import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedWriter;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 /**
  * A public REST API for accessing messages as S-124 GML.
@@ -112,12 +120,97 @@ public class S124RestService {
     }
 
 
+    /**
+     * Returns an S-124 dataset containing all published navigational warnings of the given domain.
+     * <p>
+     * The messages are loaded page by page whilst the dataset is streamed to the client.
+     * By default, the GML is streamed as generated. If the pretty flag is set, the dataset is
+     * first spooled to a temporary file and then pretty-printed to the client.
+     */
+    @GET
+    @Path("/messages")
+    @Operation(description = "Returns an S-124 GML dataset containing all published navigational warnings of the domain. " +
+            "NB: Only use this service for test purposes, not for production.")
+    @APIResponse(
+            responseCode = "200",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = String.class)
+            )
+    )
+    @Produces({"application/gml+xml;charset=UTF-8"})
+    public Response s124DataSet(
+            @Parameter(description = "The ID of the domain to select messages from", example = "niord-nw")
+            @QueryParam("domain") String domainId,
+            @Parameter(description = "Two-letter ISO 639-1 language code", example = "en")
+            @QueryParam("lang") @DefaultValue("en") String language,
+            @Parameter(description = "Whether to pretty-print the GML", example = "false")
+            @QueryParam("pretty") @DefaultValue("false") boolean pretty
+
+    ) throws Exception {
+
+        MessageSearchParams params;
+        try {
+            params = s124Service.dataSetSearchParams(domainId);
+        } catch (IllegalArgumentException e) {
+            log.error("Domain does not exist: " + domainId);
+            return Response
+                    .status(Response.Status.NOT_FOUND)
+                    .entity("No domain found with ID: " + domainId)
+                    .build();
+        }
+
+        // NB: The pages are loaded whilst streaming the response, each in its own transaction,
+        // so that the loaded messages can be garbage collected once written to the dataset
+        StreamingOutput stream = os -> {
+            long t0 = System.currentTimeMillis();
+            try {
+                S124PageLoader pageLoader = page -> s124Service.loadDataSetPage(params, page, language);
+                String datasetId = "DS." + domainId;
+
+                if (pretty) {
+                    java.nio.file.Path tmpFile = Files.createTempFile("s124-", ".gml");
+                    try {
+                        try (Writer out = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                            s124Service.generateDataSet(datasetId, language, pageLoader, out);
+                        }
+                        prettyPrint(new StreamSource(tmpFile.toFile()), new StreamResult(os));
+                    } finally {
+                        Files.deleteIfExists(tmpFile);
+                    }
+                } else {
+                    Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+                    s124Service.generateDataSet(datasetId, language, pageLoader, out);
+                }
+
+                log.info("Generated S-124 dataset for domain " + domainId + " in "
+                        + (System.currentTimeMillis() - t0) + " ms");
+            } catch (Exception e) {
+                log.error("Error generating S-124 dataset for domain " + domainId + ": " + e);
+                throw new WebApplicationException("Error generating S-124 dataset for domain " + domainId, e);
+            }
+        };
+
+        return Response.ok(stream)
+                .type("application/gml+xml;charset=UTF-8")
+                .build();
+    }
+
+
     /** Arghh, for some insane reason, this function does not work properly :-( **/
     public static String prettyPrint(String input) {
+        StringWriter stringWriter = new StringWriter();
+        prettyPrint(new StreamSource(new StringReader(input)), new StreamResult(stringWriter));
+        return stringWriter.toString();
+    }
+
+
+    /**
+     * Pretty-prints the XML source to the result.
+     * The identity transform streams the XML, so the document is not loaded into memory.
+     */
+    public static void prettyPrint(Source xmlInput, StreamResult xmlOutput) {
         try {
-            Source xmlInput = new StreamSource(new StringReader(input));
-            StringWriter stringWriter = new StringWriter();
-            StreamResult xmlOutput = new StreamResult(stringWriter);
             TransformerFactory transformerFactory = TransformerFactory.newInstance();
             Transformer transformer = transformerFactory.newTransformer();
             transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
@@ -126,7 +219,6 @@ public class S124RestService {
             transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
             transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
             transformer.transform(xmlInput, xmlOutput);
-            return stringWriter.toString();
         } catch (Exception e) {
             throw new RuntimeException(e); // simple exception handling, please review it
         }
@@ -20,21 +20,32 @@ import freemarker.cache.ClassTemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import org.niord.core.NiordApp;
+import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainService;
 import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.message.Message;
+import org.niord.core.message.MessageSearchParams;
+import org.niord.core.message.MessageSeries;
 import org.niord.core.message.MessageService;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.model.message.MainType;
 import org.niord.model.message.ReferenceVo;
+import org.niord.model.message.Status;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 
 
 /**
@@ -51,12 +62,22 @@ import java.util.Map;
 @ApplicationScoped
 public class S124Service {
 
+    /** The number of messages loaded per page when generating an S-124 dataset **/
+    public static final int DATASET_PAGE_SIZE = 100;
+
     @Inject
     MessageService messageService;
 
+    @Inject
+    DomainService domainService;
+
     @Inject
     NiordApp app;
 
+    /** The Freemarker configuration, which caches the compiled templates **/
+    private final Configuration cfg = newConfiguration();
+
+
     /**
      * Generates S-124 compliant GML for the message
      * @param messageId the message
@@ -95,9 +116,6 @@ public class S124Service {
 
         data.put("references", referencedMessages(msg, language));
 
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-        cfg.setTemplateLoader(new ClassTemplateLoader(getClass(), "/templates/gml"));
-
         StringWriter result = new StringWriter();
         Template fmTemplate = cfg.getTemplate("generate-s124.ftl");
 
@@ -107,6 +125,111 @@ public class S124Service {
     }
 
 
+    /**
+     * Returns the search parameters for the published, numbered navigational warnings of the given domain
+     * @param domainId the domain ID
+     * @return the search parameters
+     */
+    public MessageSearchParams dataSetSearchParams(String domainId) {
+        Domain domain = domainService.findByDomainId(domainId);
+        if (domain == null) {
+            throw new IllegalArgumentException("Domain not found " + domainId);
+        }
+
+        MessageSearchParams params = new MessageSearchParams();
+        params.statuses(Status.PUBLISHED)
+                .mainTypes(Collections.singleton(MainType.NW))
+                .seriesIds(domain.getMessageSeries().stream()
+                        .map(MessageSeries::getSeriesId)
+                        .collect(Collectors.toSet()))
+                .maxSize(DATASET_PAGE_SIZE);
+        params.checkSortByDomain(domain);
+        return params;
+    }
+
+
+    /**
+     * Loads the given page of messages to include in an S-124 dataset.
+     * Un-numbered messages are skipped, since they are not supported by S-124.
+     *
+     * @param params the search parameters
+     * @param page the page index
+     * @param language the language
+     * @return the page of messages, or null if there are no more messages
+     */
+    @Transactional
+    public List<S124MessageVo> loadDataSetPage(MessageSearchParams params, int page, String language) {
+        params.page(page);
+        List<Message> messages = messageService.search(params).getData();
+        if (messages == null || messages.isEmpty()) {
+            return null;
+        }
+
+        String lang = app.getLanguage(language);
+        return messages.stream()
+                .filter(m -> m.getNumber() != null)
+                .map(m -> {
+                    SystemMessageVo msg = m.toVo(SystemMessageVo.class, Message.MESSAGE_DETAILS_FILTER);
+                    msg.sort(lang);
+                    return new S124MessageVo(msg, referencedMessages(msg, lang));
+                })
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Streams a single S-124 dataset containing the messages loaded page by page via the page loader.
+     * <p>
+     * The compiled dataset template is cached, and the messages are rendered as they are loaded,
+     * so only a single page of messages is held in memory at any time.
+     *
+     * @param datasetId the ID of the dataset
+     * @param language the language
+     * @param pageLoader loads the pages of messages to include
+     * @param out the writer to stream the GML to
+     */
+    public void generateDataSet(String datasetId, String language, S124PageLoader pageLoader, Writer out) throws Exception {
+        generateDataSet(
+                cfg.getTemplate("generate-s124-dataset.ftl"),
+                datasetId,
+                app.getLanguage(language),
+                pageLoader,
+                out);
+    }
+
+
+    /**
+     * Streams a single S-124 dataset containing the messages loaded page by page via the page loader
+     *
+     * @param template the dataset template
+     * @param datasetId the ID of the dataset
+     * @param language the language
+     * @param pageLoader loads the pages of messages to include
+     * @param out the writer to stream the GML to
+     */
+    static void generateDataSet(Template template, String datasetId, String language,
+                                S124PageLoader pageLoader, Writer out) throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put("datasetId", datasetId);
+        data.put("language", language);
+        data.put("messages", new PagedIterator(pageLoader));
+
+        template.process(data, out);
+        out.flush();
+    }
+
+
+    /**
+     * Creates a new Freemarker configuration for the S-124 templates
+     * @return the new Freemarker configuration
+     */
+    static Configuration newConfiguration() {
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+        cfg.setTemplateLoader(new ClassTemplateLoader(S124Service.class, "/templates/gml"));
+        return cfg;
+    }
+
+
     /**
      * Returns resolved message references
      * @param message the message to return resolved message references for
@@ -159,4 +282,78 @@ public class S124Service {
             this.msg = msg;
         }
     }
-}
\ No newline at end of file
+
+
+    /**
+     * A message to include in an S-124 dataset, along with its resolved message references
+     */
+    @SuppressWarnings("unused")
+    public static class S124MessageVo {
+
+        SystemMessageVo msg;
+        List<MessageReferenceVo> references;
+
+        public S124MessageVo(SystemMessageVo msg, List<MessageReferenceVo> references) {
+            this.msg = msg;
+            this.references = references;
+        }
+
+        public SystemMessageVo getMsg() {
+            return msg;
+        }
+
+        public List<MessageReferenceVo> getReferences() {
+            return references;
+        }
+    }
+
+
+    /**
+     * Loads the page of messages with the given page index.
+     * Returns null when there are no more messages.
+     */
+    @FunctionalInterface
+    public interface S124PageLoader {
+        List<S124MessageVo> loadPage(int page) throws Exception;
+    }
+
+
+    /**
+     * Iterates over the messages of the pages, loading the next page on demand
+     */
+    static class PagedIterator implements Iterator<S124MessageVo> {
+
+        final S124PageLoader pageLoader;
+        Iterator<S124MessageVo> current = Collections.emptyIterator();
+        int page = 0;
+        boolean lastPage;
+
+        PagedIterator(S124PageLoader pageLoader) {
+            this.pageLoader = pageLoader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && !lastPage) {
+                try {
+                    List<S124MessageVo> messages = pageLoader.loadPage(page++);
+                    lastPage = messages == null;
+                    current = lastPage ? Collections.emptyIterator() : messages.iterator();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException("Error loading S-124 messages", e);
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public S124MessageVo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+<?xml version="1.0" encoding="UTF-8"?>
+
+<#include "s124-support.ftl">
+<#setting time_zone="UTC">
+
+<S124:DataSet xmlns:S124="http://www.iho.int/S124/gml/1.0"
+              xsi:schemaLocation="http://www.iho.int/S124/gml/1.0 S124.xsd"
+              xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+              xmlns:gml="http://www.opengis.net/gml/3.2"
+              xmlns:S100="http://www.iho.int/s100gml/1.0"
+              xmlns:xlink="http://www.w3.org/1999/xlink"
+              gml:id="${datasetId}">
+
+    <#list messages as entry>
+        <@generateMessageMembers msg=entry.msg references=entry.references></@generateMessageMembers>
+    </#list>
+
+</S124:DataSet>
@@ -17,31 +17,42 @@ package org.niord.s124;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import freemarker.cache.ClassTemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import org.junit.Test;
 import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.message.Message;
 import org.niord.core.message.vo.SystemMessageVo;
-import org.niord.model.geojson.FeatureCollectionVo;
-
+import org.niord.s124.S124Service.S124MessageVo;
+import org.w3c.dom.bootstrap.DOMImplementationRegistry;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSInput;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 public class S124Test {
 
+    private static final int DATASET_MESSAGES = 1000;
 
     @Test
     public void testGenerateS124() throws Exception {
 
         String language = "en";
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        SystemMessageVo message = objectMapper.readValue(getClass().getResource("/message.json"), SystemMessageVo.class);
-
+        SystemMessageVo message = loadMessage();
         message.sort(language);
 
         Map<String, Object> data = new HashMap<>();
@@ -58,8 +69,7 @@ public class S124Test {
 
         System.out.println("Message loaded: " + message.getId());
 
-        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
-        cfg.setTemplateLoader(new ClassTemplateLoader(getClass(), "/templates/gml"));
+        Configuration cfg = S124Service.newConfiguration();
 
         StringWriter result = new StringWriter();
         Template fmTemplate = cfg.getTemplate("generate-s124.ftl");
@@ -69,6 +79,72 @@ public class S124Test {
 
         System.out.printf(S124RestService.prettyPrint(result.toString()));
 
+        // Validate the generated GML against the S-124 XSD
+        validate(result.toString());
     }
-}
 
+
+    @Test
+    public void testGenerateS124DataSet() throws Exception {
+
+        String language = "en";
+
+        // Generate the dataset from pages of messages
+        List<S124MessageVo> messages = new ArrayList<>();
+        for (int x = 1; x <= DATASET_MESSAGES; x++) {
+            SystemMessageVo message = loadMessage();
+            message.setId("51068d0b-8945-4e6f-9084-" + String.format("%012d", x));
+            message.setNumber(x);
+            message.setShortId(String.format("NW-%03d-17", x));
+            message.sort(language);
+            messages.add(new S124MessageVo(message, Collections.emptyList()));
+        }
+        int pageSize = S124Service.DATASET_PAGE_SIZE;
+        S124Service.S124PageLoader pageLoader = page -> page * pageSize < messages.size()
+                ? messages.subList(page * pageSize, Math.min((page + 1) * pageSize, messages.size()))
+                : null;
+
+        Configuration cfg = S124Service.newConfiguration();
+        Template template = cfg.getTemplate("generate-s124-dataset.ftl");
+
+        StringWriter result = new StringWriter();
+        S124Service.generateDataSet(template, "DS.test", language, pageLoader, result);
+
+        String gml = result.toString();
+        assertEquals(DATASET_MESSAGES, gml.split("<S124:S124_NWPreamble ").length - 1);
+
+        // Validate the generated GML against the S-124 XSD
+        validate(gml);
+    }
+
+
+    /** Loads the test message **/
+    private SystemMessageVo loadMessage() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        return objectMapper.readValue(getClass().getResource("/message.json"), SystemMessageVo.class);
+    }
+
+
+    /**
+     * Validates the GML against the bundled S-124 XSD.
+     * The remote XLink schema imported by the GML profile is resolved from a local copy
+     */
+    private void validate(String gml) throws Exception {
+        DOMImplementationLS ls = (DOMImplementationLS) DOMImplementationRegistry.newInstance().getDOMImplementation("LS");
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        schemaFactory.setResourceResolver((type, namespaceURI, publicId, systemId, baseURI) -> {
+            if ("http://www.w3.org/1999/xlink".equals(namespaceURI)) {
+                LSInput input = ls.createLSInput();
+                input.setSystemId(getClass().getResource("/xsd/xlink.xsd").toString());
+                input.setByteStream(getClass().getResourceAsStream("/xsd/xlink.xsd"));
+                return input;
+            }
+            return null;
+        });
+
+        Schema schema = schemaFactory.newSchema(getClass().getResource("/xsd/S124.xsd"));
+        schema.newValidator().validate(new StreamSource(new StringReader(gml)));
+        assertTrue(gml.length() > 0);
+    }
+}
@@ -170,7 +170,8 @@ public class FiringScheduleRestService {
     /**
      * Fetches the firing area periods, i.e. all firing areas and their firing periods that matches the parameters
      *
-     * @param date the date
+     * @param date the date, or the first date of a date interval
+     * @param toDate optionally, the last date of a date interval
      * @param query a search query
      * @param areaIds area subtrees to search
      * @param inactive whether to include inactive areas or not
@@ -184,13 +185,15 @@ public class FiringScheduleRestService {
     @NoCache
     public List<FiringAreaPeriodsVo> searchFiringAreaPeriods(
             @QueryParam("date") Long date,
+            @QueryParam("toDate") Long toDate,
             @QueryParam("query") String query,
             @QueryParam("area") Set<Integer> areaIds,
             @QueryParam("inactive") @DefaultValue("false") Boolean inactive,
             @QueryParam("lang") String lang) {
 
         Date searchDate = date != null ? new Date(date) : new Date();
-        return firingScheduleService.searchFiringAreaPeriods(searchDate, query, areaIds, inactive, lang);
+        Date searchToDate = toDate != null ? new Date(toDate) : searchDate;
+        return firingScheduleService.searchFiringAreaPeriods(searchDate, searchToDate, query, areaIds, inactive, lang);
     }
 
 
@@ -16,7 +16,9 @@
 
 package org.niord.web;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.security.PermitAll;
 import jakarta.annotation.security.RolesAllowed;
@@ -62,6 +64,8 @@ import java.util.zip.ZipInputStream;
 @SuppressWarnings("unused")
 public class MessageExportRestService extends AbstractBatchableRestService {
 
+    static final int EXPORT_PAGE_SIZE = 100;
+
     @Inject
     Logger log;
 
@@ -77,6 +81,9 @@ public class MessageExportRestService extends AbstractBatchableRestService {
 
     /**
      * Generates a ZIP archive for the message search result including attachments.
+     * <p>
+     * The search result is paged through and streamed to the client, so there is
+     * no upper limit on the number of exported messages.
      */
     @GET
     @Path("/export.zip")
@@ -84,17 +91,19 @@ public class MessageExportRestService extends AbstractBatchableRestService {
     @NoCache
     public Response generateZipArchiveForSearch(@Context HttpServletRequest request) throws Exception {
 
-        // Perform a search for at most 1000 messages
         MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
         params.language(null)
-                .maxSize(1000)
-                .page(0);
-
-        PagedSearchResultVo<SystemMessageVo> result = messageSearchRestService.searchSystemMessages(params);
-        result.getData().forEach(m -> m.sort(params.getLanguage()));
+                .maxSize(EXPORT_PAGE_SIZE);
 
         try {
-            StreamingOutput stream = os -> messageExportService.export(result, os);
+            // NB: The pages are loaded whilst streaming the response, each in its own transaction,
+            // so that the loaded messages can be garbage collected once written to the archive
+            StreamingOutput stream = os -> messageExportService.export(page -> {
+                params.page(page);
+                PagedSearchResultVo<SystemMessageVo> result = messageSearchRestService.searchSystemMessages(params);
+                result.getData().forEach(m -> m.sort(params.getLanguage()));
+                return result;
+            }, os);
 
             return Response.ok(stream)
                     .type("application/zip")
@@ -165,18 +174,29 @@ public class MessageExportRestService extends AbstractBatchableRestService {
     }
 
 
-    /** Checks for a valid "messages.xml" zip file entry **/
+    /**
+     * Checks for a valid "messages.json" zip file entry.
+     * The JSON is validated by streaming through the tokens, without loading the messages.
+     **/
     private boolean checkForMessagesFileInImportArchive(InputStream in) throws Exception {
         try (ZipInputStream zipFile = new ZipInputStream(in)) {
             ZipEntry entry;
             while ((entry = zipFile.getNextEntry()) != null) {
                 if ("messages.json".equals(entry.getName())) {
-                    try {
-                        ObjectMapper mapper = new ObjectMapper();
-                        PagedSearchResultVo<SystemMessageVo> messages = mapper.readValue(
-                                zipFile,
-                                new TypeReference<PagedSearchResultVo<SystemMessageVo>>() {});
-                        return  messages != null;
+                    try (JsonParser parser = new JsonFactory().createParser(zipFile)) {
+                        if (parser.nextToken() != JsonToken.START_OBJECT) {
+                            return false;
+                        }
+                        boolean hasData = false;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String field = parser.getCurrentName();
+                            JsonToken value = parser.nextToken();
+                            if ("data".equals(field)) {
+                                hasData = value == JsonToken.START_ARRAY;
+                            }
+                            parser.skipChildren();
+                        }
+                        return hasData;
                     } catch (Exception e) {
                         return false;
                     }
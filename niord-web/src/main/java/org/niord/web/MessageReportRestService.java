@@ -31,7 +31,10 @@ import org.niord.core.report.FmReport;
 import org.niord.core.report.FmReportService;
 import org.niord.core.report.vo.FmReportVo;
 import org.niord.core.script.FmTemplateService;
+import org.niord.core.script.FmTemplateService.FmTemplateBuilder;
 import org.niord.core.script.FmTemplateService.ProcessFormat;
+import org.niord.core.script.pdf.ChunkedHtmlToPdfRenderer;
+import org.niord.core.script.pdf.HtmlToPdfRenderer;
 import org.niord.core.user.Roles;
 import org.niord.core.user.UserService;
 import org.niord.model.DataFilter;
@@ -48,6 +51,7 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -61,6 +65,13 @@ import java.util.stream.Collectors;
 @SuppressWarnings("unused")
 public class MessageReportRestService extends AbstractBatchableRestService {
 
+    /**
+     * The number of messages rendered per chunk of a chunked PDF report.
+     * Matches the max number of messages of a non-chunked report, so that reports
+     * of up to this number of messages are rendered as a single chunk, with a table of contents.
+     **/
+    static final int REPORT_CHUNK_SIZE = 1000;
+
     @Inject
     Logger log;
 
@@ -275,6 +286,10 @@ public class MessageReportRestService extends AbstractBatchableRestService {
 
     /**
      * Generates a PDF for the message search result.
+     * <p>
+     * If the report supports chunked rendering, the search result is paged through and each chunk
+     * of messages is rendered and streamed to the client, so there is no upper limit on the number
+     * of messages in the report. Otherwise, the report is limited to the first 1000 messages.
      *
      * If the debug flag is set to true, the HTML that is used for the PDF is returned directly.
      */
@@ -284,49 +299,39 @@ public class MessageReportRestService extends AbstractBatchableRestService {
     @NoCache
     public Response generatePdfForSearch(@Context HttpServletRequest request) throws Exception {
 
-        // Perform a search for at most 1000 messages
-        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
-        params.maxSize(1000).page(0);
-
         MessagePrintParams printParams = MessagePrintParams.instantiate(request);
 
-        // We prefer to get all language variants and then sort the result
-        String language = params.getLanguage();
-        params.language(null);
-        PagedSearchResultVo<MessageVo> result = messageSearchRestService.searchMessages(params);
-        result.getData().forEach(m -> m.sort(language));
-
-        // Get the UIDs of the messages that should start on a new page
-        Set<String> separatePageIds = messageService.getSeparatePageUids(
-                result.getData().stream().map(MessageVo::getId).collect(Collectors.toSet()));
-
         try {
             FmReport report = fmReportService.getReport(printParams.getReport());
 
-            ProcessFormat format = printParams.getDebug() ? ProcessFormat.TEXT : ProcessFormat.PDF;
+            StreamingOutput stream;
+            if (!printParams.getDebug() && fmReportService.supportsChunkedRendering(report)) {
 
-            StreamingOutput stream = os -> {
-                try {
-                    templateService.newFmTemplateBuilder()
-                            .templatePath(report.getTemplatePath())
-                            .data("executionMode", app.getExecutionMode())
-                            .data("messages", result.getData())
-                            .data("areaHeadings", params.sortByArea())
-                            .data("searchCriteria", result.getDescription())
-                            .data("pageSize", printParams.getPageSize())
-                            .data("pageOrientation", printParams.getPageOrientation())
-                            .data("mapThumbnails", printParams.getMapThumbnails())
-                            .data("separatePageIds", separatePageIds)
-                            .data("frontPage", true)
-                            .data(report.getProperties())  // Let report override settings
-                            .data(printParams.getParams()) // Custom user-defined params
-                            .dictionaryNames("web", "message", "pdf")
-                            .language(language)
-                            .process(format, os);
-                } catch (Exception e) {
-                    throw new WebApplicationException("Error generating PDF for messages", e);
-                }
-            };
+                MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
+
+                // NB: The chunks are loaded whilst streaming the response, each in its own transaction,
+                // so that the loaded messages can be garbage collected once rendered
+                stream = os -> {
+                    try {
+                        generateChunkedPdf(report, params, printParams, os);
+                    } catch (Exception e) {
+                        throw new WebApplicationException("Error generating PDF for messages", e);
+                    }
+                };
+
+            } else {
+                FmTemplateBuilder templateBuilder = searchReportTemplate(request.getParameterMap(), printParams);
+
+                ProcessFormat format = printParams.getDebug() ? ProcessFormat.TEXT : ProcessFormat.PDF;
+
+                stream = os -> {
+                    try {
+                        templateBuilder.process(format, os);
+                    } catch (Exception e) {
+                        throw new WebApplicationException("Error generating PDF for messages", e);
+                    }
+                };
+            }
 
             Response.ResponseBuilder response = Response.ok(stream);
             return printParams.getDebug()
@@ -341,4 +346,136 @@ public class MessageReportRestService extends AbstractBatchableRestService {
         }
     }
 
+
+    /**
+     * Prepares a PDF report for the message search result defined by the given request parameters,
+     * without going through HTTP.
+     * <p>
+     * The messages are searched and the report template is processed in the current thread,
+     * whereas the returned renderer, which does the actual PDF generation, may be invoked from any thread.
+     *
+     * @param reqParams the search and print parameters, as used for the "/report.pdf" endpoint
+     * @param out the PDF output stream
+     * @return the PDF renderer
+     */
+    public HtmlToPdfRenderer preparePdfForSearch(Map<String, String[]> reqParams, OutputStream out) throws Exception {
+        MessagePrintParams printParams = MessagePrintParams.instantiate(reqParams);
+        return searchReportTemplate(reqParams, printParams).pdfRenderer(out);
+    }
+
+
+    /**
+     * Searches for the messages defined by the request parameters and returns
+     * the populated report template builder
+     */
+    private FmTemplateBuilder searchReportTemplate(Map<String, String[]> reqParams, MessagePrintParams printParams) throws Exception {
+
+        // Perform a search for at most 1000 messages
+        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), reqParams);
+        params.maxSize(REPORT_CHUNK_SIZE).page(0);
+
+        // We prefer to get all language variants and then sort the result
+        String language = params.getLanguage();
+        params.language(null);
+        PagedSearchResultVo<MessageVo> result = messageSearchRestService.searchMessages(params);
+        result.getData().forEach(m -> m.sort(language));
+
+        FmReport report = fmReportService.getReport(printParams.getReport());
+
+        return reportTemplate(report, params, printParams, language, result)
+                .data("frontPage", true)
+                .data("chunked", false)
+                .data(report.getProperties())  // Let report override settings
+                .data(printParams.getParams()); // Custom user-defined params
+    }
+
+
+    /**
+     * Pages through the message search result and renders the report for each chunk of messages
+     * into a single PDF.
+     * <p>
+     * The front page is only rendered for the first chunk, and if the search result spans multiple chunks,
+     * the "chunked" template property is set, since links, such as the table of contents, cannot span the chunks.
+     *
+     * @param report the report
+     * @param params the message search parameters
+     * @param printParams the print parameters
+     * @param out the PDF output stream
+     */
+    private void generateChunkedPdf(FmReport report, MessageSearchParams params, MessagePrintParams printParams,
+                                    OutputStream out) throws Exception {
+
+        long t0 = System.currentTimeMillis();
+
+        // We prefer to get all language variants and then sort the result
+        String language = params.getLanguage();
+        params.language(null).maxSize(REPORT_CHUNK_SIZE);
+
+        long total;
+        int chunks, pages;
+        try (ChunkedHtmlToPdfRenderer renderer = templateService.newChunkedPdfRenderer(out)) {
+            int page = 0;
+            do {
+                params.page(page);
+                PagedSearchResultVo<MessageVo> result = messageSearchRestService.searchMessages(params);
+                result.getData().forEach(m -> m.sort(language));
+                total = result.getTotal();
+
+                String html = reportTemplate(report, params, printParams, language, result)
+                        .data("frontPage", page == 0)
+                        .data("chunked", isChunked(total))
+                        .data("totalMessages", total)
+                        .data(report.getProperties())  // Let report override settings
+                        .data(printParams.getParams()) // Custom user-defined params
+                        .process();
+                renderer.render(html);
+                page++;
+            } while ((long) page * REPORT_CHUNK_SIZE < total);
+            renderer.finish();
+
+            chunks = renderer.getChunkCount();
+            pages = renderer.getPageCount();
+        }
+
+        log.info("Generated PDF report for " + total + " messages in " + chunks
+                + " chunks and " + pages + " pages in "
+                + (System.currentTimeMillis() - t0) + " ms");
+    }
+
+
+    /**
+     * Returns if a report of the given number of messages spans multiple chunks
+     *
+     * @param totalMessages the total number of messages of the report
+     * @return if the report spans multiple chunks
+     */
+    static boolean isChunked(long totalMessages) {
+        return totalMessages > REPORT_CHUNK_SIZE;
+    }
+
+
+    /**
+     * Returns the report template builder populated with the messages of the search result
+     */
+    private FmTemplateBuilder reportTemplate(FmReport report, MessageSearchParams params, MessagePrintParams printParams,
+                                             String language, PagedSearchResultVo<MessageVo> result) {
+
+        // Get the UIDs of the messages that should start on a new page
+        Set<String> separatePageIds = messageService.getSeparatePageUids(
+                result.getData().stream().map(MessageVo::getId).collect(Collectors.toSet()));
+
+        return templateService.newFmTemplateBuilder()
+                .templatePath(report.getTemplatePath())
+                .data("executionMode", app.getExecutionMode())
+                .data("messages", result.getData())
+                .data("areaHeadings", params.sortByArea())
+                .data("searchCriteria", result.getDescription())
+                .data("pageSize", printParams.getPageSize())
+                .data("pageOrientation", printParams.getPageOrientation())
+                .data("mapThumbnails", printParams.getMapThumbnails())
+                .data("separatePageIds", separatePageIds)
+                .dictionaryNames("web", "message", "pdf")
+                .language(language);
+    }
+
 }
@@ -47,6 +47,7 @@ import org.niord.model.geojson.FeatureCollectionVo;
 import org.niord.model.geojson.GeoJsonVo;
 import org.niord.model.message.*;
 import org.niord.model.search.PagedSearchResultVo;
+import org.niord.web.map.MessageMapImageRenderQueue;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.RequestScoped;
@@ -90,6 +91,9 @@ public class MessageRestService  {
     @Inject
     MessageService messageService;
 
+    @Inject
+    MessageAreaSortOrderService messageAreaSortOrderService;
+
     @Inject
     DomainService domainService;
 
@@ -111,6 +115,9 @@ public class MessageRestService  {
     @Inject
     PromulgationManager promulgationManager;
 
+    @Inject
+    MessageMapImageRenderQueue messageMapImageRenderQueue;
+
     /***************************
      * Message access functions
      ***************************/
@@ -536,6 +543,9 @@ public class MessageRestService  {
         message.setId(msg.getUid());
         messageService.updateMessageFromTempRepoFolder(message);
 
+        // Proactively render the message map thumbnail
+        messageMapImageRenderQueue.submitRendering(msg);
+
         return getMessage(msg.getUid(), null);
     }
 
@@ -573,6 +583,9 @@ public class MessageRestService  {
         // Copy resources from the temporary editing message folder to the message repository folder
         messageService.updateMessageFromTempRepoFolder(message);
 
+        // Proactively re-render the message map thumbnail
+        messageMapImageRenderQueue.submitRendering(msg);
+
         return getMessage(msg.getUid(), null);
     }
 
@@ -709,8 +722,11 @@ public class MessageRestService  {
     /***************************************/
 
     /**
-     * Returns the message history for the given message ID
+     * Returns a page of the message history for the given message ID.
+     * The message snapshots are not included.
      * @param messageId the message ID or message series ID
+     * @param page the page index
+     * @param maxSize the max number of history entries to return
      * @return the message history
      */
     @GET
@@ -719,17 +735,45 @@ public class MessageRestService  {
     @GZIP
     @NoCache
     @RolesAllowed(Roles.USER)
-    public List<MessageHistoryVo> getMessageHistory(@PathParam("messageId") String messageId) {
+    public PagedSearchResultVo<MessageHistoryVo> getMessageHistory(
+            @PathParam("messageId") String messageId,
+            @QueryParam("page") @DefaultValue("0") int page,
+            @QueryParam("maxSize") @DefaultValue("100") int maxSize) {
 
         // Get the message id
         Message message = messageService.resolveMessage(messageId);
         if (message == null) {
-            return Collections.emptyList();
+            return new PagedSearchResultVo<>();
         }
 
-        return messageService.getMessageHistory(message.getId()).stream()
-                .map(MessageHistory::toVo)
-                .collect(Collectors.toList());
+        return messageService.getMessageHistory(message.getId(), page, maxSize);
+    }
+
+
+    /**
+     * Returns the given message history entry, including the full message snapshot
+     * @param messageId the message ID or message series ID
+     * @param historyId the ID of the message history entry
+     * @return the message history entry
+     */
+    @GET
+    @Path("/message/{messageId}/history/{historyId}")
+    @Produces("application/json;charset=UTF-8")
+    @GZIP
+    @NoCache
+    @RolesAllowed(Roles.USER)
+    public MessageHistoryVo getMessageHistorySnapshot(
+            @PathParam("messageId") String messageId,
+            @PathParam("historyId") Integer historyId) {
+
+        Message message = messageService.resolveMessage(messageId);
+        MessageHistoryVo history = message == null
+                ? null
+                : messageService.getMessageHistorySnapshot(message.getId(), historyId);
+        if (history == null) {
+            throw new WebApplicationException(404);
+        }
+        return history;
     }
 
 
@@ -767,23 +811,14 @@ public class MessageRestService  {
     @RolesAllowed(Roles.ADMIN)
     public void reindexPublishedMessageAreaSorting() {
 
-        // Search for published message in the curretn domain
+        // Get the message series of the current domain
         Domain domain = domainService.currentDomain();
         Set<String> messageSeries = domain.getMessageSeries().stream()
                 .map(MessageSeries::getSeriesId)
                 .collect(Collectors.toSet());
 
-        MessageSearchParams params = new MessageSearchParams();
-        params.statuses(Collections.singleton(Status.PUBLISHED))
-                .seriesIds(messageSeries);
-
-        // Perform the search and update the area sort order of the messages
-        long t0 = System.currentTimeMillis();
-        PagedSearchResultVo<Message> searchResult = messageService.search(params);
-        searchResult.getData().forEach(m -> messageService.computeMessageAreaSortingOrder(m));
-
-        log.debug(String.format("Updates area sort order for  %d messages in %d ms",
-                searchResult.getData().size(), System.currentTimeMillis() - t0));
+        // Update the area sort order of the messages in bulk
+        messageAreaSortOrderService.recomputeAreaSortOrder(messageSeries);
     }
 
 
@@ -21,11 +21,13 @@ import jakarta.annotation.security.PermitAll;
 import jakarta.annotation.security.RolesAllowed;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.eclipse.microprofile.context.ManagedExecutor;
 import org.jboss.resteasy.annotations.GZIP;
 import org.jboss.resteasy.annotations.cache.NoCache;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 import org.niord.core.NiordApp;
 import org.niord.core.batch.AbstractBatchableRestService;
+import org.niord.core.message.MessagePrintParams;
 import org.niord.core.publication.Publication;
 import org.niord.core.publication.PublicationSearchParams;
 import org.niord.core.publication.PublicationService;
@@ -34,8 +36,8 @@ import org.niord.core.publication.vo.PublicationMainType;
 import org.niord.core.publication.vo.PublicationStatus;
 import org.niord.core.publication.vo.SystemPublicationVo;
 import org.niord.core.repo.RepositoryService;
+import org.niord.core.script.pdf.HtmlToPdfRenderer;
 import org.niord.core.user.Roles;
-import org.niord.core.user.TicketService;
 import org.niord.core.user.UserService;
 import org.niord.core.util.TextUtils;
 import org.niord.core.util.WebUtils;
@@ -55,13 +57,12 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static org.niord.core.publication.Publication.DEFAULT_EDITION;
@@ -77,9 +78,6 @@ import static org.niord.core.util.WebUtils.encodeURIComponent;
 @PermitAll
 public class PublicationRestService extends AbstractBatchableRestService {
 
-    // See http://stackoverflow.com/questions/8092244/regex-to-extract-filename
-    private static final Pattern FILE_NAME_HEADER_PATTERN = Pattern.compile("(?<=filename=\").*?(?=\")");
-
     @Inject
     Logger log;
 
@@ -93,11 +91,14 @@ public class PublicationRestService extends AbstractBatchableRestService {
     RepositoryService repositoryService;
 
     @Inject
-    TicketService ticketService;
+    MessageReportRestService messageReportRestService;
 
     @Inject
     NiordApp app;
 
+    @Inject
+    ManagedExecutor managedExecutor;
+
     /**
      * Searches publications based on the given search parameters
      */
@@ -446,54 +447,84 @@ public class PublicationRestService extends AbstractBatchableRestService {
 
 
     private PublicationDescVo generatePublicationReport(String path, PublicationDescVo desc, String queryString) throws Exception {
+        PublicationReport report = preparePublicationReport(path, desc, queryString);
+        report.render();
+        return report.getDesc();
+    }
 
-        URL url = new URL(
-                app.getBaseUri()
-                + "/rest/message-reports/report.pdf?"
-                + queryString
-                + "&ticket=" + ticketService.createTicket());
+
+    /**
+     * Prepares the publication report by searching the messages and processing the report template
+     * in-process, i.e. without calling the "/rest/message-reports/report.pdf" endpoint via HTTP.
+     * The returned report must subsequently be rendered, which may happen in another thread.
+     *
+     * @param path the temporary repository folder path
+     * @param desc the publication descriptor
+     * @param queryString the message search and print parameters
+     * @return the prepared report
+     */
+    private PublicationReport preparePublicationReport(String path, PublicationDescVo desc, String queryString) throws Exception {
 
         // Validate that the path is a temporary repository folder path
         java.nio.file.Path folder = checkCreateTempRepoPath(path);
 
-        HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
-        int responseCode = httpConn.getResponseCode();
-        if (responseCode != HttpURLConnection.HTTP_OK) {
-            httpConn.disconnect();
-            log.error("Error creating publication report " + queryString);
-            throw new WebApplicationException("Error creating publication report: " + queryString, 500);
-        }
-
-        // If the file name has not been specified in the descriptor, extract it from the
-        // "Content-Disposition" header of the report connection
+        // If the file name has not been specified in the descriptor, use the one of the print parameters
+        Map<String, String[]> params = WebUtils.parseParameterMap(queryString);
         String fileName = desc.getFileName();
         if (StringUtils.isBlank(fileName)) {
-            String disposition = httpConn.getHeaderField("Content-Disposition");
-            if (StringUtils.isNotBlank(disposition)) {
-                Matcher regexMatcher = FILE_NAME_HEADER_PATTERN.matcher(disposition);
-                if (regexMatcher.find()) {
-                    fileName = regexMatcher.group();
-                }
-            }
+            fileName = MessagePrintParams.instantiate(params).getPdfFileName("messages");
         }
-        fileName = StringUtils.defaultIfBlank(fileName, "publication.pdf");
 
-        File destFile = folder.resolve(fileName).toFile();
-        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(destFile));
-             InputStream is = httpConn.getInputStream()) {
-            IOUtils.copy(is, out);
-        } catch (IOException ex) {
-            log.error("Error generating publication report " + destFile, ex);
-            throw new WebApplicationException("Error generating publication report: " + destFile, 500);
+        java.nio.file.Path destFile = folder.resolve(fileName);
+        java.nio.file.Path tempFile = Files.createTempFile(folder, "report", ".pdf.tmp");
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile));
+        try {
+            HtmlToPdfRenderer renderer = messageReportRestService.preparePdfForSearch(params, out);
+
+            desc.setFileName(fileName);
+            desc.setLink(repositoryService.getRepoUri(destFile));
+            return new PublicationReport(desc, renderer, out, tempFile, destFile);
+
+        } catch (Exception ex) {
+            IOUtils.closeQuietly(out);
+            Files.deleteIfExists(tempFile);
+            log.error("Error creating publication report " + queryString, ex);
+            throw new WebApplicationException("Error creating publication report: " + queryString, 500);
         }
-        httpConn.disconnect();
+    }
 
-        desc.setFileName(fileName);
-        desc.setLink(repositoryService.getRepoUri(destFile.toPath()));
 
-        log.info("Generated publication report at destination " + destFile);
+    /**
+     * Renders the prepared publication reports in parallel using the managed executor
+     * @param reports the reports to render
+     */
+    private void renderPublicationReports(List<PublicationReport> reports) throws Exception {
+        if (reports.size() <= 1) {
+            for (PublicationReport report : reports) {
+                report.render();
+            }
+            return;
+        }
 
-        return desc;
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (PublicationReport report : reports) {
+                results.add(managedExecutor.submit(() -> {
+                    report.render();
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            // Stop rendering the remaining reports if one of them failed
+            results.forEach(result -> result.cancel(true));
+        }
     }
 
 
@@ -542,22 +573,38 @@ public class PublicationRestService extends AbstractBatchableRestService {
 
         // Important: Keep in sync with $scope.generateReport() in admin-publication-ctrl.js
         List<PublicationDescVo> updateDescs = new ArrayList<>();
-        for (PublicationDescVo desc : publication.getDescs()) {
-            String printParam = "tag=" + encodeURIComponent(pub.getMessageTag().getTagId());
-            for (Map.Entry<String, Object> e : printSettings.entrySet()) {
-                printParam = concatParam(printParam, e.getKey(), e.getValue());
-            }
-            for (Map.Entry<String, Object> e : pub.getReportParams().entrySet()) {
-                printParam = concatParam(printParam, "param:" + e.getKey(), e.getValue());
+        List<PublicationReport> reports = new ArrayList<>();
+        long t1;
+        try {
+            for (PublicationDescVo desc : publication.getDescs()) {
+                String printParam = "tag=" + encodeURIComponent(pub.getMessageTag().getTagId());
+                for (Map.Entry<String, Object> e : printSettings.entrySet()) {
+                    printParam = concatParam(printParam, e.getKey(), e.getValue());
+                }
+                for (Map.Entry<String, Object> e : pub.getReportParams().entrySet()) {
+                    printParam = concatParam(printParam, "param:" + e.getKey(), e.getValue());
+                }
+                printParam = concatParam(printParam, "lang", desc.getLang());
+                printParam = concatParam(printParam, "param:edition", pub.getEdition());
+                printParam = concatParam(printParam, "fileName", desc.getFileName());
+
+                // Prepare the report
+                String repoPath = publication.getEditRepoPath() + '/' + publication.getRevision();
+                reports.add(preparePublicationReport(repoPath, desc, printParam));
             }
-            printParam = concatParam(printParam, "lang", desc.getLang());
-            printParam = concatParam(printParam, "param:edition", pub.getEdition());
-            printParam = concatParam(printParam, "fileName", desc.getFileName());
 
-            // Generate the report
-            String repoPath = publication.getEditRepoPath() + '/' + publication.getRevision();
-            updateDescs.add(generatePublicationReport(repoPath, desc, printParam));
+            // Render the reports for all languages in parallel
+            t1 = System.currentTimeMillis();
+            renderPublicationReports(reports);
+        } catch (Exception e) {
+            // Close and delete the temporary files of the reports that have already been prepared
+            reports.forEach(PublicationReport::discard);
+            throw e;
         }
+        reports.forEach(r -> updateDescs.add(r.getDesc()));
+        log.info("Generated " + reports.size() + " reports for publication " + publicationId
+                + " in " + (System.currentTimeMillis() - t0) + " ms, of which rendering took "
+                + (System.currentTimeMillis() - t1) + " ms");
 
         // Having successfully generated reports, we update the editable publication and save it
         publication.setDescs(updateDescs);
@@ -768,4 +815,63 @@ public class PublicationRestService extends AbstractBatchableRestService {
         }
     }
 
+
+    /***************************
+     * Helper classes
+     ***************************/
+
+    /**
+     * A publication report, which has been prepared in the current transaction,
+     * and which may subsequently be rendered from any thread
+     */
+    private class PublicationReport {
+        final PublicationDescVo desc;
+        final HtmlToPdfRenderer renderer;
+        final OutputStream out;
+        final java.nio.file.Path tempFile;
+        final java.nio.file.Path destFile;
+
+        PublicationReport(PublicationDescVo desc, HtmlToPdfRenderer renderer, OutputStream out,
+                          java.nio.file.Path tempFile, java.nio.file.Path destFile) {
+            this.desc = desc;
+            this.renderer = renderer;
+            this.out = out;
+            this.tempFile = tempFile;
+            this.destFile = destFile;
+        }
+
+        /** Renders the PDF report to the destination file **/
+        void render() {
+            try {
+                try {
+                    renderer.render();
+                } finally {
+                    out.close();
+                }
+                Files.move(tempFile, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Generated publication report at destination " + destFile);
+            } catch (Exception ex) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
+                log.error("Error generating publication report " + destFile, ex);
+                throw new WebApplicationException("Error generating publication report: " + destFile, 500);
+            }
+        }
+
+        /** Closes the output stream and deletes the temporary file, unless the report has been rendered **/
+        void discard() {
+            IOUtils.closeQuietly(out);
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                log.warn("Error deleting temporary publication report " + tempFile);
+            }
+        }
+
+        PublicationDescVo getDesc() {
+            return desc;
+        }
+    }
 }
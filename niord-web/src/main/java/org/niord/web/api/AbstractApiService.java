@@ -38,6 +38,7 @@ import org.slf4j.Logger;
 import jakarta.inject.Inject;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -103,6 +104,26 @@ public abstract class AbstractApiService {
             Set<String> areaIds,
             Set<MainType> mainTypes,
             String wkt) throws Exception {
+        return searchMessages(language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, null);
+    }
+
+
+    /**
+     * Returns all published messages.
+     * Optionally, filter by a geometry defined by the WKT (well-known text) parameter.
+     * <p>
+     * If "updatedSince" is specified, only messages updated since the given time are returned, and
+     * cancelled and expired messages are included. This allows clients to synchronize incrementally.
+     */
+    public PagedSearchResultVo<Message> searchMessages(
+            String language,
+            Set<String> domainIds,
+            Set<String> messageSeries,
+            Set<String> publicationIds,
+            Set<String> areaIds,
+            Set<MainType> mainTypes,
+            String wkt,
+            Date updatedSince) throws Exception {
 
         Domain sortDomain = null;
 
@@ -195,7 +216,10 @@ public abstract class AbstractApiService {
         }
 
         // Enforce allowed statuses
-        if (params.getTags().isEmpty()) {
+        if (updatedSince != null) {
+            params.updatedFrom(updatedSince);
+            params.statuses(new HashSet<>(Arrays.asList(Status.PUBLISHED, Status.CANCELLED, Status.EXPIRED)));
+        } else if (params.getTags().isEmpty()) {
              params.statuses(Collections.singleton(Status.PUBLISHED));
         } else {
             params.statuses(new HashSet<>(Arrays.asList(Status.PUBLISHED, Status.CANCELLED, Status.EXPIRED)));
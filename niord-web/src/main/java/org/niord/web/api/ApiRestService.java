@@ -18,6 +18,7 @@ package org.niord.web.api;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -142,12 +143,16 @@ public class ApiRestService extends AbstractApiService {
             @QueryParam("externalize") @DefaultValue("true") boolean externalize,
 
             @Parameter(description = "The date format to use for JSON date-time encoding. Either 'UNIX_EPOCH' or 'ISO_8601'", example = "UNIX_EPOCH")
-            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat
+            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat,
+
+            @Parameter(description = "Timestamp (Unix epoch). If specified, only messages updated since then are returned, " +
+                    "including cancelled and expired messages")
+            @QueryParam("updatedSince") Long updatedSince
 
     ) throws Exception {
         log.debug("Messages-Params Request parameters: " +
                 "lang={}, domain={}, messageSeries={}, publication={}, " +
-                "areaId={}, mainType={}, wkt={}, externalize={}, dateFormat={}",
+                "areaId={}, mainType={}, wkt={}, externalize={}, dateFormat={}, updatedSince={}",
                 language,
                 domainIds,
                 messageSeries,
@@ -156,11 +161,13 @@ public class ApiRestService extends AbstractApiService {
                 mainTypes,
                 wkt,
                 externalize,
-                dateFormat);
+                dateFormat,
+                updatedSince);
 
         // Perform the search
         PagedSearchResultVo<Message> searchResult =
-                super.searchMessages(language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt);
+                super.searchMessages(language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt,
+                        updatedSince != null ? new Date(updatedSince) : null);
 
 
         // Convert messages to value objects and externalize message links, if requested
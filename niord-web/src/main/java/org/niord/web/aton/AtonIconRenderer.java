@@ -28,16 +28,32 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.Arrays;
+import java.util.stream.Collectors;
 
 /**
  * Renders the AtoN as either PNG or SVG.
  *
  * Based on the JSOM searchart Jicons class.
+ *
+ * The renderer is re-entrant, so icons may be rendered concurrently.
  */
 public class AtonIconRenderer {
 
     public static final String SVG_NS = "http://www.w3.org/2000/svg";
 
+	/**
+	 * Returns a normalized key for the icon, which can be used for caching the rendered icon.
+	 * The AtoN tags are sorted by key, so that the order of the tags does not matter.
+	 */
+	public static String iconKey(AtonNodeVo aton, String format, int w, int h, int x, int y, double s) {
+		String tags = aton.getTags() == null ? "" : Arrays.stream(aton.getTags())
+				.filter(t -> t.getK() != null && t.getV() != null)
+				.map(t -> t.getK() + "=" + t.getV())
+				.sorted()
+				.collect(Collectors.joining("|"));
+		return String.format("%s:%d:%d:%d:%d:%s:%s", format.toUpperCase(), w, h, x, y, s, tags);
+	}
+
 	public static void renderIcon(AtonNodeVo aton, String format, OutputStream out, int w, int h, int x, int y, double s) throws IOException {
 
 		// First, generate the map from the AtoN tags
@@ -51,13 +67,13 @@ public class AtonIconRenderer {
             BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
             Graphics2D g2 = img.createGraphics();
 
-			Renderer.reRender(
+			new Renderer(
                     g2,
-                    new Rectangle(x, y, w, h),
                     16,
                     s / Renderer.symbolScale[16],
                     map,
-                    new Context(w, h, x, y));
+                    new Context(w, h, x, y))
+					.render(new Rectangle(x, y, w, h));
 
             ImageIO.write(img, "png", out);
 
@@ -70,13 +86,13 @@ public class AtonIconRenderer {
 				SVGGraphics2D svgGenerator = new SVGGraphics2D(document);
 				svgGenerator.setSVGCanvasSize(new Dimension(w, h));
 
-				Renderer.reRender(
+				new Renderer(
                         svgGenerator,
-                        new Rectangle(x, y, w, h),
                         16,
                         s / Renderer.symbolScale[16],
                         map,
-                        new Context(w, h, x, y));
+                        new Context(w, h, x, y))
+						.render(new Rectangle(x, y, w, h));
 
 				try {
 					svgGenerator.stream(new OutputStreamWriter(out), true);
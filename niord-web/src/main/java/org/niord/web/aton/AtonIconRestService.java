@@ -35,9 +35,13 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
- * Creates and caches AtoN icons
+ * Creates and caches AtoN icons.
+ * <p>
+ * SVG icons are cached in memory, keyed by the normalized AtoN tag set, and overview
+ * PNG icons are cached in the repository.
  */
 @jakarta.ws.rs.Path("/aton-icon")
 @ApplicationScoped
@@ -54,6 +58,8 @@ public class AtonIconRestService {
     @Inject
     RepositoryService repositoryService;
 
+    @Inject
+    AtonIconCache atonIconCache;
 
     @POST
     @jakarta.ws.rs.Path("/svg")
@@ -69,6 +75,15 @@ public class AtonIconRestService {
 
         long t0 = System.currentTimeMillis();
 
+        // Check if the icon has already been rendered
+        String key = AtonIconRenderer.iconKey(aton, "svg", width, height, width/2, height/2, scale);
+        byte[] icon = atonIconCache.getCache().get(key);
+        if (icon != null) {
+            return Response
+                    .ok(icon)
+                    .build();
+        }
+
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         AtonIconRenderer.renderIcon(
                 aton,
@@ -80,11 +95,13 @@ public class AtonIconRestService {
                 height/2,    // y
                 scale        // scale
         );
+        icon = out.toByteArray();
+        atonIconCache.getCache().put(key, icon);
 
         log.trace("Generated AtoN SVG in " + (System.currentTimeMillis() - t0) + " ms");
 
         return Response
-                .ok(out.toByteArray())
+                .ok(icon)
                 .build();
     }
 
@@ -128,19 +145,26 @@ public class AtonIconRestService {
         if (!Files.isRegularFile(path)) {
             checkCreateParentDirs(path);
 
-            try (FileOutputStream out = new FileOutputStream(path.toFile())) {
-                AtonIconRenderer.renderIcon(
-                        aton.toVo(),
-                        "png",
-                        out,
-                        OVERVIEW_ICON_WIDTH,            // width
-                        OVERVIEW_ICON_HEIGHT,           // height
-                        OVERVIEW_ICON_WIDTH / 3,        // x
-                        2 * OVERVIEW_ICON_HEIGHT / 3,   // y
-                        OVERVIEW_ICON_SCALE             // scale
-                );
+            // Render to a temporary file and move it into place, since icons may be rendered concurrently
+            Path tmpFile = Files.createTempFile(path.getParent(), "aton_icon_", ".tmp");
+            try {
+                try (FileOutputStream out = new FileOutputStream(tmpFile.toFile())) {
+                    AtonIconRenderer.renderIcon(
+                            aton.toVo(),
+                            "png",
+                            out,
+                            OVERVIEW_ICON_WIDTH,            // width
+                            OVERVIEW_ICON_HEIGHT,           // height
+                            OVERVIEW_ICON_WIDTH / 3,        // x
+                            2 * OVERVIEW_ICON_HEIGHT / 3,   // y
+                            OVERVIEW_ICON_SCALE             // scale
+                    );
+                }
+                Files.move(tmpFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
                 log.trace("Generated AtoN PNG " + path + " in " + (System.currentTimeMillis() - t0) + " ms");
+            } finally {
+                Files.deleteIfExists(tmpFile);
             }
         }
 
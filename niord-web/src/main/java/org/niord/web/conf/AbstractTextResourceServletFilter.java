@@ -22,18 +22,37 @@ import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.ws.rs.core.EntityTag;
+import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Implementations of this class should be used to load and modify textual web resources,
  * typically used for AngularJS JavaScript configuration files.
+ * <p>
+ * If the implementing class returns a resource version, the modified resource is generated once per version
+ * and held as plain and pre-gzipped bytes with a strong ETag, and requests with a matching
+ * If-None-Match header are answered with a 304.
  */
 public abstract class AbstractTextResourceServletFilter implements Filter {
 
+    static final String HEADER_IF_NONE_MATCH        = "If-None-Match";
+    static final String HEADER_ETAG                 = "ETag";
+    static final String HEADER_ACCEPT_ENCODING      = "Accept-Encoding";
+    static final String GZIP_SUFFIX                 = "-gzip";
+
     final int cacheTTL;
 
+    private volatile TextResource cachedResource;
+
     /**
      * Constructor
      * @param cacheTTL the cache TTL in seconds
@@ -60,11 +79,42 @@ public abstract class AbstractTextResourceServletFilter implements Filter {
      */
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
-        PrintWriter out = res.getWriter();
-
         HttpServletRequest request = (HttpServletRequest) req;
         HttpServletResponse response = (HttpServletResponse) res;
 
+        // Check if the resource should be generated for each request
+        String version = resourceVersion();
+        if (version == null) {
+            filterUncached(request, response, chain);
+            return;
+        }
+
+        // Re-generate the resource if the version has changed
+        TextResource resource = cachedResource;
+        if (resource == null || !version.equals(resource.version)) {
+            synchronized (this) {
+                resource = cachedResource;
+                if (resource == null || !version.equals(resource.version)) {
+                    CharResponseWrapper wrapper = new CharResponseWrapper(response, "UTF-8");
+                    chain.doFilter(request, wrapper);
+                    resource = new TextResource(
+                            version,
+                            wrapper.getContentType(),
+                            updateResponse(request, wrapper.toString()));
+                    cachedResource = resource;
+                }
+            }
+        }
+
+        writeResource(request, response, resource);
+    }
+
+
+    /** Loads and updates the designated resource for the current request **/
+    private void filterUncached(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        PrintWriter out = response.getWriter();
+
         // Wrap the response to collect the returned text
         CharResponseWrapper wrapper = new CharResponseWrapper(response, "UTF-8");
 
@@ -88,12 +138,100 @@ public abstract class AbstractTextResourceServletFilter implements Filter {
         out.close();
     }
 
+
+    /** Writes the pre-computed resource, or a 304 if the client has an up-to-date copy **/
+    private void writeResource(HttpServletRequest request, HttpServletResponse response, TextResource resource)
+            throws IOException {
+
+        String acceptEncoding = request.getHeader(HEADER_ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? resource.gzipEtag : resource.etag;
+
+        // Clients may cache the resource, but must revalidate it unless a cache TTL has been specified
+        if (cacheTTL > 0) {
+            WebUtils.cache(response, cacheTTL);
+        } else {
+            response.setHeader("Cache-Control", "no-cache");
+        }
+        response.setHeader(HEADER_ETAG, etag);
+        response.setHeader("Vary", HEADER_ACCEPT_ENCODING);
+
+        boolean match = Collections.list(request.getHeaders(HEADER_IF_NONE_MATCH)).stream()
+                .flatMap(h -> Arrays.stream(h.split(",")))
+                .map(String::trim)
+                .anyMatch(val -> val.equals("*") || val.equals(resource.etag) || val.equals(resource.gzipEtag));
+        if (match) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] data = gzip ? resource.gzipData : resource.data;
+        if (resource.contentType != null) {
+            response.setContentType(resource.contentType);
+        }
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(data.length);
+        response.getOutputStream().write(data);
+    }
+
+
+    /**
+     * Implementing class may override to return the version of the generated resource.
+     * The resource will then only be re-generated when the version changes.
+     * @return the version of the generated resource, or null to generate the resource for every request
+     */
+    String resourceVersion() {
+        return null;
+    }
+
     /**
      * Implementing class must override to update the response
      */
     abstract String updateResponse(HttpServletRequest request, String response);
 }
 
+/** A generated text resource held as plain and gzipped bytes **/
+class TextResource {
+    final String version;
+    final String contentType;
+    final byte[] data;
+    final byte[] gzipData;
+    final String etag;
+    final String gzipEtag;
+
+    /** Constructor */
+    TextResource(String version, String contentType, String txt) throws IOException {
+        this.version = version;
+        this.contentType = contentType;
+        this.data = txt.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        this.gzipData = bytes.toByteArray();
+
+        String hash = sha256(data);
+        this.etag = new EntityTag(hash).toString();
+        this.gzipEtag = new EntityTag(hash + AbstractTextResourceServletFilter.GZIP_SUFFIX).toString();
+    }
+
+    /** Returns the hex-encoded SHA-256 hash of the data **/
+    private static String sha256(byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
+
 /** Wraps the response for post-processing */
 class CharResponseWrapper extends HttpServletResponseWrapper {
     private CharArrayWriter output;
@@ -19,6 +19,7 @@ package org.niord.web.conf;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.niord.core.settings.SettingsService;
+import org.niord.core.domain.DomainService;
 import org.niord.core.domain.vo.DomainVo;
 import org.niord.web.DomainRestService;
 import org.slf4j.Logger;
@@ -30,11 +31,14 @@ import java.util.List;
 
 /**
  * Loads the site-config.js file and injects relevant system configuration and domains
+ *
+ * The generated file is cached until the settings or domains are updated.
  */
 @WebFilter(urlPatterns={"/conf/site-config.js"})
 public class SiteConfigServletFilter extends AbstractTextResourceServletFilter {
 
-    final static int CACHE_SECONDS = 0; // Do not cache
+    final static int CACHE_SECONDS = 0; // Clients must revalidate using the ETag
+    final static long DOMAIN_REFRESH_MS = 60 * 1000L; // Refresh the areas and categories of the domains every minute
 
     final static String SETTINGS_START  = "/** SETTINGS START **/";
     final static String SETTINGS_END    = "/** SETTINGS END **/";
@@ -48,6 +52,9 @@ public class SiteConfigServletFilter extends AbstractTextResourceServletFilter {
     @Inject
     DomainRestService domainRestService;
 
+    @Inject
+    DomainService domainService;
+
     /** Constructor **/
     public SiteConfigServletFilter() {
         super(CACHE_SECONDS);
@@ -111,6 +118,20 @@ public class SiteConfigServletFilter extends AbstractTextResourceServletFilter {
     }
 
 
+    /**
+     * Returns the combined settings and domains version, so that the configuration is only re-generated
+     * when a setting or domain has been updated.
+     * The domains include the areas and categories, which are not versioned, so the version also
+     * changes every DOMAIN_REFRESH_MS milliseconds.
+     */
+    @Override
+    String resourceVersion() {
+        return settingsService.getVersion()
+                + ":" + domainService.getVersion()
+                + ":" + System.currentTimeMillis() / DOMAIN_REFRESH_MS;
+    }
+
+
     /**
      * Updates the response with system properties
      */
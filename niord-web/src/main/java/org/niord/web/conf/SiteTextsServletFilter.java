@@ -33,11 +33,13 @@ import java.util.stream.Collectors;
  * Loads the site-text.js file and injects relevant translations into it.
  *
  * The translations consists of all the dictionary entries of the "web" dictionary.
+ *
+ * The generated file is cached until one of the dictionaries is invalidated.
  */
 @WebFilter(urlPatterns={"/conf/site-texts.js"})
 public class SiteTextsServletFilter extends AbstractTextResourceServletFilter {
 
-    final static int CACHE_SECONDS = 0; // No caching
+    final static int CACHE_SECONDS = 0; // Clients must revalidate using the ETag
 
     final static String[] WEB_DICTIONARIES    = { "web", "message" };
     final static String TRANSLATIONS_START  = "/** TRANSLATIONS START **/";
@@ -109,6 +111,16 @@ public class SiteTextsServletFilter extends AbstractTextResourceServletFilter {
    }
 
 
+    /**
+     * Returns the dictionary version, so that the translations are only re-generated
+     * when a dictionary has been updated
+     */
+    @Override
+    String resourceVersion() {
+        return String.valueOf(dictionaryService.getVersion());
+    }
+
+
     /**
      * Updates the response with relevant translations
      */
@@ -44,8 +44,10 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.Date;
 
 import static org.niord.core.settings.Setting.Type.Integer;
 
@@ -57,6 +59,7 @@ import static org.niord.core.settings.Setting.Type.Integer;
 public class MessageMapImageGenerator {
 
     static final String STATIC_IMAGE_URL = "%s?center=%f,%f&zoom=%d&size=%dx%d";
+    static final String SYMBOL_IMAGE_RESOURCE = "/META-INF/resources/img/";
 
     static final int ICON_SIZE = 20;
 
@@ -69,7 +72,7 @@ public class MessageMapImageGenerator {
     static final GlobalMercator mercator = new GlobalMercator();
 
     @Inject
-    Logger log;
+    protected Logger log;
 
     @Inject
     NiordApp app;
@@ -77,22 +80,22 @@ public class MessageMapImageGenerator {
     @Inject
     @Setting(value = "mapImageServer", defaultValue = "http://staticmap.openstreetmap.de/staticmap.php",
             description = "URL of static-map service used for generation map thumbnails")
-    String mapImageServer;
+    protected String mapImageServer;
 
     @Inject
     @Setting(value = "mapImageSize", defaultValue = "256", type = Integer, web = true,
             description = "Size of map thumbnails")
-    Integer mapImageSize;
+    protected Integer mapImageSize;
 
     @Inject
     @Setting(value = "mapImageIndent", defaultValue = "22", type = Integer,
             description = "The indentation of map thumbnails")
-    Integer mapImageIndent;
+    protected Integer mapImageIndent;
 
     @Inject
     @Setting(value = "mapImageZoomLevel", defaultValue = "8", type = Integer,
             description = "The map thumbnail zoom level used for single-position messages.")
-    Integer zoomLevel;
+    protected Integer zoomLevel;
 
     private Image nwImage;
     private Image nmImage;
@@ -151,6 +154,27 @@ public class MessageMapImageGenerator {
      * @return if the image file was properly created
      */
     public boolean generateMessageMapImage(Message message, FeatureCollectionVo[] fcs, Path imageRepoPath) throws IOException {
+        return generateMessageMapImage(
+                fcs,
+                message.getType().getMainType(),
+                message.getUpdated(),
+                imageRepoPath);
+    }
+
+
+    /**
+     * Attempts to create a map image for the locations at the given path.
+     * <p>
+     * This version only depends on detached message data, and may thus be called outside
+     * of the transaction that loaded the message.
+     *
+     * @param fcs the feature collections of the message
+     * @param mainType the main type of the message
+     * @param updated the last-updated date of the message
+     * @param imageRepoPath the path of the image
+     * @return if the image file was properly created
+     */
+    public boolean generateMessageMapImage(FeatureCollectionVo[] fcs, MainType mainType, Date updated, Path imageRepoPath) throws IOException {
 
         long t0 = System.currentTimeMillis();
 
@@ -193,7 +217,7 @@ public class MessageMapImageGenerator {
             Arrays.stream(fcs)
                     .filter(fc -> fc.getFeatures() != null)
                     .flatMap(g -> Arrays.stream(g.getFeatures()))
-                    .forEach(f -> drawGeometry(f, f.getGeometry(), g2, getMessageImage(message)));
+                    .forEach(f -> drawGeometry(f, f.getGeometry(), g2, getMessageImage(mainType)));
 
             // Draw labels
             // Disabled for now - if enabled, we need to generate one image per language...
@@ -206,14 +230,22 @@ public class MessageMapImageGenerator {
                 Files.createDirectories(imageRepoPath.getParent());
             }
 
-            // Save the image to the repository
-            ImageIO.write(image, "png", imageRepoPath.toFile());
-            image.flush();
+            // Save the image to a temporary file, and move it into place, so that
+            // concurrent readers never stream a partially written image file
+            Path tmpFile = Files.createTempFile(imageRepoPath.getParent(), "map_", ".tmp");
+            try {
+                ImageIO.write(image, "png", tmpFile.toFile());
+                image.flush();
+
+                // Update the timestamp of the image file to match the change date of the message
+                Files.setLastModifiedTime(
+                        tmpFile,
+                        FileTime.fromMillis(updated.getTime()));
 
-            // Update the timestamp of the image file to match the change date of the message
-            Files.setLastModifiedTime(
-                    imageRepoPath,
-                    FileTime.fromMillis(message.getUpdated().getTime()));
+                Files.move(tmpFile, imageRepoPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
 
             log.info("Saved image for to file " + imageRepoPath + " in " +
                     (System.currentTimeMillis() - t0) + " ms");
@@ -391,7 +423,17 @@ public class MessageMapImageGenerator {
      * @return the corresponding image
      */
     public Image getMessageImage(Message message) {
-        return message.getType().getMainType() == MainType.NM
+        return getMessageImage(message.getType().getMainType());
+    }
+
+
+    /**
+     * Depending on the main type, return an MSI or an NM image
+     * @param mainType the main type
+     * @return the corresponding image
+     */
+    public Image getMessageImage(MainType mainType) {
+        return mainType == MainType.NM
                 ? getNmImage()
                 : getNwImage();
     }
@@ -403,12 +445,7 @@ public class MessageMapImageGenerator {
      */
     private synchronized Image getNwImage() {
         if (nwImage == null) {
-            String imageUrl = app.getBaseUri() + "/img/nw.png";
-            try {
-                nwImage = ImageIO.read(new URL(imageUrl));
-            } catch (IOException e) {
-                log.error("This should never happen - could not load image from " + imageUrl);
-            }
+            nwImage = loadSymbolImage("nw.png");
         }
         return nwImage;
     }
@@ -419,18 +456,33 @@ public class MessageMapImageGenerator {
      */
     private synchronized Image getNmImage() {
         if (nmImage == null) {
-            String imageUrl = app.getBaseUri() + "/img/nm.png";
-            try {
-                nmImage = ImageIO.read(new URL(imageUrl));
-            } catch (IOException e) {
-                log.error("This should never happen - could not load image from " + imageUrl);
-            }
+            nmImage = loadSymbolImage("nm.png");
         }
         return nmImage;
     }
 
 
 
+    /**
+     * Loads the given symbol image from the class path, and falls back to loading
+     * it from the web application
+     * @param name the name of the image
+     * @return the symbol image
+     */
+    private Image loadSymbolImage(String name) {
+        URL imageUrl = getClass().getResource(SYMBOL_IMAGE_RESOURCE + name);
+        try {
+            if (imageUrl == null) {
+                imageUrl = new URL(app.getBaseUri() + "/img/" + name);
+            }
+            return ImageIO.read(imageUrl);
+        } catch (IOException e) {
+            log.error("This should never happen - could not load image from " + imageUrl);
+        }
+        return null;
+    }
+
+
     /**
      * Validates the the given image data buffer represents an image. If the image does not have the
      * proper proportions, it will be scaled.
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web.map;
+
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.message.Message;
+import org.niord.core.message.MessageService;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.script.pdf.LocalPdfResourceResolver;
+import org.niord.core.script.pdf.PdfResourceResolver;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Resolves the message map thumbnail images of PDF reports, i.e. "/rest/message-map-image/{uid}.png",
+ * directly from the repository rather than via the redirects of {@link MessageMapImageRestService}.
+ * <p>
+ * As for the REST service, a missing or stale map image is submitted for rendering,
+ * and in the meantime, the stale image or a placeholder image is used.
+ */
+@ApplicationScoped
+public class MessageMapImagePdfResourceResolver implements PdfResourceResolver {
+
+    static final String MAP_IMAGE_PREFIX = "/rest/message-map-image/";
+    static final String MAP_IMAGE_SUFFIX = ".png";
+    static final String IMAGE_PLACEHOLDER = "/img/map_image_placeholder.png";
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    MessageMapImageRenderQueue renderQueue;
+
+    @Inject
+    LocalPdfResourceResolver localPdfResourceResolver;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    @Transactional
+    public InputStream openStream(String path) throws IOException {
+        if (!path.startsWith(MAP_IMAGE_PREFIX) || !path.endsWith(MAP_IMAGE_SUFFIX)) {
+            return null;
+        }
+
+        String uid = path.substring(MAP_IMAGE_PREFIX.length(), path.length() - MAP_IMAGE_SUFFIX.length());
+        Path imageRepoPath = getMessageMapImagePath(uid);
+        return imageRepoPath != null
+                ? new BufferedInputStream(Files.newInputStream(imageRepoPath))
+                : localPdfResourceResolver.openStream(IMAGE_PLACEHOLDER);
+    }
+
+
+    /**
+     * Returns the map image file of the message with the given UID, or null if undefined
+     * @param uid the message UID
+     * @return the map image file of the message, or null if undefined
+     */
+    private Path getMessageMapImagePath(String uid) throws IOException {
+        Message message = messageService.findByUid(uid);
+        if (message == null) {
+            return null;
+        }
+
+        // Check if a custom map image is defined
+        if (StringUtils.isNotBlank(message.getThumbnailPath())) {
+            Path imageRepoPath = repositoryService.getRepoRoot().resolve(message.getThumbnailPath());
+            if (Files.exists(imageRepoPath)) {
+                return imageRepoPath;
+            }
+        }
+
+        // Check for a standard auto-generated message map image file
+        if (message.toGeoJson().length > 0) {
+            Path imageRepoPath = renderQueue.getMessageMapImagePath(message);
+            if (renderQueue.isMessageMapImageStale(message, imageRepoPath)) {
+                renderQueue.submitRendering(message);
+            }
+            if (Files.exists(imageRepoPath)) {
+                return imageRepoPath;
+            }
+        }
+        return null;
+    }
+}
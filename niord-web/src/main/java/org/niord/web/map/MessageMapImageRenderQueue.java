@@ -0,0 +1,281 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web.map;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.message.Message;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.settings.annotation.Setting;
+import org.niord.model.geojson.FeatureCollectionVo;
+import org.niord.model.message.MainType;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.niord.core.settings.Setting.Type.Integer;
+
+/**
+ * Renders message map thumbnail images asynchronously.
+ * <p>
+ *     A bounded worker pool is used to limit the load on the system and on the static-map service,
+ *     and at most one rendering job is in-flight per message. If a newer version of the message is
+ *     submitted while its rendering job is in-flight, the newer version is rendered once the job completes.
+ * </p>
+ * <p>
+ *     The rendering jobs only operate on detached message data, i.e. the message geometry,
+ *     main type and last-updated date, so they may run outside of the transaction that loaded the message.
+ * </p>
+ */
+@ApplicationScoped
+public class MessageMapImageRenderQueue {
+
+    @Inject
+    protected Logger log;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Inject
+    protected MessageMapImageGenerator messageMapImageGenerator;
+
+    @Inject
+    @Setting(value = "mapImageRenderThreads", defaultValue = "2", type = Integer,
+            description = "The number of threads used for rendering message map thumbnails")
+    protected Integer renderThreads;
+
+    private final Map<String, RenderJob> inFlight = new ConcurrentHashMap<>();
+
+    private ExecutorService renderPool;
+
+    @PostConstruct
+    protected void init() {
+        renderPool = Executors.newFixedThreadPool(Math.max(1, renderThreads));
+    }
+
+    @PreDestroy
+    protected void closeDown() {
+        // NB: Keep the shut-down pool, so that late submissions are rejected
+        if (renderPool != null && !renderPool.isShutdown()) {
+            renderPool.shutdown();
+        }
+    }
+
+
+    /**
+     * Returns the path of the standard auto-generated map image of the message
+     * @param message the message
+     * @return the path of the map image
+     */
+    public Path getMessageMapImagePath(Message message) {
+        String imageName = String.format("map_%d.png", messageMapImageGenerator.getMapImageSize());
+        return repositoryService.getRepoRoot().resolve(message.getRepoPath()).resolve(imageName);
+    }
+
+
+    /**
+     * Returns if the standard auto-generated map image of the message is missing or older than the message
+     * @param message the message
+     * @param imageRepoPath the path of the map image
+     * @return if the map image is missing or stale
+     */
+    public boolean isMessageMapImageStale(Message message, Path imageRepoPath) throws IOException {
+        return !Files.exists(imageRepoPath) ||
+                message.getUpdated().getTime() > Files.getLastModifiedTime(imageRepoPath).toMillis();
+    }
+
+
+    /**
+     * Submits a job for rendering the standard map image of the message, unless the message
+     * has no geometry or uses a custom map image.
+     *
+     * @param message the message
+     * @return if a new rendering job was submitted
+     */
+    public boolean submitRendering(Message message) {
+        if (StringUtils.isNotBlank(message.getThumbnailPath()) || message.getUpdated() == null) {
+            return false;
+        }
+        FeatureCollectionVo[] fcs = message.toGeoJson();
+        if (fcs.length == 0) {
+            return false;
+        }
+        return submitRendering(
+                message.getUid(),
+                fcs,
+                message.getType().getMainType(),
+                message.getUpdated(),
+                getMessageMapImagePath(message));
+    }
+
+
+    /**
+     * Submits a job for rendering the map image of a message.
+     * If a rendering job is already in-flight for the message, no new job is submitted. However, if the
+     * message has been updated since the in-flight job was submitted, it is re-rendered once the job completes.
+     *
+     * @param uid the UID of the message
+     * @param fcs the feature collections of the message
+     * @param mainType the main type of the message
+     * @param updated the last-updated date of the message
+     * @param imageRepoPath the path of the map image
+     * @return if a new rendering job was submitted
+     */
+    public boolean submitRendering(String uid, FeatureCollectionVo[] fcs, MainType mainType, Date updated, Path imageRepoPath) {
+
+        RenderRequest request = new RenderRequest(uid, fcs, mainType, updated, imageRepoPath);
+        RenderJob job = new RenderJob(request);
+
+        RenderJob current = inFlight.compute(uid, (key, inFlightJob) -> {
+            if (inFlightJob == null) {
+                return job;
+            }
+            // Keep the newest version of the message for re-rendering once the in-flight job completes
+            if (updated.after(inFlightJob.latestUpdated())) {
+                inFlightJob.pending = request;
+            }
+            return inFlightJob;
+        });
+
+        if (current != job) {
+            log.trace("Map image rendering already in-flight for message " + uid);
+            return false;
+        }
+
+        return execute(job);
+    }
+
+
+    /**
+     * Executes the rendering job in the worker pool
+     * @param job the rendering job
+     * @return if the job was executed
+     */
+    private boolean execute(RenderJob job) {
+        try {
+            renderPool.execute(job.task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(job.request.uid, job);
+            log.warn("Rejected map image rendering for message " + job.request.uid);
+            return false;
+        }
+    }
+
+
+    /**
+     * Called when a rendering job completes. Submits a new job if the message has been updated in the meantime
+     * @param job the completed rendering job
+     */
+    private void completed(RenderJob job) {
+        RenderJob[] next = { null };
+        inFlight.computeIfPresent(job.request.uid, (key, inFlightJob) -> {
+            if (inFlightJob != job) {
+                return inFlightJob;
+            }
+            if (inFlightJob.pending == null) {
+                return null;
+            }
+            next[0] = new RenderJob(inFlightJob.pending);
+            return next[0];
+        });
+
+        if (next[0] != null) {
+            log.trace("Re-rendering map image of updated message " + job.request.uid);
+            execute(next[0]);
+        }
+    }
+
+
+    /**
+     * Returns if a rendering job is in-flight for the given message
+     * @param uid the UID of the message
+     * @return if a rendering job is in-flight for the given message
+     */
+    public boolean isRendering(String uid) {
+        return inFlight.containsKey(uid);
+    }
+
+
+    /**
+     * Returns the in-flight rendering job of the given message, or null if none is in-flight
+     * @param uid the UID of the message
+     * @return the in-flight rendering job of the given message
+     */
+    public Future<Boolean> getRenderingJob(String uid) {
+        RenderJob job = inFlight.get(uid);
+        return job == null ? null : job.task;
+    }
+
+
+    /** The detached message data needed for rendering the map image of a message **/
+    private static class RenderRequest {
+        final String uid;
+        final FeatureCollectionVo[] fcs;
+        final MainType mainType;
+        final Date updated;
+        final Path imageRepoPath;
+
+        RenderRequest(String uid, FeatureCollectionVo[] fcs, MainType mainType, Date updated, Path imageRepoPath) {
+            this.uid = uid;
+            this.fcs = fcs;
+            this.mainType = mainType;
+            this.updated = updated;
+            this.imageRepoPath = imageRepoPath;
+        }
+    }
+
+
+    /** An in-flight rendering job, along with any newer version of the message submitted in the meantime **/
+    private class RenderJob {
+        final RenderRequest request;
+        final FutureTask<Boolean> task;
+        RenderRequest pending;
+
+        RenderJob(RenderRequest request) {
+            this.request = request;
+            this.task = new FutureTask<>(() -> {
+                try {
+                    return messageMapImageGenerator.generateMessageMapImage(
+                            request.fcs, request.mainType, request.updated, request.imageRepoPath);
+                } catch (Exception e) {
+                    log.warn("Error rendering map image for message " + request.uid + ": " + e);
+                    return false;
+                } finally {
+                    completed(this);
+                }
+            });
+        }
+
+        /** Returns the last-updated date of the newest version of the message submitted for this job **/
+        Date latestUpdated() {
+            return pending != null ? pending.updated : request.updated;
+        }
+    }
+}
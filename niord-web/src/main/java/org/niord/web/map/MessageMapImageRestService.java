@@ -26,7 +26,6 @@ import org.niord.core.message.Message;
 import org.niord.core.message.MessageService;
 import org.niord.core.repo.RepositoryService;
 import org.niord.core.user.Roles;
-import org.niord.model.geojson.FeatureCollectionVo;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.RequestScoped;
@@ -56,6 +55,9 @@ import java.util.Map;
  * <p>
  * The URL to fetch an image can either be specified via a message ID or a temporary repository path.
  * The latter is used when messages is being edited.
+ * <p>
+ * Standard map images are rendered asynchronously by the {@linkplain MessageMapImageRenderQueue}.
+ * While rendering, the stale image or a placeholder image is returned, without caching.
  */
 @jakarta.ws.rs.Path("/message-map-image")
 @RequestScoped
@@ -79,6 +81,9 @@ public class MessageMapImageRestService {
     @Inject
     MessageMapImageGenerator messageMapImageGenerator;
 
+    @Inject
+    MessageMapImageRenderQueue renderQueue;
+
     /**
      * Returns the map thumbnail image associated with the message with the given UID
      * @param uid the UID of the message
@@ -107,28 +112,21 @@ public class MessageMapImageRestService {
 
 
             // Check for a standard auto-generated message map image file
-            FeatureCollectionVo[] fcs = message.toGeoJson();
-            if (fcs.length > 0) {
+            if (message.toGeoJson().length > 0) {
 
-                // Construct the image file for the message
-                String imageName = String.format("map_%d.png", messageMapImageGenerator.getMapImageSize());
-                Path imageRepoPath = repositoryService.getRepoRoot().resolve(message.getRepoPath()).resolve(imageName);
+                Path imageRepoPath = renderQueue.getMessageMapImagePath(message);
 
                 // If the image file does not exist, or if the message has been updated after the image file,
-                // generate a new image file
-                boolean imageFileExists = Files.exists(imageRepoPath);
-                if (!imageFileExists ||
-                        message.getUpdated().getTime() > Files.getLastModifiedTime(imageRepoPath).toMillis()) {
-                    imageFileExists = messageMapImageGenerator.generateMessageMapImage(
-                            message,
-                            fcs,
-                            imageRepoPath);
+                // submit a job for rendering a new image file. Meanwhile, return the stale image or a placeholder
+                if (renderQueue.isMessageMapImageStale(message, imageRepoPath)) {
+                    renderQueue.submitRendering(message);
+                    if (Files.exists(imageRepoPath)) {
+                        return redirect(imageRepoPath, new Date());
+                    }
+                    return placeholder(new Date());
                 }
 
-                // Either return the image file, or a place holder image
-                if (imageFileExists) {
-                    return redirect(imageRepoPath);
-                }
+                return redirect(imageRepoPath, getExpiryTime());
             }
 
         } catch (Exception ex) {
@@ -136,10 +134,7 @@ public class MessageMapImageRestService {
         }
 
         // Show a placeholder image
-        return Response
-                .temporaryRedirect(new URI(IMAGE_PLACEHOLDER))
-                .expires(getExpiryTime())
-                .build();
+        return placeholder(getExpiryTime());
     }
 
 
@@ -147,11 +142,30 @@ public class MessageMapImageRestService {
      * Returns a redirect to the actual repository image file
      **/
     private Response redirect(Path imagePath) throws IOException, URISyntaxException {
+        return redirect(imagePath, getExpiryTime());
+    }
+
+
+    /**
+     * Returns a redirect to the actual repository image file with the given expiry time
+     **/
+    private Response redirect(Path imagePath, Date expiryTime) throws IOException, URISyntaxException {
         // Redirect the the repository streaming service
         String uri = repositoryService.getRepoUri(imagePath);
         return Response
                 .temporaryRedirect(new URI("../" + uri))
-                .expires(getExpiryTime())
+                .expires(expiryTime)
+                .build();
+    }
+
+
+    /**
+     * Returns a redirect to the placeholder image with the given expiry time
+     **/
+    private Response placeholder(Date expiryTime) throws URISyntaxException {
+        return Response
+                .temporaryRedirect(new URI(IMAGE_PLACEHOLDER))
+                .expires(expiryTime)
                 .build();
     }
 
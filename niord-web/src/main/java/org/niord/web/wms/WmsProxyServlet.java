@@ -18,25 +18,19 @@ package org.niord.web.wms;
 import static org.niord.core.settings.Setting.Type.Boolean;
 import static org.niord.core.settings.Setting.Type.Password;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.Map;
-import java.util.stream.Collectors;
-
-import javax.imageio.ImageIO;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
+import org.niord.core.repo.RepositoryService;
 import org.niord.core.settings.annotation.Setting;
 import org.niord.core.util.WebUtils;
 import org.slf4j.Logger;
 
 
+import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -46,22 +40,29 @@ import jakarta.servlet.http.HttpServletResponse;
 /**
  * Proxy WMS data
  *
- * This servlet will mask out a couple of colours that makes the current Danish WMS service unusable...
+ * This servlet can mask out a couple of colours that makes the current Danish WMS service unusable...
+ * <p>
+ * Tiles are cached in memory and in the "wms_tiles" repository folder, and concurrent requests
+ * for the same tile are coalesced into a single upstream request. See {@linkplain WmsTileLoader}.
  *
  * Define the settings for the "wmsLogin", "wmsPassword", etc. in the "${niord.home}/niord.json" settings file.
  */
 @WebServlet(value = "/wms/*")
 public class WmsProxyServlet extends HttpServlet {
 
-    // The color we want transparent
-    final static Color[]    MASKED_COLORS   = { Color.WHITE, new Color(221, 241, 239) };
-    final static int        COLOR_DIST      = 20;
     final static int        CACHE_TIMEOUT   =  24 * 60 * 60; // 24 hours
     static final String     BLANK_IMAGE     = "/img/blank.png";
+    static final String     TILE_REPO_FOLDER = "wms_tiles";
 
     @Inject
     Logger log;
 
+    @Inject
+    WmsTileCache wmsTileCache;
+
+    @Inject
+    RepositoryService repositoryService;
+
     @Inject
     @Setting(value="wmsProvider", description="The WMS provider")
     String wmsProvider;
@@ -97,6 +98,27 @@ public class WmsProxyServlet extends HttpServlet {
             type = Boolean)
     Boolean wmsProtected;
 
+    @Inject
+    @Setting(value="wmsMaskColors",
+            description="Whether to mask out white colours of the WMS tiles",
+            defaultValue = "false",
+            type = Boolean)
+    Boolean wmsMaskColors;
+
+    WmsTileLoader tileLoader;
+
+    /**
+     * Initializes the WMS tile loader
+     */
+    @PostConstruct
+    public void initTileLoader() {
+        tileLoader = new WmsTileLoader(
+                wmsTileCache.getCache(),
+                repositoryService.getRepoRoot().resolve(TILE_REPO_FOLDER),
+                CACHE_TIMEOUT * 1000L,
+                wmsMaskColors != null && wmsMaskColors);
+    }
+
     /**
      * Main GET method
      * @param request servlet request
@@ -124,92 +146,38 @@ public class WmsProxyServlet extends HttpServlet {
             return;
         }
 
+        // Compute the normalized parameters, which also serve as cache key
         Map<String, String[]> paramMap = request.getParameterMap();
-        String params = paramMap
-                .entrySet()
-                .stream()
-                .filter(p -> StringUtils.isBlank(wmsLayers) || !"layers".equalsIgnoreCase(p.getKey()))
-                .map(p -> String.format("%s=%s", p.getKey(), p.getValue()[0]))
-                .collect(Collectors.joining("&"));
-        if (!StringUtils.isBlank(wmsPassword)) {
-            params += String.format("&TOKEN=%s", wmsPassword);
-        }
+        Set<String> excludedParams = StringUtils.isBlank(wmsLayers) ? Set.of("TOKEN") : Set.of("TOKEN", "LAYERS");
+        String params = WmsTileLoader.normalizeParams(paramMap, excludedParams);
         if (StringUtils.isNotBlank(wmsLayers)) {
             params += String.format("&LAYERS=%s", wmsLayers);
         }
+        String key = wmsProvider + "?" + params;
 
-        String url = wmsProvider + "?" + params;
-        
-        log.trace("Loading image " + url);
+        String url = key;
+        if (!StringUtils.isBlank(wmsPassword)) {
+            url += String.format("&TOKEN=%s", wmsPassword);
+        }
+
+        log.trace("Loading image " + key);
         try {
-            URL urlUrl = new URL(url);
-            URLConnection con = urlUrl.openConnection();
-            con.setConnectTimeout(20 * 1000);
-            con.setReadTimeout(20 * 1000);
-            InputStream in = con.getInputStream();
-            BufferedImage image = ImageIO.read(in);
-            if (image != null) {
-                //image = transformWhiteToTransparent(image);
-
-                OutputStream out = response.getOutputStream();
-                ImageIO.write(image, "png", out);
-                image.flush();
-                out.close();
-                return;
+            byte[] data = tileLoader.loadTile(key, url);
+            response.setContentType("image/png");
+            response.setContentLength(data.length);
+            try (OutputStream out = response.getOutputStream()) {
+                out.write(data);
             }
+            return;
         } catch (Exception e) {
-            log.warn("Failed loading WMS image for URL " + url + ": " + e, e);
+            log.warn("Failed loading WMS image for URL " + key + ": " + e, e);
         }
 
         // Fall back to return a blank image
         try {
             response.sendRedirect(BLANK_IMAGE);
         } catch (Exception e) {
-            log.warn("Failed returning blank image for URL " + url + ": " + e, e);
-        }
-    }
-
-
-    /**
-     * Masks out white colour
-     * @param image the image to mask out
-     * @return the resulting image
-     */
-    @SuppressWarnings("unused")
-    private BufferedImage transformWhiteToTransparent(BufferedImage image) {
-
-        BufferedImage dest = image;
-        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
-            dest = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2 = dest.createGraphics();
-            g2.drawImage(image, 0, 0, null);
-            g2.dispose();
-
-            image.flush();
-        }
-
-        // Mask out the white pixels
-        final int width = image.getWidth();
-        int[] imgData = new int[width];
-
-        for (int y = 0; y < dest.getHeight(); y++) {
-            // fetch a line of data from each image
-            dest.getRGB(0, y, width, 1, imgData, 0, 1);
-            // apply the mask
-            for (int x = 0; x < width; x++) {
-                for (Color col : MASKED_COLORS) {
-                    int colDist
-                            = Math.abs(col.getRed() - (imgData[x] >> 16 & 0x000000FF))
-                            + Math.abs(col.getGreen() - (imgData[x] >> 8 & 0x000000FF))
-                            + Math.abs(col.getBlue() - (imgData[x] & 0x000000FF));
-                    if (colDist <= COLOR_DIST) {
-                        imgData[x] = 0x00FFFFFF & imgData[x];
-                    }
-                }
-            }
-            // replace the data
-            dest.setRGB(0, y, width, 1, imgData, 0, 1);
+            log.warn("Failed returning blank image for URL " + key + ": " + e, e);
         }
-        return dest;
     }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web.wms;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.niord.core.cache.BaseCache;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.settings.annotation.Setting;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+
+import static org.niord.core.settings.Setting.Type;
+
+/**
+ * Memory level cache of WMS tiles, keyed by the normalized WMS request.
+ * <p>
+ * The memory cache is backed by a disk cache in the repository, as managed by the {@linkplain WmsTileLoader}.
+ * The disk cache is swept every hour.
+ */
+@ApplicationScoped
+public class WmsTileCache extends BaseCache<String, byte[]> {
+
+    final static long LIFESPAN = 60 * 60 * 1000;    // 1 hour
+    final static long MAX_ENTRIES = 2000;           // at most 2.000 tiles
+
+    final static String CACHE_ID = "wmsTileCache";
+
+    @Inject
+    Logger log;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Inject
+    @Setting(value="wmsDiskCacheMaxSize", defaultValue="500", description="Max size in MB of the WMS tile disk cache", type = Type.Integer)
+    Integer diskCacheMaxSize;
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCacheId() {
+        return CACHE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Configuration createCacheConfiguration() {
+        return new ConfigurationBuilder()
+                .clustering().cacheMode(CacheMode.LOCAL)
+                .locking().isolationLevel(IsolationLevel.REPEATABLE_READ)
+                .memory().maxCount(MAX_ENTRIES).whenFull(EvictionStrategy.REMOVE)
+                .expiration().lifespan(LIFESPAN)
+                .build();
+    }
+
+
+    /**
+     * Called every hour to delete expired tiles from the disk cache, and keep it within the max size
+     */
+    @Scheduled(cron="0 37 * * * ?")
+    public void sweepDiskCache() {
+        try {
+            int deleted = WmsTileLoader.sweepDiskCache(
+                    repositoryService.getRepoRoot().resolve(WmsProxyServlet.TILE_REPO_FOLDER),
+                    WmsProxyServlet.CACHE_TIMEOUT * 1000L,
+                    diskCacheMaxSize * 1024L * 1024L);
+            if (deleted > 0) {
+                log.info("Deleted " + deleted + " files from the WMS tile disk cache");
+            }
+        } catch (IOException e) {
+            log.error("Failed sweeping the WMS tile disk cache", e);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web.wms;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads WMS tiles from an upstream WMS provider via a two-level cache.
+ * <p>
+ * The first level is a bounded memory cache, and the second level is a disk cache where
+ * each tile is valid for a given TTL. Concurrent requests for the same tile are coalesced,
+ * so that only one upstream request is issued.
+ * <p>
+ * PNG tiles are passed through unchanged unless colour masking is enabled, in which case
+ * the tile is decoded, masked and re-encoded as PNG.
+ * <p>
+ * The disk cache should be swept periodically via {@code sweepDiskCache()}, which deletes expired
+ * tiles and keeps the disk cache within a max size.
+ */
+public class WmsTileLoader {
+
+    // The colours we want transparent
+    final static Color[]    MASKED_COLORS   = { Color.WHITE, new Color(221, 241, 239) };
+    final static int        COLOR_DIST      = 20;
+    final static int        TIMEOUT         = 20 * 1000;    // 20 seconds
+    final static byte[]     PNG_SIGNATURE   = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    private final Map<String, byte[]> memoryCache;
+    private final Path diskCacheRoot;
+    private final long diskCacheTtlMs;
+    private final boolean maskColors;
+
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong upstreamRequests = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param memoryCache the memory level cache
+     * @param diskCacheRoot the root folder of the disk level cache
+     * @param diskCacheTtlMs the time-to-live in milliseconds of tiles in the disk cache
+     * @param maskColors whether to mask out the {@code MASKED_COLORS} or not
+     */
+    public WmsTileLoader(Map<String, byte[]> memoryCache, Path diskCacheRoot, long diskCacheTtlMs, boolean maskColors) {
+        this.memoryCache = memoryCache;
+        this.diskCacheRoot = diskCacheRoot;
+        this.diskCacheTtlMs = diskCacheTtlMs;
+        this.maskColors = maskColors;
+    }
+
+
+    /**
+     * Computes a normalized WMS parameter string, which can be used both as a query string
+     * and as a cache key.<br>
+     * The parameter names are upper-cased and sorted, so that the same tile will
+     * always yield the same parameter string.
+     *
+     * @param paramMap the request parameters
+     * @param excludedParams the upper-case names of parameters to exclude
+     * @return the normalized WMS parameter string
+     */
+    public static String normalizeParams(Map<String, String[]> paramMap, Set<String> excludedParams) {
+        return paramMap.entrySet().stream()
+                .filter(p -> p.getValue() != null && p.getValue().length > 0)
+                .filter(p -> !excludedParams.contains(p.getKey().toUpperCase()))
+                .map(p -> String.format("%s=%s", p.getKey().toUpperCase(), p.getValue()[0]))
+                .sorted()
+                .collect(Collectors.joining("&"));
+    }
+
+
+    /**
+     * Returns the PNG tile for the given cache key.
+     * If the tile is not cached, it is loaded from the given upstream URL.
+     *
+     * @param key the normalized cache key
+     * @param url the upstream URL to load the tile from, if not cached
+     * @return the PNG tile
+     */
+    public byte[] loadTile(String key, String url) throws IOException {
+
+        // Check the memory cache
+        byte[] data = memoryCache.get(key);
+        if (data != null) {
+            memoryHits.incrementAndGet();
+            return data;
+        }
+
+        // Coalesce concurrent requests for the same tile
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> pending = inFlight.putIfAbsent(key, future);
+        if (pending != null) {
+            coalesced.incrementAndGet();
+            return await(pending);
+        }
+
+        try {
+            data = loadFromDiskOrUpstream(key, url);
+            memoryCache.put(key, data);
+            future.complete(data);
+            return data;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+
+    /**
+     * Waits for a pending load of a tile to complete
+     * @param pending the pending tile load
+     * @return the PNG tile
+     */
+    private byte[] await(CompletableFuture<byte[]> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for WMS tile", e);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException)
+                    ? (IOException) e.getCause()
+                    : new IOException("Failed loading WMS tile", e.getCause());
+        }
+    }
+
+
+    /**
+     * Loads the tile from the disk cache, or from the upstream WMS provider if the tile
+     * is not cached or has expired
+     * @param key the normalized cache key
+     * @param url the upstream URL to load the tile from, if not cached
+     * @return the PNG tile
+     */
+    private byte[] loadFromDiskOrUpstream(String key, String url) throws IOException {
+        Path file = diskCacheRoot == null ? null : getCacheFile(key);
+
+        if (file != null && Files.exists(file) &&
+                System.currentTimeMillis() < Files.getLastModifiedTime(file).toMillis() + diskCacheTtlMs) {
+            diskHits.incrementAndGet();
+            return Files.readAllBytes(file);
+        }
+
+        byte[] data = loadFromUpstream(url);
+
+        if (file != null) {
+            // Write to a temporary file and move it into place, so readers never see a partial file
+            Files.createDirectories(file.getParent());
+            Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tmpFile, data);
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+        }
+        return data;
+    }
+
+
+    /**
+     * Loads the tile from the upstream WMS provider
+     * @param url the upstream URL to load the tile from
+     * @return the PNG tile
+     */
+    private byte[] loadFromUpstream(String url) throws IOException {
+        upstreamRequests.incrementAndGet();
+
+        URLConnection con = new URL(url).openConnection();
+        con.setConnectTimeout(TIMEOUT);
+        con.setReadTimeout(TIMEOUT);
+        String contentType = con.getContentType();
+        byte[] data;
+        try (InputStream in = con.getInputStream()) {
+            data = in.readAllBytes();
+        }
+
+        // Pass PNG tiles through unchanged, unless colours need to be masked out
+        if (!maskColors && isPng(contentType, data)) {
+            return data;
+        }
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image == null) {
+            throw new IOException("Invalid WMS image of type " + contentType);
+        }
+        if (maskColors) {
+            image = transformWhiteToTransparent(image);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        ImageIO.write(image, "png", out);
+        image.flush();
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Returns if the data is a PNG image
+     * @param contentType the content type reported by the WMS provider
+     * @param data the image data
+     * @return if the data is a PNG image
+     */
+    private boolean isPng(String contentType, byte[] data) {
+        return contentType != null
+                && contentType.toLowerCase().startsWith("image/png")
+                && data.length > PNG_SIGNATURE.length
+                && Arrays.equals(data, 0, PNG_SIGNATURE.length, PNG_SIGNATURE, 0, PNG_SIGNATURE.length);
+    }
+
+
+    /**
+     * Sweeps the disk cache by deleting expired tiles and left-over temporary files.
+     * If the remaining tiles exceed the given max size, the least recently written tiles are deleted as well.
+     *
+     * @param diskCacheRoot the root folder of the disk level cache
+     * @param diskCacheTtlMs the time-to-live in milliseconds of tiles in the disk cache
+     * @param maxSize the max size in bytes of the disk cache
+     * @return the number of deleted files
+     */
+    public static int sweepDiskCache(Path diskCacheRoot, long diskCacheTtlMs, long maxSize) throws IOException {
+        if (diskCacheRoot == null || !Files.isDirectory(diskCacheRoot)) {
+            return 0;
+        }
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(diskCacheRoot)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        // Sort the files by last-modified time, oldest first
+        List<CacheFile> cacheFiles = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                cacheFiles.add(new CacheFile(file, Files.getLastModifiedTime(file).toMillis(), Files.size(file)));
+            } catch (IOException ignored) {
+                // The file has been replaced or deleted concurrently
+            }
+        }
+        cacheFiles.sort(Comparator.comparingLong(f -> f.lastModified));
+
+        long expiry = System.currentTimeMillis() - diskCacheTtlMs;
+        long size = cacheFiles.stream().mapToLong(f -> f.size).sum();
+        int deleted = 0;
+        for (CacheFile file : cacheFiles) {
+            if (file.lastModified >= expiry && size <= maxSize) {
+                break;
+            }
+            if (file.lastModified >= expiry && file.path.getFileName().toString().endsWith(".tmp")) {
+                // Tile currently being written
+                continue;
+            }
+            if (Files.deleteIfExists(file.path)) {
+                deleted++;
+            }
+            size -= file.size;
+        }
+        return deleted;
+    }
+
+
+    /**
+     * Returns the disk cache file for the given cache key.
+     * The files are placed in two levels of sub-folders based on a hash of the key.
+     * @param key the normalized cache key
+     * @return the disk cache file
+     */
+    private Path getCacheFile(String key) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("This should never happen");
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : md.digest(key.getBytes(StandardCharsets.UTF_8))) {
+            hash.append(String.format("%02x", b & 0xff));
+        }
+        return diskCacheRoot
+                .resolve(hash.substring(0, 1))
+                .resolve(hash.substring(0, 2))
+                .resolve(hash + ".png");
+    }
+
+
+    /**
+     * Masks out white colour
+     * @param image the image to mask out
+     * @return the resulting image
+     */
+    private BufferedImage transformWhiteToTransparent(BufferedImage image) {
+
+        BufferedImage dest = image;
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            dest = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = dest.createGraphics();
+            g2.drawImage(image, 0, 0, null);
+            g2.dispose();
+
+            image.flush();
+        }
+
+        // Mask out the white pixels
+        final int width = image.getWidth();
+        int[] imgData = new int[width];
+
+        for (int y = 0; y < dest.getHeight(); y++) {
+            // fetch a line of data from each image
+            dest.getRGB(0, y, width, 1, imgData, 0, 1);
+            // apply the mask
+            for (int x = 0; x < width; x++) {
+                for (Color col : MASKED_COLORS) {
+                    int colDist
+                            = Math.abs(col.getRed() - (imgData[x] >> 16 & 0x000000FF))
+                            + Math.abs(col.getGreen() - (imgData[x] >> 8 & 0x000000FF))
+                            + Math.abs(col.getBlue() - (imgData[x] & 0x000000FF));
+                    if (colDist <= COLOR_DIST) {
+                        imgData[x] = 0x00FFFFFF & imgData[x];
+                    }
+                }
+            }
+            // replace the data
+            dest.setRGB(0, y, width, 1, imgData, 0, 1);
+        }
+        return dest;
+    }
+
+
+    /** A file of the disk cache **/
+    private static class CacheFile {
+        final Path path;
+        final long lastModified;
+        final long size;
+
+        CacheFile(Path path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+
+    /*************************/
+    /** Statistics          **/
+    /*************************/
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getUpstreamRequests() {
+        return upstreamRequests.get();
+    }
+}
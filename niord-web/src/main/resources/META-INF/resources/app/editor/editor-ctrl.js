@@ -1674,16 +1674,22 @@ angular.module('niord.editor')
             'use strict';
 
             $scope.messageHistory = [];
+            $scope.messageHistoryTotal = 0;
+            $scope.messageHistoryPage = 0;
             $scope.selectedHistory = [];
             $scope.historyAttachments = undefined;
 
-            /** Loads the message history **/
-            $scope.loadHistory = function () {
+            /** Loads the message history. The snapshots are loaded on demand **/
+            $scope.loadHistory = function (page) {
                 if ($scope.message && $scope.message.id) {
-                    MessageService.messageHistory($scope.message.id)
-                        .success(function (history) {
-                            $scope.messageHistory.length = 0;
-                            angular.forEach(history, function (hist) {
+                    $scope.messageHistoryPage = page || 0;
+                    MessageService.messageHistory($scope.message.id, $scope.messageHistoryPage)
+                        .success(function (result) {
+                            if ($scope.messageHistoryPage === 0) {
+                                $scope.messageHistory.length = 0;
+                            }
+                            $scope.messageHistoryTotal = result.total;
+                            angular.forEach(result.data, function (hist) {
                                 hist.selected = false;
                                 $scope.messageHistory.push(hist);
                             })
@@ -1695,23 +1701,55 @@ angular.module('niord.editor')
             $timeout($scope.loadHistory, 200);
 
 
+            /** Loads the next page of the message history **/
+            $scope.loadMoreHistory = function () {
+                $scope.loadHistory($scope.messageHistoryPage + 1);
+            };
+
+
             /** updates the history selection **/
             $scope.updateSelection = function () {
-                $scope.selectedHistory.length = 0;
+                var selection = [];
                 angular.forEach($scope.messageHistory, function (hist) {
                     if (hist.selected) {
-                        $scope.selectedHistory.unshift(hist);
+                        selection.unshift(hist);
                     }
                 });
 
-                // If one message history is selected, extract its attachments
-                $scope.historyAttachments = undefined;
-                if ($scope.selectedHistory.length === 1) {
-                    try {
-                        var hist1 = JSON.parse($scope.selectedHistory[0].snapshot);
-                        $scope.historyAttachments = hist1.attachments;
-                    } catch (e) {
+                // Load the snapshots of the selected history entries that have not been loaded yet
+                var pending = 0;
+                var selectionLoaded = function () {
+                    $scope.selectedHistory.length = 0;
+                    angular.forEach(selection, function (hist) {
+                        $scope.selectedHistory.push(hist);
+                    });
+
+                    // If one message history is selected, extract its attachments
+                    $scope.historyAttachments = undefined;
+                    if ($scope.selectedHistory.length === 1) {
+                        try {
+                            var hist1 = JSON.parse($scope.selectedHistory[0].snapshot);
+                            $scope.historyAttachments = hist1.attachments;
+                        } catch (e) {
+                        }
                     }
+                };
+                angular.forEach(selection, function (hist) {
+                    if (hist.snapshot === undefined) {
+                        pending++;
+                        MessageService.messageHistorySnapshot($scope.message.id, hist.id)
+                            .success(function (result) {
+                                hist.snapshot = result.snapshot;
+                            })
+                            .finally(function () {
+                                if (--pending === 0) {
+                                    selectionLoaded();
+                                }
+                            });
+                    }
+                });
+                if (pending === 0) {
+                    selectionLoaded();
                 }
             }
 
@@ -226,9 +226,16 @@ angular.module('niord.messages')
             },
 
 
-            /** Returns the history of the given message */
-            messageHistory: function(id) {
-                return $http.get('/rest/messages/message/' + id + '/history');
+            /** Returns a page of the history of the given message, excluding snapshots */
+            messageHistory: function(id, page, maxSize) {
+                return $http.get('/rest/messages/message/' + id + '/history?page=' + (page || 0)
+                    + '&maxSize=' + (maxSize || 100));
+            },
+
+
+            /** Returns the given message history entry, including the message snapshot */
+            messageHistorySnapshot: function(id, historyId) {
+                return $http.get('/rest/messages/message/' + id + '/history/' + historyId);
             },
 
 
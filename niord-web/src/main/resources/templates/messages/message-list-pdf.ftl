@@ -33,12 +33,15 @@
             </tr>
             <tr>
                 <th align="right" valign="top" nowrap>Result: &nbsp;</th>
-                <td>${messages?size} messages</td>
+                <td>${totalMessages!(messages?size)} messages</td>
             </tr>
         </table>
     </div>
 
-    <@renderTOC messages=messages areaHeadings=areaHeadings />
+    <#-- The TOC cannot link to messages in subsequent chunks of a chunked report -->
+    <#if !(chunked!false)>
+        <@renderTOC messages=messages areaHeadings=areaHeadings />
+    </#if>
 
     <div class="page-break">&nbsp;</div>
 
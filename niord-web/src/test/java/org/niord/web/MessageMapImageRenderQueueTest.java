@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.web.map.MessageMapImageGenerator;
+import org.niord.web.map.MessageMapImageRenderQueue;
+import org.niord.model.geojson.FeatureCollectionVo;
+import org.niord.model.geojson.FeatureVo;
+import org.niord.model.geojson.PointVo;
+import org.niord.model.message.MainType;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the message map image render queue against a local stand-in static-map service
+ */
+public class MessageMapImageRenderQueueTest {
+
+    static final int MAP_IMAGE_SIZE = 256;
+    static final int MAP_SERVICE_DELAY_MS = 50;
+
+    HttpServer server;
+    AtomicInteger mapRequestCount = new AtomicInteger();
+    Path repoRoot;
+    TestRenderQueue renderQueue;
+
+    @Before
+    public void setUp() throws IOException {
+        byte[] mapImage = createMapImage();
+
+        // Start a stand-in static-map service
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/staticmap", exchange -> {
+            mapRequestCount.incrementAndGet();
+            try {
+                Thread.sleep(MAP_SERVICE_DELAY_MS);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, mapImage.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(mapImage);
+            }
+        });
+        server.start();
+
+        repoRoot = Files.createTempDirectory("map-images");
+
+        MessageMapImageGenerator generator =
+                new TestMapImageGenerator("http://localhost:" + server.getAddress().getPort() + "/staticmap");
+        renderQueue = new TestRenderQueue(generator, 4);
+        renderQueue.init();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        renderQueue.closeDown();
+        server.stop(0);
+        try (var files = Files.walk(repoRoot)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        Date updated = new Date(System.currentTimeMillis() / 1000L * 1000L);
+        Path imageFile = repoRoot.resolve("msg").resolve("map_256.png");
+
+        int submitted = 0;
+        Future<Boolean> job = null;
+        for (int x = 0; x < 20; x++) {
+            if (renderQueue.submitRendering("msg", createGeometry(10.0, 56.0), MainType.NW, updated, imageFile)) {
+                submitted++;
+                job = renderQueue.getRenderingJob("msg");
+            }
+        }
+        if (job != null) {
+            assertTrue(job.get());
+        }
+
+        assertEquals(1, submitted);
+        assertEquals(1, mapRequestCount.get());
+        assertTrue(Files.exists(imageFile));
+        assertEquals(updated.getTime(), Files.getLastModifiedTime(imageFile).toMillis());
+    }
+
+    @Test
+    public void testRerenderUpdatedMessage() throws Exception {
+        long now = System.currentTimeMillis() / 1000L * 1000L;
+        Date updated1 = new Date(now - 2000L);
+        Date updated2 = new Date(now - 1000L);
+        Path imageFile = repoRoot.resolve("msg").resolve("map_256.png");
+
+        // The message is saved again while the first rendering job is in-flight
+        assertTrue(renderQueue.submitRendering("msg", createGeometry(10.0, 56.0), MainType.NW, updated1, imageFile));
+        Future<Boolean> job = renderQueue.getRenderingJob("msg");
+        assertFalse(renderQueue.submitRendering("msg", createGeometry(11.0, 56.0), MainType.NW, updated2, imageFile));
+        assertFalse(renderQueue.submitRendering("msg", createGeometry(10.0, 56.0), MainType.NW, updated1, imageFile));
+
+        // The newer version is rendered once the first job completes
+        assertTrue(job.get());
+        Future<Boolean> rerenderJob = renderQueue.getRenderingJob("msg");
+        assertNotNull(rerenderJob);
+        assertTrue(rerenderJob.get());
+
+        assertEquals(2, mapRequestCount.get());
+        assertEquals(updated2.getTime(), Files.getLastModifiedTime(imageFile).toMillis());
+        assertFalse(renderQueue.isRendering("msg"));
+    }
+
+    @Test
+    public void testRejectedRendering() {
+        renderQueue.closeDown();
+        Path imageFile = repoRoot.resolve("msg").resolve("map_256.png");
+        assertFalse(renderQueue.submitRendering("msg", createGeometry(10.0, 56.0), MainType.NW, new Date(), imageFile));
+        assertFalse(renderQueue.isRendering("msg"));
+    }
+
+    @Test
+    public void testRenderingManyMessages() throws Exception {
+        int messageCount = 100;
+        Date updated = new Date();
+
+        List<Future<Boolean>> jobs = new ArrayList<>();
+        for (int x = 0; x < messageCount; x++) {
+            String uid = "msg" + x;
+            renderQueue.submitRendering(uid, createGeometry(10.0 + x * 0.01, 56.0), MainType.NM, updated,
+                    repoRoot.resolve(uid).resolve("map_256.png"));
+            Future<Boolean> job = renderQueue.getRenderingJob(uid);
+            if (job != null) {
+                jobs.add(job);
+            }
+        }
+        for (Future<Boolean> job : jobs) {
+            assertTrue(job.get());
+        }
+
+        assertEquals(messageCount, jobs.size());
+        assertEquals(messageCount, mapRequestCount.get());
+    }
+
+    private FeatureCollectionVo[] createGeometry(double lon, double lat) {
+        FeatureVo feature = new FeatureVo();
+        feature.setGeometry(new PointVo(new double[] { lon, lat }));
+        FeatureCollectionVo fc = new FeatureCollectionVo();
+        fc.setFeatures(new FeatureVo[] { feature });
+        return new FeatureCollectionVo[] { fc };
+    }
+
+    private byte[] createMapImage() throws IOException {
+        BufferedImage image = new BufferedImage(MAP_IMAGE_SIZE, MAP_IMAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(new Color(170, 211, 223));
+        g2.fillRect(0, 0, MAP_IMAGE_SIZE, MAP_IMAGE_SIZE);
+        g2.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Map image generator that renders map thumbnails using the given static-map service
+     */
+    static class TestMapImageGenerator extends MessageMapImageGenerator {
+
+        TestMapImageGenerator(String mapImageServer) {
+            log = LoggerFactory.getLogger(MessageMapImageGenerator.class);
+            this.mapImageServer = mapImageServer;
+            mapImageSize = MAP_IMAGE_SIZE;
+            mapImageIndent = 0;
+            zoomLevel = 8;
+        }
+    }
+
+
+    /**
+     * Render queue that renders map thumbnails using the given generator
+     */
+    static class TestRenderQueue extends MessageMapImageRenderQueue {
+
+        TestRenderQueue(MessageMapImageGenerator generator, int renderThreads) {
+            log = LoggerFactory.getLogger(MessageMapImageRenderQueue.class);
+            messageMapImageGenerator = generator;
+            this.renderThreads = renderThreads;
+        }
+
+        @Override
+        protected void init() {
+            super.init();
+        }
+
+        @Override
+        protected void closeDown() {
+            super.closeDown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web;
+
+import freemarker.cache.ClassTemplateLoader;
+import freemarker.cache.MultiTemplateLoader;
+import freemarker.cache.StringTemplateLoader;
+import freemarker.cache.TemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateMethodModelEx;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the message list PDF report only omits the table of contents for chunked reports.
+ * <p>
+ * The macros of message-support.ftl are replaced by stubs, and the renderTOC stub outputs a "[TOC]" marker.
+ */
+public class MessageReportTocTest {
+
+    static final String SUPPORT_STUB =
+            "<#macro pageSizeStyle frontPage=true></#macro>" +
+            "<#macro renderDefaultHeaderAndFooter headerText frontPage=true></#macro>" +
+            "<#macro renderTOC messages areaHeadings prefix=\"\">[TOC]</#macro>" +
+            "<#macro renderMessageList messages areaHeadings=true prefix=\"\">[${messages?size} messages]</#macro>";
+
+    @Test
+    public void testTocOfReports() throws Exception {
+
+        // Reports of up to 1000 messages are rendered as a single chunk with a TOC
+        assertFalse(MessageReportRestService.isChunked(500));
+        assertFalse(MessageReportRestService.isChunked(1000));
+        assertTrue(MessageReportRestService.isChunked(1001));
+
+        String html = renderReport(500, 500, true);
+        assertTrue(html.contains("[TOC]"));
+        assertTrue(html.contains("[500 messages]"));
+
+        // The first chunk of a chunked report has a front page, but no TOC
+        html = renderReport(MessageReportRestService.REPORT_CHUNK_SIZE, 2500, true);
+        assertFalse(html.contains("[TOC]"));
+        assertTrue(html.contains("2500 messages"));
+
+        // Subsequent chunks have neither
+        html = renderReport(500, 2500, false);
+        assertFalse(html.contains("[TOC]"));
+        assertEquals(-1, html.indexOf("<h1>"));
+    }
+
+
+    /** Renders the message-list-pdf.ftl report for a chunk of messages **/
+    private String renderReport(int messageCount, long totalMessages, boolean frontPage) throws Exception {
+        StringTemplateLoader stubLoader = new StringTemplateLoader();
+        stubLoader.putTemplate("message-support.ftl", SUPPORT_STUB);
+        Configuration cfg = new Configuration(Configuration.VERSION_2_3_31);
+        cfg.setNumberFormat("computer");
+        cfg.setTemplateLoader(new MultiTemplateLoader(new TemplateLoader[] {
+                stubLoader,
+                new ClassTemplateLoader(getClass(), "/templates/messages")
+        }));
+
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (int x = 0; x < messageCount; x++) {
+            Map<String, Object> message = new HashMap<>();
+            message.put("shortId", "NW-" + x);
+            messages.add(message);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("messages", messages);
+        data.put("areaHeadings", true);
+        data.put("frontPage", frontPage);
+        data.put("chunked", MessageReportRestService.isChunked(totalMessages));
+        data.put("totalMessages", totalMessages);
+        data.put("searchCriteria", "");
+        data.put("text", (TemplateMethodModelEx) args -> args.get(0).toString());
+
+        StringWriter html = new StringWriter();
+        cfg.getTemplate("message-list-pdf.ftl").process(data, html);
+        return html.toString();
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.web.wms.WmsTileLoader;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the WMS tile loader against a local stand-in WMS HTTP server
+ */
+public class WmsTileLoaderTest {
+
+    static final int UPSTREAM_DELAY_MS = 50;
+
+    HttpServer server;
+    AtomicInteger upstreamCount = new AtomicInteger();
+    byte[] tile;
+    Path diskCacheRoot;
+
+    @Before
+    public void startServer() throws IOException {
+        tile = createTile();
+        diskCacheRoot = Files.createTempDirectory("wms-tiles");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/wms", exchange -> {
+            upstreamCount.incrementAndGet();
+            try {
+                Thread.sleep(UPSTREAM_DELAY_MS);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, tile.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(tile);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.stop(0);
+        try (var files = Files.walk(diskCacheRoot)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testNormalizeParams() {
+        Map<String, String[]> params1 = new LinkedHashMap<>();
+        params1.put("bbox", new String[] { "1,2,3,4" });
+        params1.put("LAYERS", new String[] { "a" });
+        params1.put("width", new String[] { "256" });
+
+        Map<String, String[]> params2 = new LinkedHashMap<>();
+        params2.put("WIDTH", new String[] { "256" });
+        params2.put("BBOX", new String[] { "1,2,3,4" });
+        params2.put("token", new String[] { "secret" });
+
+        Set<String> excluded = Set.of("TOKEN", "LAYERS");
+        assertEquals("BBOX=1,2,3,4&WIDTH=256", WmsTileLoader.normalizeParams(params1, excluded));
+        assertEquals(WmsTileLoader.normalizeParams(params1, excluded), WmsTileLoader.normalizeParams(params2, excluded));
+    }
+
+    @Test
+    public void testPassThrough() throws IOException {
+        WmsTileLoader loader = new WmsTileLoader(new ConcurrentHashMap<>(), diskCacheRoot, 60000L, false);
+        byte[] data = loader.loadTile("tile", url("tile"));
+        assertArrayEquals(tile, data);
+        assertEquals(1, upstreamCount.get());
+    }
+
+    @Test
+    public void testColorMasking() throws IOException {
+        WmsTileLoader loader = new WmsTileLoader(new ConcurrentHashMap<>(), null, 60000L, true);
+        byte[] data = loader.loadTile("tile", url("tile"));
+        assertTrue(Arrays.equals(Arrays.copyOf(tile, 8), Arrays.copyOf(data, 8)));
+        assertTrue(ImageIO.read(new ByteArrayInputStream(data)).getColorModel().hasAlpha());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        WmsTileLoader loader = new WmsTileLoader(new ConcurrentHashMap<>(), diskCacheRoot, 60000L, false);
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        List<Future<byte[]>> results = new ArrayList<>();
+        for (int x = 0; x < 20; x++) {
+            results.add(executor.submit(() -> loader.loadTile("tile", url("tile"))));
+        }
+        for (Future<byte[]> result : results) {
+            assertArrayEquals(tile, result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, upstreamCount.get());
+    }
+
+    @Test
+    public void testCacheLevels() throws Exception {
+        int tileCount = 50;
+        int requestCount = 1000;
+
+        WmsTileLoader loader = new WmsTileLoader(new ConcurrentHashMap<>(), diskCacheRoot, 60000L, false);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<byte[]>> results = new ArrayList<>();
+        for (int x = 0; x < requestCount; x++) {
+            String key = "tile" + (x % tileCount);
+            results.add(executor.submit(() -> loader.loadTile(key, url(key))));
+        }
+        for (Future<byte[]> result : results) {
+            assertArrayEquals(tile, result.get());
+        }
+        executor.shutdown();
+        assertEquals(tileCount, upstreamCount.get());
+        assertEquals(requestCount, loader.getMemoryHits() + loader.getCoalesced() + loader.getUpstreamRequests());
+
+        // A new loader with an empty memory cache must be served from the disk cache
+        WmsTileLoader diskLoader = new WmsTileLoader(new ConcurrentHashMap<>(), diskCacheRoot, 60000L, false);
+        for (int x = 0; x < tileCount; x++) {
+            diskLoader.loadTile("tile" + x, url("tile" + x));
+        }
+        assertEquals(tileCount, diskLoader.getDiskHits());
+        assertEquals(tileCount, upstreamCount.get());
+    }
+
+    @Test
+    public void testSweepDiskCache() throws Exception {
+        WmsTileLoader loader = new WmsTileLoader(new ConcurrentHashMap<>(), diskCacheRoot, 60000L, false);
+        for (int x = 0; x < 10; x++) {
+            loader.loadTile("tile" + x, url("tile" + x));
+        }
+        List<Path> files = cacheFiles();
+        assertEquals(10, files.size());
+
+        // Nothing has expired, and the cache is within the max size
+        assertEquals(0, WmsTileLoader.sweepDiskCache(diskCacheRoot, 60000L, Long.MAX_VALUE));
+
+        // Expire three tiles, and leave behind an expired temporary file
+        long now = System.currentTimeMillis();
+        for (int x = 0; x < 3; x++) {
+            Files.setLastModifiedTime(files.get(x), FileTime.fromMillis(now - 120000L));
+        }
+        Path tmpFile = files.get(3).resolveSibling("tile.png.tmp");
+        Files.write(tmpFile, tile);
+        Files.setLastModifiedTime(tmpFile, FileTime.fromMillis(now - 120000L));
+        assertEquals(4, WmsTileLoader.sweepDiskCache(diskCacheRoot, 60000L, Long.MAX_VALUE));
+        assertEquals(7, cacheFiles().size());
+        assertTrue(Files.notExists(files.get(0)));
+        assertTrue(Files.notExists(tmpFile));
+
+        // Enforce the max size by deleting the least recently written tiles
+        for (int x = 3; x < 10; x++) {
+            Files.setLastModifiedTime(files.get(x), FileTime.fromMillis(now - 10000L + x));
+        }
+        assertEquals(3, WmsTileLoader.sweepDiskCache(diskCacheRoot, 60000L, 4L * tile.length));
+        assertEquals(4, cacheFiles().size());
+        assertTrue(Files.notExists(files.get(5)));
+        assertTrue(Files.exists(files.get(6)));
+    }
+
+    private List<Path> cacheFiles() throws IOException {
+        try (var files = Files.walk(diskCacheRoot)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private String url(String key) {
+        return "http://localhost:" + server.getAddress().getPort() + "/wms?" + key;
+    }
+
+    private byte[] createTile() throws IOException {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(Color.WHITE);
+        g2.fillRect(0, 0, 256, 256);
+        g2.setColor(Color.BLUE);
+        g2.fillRect(64, 64, 128, 128);
+        g2.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}